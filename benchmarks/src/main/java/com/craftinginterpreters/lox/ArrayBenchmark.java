@@ -0,0 +1,82 @@
+package com.craftinginterpreters.lox;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// 배열: 붙이기(append)로 size개짜리 배열 만들기, 인덱스 읽기/쓰기, 뒤에 넣고 빼기.
+// 숫자만 담긴 배열(LoxArray의 double 저장)과 문자열이 섞인 배열을 따로 잰다.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArrayBenchmark {
+    @Param({"1000"})
+    public int size;
+    @Param({"false"})
+    public boolean jit;
+
+    private BenchmarkScript appendNumbers, appendStrings, indexRead, indexReadMixed, indexWrite, pushPop;
+
+    @Setup
+    public void setup() {
+        String setup =
+            "var result = nil;\n" +
+            "var n = " + size + ";\n" +
+            "fun numbers(n) { var a = []; for (var i = 0; i < n; i = i + 1) a.append(i); return a; }\n" +
+            "fun strings(n) { var a = []; for (var i = 0; i < n; i = i + 1) a.append(\"원소\"); return a; }\n" +
+            "fun mixed(n) { var a = numbers(n); a[0] = \"처음\"; return a; }\n" +
+            "fun sum(a, n) { var s = 0; for (var i = 1; i < n; i = i + 1) s = s + a[i]; return s; }\n" +
+            "fun increment(a, n) { for (var i = 0; i < n; i = i + 1) a[i] = a[i] + 1; return a[0]; }\n" +
+            "fun pushPop(a, n) { var s = 0; for (var i = 0; i < n; i = i + 1) { a.append(i); s = s + a.pop_back(); } return s; }\n" +
+            "var numeric = numbers(n);\n" +
+            "var mixedArray = mixed(n);\n";
+        appendNumbers = new BenchmarkScript(setup, "result = numbers(n);", jit);
+        appendStrings = new BenchmarkScript(setup, "result = strings(n);", jit);
+        indexRead = new BenchmarkScript(setup, "result = sum(numeric, n);", jit);
+        indexReadMixed = new BenchmarkScript(setup, "result = sum(mixedArray, n);", jit);
+        indexWrite = new BenchmarkScript(setup, "result = increment(numeric, n);", jit);
+        pushPop = new BenchmarkScript(setup, "result = pushPop(numeric, n);", jit);
+    }
+
+    @Benchmark
+    public Object appendNumbers() {
+        return appendNumbers.run();
+    }
+
+    @Benchmark
+    public Object appendStrings() {
+        return appendStrings.run();
+    }
+
+    @Benchmark
+    public Object indexRead() {
+        return indexRead.run();
+    }
+
+    @Benchmark
+    public Object indexReadMixed() {
+        return indexReadMixed.run();
+    }
+
+    @Benchmark
+    public Object indexWrite() {
+        return indexWrite.run();
+    }
+
+    @Benchmark
+    public Object appendAndPop() {
+        return pushPop.run();
+    }
+}
@@ -0,0 +1,47 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+// 벤치마크가 되풀이해서 실행하는 Lox 코드.
+// setup(함수, 클래스 정의)은 만들 때 한 번 실행하고, 측정할 run 코드는 미리 스캔, 파싱, 리졸브, 최적화해 두어
+// run()은 Interpreter.interpret만 부른다. REPL처럼 같은 인터프리터의 전역을 이어 쓰므로 setup의 정의는
+// 다시 정의되지 않은 안정 전역으로 남고, 실제 실행과 같은 경로(직접 호출, 인라인 캐시, JIT)를 탄다.
+// 측정 결과는 전역 변수 result의 값으로 돌려주어 JMH가 계산을 버리지 못하게 한다.
+final class BenchmarkScript {
+    private final Interpreter interpreter = new Interpreter();
+    private final Token result = new Token(TokenType.IDENTIFIER, "result", null, 0);
+    private final int resultSlot;
+    private List<Stmt> statements;
+    private int frameSize;
+
+    BenchmarkScript(String setup, String run, boolean jit) {
+        Jit.enabled = jit;
+        resultSlot = interpreter.globals.slot(result.lexeme);
+        prepare(setup);
+        interpreter.interpret(statements, frameSize);
+        check();
+        prepare(run);
+    }
+
+    Object run() {
+        interpreter.interpret(statements, frameSize);
+        check();
+        return interpreter.globals.get(resultSlot, result);
+    }
+
+    // Lox.run과 같은 순서로 앞단(스캔, 파싱, 리졸브, AST 최적화)을 거친다.
+    private void prepare(String source) {
+        statements = new Parser(new Scanner(source).scanTokens()).parse();
+        check();
+        Resolver resolver = new Resolver(interpreter);
+        resolver.resolve(statements);
+        check();
+        frameSize = resolver.scriptSlots();
+        new Optimizer().optimize(statements);
+        frameSize = new LoopOptimizer().optimize(statements, frameSize);
+        frameSize = new Inliner().inline(statements, frameSize);
+    }
+    private static void check() {
+        if (Lox.hadError || Lox.hadRuntimeError) throw new IllegalStateException("벤치마크 스크립트에 에러가 있습니다.");
+    }
+}
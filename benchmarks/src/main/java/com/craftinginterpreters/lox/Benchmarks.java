@@ -0,0 +1,22 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.Runner;
+
+// benchmarks.jar의 main. JMH 명령줄 옵션을 그대로 받고, 모든 벤치마크에 gc 프로파일러를 붙여
+// 시간과 함께 연산당 할당량(gc.alloc.rate.norm, B/op)을 보고한다.
+// 예) java -jar benchmarks/target/benchmarks.jar Scan -p lines=1000
+public class Benchmarks {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,93 @@
+package com.craftinginterpreters.lox;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// 호출과 필드 접근: 벤치마크마다 1000번 도는 반복문 하나를 잰다.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallBenchmark {
+    private static final String SETUP =
+        "var result = nil;\n" +
+        "class Point {\n" +
+        "    init(x, y) { this.x = x; this.y = y; }\n" +
+        "    getX() { return this.x; }\n" +
+        "    move(dx) { this.x = this.x + dx; }\n" +
+        "}\n" +
+        "fun add(a, b) { return a + b; }\n" +
+        "fun fib(n) { if (n < 2) return n; return fib(n - 1) + fib(n - 2); }\n" +
+        "fun functionCall() { var s = 0; for (var i = 0; i < 1000; i = i + 1) s = add(s, i); return s; }\n" +
+        "fun recursiveCall() { return fib(15); }\n" +
+        "fun methodCall(p) { var s = 0; for (var i = 0; i < 1000; i = i + 1) s = s + p.getX(); return s; }\n" +
+        "fun setterCall(p) { for (var i = 0; i < 1000; i = i + 1) p.move(1); return p.x; }\n" +
+        "fun fieldGet(p) { var s = 0; for (var i = 0; i < 1000; i = i + 1) s = s + p.x + p.y; return s; }\n" +
+        "fun fieldSet(p) { for (var i = 0; i < 1000; i = i + 1) p.y = i; return p.y; }\n" +
+        "fun construct() { var p; for (var i = 0; i < 1000; i = i + 1) p = Point(i, i); return p; }\n" +
+        "var point = Point(1, 2);\n";
+
+
+    @Param({"false"})
+    public boolean jit;
+
+    private BenchmarkScript functionCall, recursiveCall, methodCall, setterCall, fieldGet, fieldSet, construct;
+
+    @Setup
+    public void setup() {
+        functionCall = new BenchmarkScript(SETUP, "result = functionCall();", jit);
+        recursiveCall = new BenchmarkScript(SETUP, "result = recursiveCall();", jit);
+        methodCall = new BenchmarkScript(SETUP, "result = methodCall(point);", jit);
+        setterCall = new BenchmarkScript(SETUP, "result = setterCall(point);", jit);
+        fieldGet = new BenchmarkScript(SETUP, "result = fieldGet(point);", jit);
+        fieldSet = new BenchmarkScript(SETUP, "result = fieldSet(point);", jit);
+        construct = new BenchmarkScript(SETUP, "result = construct();", jit);
+    }
+
+    @Benchmark
+    public Object functionCall() {
+        return functionCall.run();
+    }
+
+    @Benchmark
+    public Object recursiveCall() {
+        return recursiveCall.run();
+    }
+
+    @Benchmark
+    public Object methodCall() {
+        return methodCall.run();
+    }
+
+    @Benchmark
+    public Object methodCallWithFieldSet() {
+        return setterCall.run();
+    }
+
+    @Benchmark
+    public Object fieldGet() {
+        return fieldGet.run();
+    }
+
+    @Benchmark
+    public Object fieldSet() {
+        return fieldSet.run();
+    }
+
+    @Benchmark
+    public Object constructor() {
+        return construct.run();
+    }
+}
@@ -0,0 +1,40 @@
+package com.craftinginterpreters.lox;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+
+// CorpusRunner가 띄우는 JVM의 main. Lox.main으로 프로그램 하나를 warmup + runs번 처음부터 실행하고,
+// 측정한 실행마다 한 줄씩 표준 에러에 "#probe 벽시계(ns) 할당(바이트) 최고힙(바이트)"를 쓴다.
+// 프로그램 출력(표준 출력)은 러너가 버린다.
+//   할당: 이 스레드가 실행 동안 할당한 바이트 (인터프리터는 한 스레드에서 돈다)
+//   최고 힙: 실행 직전에 GC하고 최고치를 지운 뒤, 실행 동안 힙 메모리 풀별 최고 사용량의 합 (가비지 포함)
+// 사용법: CorpusProbe warmup runs [lox 옵션...] 스크립트파일
+public class CorpusProbe {
+    static final String MARK = "#probe";
+
+    public static void main(String[] args) {
+        int warmup = Integer.parseInt(args[0]);
+        int runs = Integer.parseInt(args[1]);
+        String[] loxArgs = Arrays.copyOfRange(args, 2, args.length);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        for (int i=0;i<warmup+runs;++i) {
+            Lox.reset();
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+            }
+            long allocated = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            Lox.main(loxArgs);
+            long wall = System.nanoTime() - start;
+            allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+            long peak = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+            }
+            if (i >= warmup) System.err.println(MARK + " " + wall + " " + allocated + " " + peak);
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// 전체 프로그램 벤치마크 러너. benchmarks/lox/의 .jlox 프로그램을 Lox.main으로 실행해서 재고,
+// 결과를 JSON으로 쓰고, 저장해 둔 기준(baseline)과 비교해 느려진 것을 표시한다.
+//   fresh - 프로그램마다 새 JVM을 runs번 띄워 한 번씩 실행한다. (JVM 시작부터 끝까지의 시간도 processMs로 잰다)
+//   warm  - 새 JVM 하나에서 warmup번 실행해 데운 뒤 runs번 실행한다. (CorpusProbe, Lox.reset)
+// 기준과 비교하는 값은 벽시계 시간의 중앙값(wallMs.median)과 할당량(allocMB)이다. 기준보다 time-threshold/alloc-threshold
+// 넘게 크면 느려짐(REGRESSION)으로 표시하고 종료 코드 1로 끝난다. 시간은 같은 기계에서도 실행마다 10~20% 흔들리므로
+// 기본 문턱을 할당량보다 크게 둔다. 최고 힙(peakHeapMB)은 기록만 한다. 기준은 비교할 기계에서 --save-baseline으로 만든다.
+//
+// --check-engines는 재지 않고 엔진끼리 결과가 같은지만 본다. 프로그램마다 ENGINES의 옵션으로 Lox를 새 JVM에서 실행해
+// 표준 출력, 표준 에러, 종료 코드가 기준(--no-jit --no-optimize 트리 인터프리터)과 다르면 표시하고 종료 코드 1로 끝난다.
+// --dir을 주지 않으면 benchmarks/lox와 testFile(회귀 스크립트)을 본다. clock()으로 시간을 출력하는 프로그램은 건너뛴다.
+//
+// 사용법 (저장소 맨 위에서, mvn package 뒤):
+//   java -cp benchmarks/target/benchmarks.jar com.craftinginterpreters.lox.CorpusRunner
+//       [--runs N] [--warmup N] [--time-threshold 0.20] [--alloc-threshold 0.05] [--dir benchmarks/lox] [--out 결과.json]
+//       [--baseline 기준.json] [--save-baseline] [--only 이름,이름] [-- lox 옵션...]
+//   java -cp benchmarks/target/benchmarks.jar com.craftinginterpreters.lox.CorpusRunner --check-engines [--dir 디렉터리] [--only 이름,이름]
+public class CorpusRunner {
+    private int runs = 5;
+    private int warmup = 3;
+    private double timeThreshold = 0.20;
+    private double allocThreshold = 0.05;
+    // 이보다 작은 차이(ms, MB)는 비율이 커도 잡음으로 본다
+    private static final double MIN_DIFFERENCE = 1.0;
+    // --check-engines가 비교하는 옵션 조합. 첫 번째가 기준이다.
+    private static final String[][] ENGINES = {
+        { "--no-jit", "--no-optimize" }, {}, { "--no-jit" }, { "--no-optimize" },
+        { "--engine=node" }, { "--engine=closure" }, { "--engine=vm" },
+    };
+    private static final long CHECK_TIMEOUT_SECONDS = 120;
+    private Path dir = Paths.get("benchmarks", "lox");
+    private Path out = Paths.get("benchmarks", "target", "lox-results.json");
+    private Path baseline = null;
+    private boolean saveBaseline = false;
+    private boolean checkEngines = false;
+    private boolean dirGiven = false;
+    private List<String> only = null;
+    private final List<String> loxArgs = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        CorpusRunner runner = new CorpusRunner();
+        if (!runner.parse(args)) {
+            System.err.println("사용법: CorpusRunner [--runs N] [--warmup N] [--time-threshold 0.20] [--alloc-threshold 0.05]");
+            System.err.println("                    [--dir 디렉터리] [--out 결과.json]");
+            System.err.println("                    [--baseline 기준.json] [--save-baseline] [--only 이름,이름] [-- lox 옵션...]");
+            System.err.println("       CorpusRunner --check-engines [--dir 디렉터리] [--only 이름,이름] [-- lox 옵션...]");
+            System.exit(64);
+        }
+        System.exit(runner.checkEngines ? runner.checkEngines() : runner.run());
+    }
+
+    private boolean parse(String[] args) {
+        for (int i=0;i<args.length;++i) {
+            String arg = args[i];
+            if (arg.equals("--")) {
+                loxArgs.addAll(Arrays.asList(args).subList(i + 1, args.length));
+                break;
+            }
+            if (arg.equals("--save-baseline")) {
+                saveBaseline = true;
+                continue;
+            }
+            if (arg.equals("--check-engines")) {
+                checkEngines = true;
+                continue;
+            }
+            if (i + 1 >= args.length) return false;
+            String value = args[++i];
+            switch (arg) {
+                case "--runs": runs = Integer.parseInt(value); break;
+                case "--warmup": warmup = Integer.parseInt(value); break;
+                case "--time-threshold": timeThreshold = Double.parseDouble(value); break;
+                case "--alloc-threshold": allocThreshold = Double.parseDouble(value); break;
+                case "--dir": dir = Paths.get(value); dirGiven = true; break;
+                case "--out": out = Paths.get(value); break;
+                case "--baseline": baseline = Paths.get(value); break;
+                case "--only": only = Arrays.asList(value.split(",")); break;
+                default: return false;
+            }
+        }
+        if (baseline == null) baseline = dir.resolve("baseline.json");
+        return runs > 0 && warmup >= 0;
+    }
+
+    private List<Path> programs(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.toString().endsWith(".jlox"))
+                .filter(file -> only == null || only.contains(name(file)))
+                .sorted().collect(Collectors.toList());
+        }
+    }
+
+    private int run() throws IOException, InterruptedException {
+        List<Path> programs = programs(dir);
+        Map<String,Object> results = new LinkedHashMap<>();
+        results.put("java", System.getProperty("java.version"));
+        results.put("loxArgs", new ArrayList<Object>(loxArgs));
+        results.put("runs", (double)runs);
+        results.put("warmup", (double)warmup);
+        Map<String,Object> measured = new LinkedHashMap<>();
+        results.put("programs", measured);
+        for (Path program : programs) {
+            System.out.println("실행: " + name(program));
+            Map<String,Object> modes = new LinkedHashMap<>();
+            List<long[]> fresh = new ArrayList<>();
+            List<Double> process = new ArrayList<>();
+            for (int i=0;i<runs;++i) {
+                long start = System.nanoTime();
+                fresh.addAll(probe(program, 0, 1));
+                process.add((System.nanoTime() - start) / 1e6);
+            }
+            Map<String,Object> freshSummary = summary(fresh);
+            freshSummary.put("processMs", stats(process));
+            modes.put("fresh", freshSummary);
+            modes.put("warm", summary(probe(program, warmup, runs)));
+            measured.put(name(program), modes);
+        }
+
+        Files.createDirectories(out.toAbsolutePath().getParent());
+        Files.write(out, (Json.write(results) + "\n").getBytes(StandardCharsets.UTF_8));
+        System.out.println("결과: " + out);
+        int status = 0;
+        if (Files.exists(baseline)) {
+            Object stored = Json.parse(new String(Files.readAllBytes(baseline), StandardCharsets.UTF_8));
+            if (!loxArgs.equals(((Map<?,?>)stored).get("loxArgs"))) {
+                System.out.println("주의: 기준과 lox 옵션이 다릅니다. (기준 " + ((Map<?,?>)stored).get("loxArgs") + ", 지금 " + loxArgs + ")");
+            }
+            status = compare(measured, (Map<?,?>)((Map<?,?>)stored).get("programs")) ? 1 : 0;
+        } else {
+            System.out.println("기준 파일이 없어 비교하지 않습니다: " + baseline);
+        }
+        if (saveBaseline) {
+            Files.write(baseline, (Json.write(results) + "\n").getBytes(StandardCharsets.UTF_8));
+            System.out.println("기준 저장: " + baseline);
+        }
+        return status;
+    }
+
+    // 엔진마다 결과(표준 출력, 표준 에러, 종료 코드)가 기준과 같은지 본다. 다른 프로그램이 하나라도 있으면 1
+    private int checkEngines() throws IOException, InterruptedException {
+        List<Path> programs = new ArrayList<>();
+        for (Path each : dirGiven ? Arrays.asList(dir) : Arrays.asList(dir, Paths.get("testFile"))) {
+            programs.addAll(programs(each));
+        }
+        int checked = 0, mismatched = 0;
+        for (Path program : programs) {
+            if (new String(Files.readAllBytes(program), StandardCharsets.UTF_8).contains("clock(")) {
+                System.out.println("건너뜀 (clock): " + program);
+                continue;
+            }
+            ++checked;
+            List<String> results = new ArrayList<>();
+            for (String[] engine : ENGINES) results.add(execute(program, engine));
+            List<Integer> differ = new ArrayList<>();
+            for (int i=1;i<ENGINES.length;++i) {
+                if (!results.get(i).equals(results.get(0))) differ.add(i);
+            }
+            if (differ.isEmpty()) {
+                System.out.println("같음: " + program);
+                continue;
+            }
+            ++mismatched;
+            System.out.println("다름: " + program);
+            differ.add(0, 0);
+            for (int i : differ) {
+                System.out.println("  [" + (ENGINES[i].length == 0 ? "기본" : String.join(" ", ENGINES[i])) + "]");
+                System.out.println(results.get(i).replaceAll("(?m)^", "    "));
+            }
+        }
+        System.out.println(mismatched == 0 ? "프로그램 " + checked + "개 모두 엔진끼리 결과가 같습니다."
+            : "프로그램 " + checked + "개 중 " + mismatched + "개가 엔진마다 결과가 다릅니다.");
+        return mismatched == 0 ? 0 : 1;
+    }
+
+    // 새 JVM에서 Lox로 프로그램을 실행하고 표준 출력, 표준 에러, 종료 코드를 한 문자열로 돌려준다.
+    private String execute(Path program, String[] engine) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Dfile.encoding=UTF-8");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Lox.class.getName());
+        command.addAll(Arrays.asList(engine));
+        command.addAll(loxArgs);
+        command.add(program.toString());
+        Path stdout = Files.createTempFile("lox-check", ".out"), stderr = Files.createTempFile("lox-check", ".err");
+        try {
+            Process process = new ProcessBuilder(command)
+                .redirectOutput(stdout.toFile())
+                .redirectError(stderr.toFile())
+                .start();
+            String code;
+            if (process.waitFor(CHECK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                code = String.valueOf(process.exitValue());
+            } else {
+                process.destroyForcibly().waitFor();
+                code = CHECK_TIMEOUT_SECONDS + "초 안에 끝나지 않음";
+            }
+            return "출력:\n" + new String(Files.readAllBytes(stdout), StandardCharsets.UTF_8)
+                + "\n에러:\n" + new String(Files.readAllBytes(stderr), StandardCharsets.UTF_8)
+                + "\n종료 코드: " + code;
+        } finally {
+            Files.delete(stdout);
+            Files.delete(stderr);
+        }
+    }
+
+    // 새 JVM에서 CorpusProbe로 프로그램을 실행하고 측정 줄을 모은다.
+    private List<long[]> probe(Path program, int warmup, int runs) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Dfile.encoding=UTF-8");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(CorpusProbe.class.getName());
+        command.add(String.valueOf(warmup));
+        command.add(String.valueOf(runs));
+        command.addAll(loxArgs);
+        command.add(program.toString());
+        Process process = new ProcessBuilder(command)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        List<long[]> samples = new ArrayList<>();
+        StringBuilder errors = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.startsWith(CorpusProbe.MARK + " ")) {
+                    String[] parts = line.split(" ");
+                    samples.add(new long[] { Long.parseLong(parts[1]), Long.parseLong(parts[2]), Long.parseLong(parts[3]) });
+                } else {
+                    errors.append(line).append('\n');
+                }
+            }
+        }
+        int code = process.waitFor();
+        if (code != 0 || samples.size() != runs) {
+            throw new IllegalStateException(name(program) + " 실행 실패 (종료 코드 " + code + ")\n" + errors);
+        }
+        return samples;
+    }
+
+    private static Map<String,Object> summary(List<long[]> samples) {
+        List<Double> wall = new ArrayList<>(), alloc = new ArrayList<>(), peak = new ArrayList<>();
+        for (long[] sample : samples) {
+            wall.add(sample[0] / 1e6);
+            alloc.add(sample[1] / 1048576.0);
+            peak.add(sample[2] / 1048576.0);
+        }
+        Map<String,Object> summary = new LinkedHashMap<>();
+        summary.put("wallMs", stats(wall));
+        summary.put("allocMB", median(alloc));
+        summary.put("peakHeapMB", peak.stream().mapToDouble(Double::doubleValue).max().orElse(0));
+        return summary;
+    }
+    private static Map<String,Object> stats(List<Double> values) {
+        Map<String,Object> stats = new LinkedHashMap<>();
+        stats.put("median", median(values));
+        stats.put("min", values.stream().mapToDouble(Double::doubleValue).min().orElse(0));
+        stats.put("max", values.stream().mapToDouble(Double::doubleValue).max().orElse(0));
+        return stats;
+    }
+    private static double median(List<Double> values) {
+        double[] sorted = values.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+        if (sorted.length == 0) return 0;
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    // 기준과 비교한 표를 출력한다. 느려진 것이 하나라도 있으면 true
+    private boolean compare(Map<String,Object> measured, Map<?,?> stored) {
+        System.out.printf("%-22s %-6s %-10s %12s %12s %9s%n", "프로그램", "모드", "지표", "기준", "지금", "변화");
+        boolean regressed = false;
+        for (Map.Entry<String,Object> program : measured.entrySet()) {
+            Map<?,?> before = stored == null ? null : (Map<?,?>)stored.get(program.getKey());
+            for (String mode : new String[] { "fresh", "warm" }) {
+                Map<?,?> now = (Map<?,?>)((Map<?,?>)program.getValue()).get(mode);
+                Map<?,?> then = before == null ? null : (Map<?,?>)before.get(mode);
+                if (then == null) {
+                    System.out.printf("%-22s %-6s (기준 없음)%n", program.getKey(), mode);
+                    continue;
+                }
+                regressed |= row(program.getKey(), mode, "wallMs", timeThreshold,
+                    (double)((Map<?,?>)then.get("wallMs")).get("median"), (double)((Map<?,?>)now.get("wallMs")).get("median"));
+                regressed |= row(program.getKey(), mode, "allocMB", allocThreshold,
+                    (double)then.get("allocMB"), (double)now.get("allocMB"));
+            }
+        }
+        System.out.println(regressed ? "기준보다 느려진(또는 할당이 늘어난) 항목이 있습니다." : "느려진 항목이 없습니다.");
+        return regressed;
+    }
+    private static boolean row(String program, String mode, String metric, double threshold, double then, double now) {
+        double change = then == 0 ? 0 : (now - then) / then;
+        boolean significant = Math.abs(now - then) > MIN_DIFFERENCE;
+        String mark = !significant ? "" : change > threshold ? "  REGRESSION" : change < -threshold ? "  개선" : "";
+        System.out.printf("%-22s %-6s %-10s %12.2f %12.2f %+8.1f%%%s%n", program, mode, metric, then, now, change * 100, mark);
+        return significant && change > threshold;
+    }
+
+    private static String name(Path program) {
+        String file = program.getFileName().toString();
+        return file.substring(0, file.length() - ".jlox".length());
+    }
+
+    // 결과 파일용 최소 JSON. 객체(LinkedHashMap), 배열(List), 숫자(double), 문자열, true/false/null만 다룬다.
+    static final class Json {
+        private final String text;
+        private int pos = 0;
+
+        private Json(String text) {
+            this.text = text;
+        }
+
+        static String write(Object value) {
+            StringBuilder sb = new StringBuilder();
+            write(sb, value, "");
+            return sb.toString();
+        }
+        private static void write(StringBuilder sb, Object value, String indent) {
+            if (value instanceof Map) {
+                Map<?,?> map = (Map<?,?>)value;
+                if (map.isEmpty()) {
+                    sb.append("{}");
+                    return;
+                }
+                sb.append("{\n");
+                int i = 0;
+                for (Map.Entry<?,?> entry : map.entrySet()) {
+                    sb.append(indent).append("  ");
+                    string(sb, entry.getKey().toString());
+                    sb.append(": ");
+                    write(sb, entry.getValue(), indent + "  ");
+                    sb.append(++i < map.size() ? ",\n" : "\n");
+                }
+                sb.append(indent).append('}');
+            } else if (value instanceof List) {
+                sb.append('[');
+                List<?> list = (List<?>)value;
+                for (int i=0;i<list.size();++i) {
+                    if (i > 0) sb.append(", ");
+                    write(sb, list.get(i), indent);
+                }
+                sb.append(']');
+            } else if (value instanceof Double) {
+                double number = (double)value;
+                if (number == Math.rint(number) && Math.abs(number) < 1e15) sb.append((long)number);
+                else sb.append(String.format(Locale.ROOT, "%.3f", number));
+            } else if (value instanceof String) {
+                string(sb, (String)value);
+            } else {
+                sb.append(value);
+            }
+        }
+        private static void string(StringBuilder sb, String value) {
+            sb.append('"');
+            for (char c : value.toCharArray()) {
+                if (c == '"' || c == '\\') sb.append('\\').append(c);
+                else if (c < 0x20) sb.append(String.format("\\u%04x", (int)c));
+                else sb.append(c);
+            }
+            sb.append('"');
+        }
+
+        static Object parse(String text) {
+            Json json = new Json(text);
+            Object value = json.value();
+            json.skip();
+            if (json.pos != text.length()) throw json.error();
+            return value;
+        }
+        private Object value() {
+            skip();
+            if (pos >= text.length()) throw error();
+            char c = text.charAt(pos);
+            if (c == '{') {
+                ++pos;
+                Map<String,Object> map = new LinkedHashMap<>();
+                skip();
+                if (peek('}')) return map;
+                do {
+                    skip();
+                    String key = (String)value();
+                    skip();
+                    expect(':');
+                    map.put(key, value());
+                    skip();
+                } while (peek(','));
+                expect('}');
+                return map;
+            }
+            if (c == '[') {
+                ++pos;
+                List<Object> list = new ArrayList<>();
+                skip();
+                if (peek(']')) return list;
+                do {
+                    list.add(value());
+                    skip();
+                } while (peek(','));
+                expect(']');
+                return list;
+            }
+            if (c == '"') {
+                StringBuilder sb = new StringBuilder();
+                for (++pos; pos < text.length() && text.charAt(pos) != '"'; ++pos) {
+                    char d = text.charAt(pos);
+                    if (d == '\\') {
+                        d = text.charAt(++pos);
+                        if (d == 'u') {
+                            d = (char)Integer.parseInt(text.substring(pos + 1, pos + 5), 16);
+                            pos += 4;
+                        } else if (d == 'n') {
+                            d = '\n';
+                        } else if (d == 't') {
+                            d = '\t';
+                        }
+                    }
+                    sb.append(d);
+                }
+                expect('"');
+                return sb.toString();
+            }
+            for (String word : new String[] { "true", "false", "null" }) {
+                if (text.startsWith(word, pos)) {
+                    pos += word.length();
+                    return word.equals("null") ? null : Boolean.valueOf(word);
+                }
+            }
+            int start = pos;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) ++pos;
+            if (start == pos) throw error();
+            return Double.parseDouble(text.substring(start, pos));
+        }
+        private void skip() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) ++pos;
+        }
+        private boolean peek(char c) {
+            if (pos < text.length() && text.charAt(pos) == c) {
+                ++pos;
+                return true;
+            }
+            return false;
+        }
+        private void expect(char c) {
+            if (!peek(c)) throw error();
+        }
+        private IllegalArgumentException error() {
+            return new IllegalArgumentException("JSON 형식 오류 (" + pos + "번째 문자)");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// 출력 처리량: print문 1000개(값마다 stringify + 버퍼 쓰기)를 잰다. 출력은 버리는 Writer로 보낸다.
+//   integer - 정수 숫자 (".0"을 떼는 경로)
+//   decimal - 소수 숫자
+//   string  - 문자열
+//   mixed   - 숫자, 문자열, nil, 불리언, 인스턴스가 섞인 값
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrintBenchmark {
+    @Param({"integer", "decimal", "string", "mixed"})
+    public String value;
+    @Param({"false"})
+    public boolean jit;
+
+    private BufferedWriter stdout;
+    private BenchmarkScript script;
+
+    @Setup
+    public void setup() {
+        stdout = Interpreter.bw;
+        Interpreter.bw = new BufferedWriter(Writer.nullWriter());
+        String body;
+        switch (value) {
+            case "integer": body = "print i;"; break;
+            case "decimal": body = "print i + 0.25;"; break;
+            case "string": body = "print \"출력 처리량\";"; break;
+            case "mixed": body = "print i; print \" \"; print nil; print true; print thing;"; break;
+            default: throw new IllegalArgumentException("value: " + value);
+        }
+        script = new BenchmarkScript(
+            "var result = nil;\n" +
+            "class Thing {}\n" +
+            "var thing = Thing();\n" +
+            "fun output() { for (var i = 0; i < 1000; i = i + 1) { " + body + " } return 1000; }\n",
+            "result = output();", jit);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Interpreter.bw = stdout;
+    }
+
+    @Benchmark
+    public Object print() {
+        return script.run();
+    }
+}
@@ -0,0 +1,82 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// 앞단: 큰 생성 소스를 스캔(Scanner.scanTokens), 파싱(Parser.parse), 스캔부터 리졸브(Resolver.resolve)까지 한 번에.
+// units는 생성할 단위(함수, 클래스, 배열, 반복문 묶음) 수다. 한 단위가 약 15줄이다.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScanParseBenchmark {
+    @Param({"100", "1000"})
+    public int units;
+
+    private String source;
+    private List<Token> tokens;
+
+    @Setup
+    public void setup() {
+        source = generate(units);
+        tokens = new Scanner(source).scanTokens();
+        new Parser(tokens).parse();
+        if (Lox.hadError) throw new IllegalStateException("생성한 소스에 구문 에러가 있습니다.");
+    }
+
+    @Benchmark
+    public Object scan() {
+        return new Scanner(source).scanTokens();
+    }
+
+    @Benchmark
+    public Object parse() {
+        return new Parser(tokens).parse();
+    }
+
+    // 리졸브는 AST에 슬롯을 적어 넣으므로 매번 새로 파싱한 트리와 새 전역 테이블로 한다.
+    @Benchmark
+    public Object frontEnd() {
+        List<Stmt> statements = new Parser(new Scanner(source).scanTokens()).parse();
+        Resolver resolver = new Resolver(new Interpreter());
+        resolver.resolve(statements);
+        return statements;
+    }
+
+    // 영어, 한글 키워드와 숫자, 문자열, 주석, 클래스, 클로저, 배열, 반복문이 고루 섞인 소스
+    static String generate(int units) {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0;i<units;++i) {
+            sb.append("// 단위 ").append(i).append('\n');
+            sb.append("fun sum").append(i).append("(n, step) {\n");
+            sb.append("    var total = 0;\n");
+            sb.append("    for (var k = 0; k < n; k = k + step) {\n");
+            sb.append("        if (k % 3 == 0 and k != 7) total = total + k * 2.5; else total = total - 1;\n");
+            sb.append("    }\n");
+            sb.append("    return total;\n");
+            sb.append("}\n");
+            sb.append("클래스 점").append(i).append(" {\n");
+            sb.append("    init(x, y) { 자기자신.x = x; 자기자신.y = y; }\n");
+            sb.append("    길이() { 반환 자기자신.x * 자기자신.x + 자기자신.y * 자기자신.y; }\n");
+            sb.append("}\n");
+            sb.append("변수 배열").append(i).append(" = [1, 2.5, \"셋\", nil, true];\n");
+            sb.append("fun counter").append(i).append("() { var c = 0; fun inc() { c = c + 1; return c; } return inc; }\n");
+            sb.append("조건반복 (배열").append(i).append("[0] < ").append(i % 10).append(") { 배열")
+              .append(i).append("[0] = 배열").append(i).append("[0] + 1; }\n");
+        }
+        return sb.toString();
+    }
+}
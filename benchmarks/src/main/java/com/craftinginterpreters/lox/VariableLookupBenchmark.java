@@ -0,0 +1,77 @@
+package com.craftinginterpreters.lox;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// 변수 조회: 1000번 도는 반복문이 변수 x를 읽어 더한다. x가 선언된 곳까지의 거리(depth)와 종류(kind)를 바꾼다.
+//   block   - 같은 함수에서 depth겹 바깥 블록의 지역 변수 (프레임 슬롯)
+//   closure - depth겹 바깥 함수의 지역 변수 (depth가 0이면 지역 변수, 아니면 Cell을 거치는 업밸류)
+//   global  - 전역 변수. 반복문은 depth겹 블록 안에 있다. (전역 슬롯)
+// jit은 기본으로 끄고 인터프리터 경로를 잰다. -p jit=true로 컴파일된 코드를 잴 수 있다.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VariableLookupBenchmark {
+    @Param({"0", "1", "4", "16"})
+    public int depth;
+    @Param({"block", "closure", "global"})
+    public String kind;
+    @Param({"false"})
+    public boolean jit;
+
+    private BenchmarkScript script;
+
+    @Setup
+    public void setup() {
+        script = new BenchmarkScript(generate(kind, depth), "result = work();", jit);
+    }
+
+    @Benchmark
+    public Object lookup() {
+        return script.run();
+    }
+
+    static String generate(String kind, int depth) {
+        String loop = "var s = 0; for (var i = 0; i < 1000; i = i + 1) s = s + x; return s;";
+        StringBuilder sb = new StringBuilder("var result = nil;\n");
+        switch (kind) {
+            case "block":
+                sb.append("fun work() { var x = 1; ");
+                for (int i=0;i<depth;++i) sb.append("{ ");
+                sb.append(loop);
+                for (int i=0;i<depth;++i) sb.append(" }");
+                sb.append(" }\n");
+                break;
+            case "closure":
+                sb.append("fun work() { var x = 1; ");
+                for (int i=0;i<depth;++i) sb.append("fun f").append(i).append("() { ");
+                sb.append(loop);
+                for (int i=depth-1;i>=0;--i) sb.append(" } return f").append(i).append("();");
+                sb.append(" }\n");
+                break;
+            case "global":
+                sb.append("var x = 1;\nfun work() { ");
+                for (int i=0;i<depth;++i) sb.append("{ ");
+                sb.append(loop);
+                for (int i=0;i<depth;++i) sb.append(" }");
+                sb.append(" }\n");
+                break;
+            default:
+                throw new IllegalArgumentException("kind: " + kind);
+        }
+        return sb.toString();
+    }
+}
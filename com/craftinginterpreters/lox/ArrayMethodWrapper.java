@@ -0,0 +1,43 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+// 배열 내장 메서드 래퍼 클래스
+class ArrayMethodWrapper implements LoxCallable {
+    private final List<Object> array;
+    private final String method;
+    public ArrayMethodWrapper(List<Object> array, String method) {
+        this.array = array;
+        this.method = method;
+    }
+    @Override
+    public int arity() {
+        if (method.equals("붙이기") || method.equals("append") || method.equals("앞에넣기") || method.equals("push_front")) return 1;
+        if (method.equals("뒤에서빼기") || method.equals("pop_back") || method.equals("앞에서빼기") || method.equals("pop_front")) return 0;
+        return 0;
+    }
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        if (method.equals("붙이기") || method.equals("append")) {
+            array.add(arguments.get(0));
+            return null;
+        }
+        if (method.equals("앞에넣기") || method.equals("push_front")) {
+            array.add(0, arguments.get(0));
+            return null;
+        }
+        if (method.equals("뒤에서빼기") || method.equals("pop_back")) {
+            if (array.size() == 0) return null;
+            return array.remove(array.size() - 1);
+        }
+        if (method.equals("앞에서빼기") || method.equals("pop_front")) {
+            if (array.size() == 0) return null;
+            return array.remove(0);
+        }
+        throw new RuntimeError(null, "지원하지 않는 배열 메서드입니다.");
+    }
+    @Override
+    public String toString() {
+        return "<array method " + method + ">";
+    }
+}
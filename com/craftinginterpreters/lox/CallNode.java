@@ -0,0 +1,53 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+// 자기 특수화 노드 모드(--engine=node)에서 Expr.Call 을 실행하는 노드.
+// UNINITIALIZED로 시작해서, 처음 호출한 대상이 함수/클래스/네이티브 함수면 그 대상 하나만 기억하는 단형(Monomorphic)
+// 노드로 바뀐다. 단형 노드는 "대상이 같은 객체인가" 한 번만 확인하고 타입 검사와 인자 개수 검사 없이 바로 호출한다.
+// (호출 지점의 인자 수와 대상의 arity는 바뀌지 않으므로 특수화할 때 한 번만 확인한다.)
+// 다른 대상이 오면 GENERIC으로 바뀐다.
+abstract class CallNode {
+    static final CallNode UNINITIALIZED = new Uninitialized();
+    static final CallNode GENERIC = new Generic();
+
+    abstract Object execute(Interpreter interpreter, Expr.Call expr, Object callee, List<Object> arguments);
+
+    final Object rewrite(Interpreter interpreter, Expr.Call expr, CallNode replacement, Object callee, List<Object> arguments) {
+        expr.node = replacement;
+        return replacement.execute(interpreter, expr, callee, arguments);
+    }
+
+    private static final class Uninitialized extends CallNode {
+        @Override
+        Object execute(Interpreter interpreter, Expr.Call expr, Object callee, List<Object> arguments) {
+            //배열 내장 메서드는 접근할 때마다 새 객체라 단형으로 잡을 수 없다.
+            if (callee instanceof LoxCallable && !(callee instanceof ArrayMethodWrapper)
+                    && ((LoxCallable)callee).arity() == arguments.size()) {
+                return rewrite(interpreter, expr, new Monomorphic((LoxCallable)callee), callee, arguments);
+            }
+            return rewrite(interpreter, expr, GENERIC, callee, arguments);
+        }
+    }
+    private static final class Monomorphic extends CallNode {
+        private final LoxCallable target;
+
+        Monomorphic(LoxCallable target) {
+            this.target = target;
+        }
+        @Override
+        Object execute(Interpreter interpreter, Expr.Call expr, Object callee, List<Object> arguments) {
+            if (callee == target) {
+                if (Heap.SITES && target instanceof LoxClass) Heap.site = expr.paren.line; //힙 보고의 할당 지점
+                return target.call(interpreter, arguments);
+            }
+            return rewrite(interpreter, expr, GENERIC, callee, arguments);
+        }
+    }
+    private static final class Generic extends CallNode {
+        @Override
+        Object execute(Interpreter interpreter, Expr.Call expr, Object callee, List<Object> arguments) {
+            return interpreter.callValue(expr, callee, arguments);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.craftinginterpreters.lox;
+
+// 클로저가 잡아 간 지역 변수 하나를 담는 칸.
+// 변수를 선언한 함수의 프레임 슬롯과 그 변수를 잡은 LoxFunction.upvalues가 같은 Cell을 가리켜서 값을 함께 본다.
+final class Cell {
+    Object value;
+
+    Cell(Object value) {
+        this.value = value;
+        if (Stats.ENABLED) ++Stats.cells;
+    }
+}
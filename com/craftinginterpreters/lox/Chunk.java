@@ -0,0 +1,53 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// 함수 하나를 컴파일한 바이트코드 덩어리.
+// 코드 바이트 배열, 상수 풀, 라인 테이블을 가진다.
+// 라인 테이블은 (시작 오프셋, 라인) 쌍을 라인이 바뀔 때만 기록하는 런 길이 방식이라 크기가 작다.
+class Chunk {
+    byte[] code = new byte[16];
+    int count = 0;
+    Object[] constants = new Object[8];
+    int constantCount = 0;
+    // 같은 숫자/문자열 리터럴은 상수 풀에 한 번만 넣는다.
+    private final Map<Object,Integer> constantIndex = new HashMap<>();
+    // lineRuns[2*i] = 시작 오프셋, lineRuns[2*i+1] = 라인
+    private int[] lineRuns = new int[8];
+    private int lineRunCount = 0;
+
+    void write(int b, int line) {
+        if (count == code.length) code = Arrays.copyOf(code, count * 2);
+        if (lineRunCount == 0 || lineRuns[2 * lineRunCount - 1] != line) {
+            if (2 * lineRunCount == lineRuns.length) lineRuns = Arrays.copyOf(lineRuns, lineRuns.length * 2);
+            lineRuns[2 * lineRunCount] = count;
+            lineRuns[2 * lineRunCount + 1] = line;
+            ++lineRunCount;
+        }
+        code[count++] = (byte)b;
+    }
+    // 상수를 추가하고 인덱스를 반환한다. Double/String 은 중복을 합친다.
+    int addConstant(Object value) {
+        boolean shareable = value instanceof Double || value instanceof String;
+        if (shareable) {
+            Integer existing = constantIndex.get(value);
+            if (existing != null) return existing;
+        }
+        if (constantCount == constants.length) constants = Arrays.copyOf(constants, constantCount * 2);
+        constants[constantCount] = value;
+        if (shareable) constantIndex.put(value, constantCount);
+        return constantCount++;
+    }
+    // 오프셋에 해당하는 소스 라인 (런타임 에러 보고용)
+    int getLine(int offset) {
+        int low = 0, high = lineRunCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (lineRuns[2 * mid] <= offset) low = mid;
+            else high = mid - 1;
+        }
+        return lineRunCount == 0 ? 0 : lineRuns[2 * low + 1];
+    }
+}
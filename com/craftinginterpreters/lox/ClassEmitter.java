@@ -0,0 +1,342 @@
+package com.craftinginterpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// JVM 클래스 파일을 바이트 배열로 만든다. JIT과 jloxc(JitCompiler)가 쓰는 만큼만 있다.
+// 클래스 파일 버전은 49(Java 5)다. 50 이상은 분기마다 StackMapTable 프레임이 있어야 검증을 통과하지만,
+// 49는 JVM이 타입 추론으로 검증하므로 프레임을 계산하지 않아도 된다. (Lookup.defineHiddenClass도 49를 받는다)
+final class ClassEmitter {
+    static final int ACC_PUBLIC = 0x0001, ACC_PRIVATE = 0x0002, ACC_STATIC = 0x0008, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+    // 쓰는 명령어
+    static final int ACONST_NULL = 0x01, ICONST_0 = 0x03, DCONST_0 = 0x0e, DCONST_1 = 0x0f, BIPUSH = 0x10, SIPUSH = 0x11,
+        LDC_W = 0x13, LDC2_W = 0x14, ILOAD = 0x15, DLOAD = 0x18, ALOAD = 0x19, AALOAD = 0x32,
+        ISTORE = 0x36, DSTORE = 0x39, ASTORE = 0x3a, AASTORE = 0x53, POP = 0x57, POP2 = 0x58, DUP = 0x59, DUP_X1 = 0x5a, DUP2 = 0x5c,
+        SWAP = 0x5f, DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, DREM = 0x73, DNEG = 0x77,
+        DCMPL = 0x97, DCMPG = 0x98, IFEQ = 0x99, IFNE = 0x9a, IFLT = 0x9b, IFGE = 0x9c, IFGT = 0x9d, IFLE = 0x9e,
+        IF_ACMPEQ = 0xa5, IF_ACMPNE = 0xa6, GOTO = 0xa7, ARETURN = 0xb0, RETURN = 0xb1, ATHROW = 0xbf,
+        GETSTATIC = 0xb2, PUTSTATIC = 0xb3, GETFIELD = 0xb4, PUTFIELD = 0xb5, INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7,
+        INVOKESTATIC = 0xb8, INVOKEINTERFACE = 0xb9, NEW = 0xbb, ANEWARRAY = 0xbd, CHECKCAST = 0xc0, INSTANCEOF = 0xc1;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String,Integer> entries = new HashMap<>(); //같은 상수는 한 번만 넣는다
+    private int poolCount = 1;
+    private final int thisClass, superClass;
+    private final List<Integer> interfaces = new ArrayList<>();
+    private final ByteArrayOutputStream members = new ByteArrayOutputStream();
+    private int fieldCount = 0;
+    private final List<byte[]> methods = new ArrayList<>();
+
+    ClassEmitter(String name, String superName, String... interfaceNames) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+        for (String interfaceName : interfaceNames) interfaces.add(classRef(interfaceName));
+    }
+
+    // 상수 풀
+    private int entry(String key, int tag, int size, Writer writer) {
+        Integer index = entries.get(key);
+        if (index != null) return index;
+        try {
+            pool.writeByte(tag);
+            writer.write(pool);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        index = poolCount;
+        poolCount += size; //double 상수는 두 칸을 차지한다
+        entries.put(key, index);
+        return index;
+    }
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+    int utf8(String value) {
+        return entry("U" + value, 1, 1, out -> out.writeUTF(value));
+    }
+    int classRef(String name) {
+        int utf8 = utf8(name);
+        return entry("C" + name, 7, 1, out -> out.writeShort(utf8));
+    }
+    int string(String value) {
+        int utf8 = utf8(value);
+        return entry("S" + value, 8, 1, out -> out.writeShort(utf8));
+    }
+    int integer(int value) {
+        return entry("I" + value, 3, 1, out -> out.writeInt(value));
+    }
+    int doubleConstant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        return entry("D" + bits, 6, 2, out -> out.writeLong(bits));
+    }
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name), typeIndex = utf8(descriptor);
+        return entry("N" + name + ":" + descriptor, 12, 1, out -> { out.writeShort(nameIndex); out.writeShort(typeIndex); });
+    }
+    private int member(int tag, String owner, String name, String descriptor) {
+        int classIndex = classRef(owner), typeIndex = nameAndType(name, descriptor);
+        return entry(tag + owner + "." + name + ":" + descriptor, tag, 1,
+            out -> { out.writeShort(classIndex); out.writeShort(typeIndex); });
+    }
+
+    void field(int access, String name, String descriptor) {
+        DataOutputStream out = new DataOutputStream(members);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        ++fieldCount;
+    }
+    // 메서드 본문을 쓰기 시작한다. 다 쓰면 Code.end()를 부른다.
+    Code method(int access, String name, String descriptor) {
+        return new Code(access, name, descriptor);
+    }
+
+    byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolCount);
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.size());
+            for (int index : interfaces) out.writeShort(index);
+            out.writeShort(fieldCount);
+            members.writeTo(out);
+            out.writeShort(methods.size());
+            for (byte[] method : methods) out.write(method);
+            out.writeShort(0); //클래스 속성 없음
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // 점프 대상. 놓이기 전에 점프하면 나중에 주소를 채운다.
+    static final class Label {
+        private int position = -1;
+        private int stack = -1; //이 자리에서의 스택 깊이
+        private final List<Integer> fixups = new ArrayList<>();
+    }
+
+    // 메서드 하나의 바이트코드. 명령어마다 스택 깊이를 따라가서 max_stack을 구한다.
+    final class Code {
+        private final int access, name, descriptor;
+        private byte[] code = new byte[256];
+        private int length = 0;
+        private int stack = 0, maxStack = 0, maxLocals;
+        private final List<int[]> handlers = new ArrayList<>(); //{시작, 끝, 처리기} 예외 표
+
+        private Code(int access, String name, String descriptor) {
+            this.access = access;
+            this.name = utf8(name);
+            this.descriptor = utf8(descriptor);
+            maxLocals = argumentSize(descriptor) + ((access & ACC_STATIC) != 0 ? 0 : 1);
+        }
+
+        private void u1(int value) {
+            if (length == code.length) code = java.util.Arrays.copyOf(code, length * 2);
+            code[length++] = (byte)value;
+        }
+        private void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+        private void adjust(int delta) {
+            stack += delta;
+            if (stack > maxStack) maxStack = stack;
+        }
+        // 피연산자가 없는 명령어. delta는 스택 깊이 변화
+        void op(int opcode, int delta) {
+            u1(opcode);
+            adjust(delta);
+            if (opcode == ARETURN || opcode == RETURN || opcode == ATHROW) stack = 0; //뒤는 다음 Label이 깊이를 정한다
+        }
+        void aload(int local) {
+            local(ALOAD, local, 1, 1);
+        }
+        void astore(int local) {
+            local(ASTORE, local, -1, 1);
+        }
+        void dload(int local) {
+            local(DLOAD, local, 2, 2);
+        }
+        void dstore(int local) {
+            local(DSTORE, local, -2, 2);
+        }
+        private void local(int opcode, int local, int delta, int size) {
+            if (local < 256) {
+                u1(opcode);
+                u1(local);
+            } else {
+                u1(0xc4); //wide
+                u1(opcode);
+                u2(local);
+            }
+            adjust(delta);
+            maxLocals = Math.max(maxLocals, local + size);
+        }
+        void iconst(int value) {
+            if (value >= -1 && value <= 5) {
+                u1(ICONST_0 + value);
+            } else if (value >= -128 && value < 128) {
+                u1(BIPUSH);
+                u1(value);
+            } else if (value >= -32768 && value < 32768) {
+                u1(SIPUSH);
+                u2(value);
+            } else {
+                u1(LDC_W);
+                u2(integer(value));
+            }
+            adjust(1);
+        }
+        void ldc(String value) {
+            u1(LDC_W);
+            u2(string(value));
+            adjust(1);
+        }
+        void ldcClass(String className) {
+            u1(LDC_W);
+            u2(classRef(className));
+            adjust(1);
+        }
+        void ldc(double value) {
+            if (Double.doubleToRawLongBits(value) == 0) {
+                op(DCONST_0, 2);
+            } else if (value == 1) {
+                op(DCONST_1, 2);
+            } else {
+                u1(LDC2_W);
+                u2(doubleConstant(value));
+                adjust(2);
+            }
+        }
+        void type(int opcode, String className) {
+            u1(opcode);
+            u2(classRef(className));
+            adjust(opcode == NEW ? 1 : 0); //checkcast, instanceof, anewarray는 깊이가 그대로다
+        }
+        void field(int opcode, String owner, String name, String descriptor) {
+            u1(opcode);
+            u2(member(9, owner, name, descriptor));
+            int size = slotSize(descriptor.charAt(0));
+            switch (opcode) {
+                case GETSTATIC: adjust(size); break;
+                case PUTSTATIC: adjust(-size); break;
+                case GETFIELD: adjust(size - 1); break;
+                default: adjust(-size - 1); break; //PUTFIELD
+            }
+        }
+        void invoke(int opcode, String owner, String name, String descriptor) {
+            boolean isInterface = opcode == INVOKEINTERFACE;
+            u1(opcode);
+            u2(member(isInterface ? 11 : 10, owner, name, descriptor));
+            int arguments = argumentSize(descriptor) + (opcode == INVOKESTATIC ? 0 : 1);
+            if (isInterface) {
+                u1(arguments);
+                u1(0);
+            }
+            adjust(-arguments + slotSize(descriptor.charAt(descriptor.indexOf(')') + 1)));
+        }
+        void jump(int opcode, Label label) {
+            int at = length;
+            u1(opcode);
+            adjust(opcode == GOTO ? 0 : opcode == IF_ACMPEQ || opcode == IF_ACMPNE ? -2 : -1);
+            label.stack = stack;
+            if (label.position >= 0) {
+                u2(label.position - at);
+            } else {
+                label.fixups.add(at);
+                u2(0);
+            }
+            if (opcode == GOTO) stack = 0;
+        }
+        void place(Label label) {
+            label.position = length;
+            if (label.stack >= 0) stack = label.stack;
+            label.stack = stack;
+            for (int at : label.fixups) {
+                int offset = length - at;
+                code[at + 1] = (byte)(offset >> 8);
+                code[at + 2] = (byte)offset;
+            }
+        }
+        // 지금 자리를 start~end 사이에서 던져지는 모든 예외의 처리기로 삼는다. 처리기에 오면 스택에 예외 하나가 있다.
+        void catchAll(Label start, Label end) {
+            handlers.add(new int[] { start.position, end.position, length });
+            stack = 0;
+            adjust(1);
+        }
+        // 지금 바이트코드 크기. 분기 거리가 2바이트를 넘지 않는지 확인할 때 쓴다.
+        int size() {
+            return length;
+        }
+        void end() {
+            if (length >= 32768) throw new IllegalStateException("메서드가 너무 깁니다.");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeShort(access);
+                out.writeShort(name);
+                out.writeShort(descriptor);
+                out.writeShort(1);
+                out.writeShort(utf8("Code"));
+                out.writeInt(12 + length + 8 * handlers.size());
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(length);
+                out.write(code, 0, length);
+                out.writeShort(handlers.size());
+                for (int[] handler : handlers) {
+                    out.writeShort(handler[0]);
+                    out.writeShort(handler[1]);
+                    out.writeShort(handler[2]);
+                    out.writeShort(0); //모든 예외
+                }
+                out.writeShort(0); //속성 없음
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            methods.add(bytes.toByteArray());
+        }
+    }
+
+    // 디스크립터의 인자들이 차지하는 칸 수 (double/long은 두 칸)
+    private static int argumentSize(String descriptor) {
+        int size = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            size += slotSize(c);
+            if (c == 'L') {
+                i = descriptor.indexOf(';', i);
+            } else if (c == '[') {
+                while (descriptor.charAt(i) == '[') ++i;
+                if (descriptor.charAt(i) == 'L') i = descriptor.indexOf(';', i);
+            }
+            ++i;
+        }
+        return size;
+    }
+    private static int slotSize(char type) {
+        if (type == 'V') return 0;
+        return type == 'D' || type == 'J' ? 2 : 1;
+    }
+}
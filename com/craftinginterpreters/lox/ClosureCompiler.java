@@ -0,0 +1,726 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 클로저 컴파일 실행 엔진(--engine=closure).
+// 리졸브(와 AST 최적화)가 끝난 Expr/Stmt를 실행 전에 한 번씩 방문해서 작은 람다(Eval, Num, Test, Exec)의 트리로 바꾼다.
+// 연산자 종류, Resolver가 정한 변수 종류와 슬롯, 상수는 만들 때 골라서 람다에 잡아 두므로, 실행할 때는 accept()의 이중 디스패치와
+// switch(operator.type) 없이 자식 람다를 바로 부른다. 숫자식(Resolver.isNumeric)은 double을 돌려주는 Num으로,
+// 조건식은 boolean을 돌려주는 Test로 만들어 박싱과 Boolean 객체를 거치지 않는다.
+//
+// 값과 런타임(LoxFunction, LoxClass, LoxInstance, 배열, 네이티브 함수, Globals)은 트리 인터프리터와 같은 것을 쓰고,
+// 함수 본문만 컴파일한 Body를 Stmt.Function.closure에 붙여 LoxFunction이 그것으로 실행한다.
+// 평가 순서, 에러 메시지와 라인은 Interpreter와 같다.
+final class ClosureCompiler implements Expr.Visitor<ClosureCompiler.Eval>, Stmt.Visitor<ClosureCompiler.Exec> {
+    private static final Interpreter.Completion BREAK = Interpreter.Completion.BREAK;
+    private static final Interpreter.Completion CONTINUE = Interpreter.Completion.CONTINUE;
+    private static final Interpreter.Completion RETURN = Interpreter.Completion.RETURN;
+    private static final Cell[] NO_UPVALUES = new Cell[0];
+    // 반복문 불변식(Expr.Hoisted) 슬롯의 "아직 계산 안 함" 표시
+    private static final Object NOT_HOISTED = new Object();
+
+    // 함수 호출 하나(또는 맨 위 코드)의 실행 상태. 람다들은 이것을 받아 슬롯과 업밸류를 바로 읽고 쓴다.
+    static final class Frame {
+        final Object[] slots;
+        final Cell[] upvalues;
+        Object returnValue; //RETURN 신호와 함께 전달되는 반환값
+
+        Frame(Object[] slots, Cell[] upvalues) {
+            this.slots = slots;
+            this.upvalues = upvalues;
+        }
+    }
+    interface Eval { Object eval(Frame frame); }    //식의 값
+    interface Num { double eval(Frame frame); }     //결과가 숫자인 식
+    interface Test { boolean eval(Frame frame); }   //조건식의 참/거짓
+    interface Exec { Interpreter.Completion exec(Frame frame); } //문장. break/continue/return 신호를 돌려준다
+    // 호출 대상을 구한 뒤의 나머지 (Inliner가 붙인 본문 확인, 인자 평가, 호출)
+    private interface Invoke { Object call(Object callee, Frame frame); }
+
+    // 컴파일된 함수 본문. LoxFunction.invoke가 인자를 채운 프레임으로 부른다.
+    static final class Body {
+        private final Exec[] statements;
+
+        Body(Exec[] statements) {
+            this.statements = statements;
+        }
+        Object call(Object[] slots, Cell[] upvalues) {
+            Frame frame = new Frame(slots, upvalues);
+            for (Exec statement : statements) {
+                if (statement.exec(frame) == RETURN) return frame.returnValue;
+            }
+            return null;
+        }
+    }
+
+    private final Interpreter interpreter;
+    private final Globals globals;
+
+    ClosureCompiler(Interpreter interpreter) {
+        this.interpreter = interpreter;
+        this.globals = interpreter.globals;
+    }
+
+    // 프로그램(문장 리스트)을 컴파일한다. (함수 본문도 이때 컴파일해 Stmt.Function.closure에 붙인다)
+    Exec[] compile(List<Stmt> statements) {
+        return compileAll(statements);
+    }
+    // 컴파일한 프로그램을 실행한다. frameSize는 맨 위 코드의 블록 안 지역 변수 수
+    void interpret(Exec[] script, int frameSize) {
+        Frame frame = new Frame(new Object[frameSize], NO_UPVALUES);
+        try {
+            for (Exec statement : script) {
+                statement.exec(frame);
+            }
+        } catch (RuntimeError error) {
+            Lox.runtimeError(error);
+        }
+    }
+
+    private Eval compile(Expr expr) {
+        return expr.accept(this);
+    }
+    private Exec compile(Stmt stmt) {
+        Exec exec = stmt.accept(this);
+        //--profile이면 문장마다 프로파일러에 지금 문장을 알린다. (꺼져 있으면 감싸지 않는다)
+        if (Profiler.active == null || stmt instanceof Stmt.Block) return exec;
+        int line = Profiler.line(stmt);
+        return frame -> {
+            Profiler.at(line);
+            return exec.exec(frame);
+        };
+    }
+    private Exec[] compileAll(List<Stmt> statements) {
+        Exec[] result = new Exec[statements.size()];
+        for (int i=0;i<result.length;++i) result[i] = compile(statements.get(i));
+        return result;
+    }
+    private Eval[] compileArguments(List<Expr> arguments) {
+        Eval[] result = new Eval[arguments.size()];
+        for (int i=0;i<result.length;++i) result[i] = compile(arguments.get(i));
+        return result;
+    }
+    // 값은 버리고 부수 효과만 필요한 식 (표현식 문장, for문의 증감식)
+    private Exec effect(Expr expr) {
+        if (Resolver.isNumeric(expr)) {
+            Num value = numeric(expr);
+            return frame -> {
+                value.eval(frame);
+                return null;
+            };
+        }
+        Eval value = compile(expr);
+        return frame -> {
+            value.eval(frame);
+            return null;
+        };
+    }
+    private static List<Object> arguments(Eval[] arguments, Frame frame) {
+        List<Object> values = new ArrayList<>(arguments.length);
+        for (Eval argument : arguments) {
+            values.add(argument.eval(frame));
+        }
+        return values;
+    }
+
+    // ---- 문장 ----
+
+    @Override
+    public Exec visitBlockStmt(Stmt.Block stmt) {
+        return block(stmt.statements);
+    }
+    private Exec block(List<Stmt> statements) {
+        Exec[] body = compileAll(statements);
+        if (body.length == 1) return body[0];
+        return frame -> {
+            for (Exec statement : body) {
+                Interpreter.Completion completion = statement.exec(frame);
+                if (completion != null) return completion; //break/continue/return은 바깥으로 전달
+            }
+            return null;
+        };
+    }
+    @Override
+    public Exec visitClassStmt(Stmt.Class stmt) {
+        String name = stmt.name.lexeme;
+        Stmt.Function[] methods = stmt.methods.toArray(new Stmt.Function[0]);
+        for (Stmt.Function method : methods) compileFunction(method);
+        int kind = stmt.kind, slot = stmt.slot;
+        return frame -> {
+            declare(frame, kind, slot);
+            Map<String,LoxFunction> table = new HashMap<>();
+            for (Stmt.Function method : methods) {
+                String methodName = method.name.lexeme;
+                table.put(methodName, new LoxFunction(method, capture(frame, method.upvalues), methodName.equals("init")));
+            }
+            define(frame, kind, slot, new LoxClass(name, table));
+            return null;
+        };
+    }
+    @Override
+    public Exec visitExpressionStmt(Stmt.Expression stmt) {
+        return effect(stmt.expression);
+    }
+    @Override
+    public Exec visitFunctionStmt(Stmt.Function stmt) {
+        compileFunction(stmt);
+        int kind = stmt.kind, slot = stmt.slot;
+        return frame -> {
+            declare(frame, kind, slot); //자기 자신을 부르는 지역 함수가 자기 Cell을 잡을 수 있게 먼저 만든다
+            define(frame, kind, slot, new LoxFunction(stmt, capture(frame, stmt.upvalues), false));
+            return null;
+        };
+    }
+    private void compileFunction(Stmt.Function function) {
+        function.closure = new Body(compileAll(function.body));
+    }
+    @Override
+    public Exec visitIfStmt(Stmt.If stmt) {
+        Test condition = test(stmt.condition);
+        Exec thenBranch = compile(stmt.thenBranch);
+        if (stmt.elseBranch == null) {
+            return frame -> condition.eval(frame) ? thenBranch.exec(frame) : null;
+        }
+        Exec elseBranch = compile(stmt.elseBranch);
+        return frame -> condition.eval(frame) ? thenBranch.exec(frame) : elseBranch.exec(frame);
+    }
+    @Override
+    public Exec visitPrintStmt(Stmt.Print stmt) {
+        Eval value = compile(stmt.expression);
+        return frame -> {
+            Interpreter.print(value.eval(frame));
+            return null;
+        };
+    }
+    @Override
+    public Exec visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.value == null) {
+            return frame -> {
+                frame.returnValue = null;
+                return RETURN;
+            };
+        }
+        Eval value = compile(stmt.value);
+        return frame -> {
+            frame.returnValue = value.eval(frame);
+            return RETURN;
+        };
+    }
+    @Override
+    public Exec visitVarStmt(Stmt.Var stmt) {
+        Eval initializer = stmt.initializer == null ? frame -> null : compile(stmt.initializer);
+        int slot = stmt.slot;
+        switch (stmt.kind) {
+            case Resolver.LOCAL:
+                return frame -> {
+                    frame.slots[slot] = initializer.eval(frame);
+                    return null;
+                };
+            case Resolver.CELL:
+                return frame -> {
+                    frame.slots[slot] = new Cell(initializer.eval(frame));
+                    return null;
+                };
+            default:
+                return frame -> {
+                    globals.define(slot, initializer.eval(frame));
+                    return null;
+                };
+        }
+    }
+    @Override
+    public Exec visitWhileStmt(Stmt.While stmt) {
+        Test condition = test(stmt.condition);
+        Exec body = compile(stmt.body);
+        int[] hoisted = stmt.hoisted;
+        return frame -> {
+            resetHoisted(frame, hoisted);
+            while (condition.eval(frame)) {
+                Interpreter.Completion completion = body.exec(frame);
+                if (completion == BREAK) break;
+                if (completion == RETURN) return completion;
+            }
+            return null;
+        };
+    }
+    // for문. 카운터 반복문(For.counted)과 a[i] 범위 표시(IndexGet.bounds)는 트리 인터프리터용이므로 일반 for문으로 만든다.
+    @Override
+    public Exec visitForStmt(Stmt.For stmt) {
+        Exec initializer = stmt.initializer == null ? frame -> null : compile(stmt.initializer);
+        Test condition = stmt.condition == null ? frame -> true : test(stmt.condition);
+        Exec body = compile(stmt.body);
+        Exec increment = stmt.increment == null ? frame -> null : effect(stmt.increment);
+        int[] hoisted = stmt.hoisted;
+        return frame -> {
+            initializer.exec(frame);
+            resetHoisted(frame, hoisted);
+            while (condition.eval(frame)) {
+                Interpreter.Completion completion = body.exec(frame);
+                if (completion == BREAK) break;
+                if (completion == RETURN) return completion;
+                increment.exec(frame);
+            }
+            return null;
+        };
+    }
+    @Override
+    public Exec visitBreakStmt(Stmt.Break stmt) {
+        return frame -> BREAK;
+    }
+    @Override
+    public Exec visitContinueStmt(Stmt.Continue stmt) {
+        return frame -> CONTINUE;
+    }
+
+    // 선언문의 이름 자리와 값 (Interpreter.declare/define과 같다)
+    private static void declare(Frame frame, int kind, int slot) {
+        if (kind == Resolver.CELL) frame.slots[slot] = new Cell(null);
+    }
+    private void define(Frame frame, int kind, int slot, Object value) {
+        switch (kind) {
+            case Resolver.GLOBAL: globals.define(slot, value); break;
+            case Resolver.CELL: ((Cell)frame.slots[slot]).value = value; break;
+            default: frame.slots[slot] = value; break;
+        }
+    }
+    private static Cell[] capture(Frame frame, int[] sources) {
+        if (sources.length == 0) return NO_UPVALUES;
+        Cell[] captured = new Cell[sources.length];
+        for (int i=0;i<sources.length;++i) {
+            int source = sources[i];
+            captured[i] = source >= 0 ? (Cell)frame.slots[source] : frame.upvalues[~source];
+        }
+        return captured;
+    }
+    private static void resetHoisted(Frame frame, int[] slots) {
+        if (slots == null) return;
+        for (int slot : slots) {
+            frame.slots[slot] = NOT_HOISTED;
+        }
+    }
+
+    // ---- 식 ----
+
+    @Override
+    public Eval visitLiteralExpr(Expr.Literal expr) {
+        Object value = expr.value;
+        return frame -> value;
+    }
+    @Override
+    public Eval visitGroupingExpr(Expr.Grouping expr) {
+        return compile(expr.expression);
+    }
+    @Override
+    public Eval visitVariableExpr(Expr.Variable expr) {
+        return variable(expr.kind, expr.slot, expr.name);
+    }
+    @Override
+    public Eval visitThisExpr(Expr.This expr) {
+        return variable(expr.kind, expr.slot, expr.keyword);
+    }
+    private Eval variable(int kind, int slot, Token name) {
+        switch (kind) {
+            case Resolver.LOCAL: return frame -> frame.slots[slot];
+            case Resolver.CELL: return frame -> ((Cell)frame.slots[slot]).value;
+            case Resolver.UPVALUE: return frame -> frame.upvalues[slot].value;
+            default: return frame -> globals.get(slot, name);
+        }
+    }
+    @Override
+    public Eval visitAssignExpr(Expr.Assign expr) {
+        int slot = expr.slot;
+        Token name = expr.name;
+        if (Resolver.isNumeric(expr.value) && expr.kind == Resolver.LOCAL) {
+            Num value = numeric(expr.value);
+            return frame -> frame.slots[slot] = Interpreter.box(value.eval(frame));
+        }
+        Eval value = compile(expr.value);
+        switch (expr.kind) {
+            case Resolver.LOCAL: return frame -> frame.slots[slot] = value.eval(frame);
+            case Resolver.CELL: return frame -> ((Cell)frame.slots[slot]).value = value.eval(frame);
+            case Resolver.UPVALUE: return frame -> frame.upvalues[slot].value = value.eval(frame);
+            default:
+                return frame -> {
+                    Object result = value.eval(frame);
+                    globals.assign(slot, name, result);
+                    return result;
+                };
+        }
+    }
+    // 반복문 불변식(LoopOptimizer): 반복문 안에서 처음 평가한 값을 슬롯에 기억해 두고 다시 쓴다. (Interpreter.visitHoistedExpr)
+    @Override
+    public Eval visitHoistedExpr(Expr.Hoisted expr) {
+        int slot = expr.slot;
+        Eval expression = compile(expr.expression);
+        return frame -> {
+            Object value = frame.slots[slot];
+            if (value == NOT_HOISTED) {
+                value = expression.eval(frame);
+                if (!(value instanceof LoxFunction)) frame.slots[slot] = value;
+            }
+            return value;
+        };
+    }
+    @Override
+    public Eval visitLogicalExpr(Expr.Logical expr) {
+        Eval left = compile(expr.left), right = compile(expr.right);
+        if (expr.operator.type == TokenType.OR) {
+            return frame -> {
+                Object value = left.eval(frame);
+                return Interpreter.isTruthy(value) ? value : right.eval(frame);
+            };
+        }
+        return frame -> {
+            Object value = left.eval(frame);
+            return Interpreter.isTruthy(value) ? right.eval(frame) : value;
+        };
+    }
+    @Override
+    public Eval visitUnaryExpr(Expr.Unary expr) {
+        if (expr.operator.type == TokenType.BANG) {
+            Test right = test(expr.right);
+            return frame -> !right.eval(frame);
+        }
+        Num value = numeric(expr);
+        return frame -> Interpreter.box(value.eval(frame));
+    }
+    @Override
+    public Eval visitBinaryExpr(Expr.Binary expr) {
+        Token operator = expr.operator;
+        switch (operator.type) {
+            case GREATER: case GREATER_EQUAL: case LESS: case LESS_EQUAL: {
+                Test comparison = comparison(expr);
+                return frame -> comparison.eval(frame);
+            }
+            case MINUS: case SLASH: case STAR: case MOD: {
+                Num value = arithmetic(expr);
+                return frame -> Interpreter.box(value.eval(frame));
+            }
+            case PLUS:
+                if (expr.numeric) {
+                    Num value = arithmetic(expr);
+                    return frame -> Interpreter.box(value.eval(frame));
+                }
+                break;
+            default:
+                break;
+        }
+        Eval left = compile(expr.left), right = compile(expr.right);
+        switch (operator.type) {
+            case BANG_EQUAL: return frame -> !Interpreter.isEqual(left.eval(frame), right.eval(frame));
+            case EQUAL_EQUAL: return frame -> Interpreter.isEqual(left.eval(frame), right.eval(frame));
+            default: return frame -> Interpreter.add(operator, left.eval(frame), right.eval(frame));
+        }
+    }
+
+    // 숫자식(Resolver.isNumeric)을 double로 계산하는 Num
+    private Num numeric(Expr expr) {
+        if (expr instanceof Expr.Literal) {
+            double value = (double)((Expr.Literal)expr).value;
+            return frame -> value;
+        }
+        if (expr instanceof Expr.Grouping) return numeric(((Expr.Grouping)expr).expression);
+        if (expr instanceof Expr.Binary) return arithmetic((Expr.Binary)expr);
+        Expr.Unary unary = (Expr.Unary)expr; //단항 -
+        if (Resolver.isNumeric(unary.right)) {
+            Num right = numeric(unary.right);
+            return frame -> -right.eval(frame);
+        }
+        Eval right = compile(unary.right);
+        Token operator = unary.operator;
+        return frame -> Jit.negate(right.eval(frame), operator);
+    }
+    // 숫자 연산의 피연산자. 숫자식이 아니면 값을 읽어 바로 숫자인지 확인한다.
+    private Num operand(Expr expr, Token operator) {
+        if (Resolver.isNumeric(expr)) return numeric(expr);
+        Eval value = compile(expr);
+        return frame -> Jit.number(value.eval(frame), operator);
+    }
+    // 평가해도 에러도 부수 효과도 없는 식
+    private static boolean isPure(Expr expr) {
+        if (expr instanceof Expr.Literal || expr instanceof Expr.This) return true;
+        if (expr instanceof Expr.Variable) return ((Expr.Variable)expr).kind != Resolver.GLOBAL;
+        if (expr instanceof Expr.Grouping) return isPure(((Expr.Grouping)expr).expression);
+        return false;
+    }
+    // 인터프리터는 두 피연산자를 모두 평가한 뒤 타입을 검사한다. 왼쪽이 숫자식이거나 오른쪽을 평가해도 아무 일이 없으면
+    // 왼쪽을 바로 검사해도 결과가 같다(eager). 아니면 왼쪽 값을 들고 있다가 오른쪽을 평가한 뒤 검사한다.
+    // (두 검사의 에러는 메시지와 토큰이 같으므로 둘 중 무엇을 먼저 검사하는지는 상관없다)
+    private boolean eager(Expr.Binary expr) {
+        return Resolver.isNumeric(expr.left) || isPure(expr.right);
+    }
+    private Num arithmetic(Expr.Binary expr) {
+        Token operator = expr.operator;
+        Num right = operand(expr.right, operator);
+        if (eager(expr)) {
+            Num left = operand(expr.left, operator);
+            switch (operator.type) {
+                case PLUS: return frame -> left.eval(frame) + right.eval(frame);
+                case MINUS: return frame -> left.eval(frame) - right.eval(frame);
+                case STAR: return frame -> left.eval(frame) * right.eval(frame);
+                case SLASH: return frame -> Jit.divide(left.eval(frame), right.eval(frame), operator);
+                default: return frame -> Jit.modulo(left.eval(frame), right.eval(frame), operator);
+            }
+        }
+        Eval left = compile(expr.left);
+        switch (operator.type) {
+            case PLUS:
+                return frame -> {
+                    Object a = left.eval(frame);
+                    double b = right.eval(frame);
+                    return Jit.number(a, operator) + b;
+                };
+            case MINUS:
+                return frame -> {
+                    Object a = left.eval(frame);
+                    double b = right.eval(frame);
+                    return Jit.number(a, operator) - b;
+                };
+            case STAR:
+                return frame -> {
+                    Object a = left.eval(frame);
+                    double b = right.eval(frame);
+                    return Jit.number(a, operator) * b;
+                };
+            case SLASH:
+                return frame -> {
+                    Object a = left.eval(frame);
+                    double b = right.eval(frame);
+                    return Jit.divide(Jit.number(a, operator), b, operator);
+                };
+            default:
+                return frame -> {
+                    Object a = left.eval(frame);
+                    double b = right.eval(frame);
+                    return Jit.modulo(Jit.number(a, operator), b, operator);
+                };
+        }
+    }
+    private Test comparison(Expr.Binary expr) {
+        Token operator = expr.operator;
+        Num right = operand(expr.right, operator);
+        if (eager(expr)) {
+            Num left = operand(expr.left, operator);
+            switch (operator.type) {
+                case GREATER: return frame -> left.eval(frame) > right.eval(frame);
+                case GREATER_EQUAL: return frame -> left.eval(frame) >= right.eval(frame);
+                case LESS: return frame -> left.eval(frame) < right.eval(frame);
+                default: return frame -> left.eval(frame) <= right.eval(frame);
+            }
+        }
+        Eval left = compile(expr.left);
+        switch (operator.type) {
+            case GREATER:
+                return frame -> {
+                    Object a = left.eval(frame);
+                    double b = right.eval(frame);
+                    return Jit.number(a, operator) > b;
+                };
+            case GREATER_EQUAL:
+                return frame -> {
+                    Object a = left.eval(frame);
+                    double b = right.eval(frame);
+                    return Jit.number(a, operator) >= b;
+                };
+            case LESS:
+                return frame -> {
+                    Object a = left.eval(frame);
+                    double b = right.eval(frame);
+                    return Jit.number(a, operator) < b;
+                };
+            default:
+                return frame -> {
+                    Object a = left.eval(frame);
+                    double b = right.eval(frame);
+                    return Jit.number(a, operator) <= b;
+                };
+        }
+    }
+    // 조건식을 참/거짓으로 (Interpreter.evaluateBoolean)
+    private Test test(Expr expr) {
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr;
+            switch (binary.operator.type) {
+                case GREATER: case GREATER_EQUAL: case LESS: case LESS_EQUAL:
+                    return comparison(binary);
+                case EQUAL_EQUAL: case BANG_EQUAL: {
+                    Eval left = compile(binary.left), right = compile(binary.right);
+                    if (binary.operator.type == TokenType.EQUAL_EQUAL) {
+                        return frame -> Interpreter.isEqual(left.eval(frame), right.eval(frame));
+                    }
+                    return frame -> !Interpreter.isEqual(left.eval(frame), right.eval(frame));
+                }
+                default:
+                    break;
+            }
+        } else if (expr instanceof Expr.Logical) {
+            Expr.Logical logical = (Expr.Logical)expr;
+            Test left = test(logical.left), right = test(logical.right);
+            if (logical.operator.type == TokenType.OR) return frame -> left.eval(frame) || right.eval(frame);
+            return frame -> left.eval(frame) && right.eval(frame);
+        } else if (expr instanceof Expr.Unary && ((Expr.Unary)expr).operator.type == TokenType.BANG) {
+            Test right = test(((Expr.Unary)expr).right);
+            return frame -> !right.eval(frame);
+        } else if (expr instanceof Expr.Grouping) {
+            return test(((Expr.Grouping)expr).expression);
+        } else if (expr instanceof Expr.Literal) {
+            boolean value = Interpreter.isTruthy(((Expr.Literal)expr).value);
+            return frame -> value;
+        }
+        Eval value = compile(expr);
+        return frame -> Interpreter.isTruthy(value.eval(frame));
+    }
+
+    // 함수 호출 (Interpreter.visitCallExpr)
+    @Override
+    public Eval visitCallExpr(Expr.Call expr) {
+        Eval[] arguments = compileArguments(expr.arguments);
+        Invoke invoke = invoke(expr, arguments);
+        if (!(expr.callee instanceof Expr.Get)) {
+            Eval callee = compile(expr.callee);
+            return frame -> invoke.call(callee.eval(frame), frame);
+        }
+        //obj.method(...): 메서드면 묶은 메서드를 만들지 않고 인스턴스를 바로 넘겨 호출한다.
+        Expr.Get get = (Expr.Get)expr.callee;
+        Eval object = compile(get.object);
+        Invoke method = (target, frame) -> {
+            if (target instanceof LoxInstance) {
+                LoxInstance instance = (LoxInstance)target;
+                LoxFunction function = instance.findMethod(get.name, get.cache);
+                if (function != null) {
+                    List<Object> values = arguments(arguments, frame);
+                    if (values.size() != function.arity()) {
+                        throw new RuntimeError(expr.paren, "" + function.arity() + "개의 인자를 기대했지만, 실제로는 " + values.size() + "개를 받았습니다.");
+                    }
+                    return function.invoke(interpreter, instance, values);
+                }
+                return invoke.call(instance.get(get.name, get.cache), frame);
+            }
+            return invoke.call(interpreter.getProperty(get, target), frame);
+        };
+        //배열 내장 메서드는 대상이 배열이면 이름으로 찾거나 인자 리스트를 만들지 않고 바로 부른다. (JitCompiler와 같다)
+        String arrayMethod = Jit.arrayMethod(get.name.lexeme, arguments.length);
+        if (arrayMethod == null) return frame -> method.call(object.eval(frame), frame);
+        switch (arrayMethod) {
+            case "append":
+                return frame -> {
+                    Object target = object.eval(frame);
+                    if (target instanceof List) return Jit.append((List<?>)target, arguments[0].eval(frame));
+                    return method.call(target, frame);
+                };
+            case "pushFront":
+                return frame -> {
+                    Object target = object.eval(frame);
+                    if (target instanceof List) return Jit.pushFront((List<?>)target, arguments[0].eval(frame));
+                    return method.call(target, frame);
+                };
+            case "popBack":
+                return frame -> {
+                    Object target = object.eval(frame);
+                    if (target instanceof List) return Jit.popBack((List<?>)target);
+                    return method.call(target, frame);
+                };
+            default:
+                return frame -> {
+                    Object target = object.eval(frame);
+                    if (target instanceof List) return Jit.popFront((List<?>)target);
+                    return method.call(target, frame);
+                };
+        }
+    }
+    // 호출 대상을 구한 다음: Inliner가 본문 식을 붙여 둔 호출이고 대상이 그 함수면 인자를 이 프레임의 슬롯에 넣고 식을 바로
+    // 평가한다. 아니면 인자를 평가해서 Interpreter.callValue로 부른다.
+    private Invoke invoke(Expr.Call expr, Eval[] arguments) {
+        if (expr.inlined == null) {
+            return (callee, frame) -> interpreter.callValue(expr, callee, arguments(arguments, frame));
+        }
+        Stmt.Function inlined = expr.inlined;
+        int[] slots = expr.inlineSlots;
+        Eval body = compile(expr.inlineBody);
+        return (callee, frame) -> {
+            if (callee instanceof LoxFunction && ((LoxFunction)callee).isDeclaredBy(inlined)) {
+                if (Stats.ENABLED) Stats.inlinedCall();
+                for (int i=0;i<slots.length;++i) {
+                    frame.slots[slots[i]] = arguments[i].eval(frame);
+                }
+                if (LoxFunction.observingCalls()) return LoxFunction.observeInlined(inlined, () -> body.eval(frame));
+                return body.eval(frame);
+            }
+            return interpreter.callValue(expr, callee, arguments(arguments, frame));
+        };
+    }
+    @Override
+    public Eval visitGetExpr(Expr.Get expr) {
+        Eval object = compile(expr.object);
+        return frame -> interpreter.getProperty(expr, object.eval(frame));
+    }
+    @Override
+    public Eval visitSetExpr(Expr.Set expr) {
+        Eval object = compile(expr.object), value = compile(expr.value);
+        Token name = expr.name;
+        return frame -> {
+            LoxInstance instance = Jit.instance(object.eval(frame), name);
+            return Jit.set(instance, value.eval(frame), expr);
+        };
+    }
+    @Override
+    public Eval visitIndexGetExpr(Expr.IndexGet expr) {
+        Eval object = compile(expr.object), index = compile(expr.index);
+        return frame -> {
+            Object array = object.eval(frame);
+            return Interpreter.indexGet(array, index.eval(frame));
+        };
+    }
+    @Override
+    public Eval visitIndexSetExpr(Expr.IndexSet expr) {
+        Eval object = compile(expr.object), index = compile(expr.index);
+        if (Resolver.isNumeric(expr.value)) {
+            //숫자식을 넣을 때는 숫자 배열에 박싱 없이 바로 저장한다.
+            Num value = numeric(expr.value);
+            return frame -> {
+                Object array = object.eval(frame);
+                Object at = index.eval(frame);
+                double number = value.eval(frame);
+                if (array instanceof LoxArray && at instanceof Double) {
+                    LoxArray loxArray = (LoxArray)array;
+                    int idx = (int)(double)at;
+                    if (idx >= 0 && idx < loxArray.size()) {
+                        loxArray.setDouble(idx, number);
+                        return Interpreter.box(number);
+                    }
+                }
+                return Interpreter.indexSet(array, at, Interpreter.box(number));
+            };
+        }
+        Eval value = compile(expr.value);
+        return frame -> {
+            Object array = object.eval(frame);
+            Object at = index.eval(frame);
+            return Interpreter.indexSet(array, at, value.eval(frame));
+        };
+    }
+    @Override
+    public Eval visitArrayExpr(Expr.Array expr) {
+        int size = expr.elements.size();
+        Num[] numbers = new Num[size];
+        Eval[] values = new Eval[size];
+        for (int i=0;i<size;++i) {
+            Expr element = expr.elements.get(i);
+            if (Resolver.isNumeric(element)) numbers[i] = numeric(element);
+            else values[i] = compile(element);
+        }
+        int line = expr.bracket.line;
+        return frame -> {
+            if (Heap.SITES) Heap.site = line; //힙 보고의 할당 지점
+            LoxArray result = new LoxArray(size);
+            for (int i=0;i<size;++i) {
+                if (numbers[i] != null) result.addDouble(numbers[i].eval(frame));
+                else result.add(values[i].eval(frame));
+            }
+            return result;
+        };
+    }
+}
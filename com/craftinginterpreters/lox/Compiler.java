@@ -0,0 +1,611 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 리졸브가 끝난 문장 리스트(List<Stmt>)를 VM 바이트코드로 컴파일한다. (--engine=vm)
+// 지역 변수는 호출 프레임의 스택 슬롯으로, 클로저가 잡은 바깥 변수는 업밸류로 바꾼다.
+// 맨 위(스코프 밖) 변수는 트리 인터프리터와 마찬가지로 Resolver가 번호를 매긴 전역 슬롯(Globals)이 된다.
+class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private enum FunctionType {
+        SCRIPT, FUNCTION, METHOD, INITIALIZER
+    }
+    private static final class Local {
+        final String name;
+        int depth; //-1이면 선언만 되고 아직 초기화 전
+        boolean isCaptured = false;
+
+        Local(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+        }
+    }
+    private static final class UpvalueRef {
+        final int index;
+        final boolean isLocal;
+
+        UpvalueRef(int index, boolean isLocal) {
+            this.index = index;
+            this.isLocal = isLocal;
+        }
+    }
+    // break/continue 가 점프할 위치를 기억하기 위한 반복문 정보
+    private static final class Loop {
+        final Loop enclosing;
+        final int start;
+        final int scopeDepth;
+        final List<Integer> breakJumps = new ArrayList<>();
+
+        Loop(Loop enclosing, int start, int scopeDepth) {
+            this.enclosing = enclosing;
+            this.start = start;
+            this.scopeDepth = scopeDepth;
+        }
+    }
+    // 컴파일 중인 함수 하나의 상태. 중첩 함수마다 하나씩 쌓인다.
+    private static final class FunctionState {
+        final FunctionState enclosing;
+        final VM.Function function;
+        final FunctionType type;
+        final List<Local> locals = new ArrayList<>();
+        final List<UpvalueRef> upvalues = new ArrayList<>();
+        // 같은 이름/라인의 토큰 상수는 한 번만 넣는다.
+        final Map<String,Integer> tokenConstants = new HashMap<>();
+        int scopeDepth = 0;
+        Loop loop = null;
+
+        FunctionState(FunctionState enclosing, VM.Function function, FunctionType type) {
+            this.enclosing = enclosing;
+            this.function = function;
+            this.type = type;
+            // 슬롯 0은 호출된 함수 자신, 메서드라면 this(자기자신)가 차지한다.
+            boolean isMethod = type == FunctionType.METHOD || type == FunctionType.INITIALIZER;
+            locals.add(new Local(isMethod ? "this" : "", 0));
+        }
+    }
+
+    private static final int MAX_LOCALS = 256;
+    private static final int MAX_UPVALUES = 256;
+    private static final int MAX_SHORT = 0xffff;
+
+    // VM 명령어의 배열 메서드 번호 (INVOKE_ARRAY의 피연산자). Jit.arrayMethod의 이름 순서다.
+    static final int APPEND = 0, PUSH_FRONT = 1, POP_BACK = 2, POP_FRONT = 3;
+
+    private final Globals globals; //전역 이름 -> 슬롯 (Resolver가 이미 매긴 번호를 다시 찾는다)
+    private FunctionState current = null;
+    private int line = 1; //지금 쓰고 있는 명령어의 라인 (라인 테이블 기록용)
+
+    Compiler(Globals globals) {
+        this.globals = globals;
+    }
+
+    VM.Function compile(List<Stmt> statements) {
+        current = new FunctionState(null, new VM.Function("script"), FunctionType.SCRIPT);
+        for (Stmt statement : statements) {
+            compile(statement);
+        }
+        emitReturn();
+        VM.Function script = current.function;
+        current = null;
+        return script;
+    }
+    private void compile(Stmt stmt) {
+        stmt.accept(this);
+    }
+    private void compile(Expr expr) {
+        expr.accept(this);
+    }
+
+    // ---- 문장 ----
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        beginScope();
+        for (Stmt statement : stmt.statements) {
+            compile(statement);
+        }
+        endScope();
+        return null;
+    }
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        line = stmt.name.line;
+        if (current.scopeDepth > 0) addLocal(stmt.name);
+        emitShort(OpCode.CLASS, makeConstant(stmt.name.lexeme));
+        defineVariable(stmt.name);
+
+        // 메서드를 붙이는 동안 클래스를 스택 위에 올려 둔다.
+        getVariable(stmt.name.lexeme, stmt.name);
+        for (Stmt.Function method : stmt.methods) {
+            FunctionType type = method.name.lexeme.equals("init") ? FunctionType.INITIALIZER : FunctionType.METHOD;
+            function(method, type);
+            emitShort(OpCode.METHOD, makeConstant(method.name.lexeme));
+        }
+        emit(OpCode.POP);
+        return null;
+    }
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        compile(stmt.expression);
+        emit(OpCode.POP);
+        return null;
+    }
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        line = stmt.name.line;
+        if (current.scopeDepth > 0) {
+            addLocal(stmt.name);
+            markInitialized(); //함수 본문에서 자기 자신을 재귀 호출할 수 있게 먼저 초기화 표시
+        }
+        function(stmt, FunctionType.FUNCTION);
+        defineVariable(stmt.name);
+        return null;
+    }
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        compile(stmt.condition);
+        int thenJump = emitJump(OpCode.POP_JUMP_IF_FALSE);
+        compile(stmt.thenBranch);
+        if (stmt.elseBranch != null) {
+            int elseJump = emitJump(OpCode.JUMP);
+            patchJump(thenJump);
+            compile(stmt.elseBranch);
+            patchJump(elseJump);
+        } else {
+            patchJump(thenJump);
+        }
+        return null;
+    }
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        compile(stmt.expression);
+        emit(OpCode.PRINT);
+        return null;
+    }
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        line = stmt.keyword.line;
+        if (current.type == FunctionType.INITIALIZER) {
+            emitBytes(OpCode.GET_LOCAL, 0);
+        } else if (stmt.value != null) {
+            compile(stmt.value);
+        } else {
+            emit(OpCode.NIL);
+        }
+        emit(OpCode.RETURN);
+        return null;
+    }
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        line = stmt.name.line;
+        if (current.scopeDepth > 0) addLocal(stmt.name);
+        if (stmt.initializer != null) {
+            compile(stmt.initializer);
+        } else {
+            emit(OpCode.NIL);
+        }
+        defineVariable(stmt.name);
+        return null;
+    }
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        int loopStart = current.function.chunk.count;
+        compile(stmt.condition);
+        int exitJump = emitJump(OpCode.POP_JUMP_IF_FALSE);
+
+        Loop loop = new Loop(current.loop, loopStart, current.scopeDepth);
+        current.loop = loop;
+        compile(stmt.body);
+        emitLoop(loopStart);
+        current.loop = loop.enclosing;
+
+        patchJump(exitJump);
+        for (int jump : loop.breakJumps) {
+            patchJump(jump);
+        }
+        return null;
+    }
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        beginScope();
+        if (stmt.initializer != null) compile(stmt.initializer);
+        int loopStart = current.function.chunk.count;
+        int exitJump = -1;
+        if (stmt.condition != null) {
+            compile(stmt.condition);
+            exitJump = emitJump(OpCode.POP_JUMP_IF_FALSE);
+        }
+        //증감식은 조건 바로 뒤에 두고 처음에는 건너뛴다. body 끝과 continue는 증감식으로 돌아간다.
+        int continueStart = loopStart;
+        if (stmt.increment != null) {
+            int bodyJump = emitJump(OpCode.JUMP);
+            continueStart = current.function.chunk.count;
+            compile(stmt.increment);
+            emit(OpCode.POP);
+            emitLoop(loopStart);
+            patchJump(bodyJump);
+        }
+        Loop loop = new Loop(current.loop, continueStart, current.scopeDepth);
+        current.loop = loop;
+        compile(stmt.body);
+        emitLoop(continueStart);
+        current.loop = loop.enclosing;
+
+        if (exitJump != -1) patchJump(exitJump);
+        for (int jump : loop.breakJumps) {
+            patchJump(jump);
+        }
+        endScope();
+        return null;
+    }
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        if (current.loop == null) {
+            Lox.error(line, "반복문 밖에서는 break(중단)를 쓸 수 없습니다.");
+            return null;
+        }
+        discardLocals(current.loop.scopeDepth);
+        current.loop.breakJumps.add(emitJump(OpCode.JUMP));
+        return null;
+    }
+    @Override
+    public Void visitContinueStmt(Stmt.Continue stmt) {
+        if (current.loop == null) {
+            Lox.error(line, "반복문 밖에서는 continue(계속)를 쓸 수 없습니다.");
+            return null;
+        }
+        discardLocals(current.loop.scopeDepth);
+        emitLoop(current.loop.start);
+        return null;
+    }
+
+    // ---- 표현식 ----
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        compile(expr.left);
+        compile(expr.right);
+        line = expr.operator.line;
+        switch (expr.operator.type) {
+            case GREATER: emit(OpCode.GREATER); break;
+            case GREATER_EQUAL: emit(OpCode.GREATER_EQUAL); break;
+            case LESS: emit(OpCode.LESS); break;
+            case LESS_EQUAL: emit(OpCode.LESS_EQUAL); break;
+            case BANG_EQUAL: emit(OpCode.NOT_EQUAL); break;
+            case EQUAL_EQUAL: emit(OpCode.EQUAL); break;
+            case MINUS: emit(OpCode.SUBTRACT); break;
+            case PLUS: emit(OpCode.ADD); break;
+            case SLASH: emit(OpCode.DIVIDE); break;
+            case STAR: emit(OpCode.MULTIPLY); break;
+            case MOD: emit(OpCode.MODULO); break;
+            default: break; //파서가 만들지 않는 연산자
+        }
+        return null;
+    }
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        if (expr.callee instanceof Expr.Get) {
+            //obj.method(...)는 묶은 메서드를 만들지 않도록 LOAD_METHOD/INVOKE로 컴파일한다.
+            //배열 내장 메서드 이름이면 대상이 배열일 때 ArrayMethodWrapper와 인자 리스트 없이 바로 실행한다.
+            Expr.Get get = (Expr.Get)expr.callee;
+            int arrayMethod = arrayMethod(get.name.lexeme, expr.arguments.size());
+            compile(get.object);
+            line = get.name.line;
+            emitShort(arrayMethod < 0 ? OpCode.LOAD_METHOD : OpCode.LOAD_ARRAY_METHOD, tokenConstant(get.name));
+            for (Expr argument : expr.arguments) {
+                compile(argument);
+            }
+            line = expr.paren.line;
+            if (arrayMethod >= 0) emitBytes(OpCode.INVOKE_ARRAY, arrayMethod);
+            else emit(OpCode.INVOKE);
+            emit(expr.arguments.size());
+            return null;
+        }
+        compile(expr.callee);
+        for (Expr argument : expr.arguments) {
+            compile(argument);
+        }
+        line = expr.paren.line;
+        emitBytes(OpCode.CALL, expr.arguments.size());
+        return null;
+    }
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        compile(expr.object);
+        line = expr.name.line;
+        emitShort(OpCode.GET_PROPERTY, tokenConstant(expr.name));
+        return null;
+    }
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        compile(expr.object);
+        line = expr.name.line;
+        // 트리 인터프리터는 값을 계산하기 전에 대상이 인스턴스인지 먼저 확인한다.
+        // 대상이 this이거나 값이 리터럴이면 순서가 달라도 결과가 같으므로 검사 명령을 생략한다.
+        if (!(expr.object instanceof Expr.This) && !(expr.value instanceof Expr.Literal)) {
+            emitShort(OpCode.CHECK_INSTANCE, tokenConstant(expr.name));
+        }
+        compile(expr.value);
+        line = expr.name.line;
+        emitShort(OpCode.SET_PROPERTY, tokenConstant(expr.name));
+        return null;
+    }
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        line = expr.keyword.line;
+        getVariable("this", expr.keyword); //this와 자기자신은 같은 슬롯을 쓴다.
+        return null;
+    }
+    @Override
+    public Void visitIndexGetExpr(Expr.IndexGet expr) {
+        compile(expr.object);
+        compile(expr.index);
+        emit(OpCode.GET_INDEX);
+        return null;
+    }
+    @Override
+    public Void visitIndexSetExpr(Expr.IndexSet expr) {
+        compile(expr.object);
+        compile(expr.index);
+        compile(expr.value);
+        emit(OpCode.SET_INDEX);
+        return null;
+    }
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        compile(expr.expression);
+        return null;
+    }
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value == null) emit(OpCode.NIL);
+        else if (expr.value.equals(Boolean.TRUE)) emit(OpCode.TRUE);
+        else if (expr.value.equals(Boolean.FALSE)) emit(OpCode.FALSE);
+        else emitShort(OpCode.CONSTANT, makeConstant(expr.value));
+        return null;
+    }
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        compile(expr.left);
+        line = expr.operator.line;
+        if (expr.operator.type == TokenType.OR) {
+            int elseJump = emitJump(OpCode.JUMP_IF_FALSE);
+            int endJump = emitJump(OpCode.JUMP);
+            patchJump(elseJump);
+            emit(OpCode.POP);
+            compile(expr.right);
+            patchJump(endJump);
+        } else {
+            int endJump = emitJump(OpCode.JUMP_IF_FALSE);
+            emit(OpCode.POP);
+            compile(expr.right);
+            patchJump(endJump);
+        }
+        return null;
+    }
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        compile(expr.right);
+        line = expr.operator.line;
+        if (expr.operator.type == TokenType.BANG) emit(OpCode.NOT);
+        else emit(OpCode.NEGATE);
+        return null;
+    }
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        line = expr.name.line;
+        getVariable(expr.name.lexeme, expr.name);
+        return null;
+    }
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        compile(expr.value);
+        line = expr.name.line;
+        int arg = resolveLocal(current, expr.name.lexeme);
+        if (arg != -1) {
+            emitBytes(OpCode.SET_LOCAL, arg);
+        } else if ((arg = resolveUpvalue(current, expr.name.lexeme)) != -1) {
+            emitBytes(OpCode.SET_UPVALUE, arg);
+        } else {
+            emitGlobal(OpCode.SET_GLOBAL, expr.name);
+        }
+        return null;
+    }
+    @Override
+    public Void visitArrayExpr(Expr.Array expr) {
+        for (Expr element : expr.elements) {
+            compile(element);
+        }
+        if (expr.elements.size() > MAX_SHORT) Lox.error(line, "배열 리터럴의 원소가 너무 많습니다.");
+        emitShort(OpCode.ARRAY, expr.elements.size());
+        return null;
+    }
+    // 반복문 불변식 기억은 트리 인터프리터만 한다. VM은 원래 식을 그대로 컴파일한다.
+    @Override
+    public Void visitHoistedExpr(Expr.Hoisted expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    // ---- 함수/스코프 ----
+    private void function(Stmt.Function stmt, FunctionType type) {
+        FunctionState state = new FunctionState(current, new VM.Function(stmt.name.lexeme), type);
+        current = state;
+        beginScope();
+        state.function.arity = stmt.params.size();
+        for (Token param : stmt.params) {
+            addLocal(param);
+            markInitialized();
+        }
+        for (Stmt statement : stmt.body) {
+            compile(statement);
+        }
+        emitReturn();
+        current = state.enclosing;
+
+        // 함수 객체 자체는 상수로 두고, 실행 시점에 업밸류를 잡아 클로저를 만든다.
+        state.function.upvalueCount = state.upvalues.size();
+        line = stmt.name.line;
+        emitShort(OpCode.CLOSURE, makeConstant(state.function));
+        for (UpvalueRef upvalue : state.upvalues) {
+            emit(upvalue.isLocal ? 1 : 0);
+            emit(upvalue.index);
+        }
+    }
+    private void beginScope() {
+        ++current.scopeDepth;
+    }
+    private void endScope() {
+        --current.scopeDepth;
+        List<Local> locals = current.locals;
+        while (!locals.isEmpty() && locals.get(locals.size() - 1).depth > current.scopeDepth) {
+            emit(locals.get(locals.size() - 1).isCaptured ? OpCode.CLOSE_UPVALUE : OpCode.POP);
+            locals.remove(locals.size() - 1);
+        }
+    }
+    // break/continue로 빠져나가는 스코프의 지역 변수를 스택에서 치운다. (컴파일러의 지역 변수 목록은 그대로 둔다)
+    private void discardLocals(int depth) {
+        List<Local> locals = current.locals;
+        for (int i = locals.size() - 1; i >= 0 && locals.get(i).depth > depth; --i) {
+            emit(locals.get(i).isCaptured ? OpCode.CLOSE_UPVALUE : OpCode.POP);
+        }
+    }
+    private void addLocal(Token name) {
+        if (current.locals.size() == MAX_LOCALS) {
+            Lox.error(name, "한 함수 안에 지역 변수가 너무 많습니다.");
+            return;
+        }
+        current.locals.add(new Local(name.lexeme, -1));
+    }
+    private void markInitialized() {
+        current.locals.get(current.locals.size() - 1).depth = current.scopeDepth;
+    }
+    private void defineVariable(Token name) {
+        if (current.scopeDepth > 0) {
+            markInitialized();
+            return;
+        }
+        emitShort(OpCode.DEFINE_GLOBAL, globalSlot(name));
+    }
+    private void getVariable(String name, Token token) {
+        int arg = resolveLocal(current, name);
+        if (arg != -1) {
+            emitBytes(OpCode.GET_LOCAL, arg);
+        } else if ((arg = resolveUpvalue(current, name)) != -1) {
+            emitBytes(OpCode.GET_UPVALUE, arg);
+        } else {
+            emitGlobal(OpCode.GET_GLOBAL, token);
+        }
+    }
+    private int resolveLocal(FunctionState state, String name) {
+        for (int i = state.locals.size() - 1; i >= 0; --i) {
+            if (state.locals.get(i).name.equals(name)) return i;
+        }
+        return -1;
+    }
+    private int resolveUpvalue(FunctionState state, String name) {
+        if (state.enclosing == null) return -1;
+        int local = resolveLocal(state.enclosing, name);
+        if (local != -1) {
+            state.enclosing.locals.get(local).isCaptured = true;
+            return addUpvalue(state, local, true);
+        }
+        int upvalue = resolveUpvalue(state.enclosing, name);
+        if (upvalue != -1) return addUpvalue(state, upvalue, false);
+        return -1;
+    }
+    private int addUpvalue(FunctionState state, int index, boolean isLocal) {
+        for (int i = 0; i < state.upvalues.size(); ++i) {
+            UpvalueRef upvalue = state.upvalues.get(i);
+            if (upvalue.index == index && upvalue.isLocal == isLocal) return i;
+        }
+        if (state.upvalues.size() == MAX_UPVALUES) {
+            Lox.error(line, "클로저가 잡는 변수가 너무 많습니다.");
+            return 0;
+        }
+        state.upvalues.add(new UpvalueRef(index, isLocal));
+        return state.upvalues.size() - 1;
+    }
+
+    // ---- 바이트코드 출력 ----
+    private void emit(int b) {
+        current.function.chunk.write(b, line);
+    }
+    private void emitBytes(int op, int operand) {
+        emit(op);
+        emit(operand);
+    }
+    private void emitShort(int op, int operand) {
+        emit(op);
+        emit((operand >> 8) & 0xff);
+        emit(operand & 0xff);
+    }
+    private void emitReturn() {
+        if (current.type == FunctionType.INITIALIZER) {
+            emitBytes(OpCode.GET_LOCAL, 0);
+        } else {
+            emit(OpCode.NIL);
+        }
+        emit(OpCode.RETURN);
+    }
+    private int emitJump(int op) {
+        emitShort(op, MAX_SHORT);
+        return current.function.chunk.count - 2;
+    }
+    private void patchJump(int offset) {
+        Chunk chunk = current.function.chunk;
+        int jump = chunk.count - offset - 2;
+        if (jump > MAX_SHORT) Lox.error(line, "건너뛸 코드가 너무 많습니다.");
+        chunk.code[offset] = (byte)((jump >> 8) & 0xff);
+        chunk.code[offset + 1] = (byte)(jump & 0xff);
+    }
+    private void emitLoop(int loopStart) {
+        emit(OpCode.LOOP);
+        int offset = current.function.chunk.count - loopStart + 2;
+        if (offset > MAX_SHORT) Lox.error(line, "반복문 몸체가 너무 큽니다.");
+        emit((offset >> 8) & 0xff);
+        emit(offset & 0xff);
+    }
+    private int makeConstant(Object value) {
+        int index = current.function.chunk.addConstant(value);
+        if (index > MAX_SHORT) {
+            Lox.error(line, "한 함수 안에 상수가 너무 많습니다.");
+            return 0;
+        }
+        return index;
+    }
+    // 전역 변수는 슬롯 번호로 읽고 쓴다. 정의되지 않은 변수 에러의 이름과 라인을 위해 토큰 상수도 붙인다.
+    private void emitGlobal(int op, Token name) {
+        emitShort(op, globalSlot(name));
+        int constant = tokenConstant(name);
+        emit((constant >> 8) & 0xff);
+        emit(constant & 0xff);
+    }
+    private int globalSlot(Token name) {
+        int slot = globals.slot(name.lexeme);
+        if (slot > MAX_SHORT) {
+            Lox.error(line, "전역 변수가 너무 많습니다.");
+            return 0;
+        }
+        return slot;
+    }
+    private static int arrayMethod(String name, int arity) {
+        String method = Jit.arrayMethod(name, arity);
+        if (method == null) return -1;
+        switch (method) {
+            case "append": return APPEND;
+            case "pushFront": return PUSH_FRONT;
+            case "popBack": return POP_BACK;
+            default: return POP_FRONT;
+        }
+    }
+    // 전역 변수/프로퍼티 이름은 에러 라인을 알 수 있도록 토큰째로 상수 풀에 넣는다.
+    private int tokenConstant(Token token) {
+        String key = token.lexeme + "@" + token.line;
+        Integer existing = current.tokenConstants.get(key);
+        if (existing != null) return existing;
+        int index = makeConstant(token);
+        current.tokenConstants.put(key, index);
+        return index;
+    }
+}
@@ -0,0 +1,153 @@
+package com.craftinginterpreters.lox;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+// Java Flight Recorder 이벤트. JFR 기록에는 Lox 코드가 인터프리터 프레임으로만 보이므로, Lox 수준의 일을 이벤트로 남겨
+// 같은 기록의 GC, 세이프포인트 이벤트와 시간으로 맞춰 볼 수 있게 한다.
+//   java -XX:StartFlightRecording=filename=lox.jfr com.craftinginterpreters.lox.Lox 스크립트  (jfr print --categories Lox lox.jfr)
+// 문턱(threshold)은 아래 기본값을 쓰고, .jfc 설정이나 JFR.configure로 이벤트 이름(lox.Call 등)마다 바꿀 수 있다.
+// jdk.jfr 클래스를 올리는 것만으로도 시작 시간이 꽤 늘어나므로, 이벤트를 쓰는 곳은 먼저 ENABLED를 본다.
+// ENABLED는 JVM을 -XX:StartFlightRecording(이나 그 옵션이 든 JAVA_TOOL_OPTIONS, JDK_JAVA_OPTIONS)으로 띄웠을 때 켜지고,
+// 나중에 jcmd JFR.start로 기록할 프로세스는 -Dlox.jfr=true로 켠다. (-Dlox.jfr=false면 끈다)
+// 상수라서 꺼져 있으면 HotSpot이 이벤트 코드를 지운다. 켜져 있어도 기록 중이 아니면 isEnabled()가 false라서 시간을 재거나
+// 필드를 채우지 않고, 호출처럼 잦은 곳은 recording()부터 봐서 이벤트 객체도 만들지 않는다.
+// Lox 위치(함수, 줄)를 필드로 남기므로 Java 스택은 기록하지 않는다.
+final class Events {
+    static final boolean ENABLED = enabled();
+
+    private Events() {}
+
+    private static boolean enabled() {
+        String property = System.getProperty("lox.jfr");
+        if (property != null) return Boolean.parseBoolean(property);
+        if (recording(System.getenv("JAVA_TOOL_OPTIONS")) || recording(System.getenv("JDK_JAVA_OPTIONS"))) return true;
+        for (String argument : ProcessHandle.current().info().arguments().orElse(new String[0])) {
+            if (recording(argument)) return true;
+        }
+        return false;
+    }
+    private static boolean recording(String options) {
+        return options != null && (options.contains("-XX:StartFlightRecording") || options.contains("-XX:+FlightRecorder"));
+    }
+
+    @Name("lox.Call")
+    @Label("Lox 함수 호출")
+    @Description("문턱보다 오래 걸린 Lox 함수/메서드 호출. 안쪽 호출 시간을 포함한다.")
+    @Category("Lox")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static final class Call extends Event {
+        private static final Call PROBE = new Call();
+
+        @Label("함수")
+        String function;
+        @Label("선언 줄")
+        int line;
+
+        // 기록 중일 때만 호출마다 이벤트를 만든다.
+        static boolean recording() {
+            return PROBE.isEnabled();
+        }
+    }
+
+    @Name("lox.RuntimeError")
+    @Label("Lox 런타임 에러")
+    @Category("Lox")
+    @StackTrace(false)
+    static final class Error extends Event {
+        @Label("메시지")
+        String message;
+        @Label("줄")
+        int line;
+    }
+
+    @Name("lox.ArrayResize")
+    @Label("Lox 배열 확장")
+    @Description("저장소를 두 배로 늘리며 원소를 옮긴 일. 새 크기가 MIN_CAPACITY 이상일 때만 남긴다.")
+    @Category("Lox")
+    @StackTrace(false)
+    static final class ArrayResize extends Event {
+        // 작은 배열은 자주 늘어나고 금방 끝나므로 기록하지 않는다. (-Dlox.jfr.arrayResize=원소 수)
+        static final int MIN_CAPACITY = Integer.getInteger("lox.jfr.arrayResize", 1 << 16);
+
+        @Label("원소 수")
+        int size;
+        @Label("이전 크기")
+        int oldCapacity;
+        @Label("새 크기")
+        int newCapacity;
+        @Label("숫자 배열")
+        @Description("double[]로 저장하는 배열이면 true, Object[]면 false")
+        boolean numeric;
+    }
+
+    @Name("lox.InputWait")
+    @Label("Lox 입력 대기")
+    @Description("scanNum, scanText 등이 표준 입력에서 줄을 읽으며 기다린 시간")
+    @Category("Lox")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class InputWait extends Event {
+        @Label("네이티브 함수")
+        String function;
+        @Label("읽은 글자 수")
+        int chars;
+        @Label("입력 끝")
+        boolean eof;
+    }
+
+    @Name("lox.OutputFlush")
+    @Label("Lox 출력 버퍼 비우기")
+    @Description("print 출력 버퍼(Interpreter.bw)가 차거나 flush되어 표준 출력에 쓴 일")
+    @Category("Lox")
+    @StackTrace(false)
+    static final class OutputFlush extends Event {
+        @Label("글자 수")
+        int chars;
+    }
+
+    // 출력 버퍼 아래에 두는 Writer. BufferedWriter는 버퍼가 찼을 때와 flush할 때만 아래 Writer에 쓰므로
+    // 여기서 한 번 쓰는 것이 버퍼를 한 번 비우는 것이다.
+    static final class RecordingWriter extends FilterWriter {
+        RecordingWriter(Writer out) {
+            super(out);
+        }
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            OutputFlush event = new OutputFlush();
+            if (!event.isEnabled()) {
+                out.write(chars, offset, length);
+                return;
+            }
+            event.begin();
+            out.write(chars, offset, length);
+            commit(event, length);
+        }
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            OutputFlush event = new OutputFlush();
+            if (!event.isEnabled()) {
+                out.write(text, offset, length);
+                return;
+            }
+            event.begin();
+            out.write(text, offset, length);
+            commit(event, length);
+        }
+        private void commit(OutputFlush event, int length) throws IOException {
+            out.flush(); //OutputStreamWriter의 인코더 버퍼까지 내보내야 쓴 시간이 잡힌다
+            event.end();
+            event.chars = length;
+            event.commit();
+        }
+    }
+}
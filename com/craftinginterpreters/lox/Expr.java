@@ -18,6 +18,7 @@ abstract class Expr{
     R visitVariableExpr(Variable expr);
     R visitAssignExpr(Assign expr);
     R visitArrayExpr(Array expr);
+    R visitHoistedExpr(Hoisted expr);
   }
   static class Binary extends Expr {
     Binary(Expr left, Token operator, Expr right) {
@@ -33,6 +34,8 @@ abstract class Expr{
     final Expr left;
     final Token operator;
     final Expr right;
+    boolean numeric;
+    BinaryNode node = BinaryNode.UNINITIALIZED;
   }
   static class Call extends Expr {
     Call(Expr callee, Token paren, List<Expr> arguments) {
@@ -48,6 +51,12 @@ abstract class Expr{
     final Expr callee;
     final Token paren;
     final List<Expr> arguments;
+    LoxCallable direct;
+    int directEpoch = -1;
+    CallNode node = CallNode.UNINITIALIZED;
+    Stmt.Function inlined;
+    Expr inlineBody;
+    int[] inlineSlots;
   }
   static class Get extends Expr {
     Get(Expr object, Token name) {
@@ -61,6 +70,7 @@ abstract class Expr{
     }
     final Expr object;
     final Token name;
+    PropertyCache cache = new PropertyCache();
   }
   static class Set extends Expr {
     Set(Expr object, Token name, Expr value) {
@@ -76,6 +86,7 @@ abstract class Expr{
     final Expr object;
     final Token name;
     final Expr value;
+    PropertyCache cache = new PropertyCache();
   }
   static class This extends Expr {
     This(Token keyword) {
@@ -87,6 +98,8 @@ abstract class Expr{
       return visitor.visitThisExpr(this);
     }
     final Token keyword;
+    int kind;
+    int slot = -1;
   }
   static class IndexGet extends Expr {
     IndexGet(Expr object, Expr index) {
@@ -100,6 +113,7 @@ abstract class Expr{
     }
     final Expr object;
     final Expr index;
+    Stmt.For bounds;
   }
   static class IndexSet extends Expr {
     IndexSet(Expr object, Expr index, Expr value) {
@@ -176,6 +190,8 @@ abstract class Expr{
       return visitor.visitVariableExpr(this);
     }
     final Token name;
+    int kind;
+    int slot = -1;
   }
   static class Assign extends Expr {
     Assign(Token name, Expr value) {
@@ -189,9 +205,12 @@ abstract class Expr{
     }
     final Token name;
     final Expr value;
+    int kind;
+    int slot = -1;
   }
   static class Array extends Expr {
-    Array(List<Expr> elements) {
+    Array(Token bracket, List<Expr> elements) {
+      this.bracket = bracket;
       this.elements = elements;
     }
 
@@ -199,8 +218,21 @@ abstract class Expr{
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitArrayExpr(this);
     }
+    final Token bracket;
     final List<Expr> elements;
   }
+  static class Hoisted extends Expr {
+    Hoisted(Expr expression) {
+      this.expression = expression;
+    }
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+      return visitor.visitHoistedExpr(this);
+    }
+    final Expr expression;
+    int slot;
+  }
 
   abstract <R> R accept(Visitor<R> visitor);
 }
@@ -0,0 +1,82 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 전역 변수 슬롯 테이블.
+// Resolver가 전역 이름마다 번호를 한 번 정해 주면 실행 중에는 배열 인덱스로만 읽고 쓴다.
+// 이름 표(slots)는 번호를 발급할 때만 쓰고, 에러 메시지는 사용하는 곳의 토큰으로 만든다.
+//
+// 한 번 정의된 뒤 다시 대입/재정의되지 않은 전역은 "안정" 상태다. 호출 지점(Expr.Call)은 안정된 전역 함수를
+// 직접 잡아 두고 epoch가 그대로인 동안 변수 조회 없이 바로 호출한다. 안정 상태가 깨질 때마다 epoch가 올라가
+// 잡아 둔 호출 지점이 모두 무효가 된다. (예: REPL에서 나중에 같은 이름의 함수를 다시 정의할 때)
+class Globals {
+    // 번호는 있지만 아직 정의되지 않은 전역
+    private static final Object UNDEFINED = new Object();
+
+    private final Map<String,Integer> slots = new HashMap<>();
+    private Object[] values = new Object[16];
+    private boolean[] reassigned = new boolean[16];
+    private int count = 0;
+    int epoch = 0;
+
+    // 이름의 슬롯 번호. 처음 보는 이름이면 새 슬롯을 만든다. (Resolver에서 호출)
+    int slot(String name) {
+        Integer existing = slots.get(name);
+        if (existing != null) return existing;
+        if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+            reassigned = Arrays.copyOf(reassigned, count * 2);
+        }
+        values[count] = UNDEFINED;
+        slots.put(name, count);
+        return count++;
+    }
+    void define(int slot, Object value) {
+        if (values[slot] != UNDEFINED) markReassigned(slot); //같은 이름을 다시 선언
+        values[slot] = value;
+    }
+    Object get(int slot, Token name) {
+        Object value = values[slot];
+        if (value == UNDEFINED) {
+            throw new RuntimeError(name, "정의되지 않은 변수 '" + name.lexeme + "'입니다.");
+        }
+        return value;
+    }
+    void assign(int slot, Token name, Object value) {
+        if (values[slot] == UNDEFINED) {
+            throw new RuntimeError(name, "정의되지 않은 변수 '" + name.lexeme + "'입니다.");
+        }
+        if (!reassigned[slot]) markReassigned(slot);
+        values[slot] = value;
+    }
+    // 대입문이 있는 전역은 Resolver가 미리 표시해서, 처음부터 직접 바인딩 대상에서 뺀다.
+    void markReassigned(int slot) {
+        if (reassigned[slot]) return;
+        reassigned[slot] = true;
+        ++epoch;
+    }
+    boolean isDefined(int slot) {
+        return values[slot] != UNDEFINED;
+    }
+    boolean isStable(int slot) {
+        return !reassigned[slot] && values[slot] != UNDEFINED;
+    }
+    // 번호 순서의 전역 이름. jloxc가 컴파일한 프로그램은 실행할 때 이 순서로 slot()을 불러 같은 번호를 다시 만든다.
+    String[] names() {
+        String[] names = new String[count];
+        for (Map.Entry<String,Integer> entry : slots.entrySet()) names[entry.getValue()] = entry.getKey();
+        return names;
+    }
+    // 정의된 전역의 값 (힙 보고가 문자열을 찾는 뿌리로 쓴다)
+    List<Object> values() {
+        List<Object> defined = new ArrayList<>();
+        for (int i=0;i<count;++i) {
+            if (values[i] != UNDEFINED) defined.add(values[i]);
+        }
+        return defined;
+    }
+}
@@ -0,0 +1,239 @@
+package com.craftinginterpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// 힙 히스토그램 (--heap[=N], 또는 JVM 옵션 -Dlox.heap=true|N).
+// 메모리가 모자랄 때 어떤 Lox 객체가 힙을 차지하는지 보려고, 살아 있는 Lox 객체를 세어 보고한다.
+//   - 클래스별 인스턴스 수
+//   - 크기별 배열 수와 원소 수, 길이별 문자열 수와 길이 합
+//   - 함수 값(LoxFunction)과 그중 클로저 수, 클로저가 잡아 간 변수 칸(Cell) 수
+//   - N이 있으면 N번째 할당마다 할당한 곳(생성자를 부른 Expr.Call, 배열 리터럴 Expr.Array)의 줄을 적어 두고 지점별로 센다.
+// 인스턴스, 배열, 함수 값은 만들 때 약한 참조로 등록해 두고 보고할 때 GC를 한 번 돌린 뒤 남은 것만 센다. 문자열과 Cell은
+// 따로 등록하지 않고 전역, 살아 있는 인스턴스의 필드, 배열 원소, 클로저가 잡은 칸에서 닿는 것을 센다.
+// 보고는 Lox 네이티브 함수 heapReport()(힙보고()), 프로세스에 보내는 SIGUSR2(kill -USR2 <pid>),
+// JMX MBean(com.craftinginterpreters.lox:type=Heap)의 report 연산으로 표준 에러에 쓴다.
+// 시그널과 JMX로 받은 보고는 인터프리터가 도는 중에 다른 스레드에서 세므로 몇 개쯤 어긋날 수 있다.
+// TRACKING은 클래스를 처음 쓸 때 속성에서 한 번 읽는 상수라서 꺼져 있으면 등록 코드가 지워져 비용이 없다. (Stats와 같다)
+public final class Heap implements HeapMBean {
+    static final String PROPERTY = "lox.heap";
+    static final boolean TRACKING;
+    static final int SAMPLE; //할당 지점을 적는 간격 (0이면 적지 않는다)
+    static final boolean SITES;
+    static {
+        String value = System.getProperty(PROPERTY);
+        int sample = 0;
+        boolean tracking = value != null && !value.equals("false");
+        if (tracking && !value.equals("true") && !value.isEmpty()) {
+            try {
+                sample = Math.max(0, Integer.parseInt(value));
+            } catch (NumberFormatException e) {
+                System.err.println("-D" + PROPERTY + "는 true, false나 샘플 간격(정수)이어야 합니다: " + value);
+            }
+        }
+        TRACKING = tracking;
+        SAMPLE = sample;
+        SITES = sample > 0;
+    }
+
+    // 지금 만드는 인스턴스나 배열의 할당 지점 줄. 생성자 호출(Interpreter.callValue)과 배열 리터럴이 만들기 직전에 적고,
+    // 만들어진 객체가 가져간다. (SITES일 때만 쓴다)
+    static int site = 0;
+
+    // 등록한 객체. 수거되면 queue에 들어오고 다음 등록이나 보고 때 지운다.
+    private static final class Tracked extends WeakReference<Object> {
+        final int site; //샘플링한 할당 지점의 줄 (샘플이 아니면 0)
+
+        Tracked(Object object, int site) {
+            super(object, queue);
+            this.site = site;
+        }
+    }
+    private static final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private static final Set<Tracked> live = new HashSet<>();
+    private static long allocations = 0;
+
+    static {
+        if (TRACKING) {
+            handleSignal();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Heap(),
+                    new ObjectName("com.craftinginterpreters.lox:type=Heap"));
+            } catch (JMException e) {
+                System.err.println("힙 MBean 등록 오류: " + e.getMessage());
+            }
+        }
+    }
+
+    private Heap() {}
+
+    // SIGUSR2를 받으면 보고한다. sun.misc.Signal은 jdk.unsupported 모듈의 비표준 API라서 컴파일 경고가 나지 않도록
+    // 리플렉션으로 부른다. 그 클래스가 없거나 JVM이나 OS가 이미 SIGUSR2를 쓰면 알리기만 하고 JMX 연산으로 보고를 받는다.
+    private static void handleSignal() {
+        try {
+            Class<?> signal = Class.forName("sun.misc.Signal");
+            Class<?> handler = Class.forName("sun.misc.SignalHandler");
+            Object listener = Proxy.newProxyInstance(Heap.class.getClassLoader(), new Class<?>[] { handler },
+                (proxy, method, arguments) -> {
+                    switch (method.getName()) {
+                        case "handle": report(System.err); return null;
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "equals": return proxy == arguments[0];
+                        default: return "lox-heap-report";
+                    }
+                });
+            signal.getMethod("handle", signal, handler).invoke(null, signal.getConstructor(String.class).newInstance("USR2"), listener);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.err.println("SIGUSR2 힙 보고를 등록하지 못했습니다. JMX report 연산을 쓰세요: " + cause);
+        }
+    }
+
+    // JIT이 배열 리터럴 앞에서 부른다.
+    static void at(int line) {
+        site = line;
+    }
+    // 인스턴스와 배열을 만들 때 부른다. 적어 둔 할당 지점을 가져간다.
+    static void allocated(Object object) {
+        int line = site;
+        site = 0;
+        track(object, SITES && ++allocations % SAMPLE == 0 ? line : 0);
+    }
+    // 함수 값을 만들 때 부른다.
+    static void function(LoxFunction function) {
+        track(function, 0);
+    }
+    private static synchronized void track(Object object, int line) {
+        expunge();
+        live.add(new Tracked(object, line));
+    }
+    private static void expunge() {
+        for (Reference<?> gone; (gone = queue.poll()) != null;) live.remove(gone);
+    }
+
+    // JMX 연산 (HeapMBean). 프로세스의 표준 에러에 보고하고 JMX 클라이언트에도 같은 글을 돌려준다.
+    @Override
+    public String report() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        report(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        String text = bytes.toString(StandardCharsets.UTF_8);
+        System.err.print(text);
+        System.err.flush();
+        return text;
+    }
+    // 네이티브 함수 heapReport(), SIGUSR2, JMX 연산이 부른다.
+    static void report(PrintStream out) {
+        if (!TRACKING) {
+            out.println("[힙] --heap(또는 -D" + PROPERTY + "=true)으로 실행해야 힙 보고를 할 수 있습니다.");
+            return;
+        }
+        System.gc();
+        List<Object> objects = new ArrayList<>();
+        Map<Object,Integer> sites = new IdentityHashMap<>();
+        synchronized (Heap.class) {
+            expunge();
+            for (Tracked tracked : live) {
+                Object object = tracked.get();
+                if (object == null) continue;
+                objects.add(object);
+                if (tracked.site > 0) sites.put(object, tracked.site);
+            }
+        }
+
+        Map<String,Integer> classes = new HashMap<>();
+        long[] arrays = new long[BUCKETS.length], elements = new long[BUCKETS.length];
+        long[] strings = new long[BUCKETS.length], chars = new long[BUCKETS.length];
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>()); //센 문자열과 Cell
+        int functions = 0, closures = 0, cells = 0;
+        Map<String,Integer> siteCounts = new HashMap<>();
+        for (Object value : Lox.globals()) string(value, seen, strings, chars);
+        for (Object object : objects) {
+            try {
+                if (object instanceof LoxInstance) {
+                    LoxInstance instance = (LoxInstance)object;
+                    classes.merge(instance.className(), 1, Integer::sum);
+                    for (int i=0;i<instance.shape.size;++i) string(instance.values[i], seen, strings, chars);
+                    Integer line = sites.get(object);
+                    if (line != null) siteCounts.merge(instance.className() + " 인스턴스 [라인 " + line + "]", 1, Integer::sum);
+                } else if (object instanceof LoxArray) {
+                    LoxArray array = (LoxArray)object;
+                    int size = array.size(), bucket = bucket(size);
+                    ++arrays[bucket];
+                    elements[bucket] += size;
+                    if (!array.isNumeric()) {
+                        for (int i=0;i<size;++i) string(array.get(i), seen, strings, chars);
+                    }
+                    Integer line = sites.get(object);
+                    if (line != null) siteCounts.merge("배열 [라인 " + line + "]", 1, Integer::sum);
+                } else if (object instanceof LoxFunction) {
+                    ++functions;
+                    Cell[] upvalues = ((LoxFunction)object).upvalues();
+                    if (upvalues.length == 0) continue;
+                    ++closures;
+                    for (Cell cell : upvalues) {
+                        if (!seen.add(cell)) continue;
+                        ++cells;
+                        string(cell.value, seen, strings, chars);
+                    }
+                }
+            } catch (RuntimeException e) {
+                //시그널, JMX 보고는 인터프리터가 바꾸는 중인 배열을 읽을 수 있다. 그 객체는 건너뛴다.
+            }
+        }
+
+        out.println("[힙] 살아 있는 Lox 객체 (GC 뒤)");
+        out.println("  인스턴스 (클래스별 개수)");
+        List<Map.Entry<String,Integer>> rows = new ArrayList<>(classes.entrySet());
+        rows.sort((a, b) -> b.getValue() - a.getValue());
+        for (Map.Entry<String,Integer> row : rows) out.println(String.format("  %10d  %s", row.getValue(), row.getKey()));
+        out.println("  배열 (원소 수 구간별 개수, 원소 합)");
+        for (int i=0;i<BUCKETS.length;++i) {
+            if (arrays[i] > 0) out.println(String.format("  %10d %12d  %s", arrays[i], elements[i], BUCKETS[i]));
+        }
+        out.println("  문자열 (길이 구간별 개수, 길이 합)");
+        for (int i=0;i<BUCKETS.length;++i) {
+            if (strings[i] > 0) out.println(String.format("  %10d %12d  %s", strings[i], chars[i], BUCKETS[i]));
+        }
+        out.println(String.format("  함수 값 %d개, 그중 클로저 %d개 (잡은 변수 칸 %d개)", functions, closures, cells));
+        if (SITES) {
+            out.println("  할당 지점 (" + SAMPLE + "번째 할당마다 적은 것 중 살아 있는 것, 개수는 x" + SAMPLE + " 추정):");
+            List<Map.Entry<String,Integer>> top = new ArrayList<>(siteCounts.entrySet());
+            top.sort((a, b) -> b.getValue() - a.getValue());
+            for (Map.Entry<String,Integer> row : top) {
+                out.println(String.format("  %10d  %s", (long)row.getValue() * SAMPLE, row.getKey()));
+            }
+        }
+        out.flush();
+    }
+
+    // 크기 구간. 배열 원소 수와 문자열 길이에 같이 쓴다.
+    private static final String[] BUCKETS = {"0", "1-15", "16-255", "256-4095", "4096-65535", "65536+"};
+    private static int bucket(int size) {
+        if (size == 0) return 0;
+        int bucket = 1;
+        for (int limit = 16; size >= limit && bucket < BUCKETS.length - 1; limit <<= 4) ++bucket;
+        return bucket;
+    }
+    private static void string(Object value, Set<Object> seen, long[] strings, long[] chars) {
+        if (!(value instanceof String) || !seen.add(value)) return;
+        int length = ((String)value).length(), bucket = bucket(length);
+        ++strings[bucket];
+        chars[bucket] += length;
+    }
+}
@@ -0,0 +1,7 @@
+package com.craftinginterpreters.lox;
+
+// Heap을 JMX로 내보내는 표준 MBean 인터페이스. 도는 프로세스에 jconsole 같은 JMX 클라이언트로 붙어 report 연산을 부르면
+// 살아 있는 Lox 객체를 보고한다. (JMX가 인터페이스의 메서드로 연산을 찾으므로 public이어야 한다)
+public interface HeapMBean {
+    String report();
+}
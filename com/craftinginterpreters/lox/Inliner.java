@@ -0,0 +1,331 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 작은 함수 인라인 단계. (Lox.run에서 LoopOptimizer 다음, 마지막에 부른다. --no-optimize면 같이 꺼진다.)
+// 본문이 "return 식;" 한 줄뿐인 작은 함수(비교 함수, getter 같은 도우미)를 부르는 f(a, b) 호출 지점에 그 식의 복사본을 붙여 둔다.
+// 복사본에서 매개변수는 호출한 쪽 프레임의 새 슬롯(Call.inlineSlots)을 가리키므로, 실행할 때는 인자를 그 슬롯에 넣고
+// 식을 바로 평가한다. (프레임 만들기, executeBody, return 신호를 거치지 않는다)
+// --stats는 인라인된 호출도 센다. --profile이 켜져 있거나 JFR이 lox.Call을 기록 중이면 그 호출 지점은 식을 평가하는 동안
+// 함수를 프로파일러 섀도 스택에 넣고 lox.Call 이벤트를 남긴다. (LoxFunction.observeInlined)
+//
+// 함수 이름은 프로그램 전체에서 fun 선언이 하나뿐이어야 한다. 그래도 실행 중에 그 이름이 다른 값을 가리킬 수 있으므로
+// Interpreter는 호출 대상이 정말 그 선언으로 만든 함수일 때만 붙여 둔 식을 쓰고, 아니면 평소처럼 호출한다.
+// 복사본은 원래 토큰을 그대로 쓰므로 런타임 에러의 줄 번호는 원래 함수 본문의 줄을 가리킨다.
+//
+// 인라인하는 함수의 조건:
+// - 매개변수 개수가 인자 개수와 같고, 안쪽 함수가 잡아 가는(Cell) 매개변수가 없다.
+// - 식이 매개변수와 전역 변수만 읽고(업밸류는 호출한 쪽에서 뜻이 달라진다), 대입하지 않으며, 노드 수가 MAX_SIZE 이하다.
+// - 재귀가 아니다: 본문을 보고 있는 함수는 그 안에서 인라인하지 않는다. 인라인 안의 인라인은 MAX_DEPTH 단계까지만 한다.
+class Inliner implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private static final int MAX_SIZE = 16;
+    private static final int MAX_DEPTH = 3;
+
+    private final Map<String,Stmt.Function> functions = new HashMap<>(); //이름별 fun 선언 (같은 이름이 둘 이상이면 null)
+    private final Deque<Stmt.Function> inlining = new ArrayDeque<>();   //지금 본문을 보고 있는 함수들
+    private int depth = 0; //지금 보고 있는 식이 인라인 복사본 몇 단계 안인가
+    private int nextSlot;
+
+    // 맨 위 코드의 호출 지점을 인라인하고 늘어난 스크립트 프레임 크기를 돌려준다.
+    int inline(List<Stmt> statements, int frameSize) {
+        collect(statements);
+        nextSlot = frameSize;
+        walk(statements);
+        return nextSlot;
+    }
+
+    private void collect(List<Stmt> statements) {
+        for (Stmt statement : statements) collect(statement);
+    }
+    private void collect(Stmt stmt) {
+        if (stmt instanceof Stmt.Function) {
+            Stmt.Function function = (Stmt.Function)stmt;
+            String name = function.name.lexeme;
+            functions.put(name, functions.containsKey(name) ? null : function);
+            collect(function.body);
+        } else if (stmt instanceof Stmt.Class) {
+            for (Stmt.Function method : ((Stmt.Class)stmt).methods) collect(method.body);
+        } else if (stmt instanceof Stmt.Block) {
+            collect(((Stmt.Block)stmt).statements);
+        } else if (stmt instanceof Stmt.If) {
+            collect(((Stmt.If)stmt).thenBranch);
+            collect(((Stmt.If)stmt).elseBranch);
+        } else if (stmt instanceof Stmt.While) {
+            collect(((Stmt.While)stmt).body);
+        } else if (stmt instanceof Stmt.For) {
+            collect(((Stmt.For)stmt).body);
+        }
+    }
+
+    // 본문이 return 식; 하나이고, 그 식을 호출한 쪽에 옮겨 적을 수 있는가
+    private static boolean inlinable(Stmt.Function function) {
+        if (function.cellParams.length > 0 || function.body.size() != 1) return false;
+        if (!(function.body.get(0) instanceof Stmt.Return)) return false;
+        Expr value = ((Stmt.Return)function.body.get(0)).value;
+        return value != null && size(value, function.params.size()) <= MAX_SIZE;
+    }
+    // 식의 노드 수. 옮겨 적을 수 없는 노드가 있으면 MAX_SIZE보다 큰 값
+    private static int size(Expr expr, int params) {
+        if (expr instanceof Expr.Literal) return 1;
+        if (expr instanceof Expr.Variable) {
+            Expr.Variable variable = (Expr.Variable)expr;
+            //메서드가 아닌 함수의 LOCAL은 매개변수뿐이다. (본문에 선언이 없다)
+            boolean param = variable.kind == Resolver.LOCAL && variable.slot < params;
+            return param || variable.kind == Resolver.GLOBAL ? 1 : MAX_SIZE + 1;
+        }
+        if (expr instanceof Expr.Grouping) return 1 + size(((Expr.Grouping)expr).expression, params);
+        if (expr instanceof Expr.Unary) return 1 + size(((Expr.Unary)expr).right, params);
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr;
+            return 1 + size(binary.left, params) + size(binary.right, params);
+        }
+        if (expr instanceof Expr.Logical) {
+            Expr.Logical logical = (Expr.Logical)expr;
+            return 1 + size(logical.left, params) + size(logical.right, params);
+        }
+        if (expr instanceof Expr.Get) return 1 + size(((Expr.Get)expr).object, params);
+        if (expr instanceof Expr.IndexGet) {
+            Expr.IndexGet index = (Expr.IndexGet)expr;
+            return 1 + size(index.object, params) + size(index.index, params);
+        }
+        if (expr instanceof Expr.Call) {
+            Expr.Call call = (Expr.Call)expr;
+            int size = 1 + size(call.callee, params);
+            for (Expr argument : call.arguments) size += size(argument, params);
+            return size;
+        }
+        if (expr instanceof Expr.Array) {
+            int size = 1;
+            for (Expr element : ((Expr.Array)expr).elements) size += size(element, params);
+            return size;
+        }
+        return MAX_SIZE + 1;
+    }
+    // inlinable한 식을 복사한다. 매개변수 i는 slots[i]를 가리키고, 캐시와 호출 지점 정보는 새로 시작한다.
+    private static Expr copy(Expr expr, int[] slots) {
+        if (expr instanceof Expr.Literal) return expr; //상태가 없어서 같이 써도 된다
+        if (expr instanceof Expr.Variable) {
+            Expr.Variable variable = (Expr.Variable)expr;
+            Expr.Variable result = new Expr.Variable(variable.name);
+            result.kind = variable.kind;
+            result.slot = variable.kind == Resolver.LOCAL ? slots[variable.slot] : variable.slot;
+            return result;
+        }
+        if (expr instanceof Expr.Grouping) return new Expr.Grouping(copy(((Expr.Grouping)expr).expression, slots));
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary)expr;
+            return new Expr.Unary(unary.operator, copy(unary.right, slots));
+        }
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr;
+            Expr.Binary result = new Expr.Binary(copy(binary.left, slots), binary.operator, copy(binary.right, slots));
+            result.numeric = binary.numeric;
+            return result;
+        }
+        if (expr instanceof Expr.Logical) {
+            Expr.Logical logical = (Expr.Logical)expr;
+            return new Expr.Logical(copy(logical.left, slots), logical.operator, copy(logical.right, slots));
+        }
+        if (expr instanceof Expr.Get) {
+            Expr.Get get = (Expr.Get)expr;
+            return new Expr.Get(copy(get.object, slots), get.name);
+        }
+        if (expr instanceof Expr.IndexGet) {
+            Expr.IndexGet index = (Expr.IndexGet)expr;
+            return new Expr.IndexGet(copy(index.object, slots), copy(index.index, slots));
+        }
+        if (expr instanceof Expr.Call) {
+            Expr.Call call = (Expr.Call)expr;
+            return new Expr.Call(copy(call.callee, slots), call.paren, copyAll(call.arguments, slots));
+        }
+        Expr.Array array = (Expr.Array)expr;
+        return new Expr.Array(array.bracket, copyAll(array.elements, slots));
+    }
+    private static List<Expr> copyAll(List<Expr> exprs, int[] slots) {
+        List<Expr> result = new ArrayList<>();
+        for (Expr expr : exprs) result.add(copy(expr, slots));
+        return result;
+    }
+
+    private void walk(List<Stmt> statements) {
+        for (Stmt statement : statements) walk(statement);
+    }
+    private void walk(Stmt stmt) {
+        if (stmt != null) stmt.accept(this);
+    }
+    private void walk(Expr expr) {
+        if (expr != null) expr.accept(this);
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        walk(expr.callee);
+        for (Expr argument : expr.arguments) walk(argument);
+        if (!(expr.callee instanceof Expr.Variable) || depth >= MAX_DEPTH) return null;
+        Stmt.Function function = functions.get(((Expr.Variable)expr.callee).name.lexeme);
+        if (function == null || inlining.contains(function)) return null;
+        if (function.params.size() != expr.arguments.size() || !inlinable(function)) return null;
+        int[] slots = new int[function.params.size()];
+        for (int i=0;i<slots.length;++i) slots[i] = nextSlot++;
+        Expr body = copy(((Stmt.Return)function.body.get(0)).value, slots);
+        //복사본 안의 호출도 한 단계 더 깊게 인라인한다.
+        inlining.push(function);
+        ++depth;
+        walk(body);
+        --depth;
+        inlining.pop();
+        expr.inlined = function;
+        expr.inlineBody = body;
+        expr.inlineSlots = slots;
+        return null;
+    }
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        //함수마다 프레임이 따로 있으므로 슬롯을 새로 잡는다.
+        int enclosingSlot = nextSlot;
+        nextSlot = stmt.slots;
+        inlining.push(stmt);
+        walk(stmt.body);
+        inlining.pop();
+        stmt.slots = nextSlot;
+        nextSlot = enclosingSlot;
+        return null;
+    }
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        for (Stmt.Function method : stmt.methods) visitFunctionStmt(method);
+        return null;
+    }
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        walk(stmt.statements);
+        return null;
+    }
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        walk(stmt.expression);
+        return null;
+    }
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        walk(stmt.initializer);
+        walk(stmt.condition);
+        walk(stmt.increment);
+        walk(stmt.body);
+        return null;
+    }
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        walk(stmt.condition);
+        walk(stmt.thenBranch);
+        walk(stmt.elseBranch);
+        return null;
+    }
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        walk(stmt.expression);
+        return null;
+    }
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        walk(stmt.value);
+        return null;
+    }
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        walk(stmt.initializer);
+        return null;
+    }
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        walk(stmt.condition);
+        walk(stmt.body);
+        return null;
+    }
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        return null;
+    }
+    @Override
+    public Void visitContinueStmt(Stmt.Continue stmt) {
+        return null;
+    }
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        walk(expr.left);
+        walk(expr.right);
+        return null;
+    }
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        walk(expr.object);
+        return null;
+    }
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        walk(expr.object);
+        walk(expr.value);
+        return null;
+    }
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        return null;
+    }
+    @Override
+    public Void visitIndexGetExpr(Expr.IndexGet expr) {
+        walk(expr.object);
+        walk(expr.index);
+        return null;
+    }
+    @Override
+    public Void visitIndexSetExpr(Expr.IndexSet expr) {
+        walk(expr.object);
+        walk(expr.index);
+        walk(expr.value);
+        return null;
+    }
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        walk(expr.expression);
+        return null;
+    }
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        return null;
+    }
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        walk(expr.left);
+        walk(expr.right);
+        return null;
+    }
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        walk(expr.right);
+        return null;
+    }
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        return null;
+    }
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        walk(expr.value);
+        return null;
+    }
+    @Override
+    public Void visitArrayExpr(Expr.Array expr) {
+        for (Expr element : expr.elements) walk(element);
+        return null;
+    }
+    @Override
+    public Void visitHoistedExpr(Expr.Hoisted expr) {
+        walk(expr.expression);
+        return null;
+    }
+}
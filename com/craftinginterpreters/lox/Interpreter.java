@@ -10,100 +10,46 @@ import java.util.HashMap;
 import java.io.BufferedWriter;
 import java.io.OutputStreamWriter;
 import java.io.IOException;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.StringTokenizer;
 
 //추상 구문 트리에서 표현식 Stmt,Expr을 받아서 해당 표현식의 타입에 맞는 비지터 메서드를 호출함.
-class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void> {
-    public static final BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(System.out));
-    // 전역 환경(네이티브 함수 등)을 저장
-    final Environment globals = new Environment(); //네이티브 함수 정의를 위해 열어둠.
-    // 현재 환경(스코프)
-    private Environment environment = globals;
+class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Interpreter.Completion> {
+    // print의 출력 버퍼. JFR 이벤트를 쓰면 버퍼를 비울 때마다 이벤트를 남기도록 Events.RecordingWriter 위에 둔다.
+    // 출력 처리량 벤치마크는 버리는 Writer로 바꿔 끼운다. (benchmarks/PrintBenchmark)
+    public static BufferedWriter bw = new BufferedWriter(Events.ENABLED
+        ? new Events.RecordingWriter(new OutputStreamWriter(System.out)) : new OutputStreamWriter(System.out));
+    // 전역 변수(네이티브 함수 등)를 Resolver가 정한 슬롯 번호로 저장
+    final Globals globals = new Globals(); //네이티브 함수 정의와 Resolver를 위해 열어둠.
+    // 현재 실행 중인 함수 호출(또는 맨 위 코드)의 지역 변수 프레임. Resolver가 정한 슬롯으로 읽는다.
+    private Object[] frame = new Object[0];
+    // 문장 실행 결과. 보통은 null(다음 문장으로)이고, break/continue/return 을 만나면 이 신호를 돌려주며
+    // 감싸고 있는 블록/반복문/함수 호출까지 그대로 전달된다. 예외를 던지지 않으므로 재귀가 깊어져도 비용이 같다.
+    enum Completion { BREAK, CONTINUE, RETURN }
+    // RETURN 신호와 함께 전달되는 반환값
+    private Object returnValue = null;
+    // 현재 실행 중인 함수가 잡아 온 바깥 변수들
+    private Cell[] upvalues = NO_UPVALUES;
+    private static final Cell[] NO_UPVALUES = new Cell[0];
+    // 현재 실행 중인 함수의 JIT 카운터. 반복문이 back-edge마다 hotness를 올린다. (맨 위 코드는 null이고, 반복문마다 센다)
+    private Jit jit = null;
+    // 숫자 배열 원소를 피연산자로 읽었다는 표시. 값은 박싱하지 않고 indexedDouble에 둔다.
+    private static final Object INDEXED_DOUBLE = new Object();
+    private double indexedDouble;
+    // 반복문 불변식(Expr.Hoisted) 슬롯의 "아직 계산 안 함" 표시
+    private static final Object NOT_HOISTED = new Object();
+    // 자기 특수화 노드 모드(--engine=node). +와 호출을 노드(BinaryNode/CallNode)에 맡겨 처음 본 타입으로 특수화한다.
+    boolean specializing = false;
     //scanNum,scanString 때문에 그럼.
     Scanner sin = new Scanner(System.in);
-    //리졸브 위한 변수
-    private final Map<Expr,Integer> locals = new HashMap<>();
-    // 빠른 입력용 버퍼 및 토크나이저
-    private static final BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
-    private static StringTokenizer st = null;
-
-    // 빠른 문자열 입력
-    private static String fastReadString() {
-        while (st == null || !st.hasMoreTokens()) {
-            try {
-                String line = br.readLine();
-                if (line == null) return null;
-                st = new StringTokenizer(line);
-            } catch (IOException e) {
-                throw new RuntimeException("입력 오류: " + e.getMessage());
-            }
-        }
-        return st.nextToken();
-    }
-
-    // 빠른 숫자 입력
-    private static double fastReadDouble() {
-        return Double.parseDouble(fastReadString());
-    }
-    // 인터프리터 생성자, 전역에 clock 네이티브 함수 등록
+    // 인터프리터 생성자, 전역에 clock 등 네이티브 함수 등록
     Interpreter() {
-        globals.define("clock",new LoxCallable() {
-            @Override
-            public int arity() { return 0; }
-
-            @Override
-            public Object call(Interpreter interpreter,List<Object> arguments) {
-                return (double)System.currentTimeMillis() / 1000.0;
-            }
-
-            @Override
-            public String toString() { return "<native fn>"; }
-        });
-        globals.define("scanText", new LoxCallable() {
-            @Override
-            public int arity() { return 0; }
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return fastReadString();
-            }
-            @Override
-            public String toString() { return "<native fn>"; }
-        });
-        globals.define("scanNum", new LoxCallable() {
-            @Override
-            public int arity() { return 0; }
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return fastReadDouble();
-            }
-            @Override
-            public String toString() { return "<native fn>"; }
-        });
-        globals.define("문자열입력", new LoxCallable() {
-            @Override
-            public int arity() { return 0; }
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return fastReadString();
-            }
-            @Override
-            public String toString() { return "<native fn>"; }
-        });
-        globals.define("숫자입력", new LoxCallable() {
-            @Override
-            public int arity() { return 0; }
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return fastReadDouble();
-            }
-            @Override
-            public String toString() { return "<native fn>"; }
-        });
+        for (Map.Entry<String,LoxCallable> entry : Natives.all().entrySet()) {
+            globals.define(globals.slot(entry.getKey()), entry.getValue());
+        }
     }
-    // 프로그램(문장 리스트) 실행
-    void interpret(List<Stmt> statements) {
+    // 프로그램(문장 리스트) 실행. frameSize는 맨 위 코드의 블록 안 지역 변수 수 (Resolver.scriptSlots)
+    void interpret(List<Stmt> statements, int frameSize) {
+        frame = new Object[frameSize];
+        upvalues = NO_UPVALUES;
         try {
             for (Stmt statement : statements) {
                 execute(statement);
@@ -113,44 +59,77 @@ class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void> {
         }
     }
     // 단일 문장 실행
-    private void execute(Stmt stmt) {
-        stmt.accept(this);
+    private Completion execute(Stmt stmt) {
+        Profiler profiler = Profiler.active;
+        if (profiler != null) profiler.statement(stmt); //--profile: 지금 프레임의 지금 줄
+        return stmt.accept(this);
+    }
+    // 선언문의 이름 자리를 만든다. 클로저가 잡아 가는 지역 변수(CELL)는 선언을 실행할 때마다 새 Cell을 만든다.
+    // 값보다 먼저 만들어 두어야 자기 자신을 부르는 지역 함수, 자기 클래스를 쓰는 메서드가 그 Cell을 잡을 수 있다.
+    private void declare(int kind, int slot) {
+        if (kind == Resolver.CELL) frame[slot] = new Cell(null);
+    }
+    // 선언문의 이름에 값을 넣는다. 맨 위 코드에서 선언한 이름(GLOBAL)은 전역 슬롯이다.
+    private void define(int kind, int slot, Object value) {
+        switch (kind) {
+            case Resolver.GLOBAL: globals.define(slot, value); break;
+            case Resolver.CELL: ((Cell)frame[slot]).value = value; break;
+            default: frame[slot] = value; break;
+        }
     }
-    void resolve(Expr expr, int depth) {
-        locals.put(expr,depth);
+    // 함수 선언을 실행할 때 Resolver가 정한 바깥 변수(Cell)들을 잡는다.
+    private Cell[] captureUpvalues(int[] sources) {
+        if (sources.length == 0) return NO_UPVALUES;
+        Cell[] captured = new Cell[sources.length];
+        for (int i=0;i<sources.length;++i) {
+            int source = sources[i];
+            captured[i] = source >= 0 ? (Cell)frame[source] : upvalues[~source];
+        }
+        return captured;
     }
     @Override
-    public Void visitClassStmt(Stmt.Class stmt) {
-        environment.define(stmt.name.lexeme, null);
+    public Completion visitClassStmt(Stmt.Class stmt) {
+        declare(stmt.kind, stmt.slot);
         Map<String,LoxFunction> methods = new HashMap<>();
         for (Stmt.Function method : stmt.methods) {
-            LoxFunction function = new LoxFunction(method, environment,method.name.lexeme.equals("init"));
+            LoxFunction function = new LoxFunction(method, captureUpvalues(method.upvalues),method.name.lexeme.equals("init"));
             methods.put(method.name.lexeme, function);
         }
         LoxClass klass = new LoxClass(stmt.name.lexeme,methods);
-        environment.assign(stmt.name, klass); //맵에 클래스 이름 : LoxClass() 객체 하나 넣기
+        define(stmt.kind, stmt.slot, klass); //클래스 이름 : LoxClass() 객체 하나 넣기
         return null;
     }
-    // 블록({ ... }) 문장 실행 (새 환경 생성)
+    // 블록({ ... }) 문장 실행
     @Override
-    public Void visitBlockStmt(Stmt.Block stmt) {
-        // 블록({ ... }) 내부의 문장들을 새로운 환경(Environment)에서 실행한다.
-        // 블록이 끝나면 이전 환경으로 되돌린다.
-        executeBlock(stmt.statements, new Environment(environment));
+    public Completion visitBlockStmt(Stmt.Block stmt) {
+        // 블록의 지역 변수는 현재 프레임의 슬롯을 쓰므로 블록에 들어갈 때 따로 만드는 것이 없다.
+        for (Stmt statement : stmt.statements) {
+            Completion completion = execute(statement);
+            if (completion != null) return completion; //break/continue/return은 바깥으로 전달
+        }
         return null;
     }
-    // 블록 내부 문장들을 주어진 환경에서 실행
-    void executeBlock(List<Stmt> statements,Environment environment) {
-        // 주어진 statements(문장 리스트)를 전달받은 environment(환경)에서 실행한다.
-        // 블록 실행 전 현재 환경을 저장하고, 블록 실행 후 원래 환경으로 복구한다.
-        Environment previous = this.environment;
+    // 함수 본문을 주어진 프레임과 업밸류로 실행하고 반환값을 돌려준다. 끝나면 호출한 쪽의 프레임으로 되돌린다.
+    Object executeBody(List<Stmt> statements,Object[] frame,Cell[] upvalues,Jit jit) {
+        Object[] previousFrame = this.frame;
+        Cell[] previousUpvalues = this.upvalues;
+        Jit previousJit = this.jit;
         try {
-            this.environment = environment; //현재 환경 저장
+            this.frame = frame;
+            this.upvalues = upvalues;
+            this.jit = jit;
             for (Stmt statement : statements) { //실행
-                execute(statement);
+                if (execute(statement) == Completion.RETURN) {
+                    Object value = returnValue;
+                    returnValue = null;
+                    return value;
+                }
             }
+            return null;
         } finally {
-            this.environment = previous; //원래 환경으로 복구
+            this.frame = previousFrame; //원래 프레임으로 복구
+            this.upvalues = previousUpvalues;
+            this.jit = previousJit;
         }
     }
     // 리터럴(숫자, 문자열, true, false, nil) 평가
@@ -180,56 +159,61 @@ class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void> {
     }
     // 표현식 문장 실행
     @Override
-    public Void visitExpressionStmt(Stmt.Expression stmt) {
+    public Completion visitExpressionStmt(Stmt.Expression stmt) {
         evaluate(stmt.expression); //표현식
         return null;
     }
-    // 함수 선언 실행 (환경에 함수 등록)
+    // 함수 선언 실행 (함수 이름에 LoxFunction 등록)
     @Override
-    public Void visitFunctionStmt(Stmt.Function stmt) {
-        LoxFunction function = new LoxFunction(stmt,environment,false);
-        environment.define(stmt.name.lexeme, function);
+    public Completion visitFunctionStmt(Stmt.Function stmt) {
+        declare(stmt.kind, stmt.slot);
+        LoxFunction function = new LoxFunction(stmt,captureUpvalues(stmt.upvalues),false);
+        define(stmt.kind, stmt.slot, function);
         return null;
     }
     // if문 실행
     @Override
-    public Void visitIfStmt(Stmt.If stmt) {
-        if (isTruthy(evaluate(stmt.condition))) {
-            execute(stmt.thenBranch);
+    public Completion visitIfStmt(Stmt.If stmt) {
+        if (evaluateBoolean(stmt.condition)) {
+            return execute(stmt.thenBranch);
         }
         else if (stmt.elseBranch!=null) {
-            execute(stmt.elseBranch);
+            return execute(stmt.elseBranch);
         }
         return null;
     }
     // print문 실행
     @Override
-    public Void visitPrintStmt(Stmt.Print stmt) {
-        Object value = evaluate(stmt.expression);
+    public Completion visitPrintStmt(Stmt.Print stmt) {
+        print(evaluate(stmt.expression));
+        return null;
+    }
+    // 값을 문자열로 바꿔 출력 버퍼에 쓴다. (VM의 PRINT 명령도 이 메서드를 쓴다.)
+    static void print(Object value) {
         try {
-            bw.write(stringify(value));
+            String text = stringify(value);
+            if (Stats.ENABLED) Stats.output(text);
+            bw.write(text);
         } catch (IOException e) {
             throw new RuntimeException("출력 오류: " + e.getMessage());
         }
-        return null;
     }
-    // return문 실행 (Return 예외 발생)
+    // return문 실행 (반환값을 남기고 RETURN 신호를 돌려줌)
     @Override
-    public Void visitReturnStmt(Stmt.Return stmt) {
+    public Completion visitReturnStmt(Stmt.Return stmt) {
         Object value = null;
         if (stmt.value != null) value = evaluate(stmt.value);
-        throw new Return(value);
+        returnValue = value;
+        return Completion.RETURN;
     }
     // 단항 연산자 평가 (!, -)
     @Override
     public Object visitUnaryExpr(Expr.Unary expr) {
-        Object right = evaluate(expr.right);
         switch(expr.operator.type) {
             case BANG:
-                return !isTruthy(right);
+                return !evaluateBoolean(expr.right);
             case MINUS:
-                checkNumberOperand(expr.operator,right); //에러 체크
-                return -(double)right;
+                return box(evaluateDouble(expr));
         }
         return null; //실행되지 않는 코드
     }
@@ -238,25 +222,20 @@ class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void> {
         if (operand instanceof Double) return;
         throw new RuntimeError(operator,"피연산자는 숫자여야 합니다.");
     }
-    //이항 연산자 에러 체크
-    private void checkNumberOperand(Token operator,Object left,Object right) {
-        if (left instanceof Double && right instanceof Double) return;
-        throw new RuntimeError(operator, "모든 피연산자는 숫자여야 합니다.");
-    }
     // 참/거짓 판별
-    private boolean isTruthy(Object object) {
+    static boolean isTruthy(Object object) {
         if (object==null) return false;
         if (object instanceof Boolean) return (boolean) object;
         return true;
     }
     // 동등성 비교
-    private boolean isEqual(Object a,Object b) {
+    static boolean isEqual(Object a,Object b) {
         if (a==null && b==null) return true;
         if (a==null) return false;
         return a.equals(b);
     }
     // 값 문자열화
-    private String stringify(Object object) {
+    static String stringify(Object object) {
         if (object==null) return "nil";
         if (object instanceof Double) { //소수값이면 소수점 없앰.
             String text = object.toString();
@@ -268,71 +247,231 @@ class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void> {
         return object.toString();
     }
     // 이항 연산자 평가 (+, -, *, /, 비교, ==, !=)
+    // 숫자 연산과 비교는 binaryDouble에서 박싱 없이 계산하고, 결과만 box/Boolean 상수로 돌려준다.
     @Override
     public Object visitBinaryExpr(Expr.Binary expr) {
-        Object left = evaluate(expr.left);
-        Object right = evaluate(expr.right);
         switch(expr.operator.type) {
             case GREATER:
-                checkNumberOperand(expr.operator,left,right);
-                return (double)left > (double)right;
             case GREATER_EQUAL:
-                checkNumberOperand(expr.operator,left,right);
-                return (double)left >= (double)right;
             case LESS:
-                checkNumberOperand(expr.operator,left,right);
-                return (double)left < (double)right;
             case LESS_EQUAL:
-                checkNumberOperand(expr.operator,left,right);
-                return (double)left <= (double)right;
+                return binaryDouble(expr) != 0; //Boolean.TRUE/FALSE 로 박싱되므로 할당 없음
+            case MINUS:
+            case SLASH:
+            case STAR:
+            case MOD:
+                return box(binaryDouble(expr));
+            case PLUS:
+                if (expr.numeric) return box(binaryDouble(expr));
+                break;
+            default:
+                break;
+        }
+        Object left = evaluate(expr.left);
+        Object right = evaluate(expr.right);
+        switch(expr.operator.type) {
             case BANG_EQUAL:
                 return !isEqual(left,right);
             case EQUAL_EQUAL:
                 return isEqual(left,right);
-
-            case MINUS:
-                return (double)left - (double)right;       
             case PLUS:
-                if (left instanceof Double && right instanceof Double) {
-                    return (double)left + (double)right;
-                }
-                if (left instanceof String && right instanceof String) {
-                    return (String)left + (String)right;
-                }
-                //문자열과 숫자 연산 시 문자열로 바꿔서 계산한다.
-                if (left instanceof Double && right instanceof String) {
-                    return String.valueOf(left) + (String)right;
-                }
-                if (left instanceof String && right instanceof Double) {
-                    return (String)left + String.valueOf(right);
-                }
-                throw new RuntimeError(expr.operator, "피연산자는 두 숫자 또는 두 문자열이어야 합니다.");
+                if (specializing) return expr.node.execute(expr, left, right);
+                return add(expr.operator, left, right);
+        }
+        return null; //실행되지 않는 코드
+    }
+    // + 연산의 모든 경우 (숫자 덧셈, 문자열 잇기, 숫자와 문자열)
+    static Object add(Token operator, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) {
+            return box((double)left + (double)right);
+        }
+        if (left instanceof String && right instanceof String) {
+            return (String)left + (String)right;
+        }
+        //문자열과 숫자 연산 시 문자열로 바꿔서 계산한다.
+        if (left instanceof Double && right instanceof String) {
+            return String.valueOf(left) + (String)right;
+        }
+        if (left instanceof String && right instanceof Double) {
+            return (String)left + String.valueOf(right);
+        }
+        throw new RuntimeError(operator, "피연산자는 두 숫자 또는 두 문자열이어야 합니다.");
+    }
+    // 숫자 결과가 보장된 식(Resolver.isNumeric)을 박싱 없이 평가한다.
+    private double evaluateDouble(Expr expr) {
+        if (expr instanceof Expr.Binary) return binaryDouble((Expr.Binary)expr);
+        if (expr instanceof Expr.Literal) return (double)((Expr.Literal)expr).value;
+        if (expr instanceof Expr.Grouping) return evaluateDouble(((Expr.Grouping)expr).expression);
+        Expr.Unary unary = (Expr.Unary)expr; //단항 -
+        if (Resolver.isNumeric(unary.right)) return -evaluateDouble(unary.right);
+        Object right = evaluate(unary.right);
+        checkNumberOperand(unary.operator,right); //에러 체크
+        return -(double)right;
+    }
+    // 조건식을 참/거짓으로 평가한다. 비교/논리/! 는 Boolean 객체를 거치지 않는다.
+    private boolean evaluateBoolean(Expr expr) {
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr;
+            switch (binary.operator.type) {
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL:
+                    return binaryDouble(binary) != 0;
+                default:
+                    break;
+            }
+        } else if (expr instanceof Expr.Logical) {
+            //값 대신 참/거짓만 필요하므로 고른 쪽의 참/거짓이 곧 결과다.
+            Expr.Logical logical = (Expr.Logical)expr;
+            if (logical.operator.type == OR) {
+                return evaluateBoolean(logical.left) || evaluateBoolean(logical.right);
+            }
+            return evaluateBoolean(logical.left) && evaluateBoolean(logical.right);
+        } else if (expr instanceof Expr.Unary && ((Expr.Unary)expr).operator.type == BANG) {
+            return !evaluateBoolean(((Expr.Unary)expr).right);
+        } else if (expr instanceof Expr.Grouping) {
+            return evaluateBoolean(((Expr.Grouping)expr).expression);
+        }
+        return isTruthy(evaluate(expr));
+    }
+    // 숫자 연산의 피연산자를 평가한다. 숫자 배열의 원소(a[i])는 박싱하지 않고 INDEXED_DOUBLE을 돌려준다.
+    private Object evaluateOperand(Expr expr) {
+        if (!(expr instanceof Expr.IndexGet)) return evaluate(expr);
+        Expr.IndexGet indexGet = (Expr.IndexGet)expr;
+        Object object = evaluate(indexGet.object);
+        Object index = evaluate(indexGet.index);
+        if (object instanceof LoxArray && index instanceof Double) {
+            LoxArray array = (LoxArray)object;
+            int idx = (int)(double)index;
+            if (array.isNumeric() && idx >= 0 && idx < array.size()) {
+                indexedDouble = array.getDouble(idx);
+                return INDEXED_DOUBLE;
+            }
+        }
+        return indexGet(object, index);
+    }
+    // 숫자 이항 연산(- * / % 숫자끼리의 +)과 비교(> >= < <=)를 double로 계산한다. 비교는 참이면 1, 거짓이면 0.
+    // 피연산자가 산술식이면 evaluateDouble로 바로 계산하고, 아니면 값을 읽어 숫자인지 확인한다.
+    // 왼쪽, 오른쪽을 모두 평가한 뒤에 타입을 검사하는 순서는 원래와 같다.
+    private double binaryDouble(Expr.Binary expr) {
+        double left = 0, right = 0;
+        Object leftValue = null, rightValue = null;
+        boolean leftNumeric = Resolver.isNumeric(expr.left);
+        boolean rightNumeric = Resolver.isNumeric(expr.right);
+        if (leftNumeric) {
+            left = evaluateDouble(expr.left);
+        } else {
+            leftValue = evaluateOperand(expr.left);
+            if (leftValue == INDEXED_DOUBLE) {
+                left = indexedDouble;
+                leftNumeric = true;
+            }
+        }
+        if (rightNumeric) {
+            right = evaluateDouble(expr.right);
+        } else {
+            rightValue = evaluateOperand(expr.right);
+            if (rightValue == INDEXED_DOUBLE) {
+                right = indexedDouble;
+                rightNumeric = true;
+            }
+        }
+        if (!leftNumeric) {
+            if (!(leftValue instanceof Double)) throw new RuntimeError(expr.operator, "모든 피연산자는 숫자여야 합니다.");
+            left = (double)leftValue;
+        }
+        if (!rightNumeric) {
+            if (!(rightValue instanceof Double)) throw new RuntimeError(expr.operator, "모든 피연산자는 숫자여야 합니다.");
+            right = (double)rightValue;
+        }
+        switch(expr.operator.type) {
+            case GREATER: return left > right ? 1 : 0;
+            case GREATER_EQUAL: return left >= right ? 1 : 0;
+            case LESS: return left < right ? 1 : 0;
+            case LESS_EQUAL: return left <= right ? 1 : 0;
+            case MINUS: return left - right;
+            case PLUS: return left + right;
+            case STAR: return left * right;
             case SLASH:
-                checkNumberOperand(expr.operator,left,right);
-                if ((double)right == 0) { //0으로 나누면 에러
+                if (right == 0) { //0으로 나누면 에러
                     throw new RuntimeError(expr.operator, "0으로 나눌 수 없습니다.");
                 }
-                return (double)left / (double)right;  
-            case STAR:
-                checkNumberOperand(expr.operator,left,right);
-                return (double)left * (double)right;
+                return left / right;
             case MOD:
-                checkNumberOperand(expr.operator,left,right);
-                if ((double)right == 0) {
+                if (right == 0) {
                     throw new RuntimeError(expr.operator, "0으로 나눌 수 없습니다.");
                 }
-                return (double)left % (double)right;
+                return left % right;
         }
-        return null; //실행되지 않는 코드
+        return 0; //실행되지 않는 코드
+    }
+    // 작은 정수 값 Double 캐시 (-128 ~ 16383). 반복문 카운터/인덱스 같은 값은 매번 새로 박싱하지 않는다.
+    private static final int BOX_MIN = -128, BOX_MAX = 16383;
+    private static final Double[] SMALL_DOUBLES = new Double[BOX_MAX - BOX_MIN + 1];
+    // double 값을 Lox 값으로 박싱한다. 작은 정수는 캐시된 객체를 재사용한다. (-0.0은 0.0과 구별해야 하므로 제외)
+    static Double box(double value) {
+        int i = (int)value;
+        if (i == value && i >= BOX_MIN && i <= BOX_MAX && (i != 0 || Double.doubleToRawLongBits(value) == 0)) {
+            Double cached = SMALL_DOUBLES[i - BOX_MIN];
+            if (cached == null) {
+                cached = value;
+                SMALL_DOUBLES[i - BOX_MIN] = cached;
+            }
+            return cached;
+        }
+        return value;
     }
     // 함수 호출 평가
     @Override
     public Object visitCallExpr(Expr.Call expr) {
-        Object callee = evaluate(expr.callee);
+        Object callee;
+        if (expr.directEpoch == globals.epoch) {
+            callee = expr.direct; //직접 바인딩된 전역 함수: 변수 조회 생략
+        } else if (expr.callee instanceof Expr.Get) {
+            //obj.method(...): 메서드면 묶은 메서드를 만들지 않고 인스턴스를 바로 넘겨 호출한다.
+            Expr.Get get = (Expr.Get)expr.callee;
+            Object object = evaluate(get.object);
+            if (object instanceof LoxInstance) {
+                LoxInstance instance = (LoxInstance)object;
+                LoxFunction method = instance.findMethod(get.name, get.cache);
+                if (method != null) return invoke(expr, instance, method);
+                callee = instance.get(get.name, get.cache);
+            } else {
+                callee = getProperty(get, object);
+            }
+        } else {
+            callee = evaluate(expr.callee);
+            bindDirect(expr, callee);
+        }
+        if (expr.inlined != null && callee instanceof LoxFunction && ((LoxFunction)callee).isDeclaredBy(expr.inlined)) {
+            //Inliner가 함수 본문 식을 붙여 둔 호출: 인자를 이 프레임의 슬롯에 넣고 식을 바로 평가한다.
+            if (Stats.ENABLED) Stats.inlinedCall();
+            for (int i=0;i<expr.inlineSlots.length;++i) {
+                frame[expr.inlineSlots[i]] = evaluate(expr.arguments.get(i));
+            }
+            if (LoxFunction.observingCalls()) return LoxFunction.observeInlined(expr.inlined, () -> evaluate(expr.inlineBody));
+            return evaluate(expr.inlineBody);
+        }
+        List<Object> arguments = new ArrayList<>();
+        for (Expr argument : expr.arguments) {
+            arguments.add(evaluate(argument));
+        }
+        if (specializing) return expr.node.execute(this, expr, callee, arguments);
+        return callValue(expr, callee, arguments);
+    }
+    private Object invoke(Expr.Call expr, LoxInstance receiver, LoxFunction method) {
         List<Object> arguments = new ArrayList<>();
         for (Expr argument : expr.arguments) {
             arguments.add(evaluate(argument));
         }
+        if (arguments.size() != method.arity()) {
+            throw new RuntimeError(expr.paren, "" + method.arity() + "개의 인자를 기대했지만, 실제로는 " + arguments.size() + "개를 받았습니다.");
+        }
+        return method.invoke(this, receiver, arguments);
+    }
+    // 호출 대상의 종류와 인자 개수를 확인하고 호출한다.
+    Object callValue(Expr.Call expr, Object callee, List<Object> arguments) {
         // 배열 내장 메서드 호출 처리
         if (callee instanceof ArrayMethodWrapper) {
             ArrayMethodWrapper wrapper = (ArrayMethodWrapper)callee;
@@ -349,33 +488,51 @@ class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void> {
         if (arguments.size() != function.arity()) {
             throw new RuntimeError(expr.paren, "" + function.arity() + "개의 인자를 기대했지만, 실제로는 " + arguments.size() + "개를 받았습니다.");
         }
+        if (Heap.SITES && callee instanceof LoxClass) Heap.site = expr.paren.line; //힙 보고의 할당 지점
         return function.call(this,arguments);
     }
+    // 한 번도 다시 대입되지 않은 전역 함수를 부르는 호출 지점이면 함수를 호출 지점에 잡아 둔다.
+    // 그 전역이 나중에 바뀌면 globals.epoch가 올라가서 다음 호출 때 다시 조회한다.
+    private void bindDirect(Expr.Call expr, Object callee) {
+        if (!(callee instanceof LoxFunction) || !(expr.callee instanceof Expr.Variable)) return;
+        Expr.Variable variable = (Expr.Variable)expr.callee;
+        if (variable.kind != Resolver.GLOBAL || !globals.isStable(variable.slot)) return;
+        expr.direct = (LoxFunction)callee;
+        expr.directEpoch = globals.epoch;
+    }
     @Override
     public Object visitGetExpr(Expr.Get expr) {
-        Object object = evaluate(expr.object);
-        // 배열(List) 타입의 내장 속성/메서드 처리
+        return getProperty(expr, evaluate(expr.object));
+    }
+    Object getProperty(Expr.Get expr, Object object) {
+        // 배열(LoxArray) 내장 속성/메서드 처리
         if (object instanceof List) {
-            String name = expr.name.lexeme;
-            if (name.equals("길이") || name.equals("length")) {
-                return (double)((List<?>)object).size();
-            }
-            if (
-                name.equals("붙이기") || name.equals("append") ||
-                name.equals("뒤에서빼기") || name.equals("pop_back") ||
-                name.equals("앞에서빼기") || name.equals("pop_front") ||
-                name.equals("앞에넣기") || name.equals("push_front")
-            ) {
-                return new ArrayMethodWrapper((List<Object>)object, name);
-            }
-            throw new RuntimeError(expr.name, "지원하지 않는 배열 속성/메서드입니다.");
+            return arrayProperty((List<?>)object, expr.name);
         }
         // 인스턴스 필드/메서드 처리
         if (object instanceof LoxInstance) {
-            return ((LoxInstance)object).get(expr.name);
+            return ((LoxInstance)object).get(expr.name, expr.cache);
         }
         throw new RuntimeError(expr.name, "오직 인스턴스와 배열만 프로퍼티를 가질 수 있습니다.");
     }
+    // 배열의 길이/내장 메서드 접근 (VM의 GET_PROPERTY도 이 메서드를 쓴다.)
+    static Object arrayProperty(List<?> array, Token name) {
+        String lexeme = name.lexeme;
+        if (lexeme.equals("길이") || lexeme.equals("length")) {
+            return (double)array.size();
+        }
+        if (
+            lexeme.equals("붙이기") || lexeme.equals("append") ||
+            lexeme.equals("뒤에서빼기") || lexeme.equals("pop_back") ||
+            lexeme.equals("앞에서빼기") || lexeme.equals("pop_front") ||
+            lexeme.equals("앞에넣기") || lexeme.equals("push_front")
+        ) {
+            @SuppressWarnings("unchecked") //Lox 배열은 아무 값이나 담는다
+            List<Object> values = (List<Object>)array;
+            return new ArrayMethodWrapper(values, lexeme);
+        }
+        throw new RuntimeError(name, "지원하지 않는 배열 속성/메서드입니다.");
+    }
     @Override
     public Object visitSetExpr(Expr.Set expr) {
         Object object = evaluate(expr.object);
@@ -383,82 +540,190 @@ class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void> {
             throw new RuntimeError(expr.name, "인스턴스만 필드를 가집니다.");
         }
         Object value = evaluate(expr.value);
-        ((LoxInstance)object).set(expr.name,value);
+        ((LoxInstance)object).set(expr.name,value,expr.cache);
         return value;
     }
     @Override
     public Object visitThisExpr(Expr.This expr) {
-        return lookUpVariable(expr.keyword, expr);
+        return lookUpVariable(expr.keyword, expr.kind, expr.slot);
     }
     // 변수 선언문 실행
     @Override
-    public Void visitVarStmt(Stmt.Var stmt) {
+    public Completion visitVarStmt(Stmt.Var stmt) {
         Object value = null;
         if (stmt.initializer != null) {
             value = evaluate(stmt.initializer);
         }
-        environment.define(stmt.name.lexeme,value);
+        declare(stmt.kind, stmt.slot);
+        define(stmt.kind, stmt.slot, value);
         return null;
     }
-    // break/continue 제어용 예외
-    private static class BreakException extends RuntimeException {}
-    private static class ContinueException extends RuntimeException {}
     // while문 실행
     @Override
-    public Void visitWhileStmt(Stmt.While stmt) {
-        try {
-            while (isTruthy(evaluate(stmt.condition))) {
-                try {
-                    execute(stmt.body);
-                } catch (ContinueException ce) {
-                    // 다음 반복으로 continue
-                    continue;
+    public Completion visitWhileStmt(Stmt.While stmt) {
+        if (osr(stmt, stmt.osr)) return null;
+        resetHoisted(stmt.hoisted);
+        while (evaluateBoolean(stmt.condition)) {
+            if (jit != null) ++jit.hotness;
+            Completion completion = execute(stmt.body);
+            if (completion == Completion.BREAK) break; // break로 루프 탈출
+            if (completion == Completion.RETURN) return completion;
+            // 보통 끝났거나 continue면 다음 반복으로
+            if (osr(stmt, stmt.osr)) break;
+        }
+        return null;
+    }
+    // 맨 위 코드(함수 밖)의 반복문은 반복문마다 세어서, 뜨거워지면 남은 반복을 컴파일된 반복문으로 실행한다. (OSR)
+    // 반복 조건을 평가하기 직전(반복문에 들어갈 때와 back-edge)에 부른다. 컴파일된 코드가 반복문을 끝냈으면 true
+    private boolean osr(Stmt loop, Jit osr) {
+        return jit == null && osr.hot() && osr.runLoop(loop, this, frame);
+    }
+    // for문 실행. 초기화식의 변수는 현재 프레임의 슬롯에 있으므로 따로 만드는 환경은 없다.
+    @Override
+    public Completion visitForStmt(Stmt.For stmt) {
+        if (stmt.initializer != null) {
+            execute(stmt.initializer);
+        }
+        if (osr(stmt, stmt.osr)) return null;
+        resetHoisted(stmt.hoisted);
+        if (stmt.counted) return countedLoop(stmt);
+        return forLoop(stmt);
+    }
+    // 일반 for문 반복: 조건 확인 -> 본문 -> 증감식. continue해도 증감식은 실행된다.
+    private Completion forLoop(Stmt.For stmt) {
+        while (stmt.condition == null || evaluateBoolean(stmt.condition)) {
+            if (jit != null) ++jit.hotness;
+            Completion completion = execute(stmt.body);
+            if (completion == Completion.BREAK) break; // break로 루프 탈출
+            if (completion == Completion.RETURN) return completion;
+            if (stmt.increment != null) evaluate(stmt.increment);
+            if (osr(stmt, stmt.osr)) break;
+        }
+        return null;
+    }
+    // "변수 i = 시작; i < 끝; i = i + 숫자" 모양의 for문 (Resolver.recognizeCountedLoop)
+    // i를 double 지역 변수로 들고 돌면서 비교와 증가를 박싱 없이 한다.
+    // 조건식의 끝 값이나 본문, 클로저가 i를 보는 경우(counterVisible)에만 매 반복 i를 변수에 넣어 준다.
+    // 본문이 i를 숫자가 아닌 값으로 바꾸면 그 자리에서 일반 for문 실행으로 넘어간다.
+    private Completion countedLoop(Stmt.For stmt) {
+        Stmt.Var counter = (Stmt.Var)stmt.initializer;
+        Expr.Binary condition = (Expr.Binary)stmt.condition;
+        Object start = readVariable(counter.kind, counter.slot);
+        if (!(start instanceof Double)) return forLoop(stmt);
+        double i = (double)start;
+        while (true) {
+            Object boxed = null;
+            if (stmt.counterVisible) {
+                boxed = box(i);
+                writeVariable(counter.kind, counter.slot, boxed);
+            }
+            double bound = numberOperand(condition.right, condition.operator);
+            boolean more;
+            switch (condition.operator.type) {
+                case LESS: more = i < bound; break;
+                case LESS_EQUAL: more = i <= bound; break;
+                case GREATER: more = i > bound; break;
+                default: more = i >= bound; break;
+            }
+            if (!more) break;
+            if (jit != null) ++jit.hotness;
+            Completion completion = execute(stmt.body);
+            if (completion == Completion.BREAK) break;
+            if (completion == Completion.RETURN) return completion;
+            if (stmt.counterVisible) {
+                Object current = readVariable(counter.kind, counter.slot);
+                if (current != boxed) { //본문에서 i에 대입함
+                    if (!(current instanceof Double)) {
+                        evaluate(stmt.increment);
+                        return forLoop(stmt);
+                    }
+                    i = (double)current;
                 }
             }
-        } catch (BreakException be) {
-            // break로 루프 탈출
+            i += stmt.step;
+            if (jit == null && stmt.osr.hot()) {
+                writeVariable(counter.kind, counter.slot, box(i)); //컴파일된 반복문은 i를 변수에서 읽는다
+                if (stmt.osr.runLoop(stmt, this, frame)) break;
+            }
         }
         return null;
     }
+    // 숫자 연산의 한쪽 피연산자를 double로 평가한다. (다른 쪽은 이미 숫자로 확인된 경우)
+    private double numberOperand(Expr expr, Token operator) {
+        if (Resolver.isNumeric(expr)) return evaluateDouble(expr);
+        Object value = evaluate(expr);
+        if (!(value instanceof Double)) throw new RuntimeError(operator, "모든 피연산자는 숫자여야 합니다.");
+        return (double)value;
+    }
+    // 지역 변수 선언 자리(LOCAL/CELL)의 값 읽기/쓰기
+    private Object readVariable(int kind, int slot) {
+        return kind == Resolver.CELL ? ((Cell)frame[slot]).value : frame[slot];
+    }
+    private void writeVariable(int kind, int slot, Object value) {
+        if (kind == Resolver.CELL) ((Cell)frame[slot]).value = value;
+        else frame[slot] = value;
+    }
     // 변수 할당 평가
     @Override
     public Object visitAssignExpr(Expr.Assign expr) {
         Object value = evaluate(expr.value);
-        Integer distance = locals.get(expr);
-        if (distance!=null) {
-            environment.assignAt(distance,expr.name,value);
-        } else {
-            globals.assign(expr.name,value);
+        switch (expr.kind) {
+            case Resolver.LOCAL: frame[expr.slot] = value; break;
+            case Resolver.CELL: ((Cell)frame[expr.slot]).value = value; break;
+            case Resolver.UPVALUE: upvalues[expr.slot].value = value; break;
+            default: globals.assign(expr.slot,expr.name,value); break;
         }
         return value;
     }
     // 변수 참조 평가
     @Override
     public Object visitVariableExpr(Expr.Variable expr) {
-        return lookUpVariable(expr.name,expr);
+        return lookUpVariable(expr.name,expr.kind,expr.slot);
+    }
+    // Resolver가 정한 접근 방법(kind)과 슬롯으로 변수를 바로 읽는다.
+    private Object lookUpVariable(Token name,int kind,int slot) {
+        switch (kind) {
+            case Resolver.LOCAL: return frame[slot];
+            case Resolver.CELL: return ((Cell)frame[slot]).value;
+            case Resolver.UPVALUE: return upvalues[slot].value;
+            default: return globals.get(slot,name);
+        }
     }
-    private Object lookUpVariable(Token name,Expr expr) {
-        Integer distance = locals.get(expr);
-        if (distance!=null) {
-            return environment.getAt(distance,name.lexeme);
-        } else {
-            return globals.get(name);
+    // 반복문에 들어갈 때 그 반복문의 불변식 슬롯을 비운다. 불변식은 처음 평가할 때 한 번만 계산된다.
+    private void resetHoisted(int[] slots) {
+        if (slots == null) return;
+        for (int slot : slots) {
+            frame[slot] = NOT_HOISTED;
         }
     }
+    // 반복문 불변식(LoopOptimizer): 반복문 안에서 처음 평가할 때의 값을 프레임 슬롯에 기억해 두고 다시 쓴다.
+    // 처음 평가하는 시점은 원래와 같으므로 에러도 원래 나던 때에 난다.
+    @Override
+    public Object visitHoistedExpr(Expr.Hoisted expr) {
+        Object value = frame[expr.slot];
+        if (value == NOT_HOISTED) {
+            value = evaluate(expr.expression);
+            //묶인 메서드는 평가할 때마다 새로 만들어지는 값이라 기억하지 않는다.
+            if (!(value instanceof LoxFunction)) frame[expr.slot] = value;
+        }
+        return value;
+    }
     @Override
-    public Void visitBreakStmt(Stmt.Break stmt) {
-        throw new BreakException();
+    public Completion visitBreakStmt(Stmt.Break stmt) {
+        return Completion.BREAK;
     }
     @Override
-    public Void visitContinueStmt(Stmt.Continue stmt) {
-        throw new ContinueException();
+    public Completion visitContinueStmt(Stmt.Continue stmt) {
+        return Completion.CONTINUE;
     }
     // 배열 리터럴 평가
     @Override
     public Object visitArrayExpr(Expr.Array expr) {
-        List<Object> result = new ArrayList<>();
+        if (Heap.SITES) Heap.site = expr.bracket.line; //힙 보고의 할당 지점
+        LoxArray result = new LoxArray(expr.elements.size());
         for (Expr element : expr.elements) {
-            result.add(evaluate(element));
+            if (Resolver.isNumeric(element)) result.addDouble(evaluateDouble(element));
+            else result.add(evaluate(element));
         }
         return result;
     }
@@ -467,7 +732,15 @@ class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void> {
     public Object visitIndexGetExpr(Expr.IndexGet expr) {
         Object object = evaluate(expr.object);
         Object index = evaluate(expr.index);
-        
+        if (expr.bounds != null && object instanceof LoxArray && index instanceof Double) {
+            //LoopOptimizer가 표시한 a[i]: 반복 조건 i < a.길이(끌어올린 값)가 위쪽을 보장하므로 i >= 0만 보고 범위 검사 없이 읽는다.
+            int i = (int)(double)index;
+            if (i >= 0) return ((LoxArray)object).getUnchecked(i);
+        }
+        return indexGet(object, index);
+    }
+    // 인덱싱 연산 본체 (VM의 GET_INDEX도 이 메서드를 쓴다.)
+    static Object indexGet(Object object, Object index) {
         if (index instanceof Double) {
             if (!(object instanceof List)) {
                 throw new RuntimeError(new Token(TokenType.IDENTIFIER, "array", null, 0), "배열이 아닌 객체에서 인덱싱을 시도했습니다.");
@@ -500,8 +773,30 @@ class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void> {
     public Object visitIndexSetExpr(Expr.IndexSet expr) {
         Object object = evaluate(expr.object);
         Object index = evaluate(expr.index);
-        Object value = evaluate(expr.value);
-        
+        Object value;
+        if (Resolver.isNumeric(expr.value)) {
+            indexedDouble = evaluateDouble(expr.value);
+            value = INDEXED_DOUBLE;
+        } else {
+            value = evaluateOperand(expr.value);
+        }
+        if (value == INDEXED_DOUBLE) {
+            //숫자식이나 숫자 배열의 원소(a[i] = a[j])를 넣을 때는 박싱 없이 바로 저장한다.
+            double number = indexedDouble;
+            if (object instanceof LoxArray && index instanceof Double) {
+                LoxArray array = (LoxArray)object;
+                int idx = (int)(double)index;
+                if (idx >= 0 && idx < array.size()) {
+                    array.setDouble(idx, number);
+                    return box(number);
+                }
+            }
+            return indexSet(object, index, box(number));
+        }
+        return indexSet(object, index, value);
+    }
+    // 배열 요소 할당 본체 (VM의 SET_INDEX도 이 메서드를 쓴다.)
+    static Object indexSet(Object object, Object index, Object value) {
         if (!(object instanceof List)) {
             throw new RuntimeError(new Token(TokenType.IDENTIFIER, "array", null, 0), "배열이 아닌 객체에서 할당을 시도했습니다.");
         }
@@ -521,43 +816,3 @@ class Interpreter implements Expr.Visitor<Object>,Stmt.Visitor<Void> {
         return value;
     }
 }
-
-// 배열 내장 메서드 래퍼 클래스
-class ArrayMethodWrapper implements LoxCallable {
-    private final List<Object> array;
-    private final String method;
-    public ArrayMethodWrapper(List<Object> array, String method) {
-        this.array = array;
-        this.method = method;
-    }
-    @Override
-    public int arity() {
-        if (method.equals("붙이기") || method.equals("append") || method.equals("앞에넣기") || method.equals("push_front")) return 1;
-        if (method.equals("뒤에서빼기") || method.equals("pop_back") || method.equals("앞에서빼기") || method.equals("pop_front")) return 0;
-        return 0;
-    }
-    @Override
-    public Object call(Interpreter interpreter, List<Object> arguments) {
-        if (method.equals("붙이기") || method.equals("append")) {
-            array.add(arguments.get(0));
-            return null;
-        }
-        if (method.equals("앞에넣기") || method.equals("push_front")) {
-            array.add(0, arguments.get(0));
-            return null;
-        }
-        if (method.equals("뒤에서빼기") || method.equals("pop_back")) {
-            if (array.size() == 0) return null;
-            return array.remove(array.size() - 1);
-        }
-        if (method.equals("앞에서빼기") || method.equals("pop_front")) {
-            if (array.size() == 0) return null;
-            return array.remove(0);
-        }
-        throw new RuntimeError(null, "지원하지 않는 배열 메서드입니다.");
-    }
-    @Override
-    public String toString() {
-        return "<array method " + method + ">";
-    }
-}
@@ -0,0 +1,176 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.List;
+
+// 함수 단위 계층 실행(JIT). 함수 선언(Stmt.Function)마다 하나씩 있다.
+// 인터프리터로 실행하는 동안 호출 수와 본문 반복문의 back-edge 수를 hotness에 센다. THRESHOLD를 넘으면 다음 호출 때
+// JitCompiler가 함수를 JVM 바이트코드로 컴파일해 hidden class로 올리고, 그 뒤 호출은 컴파일된 코드(Code.run)가 실행한다.
+// HotSpot이 그 클래스를 다시 C1/C2로 컴파일하므로 Lox 코드 자체가 기계어가 된다.
+//
+// 컴파일할 때는 "지금까지 숫자만 받은 매개변수는 앞으로도 숫자"라고 가정하고, 그 매개변수와 숫자만 담기는 지역 변수를
+// 박싱 없는 double로 다룬다. 컴파일된 코드는 맨 처음에 가정을 확인하고, 깨졌으면 아무것도 실행하지 않은 채 DEOPT를 돌려준다.
+// 그러면 역최적화(deoptimize)해서 컴파일된 코드를 버리고 그 호출은 인터프리터가 실행한다. 다시 뜨거워지면 고친 가정으로
+// 다시 컴파일하고, MAX_DEOPTS번 넘게 역최적화했거나 컴파일할 수 없는 함수는 인터프리터로만 실행한다.
+//
+// 컴파일된 코드의 호출, 프로퍼티, 배열, 출력, 에러는 아래 도우미를 거쳐 인터프리터와 같은 메서드를 부른다.
+// 그래서 인터프리터로 실행되는 클로저, 클래스 인스턴스, 네이티브 함수와 섞여도 결과와 에러 메시지/라인이 같다.
+//
+// 맨 위 코드(함수 밖)의 반복문은 한 번만 실행되므로 함수 단위로는 컴파일되지 않는다. 그래서 반복문(Stmt.While, Stmt.For)도
+// 하나씩 가지고, 반복문에 들어갈 때와 back-edge마다 hot()으로 센다. 뜨거워지면 반복 도중에 그 반복문만 컴파일하고(OSR)
+// 지금 프레임과 전역을 그대로 넘겨 남은 반복을 컴파일된 코드로 실행한다. (runLoop)
+final class Jit {
+    // --no-jit이나 --engine=node면 끈다.
+    static boolean enabled = true;
+    static final int THRESHOLD = 1000;
+    private static final int MAX_DEOPTS = 3;
+    // 컴파일된 코드가 가정이 깨졌을 때 돌려주는 값
+    static final Object DEOPT = new Object();
+
+    // 컴파일된 함수. frame은 LoxFunction.invoke가 인터프리터용으로 채운 프레임(this, 매개변수)이고,
+    // upvalues는 함수가 잡아 온 바깥 변수다. (JIT은 클로저를 잡는 함수를 컴파일하지 않으므로 jloxc가 만든 코드만 쓴다)
+    interface Code {
+        Object run(Interpreter interpreter, Object[] frame, Cell[] upvalues);
+    }
+
+    int hotness = 0;    //호출 수 + back-edge 수
+    Code code = null;   //컴파일된 코드 (없으면 인터프리터로 실행)
+    private boolean[] numeric; //매개변수마다 지금까지 숫자만 받았는가
+    private int base;          //첫 매개변수의 프레임 슬롯 (메서드면 1)
+    private int deopts = 0;
+    private boolean failed = false;
+
+    // 인터프리터로 실행하는 호출마다 부른다. 인자 타입을 기록하고, 뜨거워졌으면 컴파일한다.
+    void profile(Stmt.Function function, Object[] frame, int base) {
+        if (numeric == null) {
+            numeric = new boolean[function.params.size()];
+            Arrays.fill(numeric, true);
+            this.base = base;
+        }
+        for (int i=0;i<numeric.length;++i) {
+            if (!(frame[base + i] instanceof Double)) numeric[i] = false;
+        }
+        if (++hotness >= THRESHOLD && enabled && !failed) compile(function);
+    }
+    private void compile(Stmt.Function function) {
+        hotness = 0;
+        try {
+            code = new JitCompiler(function, base, numeric.clone()).compile();
+        } catch (RuntimeException | LinkageError e) {
+            code = null; //바이트코드를 만들거나 올리지 못하면 인터프리터로 실행한다
+        }
+        if (code == null) failed = true;
+    }
+    // 맨 위 코드의 반복문: 반복 조건을 평가하기 직전마다 부른다. 컴파일된 코드가 있거나 지금 뜨거워졌으면 true
+    boolean hot() {
+        return code != null || (enabled && !failed && ++hotness >= THRESHOLD);
+    }
+    // 반복문을 컴파일해서(아직 안 했으면) 남은 반복을 실행한다. 반복문을 끝냈으면 true다.
+    // 컴파일할 수 없거나 들어갈 때 가정(숫자 슬롯/전역)이 깨졌으면 false이고, 반복은 인터프리터가 이어서 실행한다.
+    boolean runLoop(Stmt loop, Interpreter interpreter, Object[] frame) {
+        if (code == null) {
+            hotness = 0;
+            try {
+                code = new JitCompiler(loop, frame, interpreter.globals).compileLoop();
+            } catch (RuntimeException | LinkageError e) {
+                code = null;
+            }
+            if (code == null) {
+                failed = true;
+                return false;
+            }
+        }
+        if (code.run(interpreter, frame, null) != DEOPT) return true; //맨 위 코드는 업밸류가 없다
+        code = null; //다시 뜨거워지면 그때의 값으로 다시 컴파일한다
+        if (++deopts > MAX_DEOPTS) failed = true;
+        return false;
+    }
+    // 컴파일된 코드가 DEOPT를 돌려주었을 때. 이번 인자로 가정을 고치고 코드를 버린다.
+    void deoptimize(Object[] frame) {
+        code = null;
+        hotness = 0;
+        for (int i=0;i<numeric.length;++i) {
+            if (!(frame[base + i] instanceof Double)) numeric[i] = false;
+        }
+        if (++deopts > MAX_DEOPTS) failed = true;
+    }
+
+    // 컴파일된 코드가 부르는 도우미. 에러 메시지는 인터프리터와 같다.
+    static double number(Object value, Token operator) {
+        if (!(value instanceof Double)) throw new RuntimeError(operator, "모든 피연산자는 숫자여야 합니다.");
+        return (double)value;
+    }
+    static double negate(Object value, Token operator) {
+        if (!(value instanceof Double)) throw new RuntimeError(operator, "피연산자는 숫자여야 합니다.");
+        return -(double)value;
+    }
+    static double divide(double left, double right, Token operator) {
+        if (right == 0) throw new RuntimeError(operator, "0으로 나눌 수 없습니다.");
+        return left / right;
+    }
+    static double modulo(double left, double right, Token operator) {
+        if (right == 0) throw new RuntimeError(operator, "0으로 나눌 수 없습니다.");
+        // 2^53보다 작은 양의 정수끼리는 long 나머지가 결과가 같고 drem(fprem 반복)보다 훨씬 빠르다.
+        // (더 큰 값은 long으로 바꿀 때 Long.MAX_VALUE에 걸려 되돌려도 같은 double이 될 수 있으므로 범위를 먼저 본다.
+        // 0은 -0 % n이 -0이어야 하므로 느린 길로 보낸다)
+        if (left > 0 && left < 0x1p53 && right > 0 && right < 0x1p53) {
+            long a = (long)left, b = (long)right;
+            if (a == left && b == right) return a % b;
+        }
+        return left % right;
+    }
+    static Object add(Object left, Object right, Token operator) {
+        return Interpreter.add(operator, left, right);
+    }
+    static Object call(Object callee, List<Object> arguments, Interpreter interpreter, Expr.Call expr) {
+        return interpreter.callValue(expr, callee, arguments);
+    }
+    static Object get(Object object, Interpreter interpreter, Expr.Get expr) {
+        return interpreter.getProperty(expr, object);
+    }
+    // 배열 내장 메서드 이름과 인자 수에 맞는 아래 도우미 이름. 인자 수가 틀리면 에러를 내도록 일반 호출로 둔다.
+    static String arrayMethod(String name, int arity) {
+        switch (name) {
+            case "붙이기": case "append": return arity == 1 ? "append" : null;
+            case "앞에넣기": case "push_front": return arity == 1 ? "pushFront" : null;
+            case "뒤에서빼기": case "pop_back": return arity == 0 ? "popBack" : null;
+            case "앞에서빼기": case "pop_front": return arity == 0 ? "popFront" : null;
+            default: return null;
+        }
+    }
+    // 배열 내장 메서드. ArrayMethodWrapper.call과 같다.
+    // 대상은 List<?>로 받는다 (엔진들이 값이 List인지만 확인하고 넘기므로). Lox 배열은 아무 값이나 담으므로 넣을 때만 바꾼다.
+    static Object append(List<?> array, Object value) {
+        values(array).add(value);
+        return null;
+    }
+    static Object appendDouble(List<?> array, double value) {
+        if (array instanceof LoxArray) ((LoxArray)array).addDouble(value);
+        else values(array).add(Interpreter.box(value));
+        return null;
+    }
+    static Object pushFront(List<?> array, Object value) {
+        values(array).add(0, value);
+        return null;
+    }
+    static Object popBack(List<?> array) {
+        if (array.size() == 0) return null;
+        return array.remove(array.size() - 1);
+    }
+    static Object popFront(List<?> array) {
+        if (array.size() == 0) return null;
+        return array.remove(0);
+    }
+    @SuppressWarnings("unchecked")
+    private static List<Object> values(List<?> array) {
+        return (List<Object>)array;
+    }
+    static LoxInstance instance(Object object, Token name) {
+        if (!(object instanceof LoxInstance)) throw new RuntimeError(name, "인스턴스만 필드를 가집니다.");
+        return (LoxInstance)object;
+    }
+    static Object set(LoxInstance instance, Object value, Expr.Set expr) {
+        instance.set(expr.name, value, expr.cache);
+        return value;
+    }
+}
@@ -0,0 +1,1242 @@
+package com.craftinginterpreters.lox;
+
+import static com.craftinginterpreters.lox.ClassEmitter.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// 함수 하나를 JVM 바이트코드로 컴파일해 hidden class(Jit.Code 구현)로 올린다. (Jit이 뜨거운 함수에 부른다)
+//
+// 프레임 슬롯마다 JVM 지역 변수를 하나씩 둔다. 숫자만 담기는 슬롯(숫자로 가정한 매개변수, 숫자식으로만 초기화/대입되는
+// 지역 변수)은 double 지역 변수이고 나머지는 Object다. 식도 결과가 항상 숫자인 것(Resolver.isNumeric과 같은 규칙에
+// double 슬롯을 더한 것)은 double로 계산하고, Object가 필요한 곳에서만 Interpreter.box로 박싱한다.
+// 조건식의 비교와 논리 연산은 값을 만들지 않고 바로 분기한다. 평가 순서와 타입 검사 순서는 Interpreter와 같다.
+//
+// 컴파일하지 않는 함수: 클로저를 만들거나 잡는 함수(안쪽 fun/class 선언, CELL/UPVALUE 변수), 메서드 바이트코드가 너무 긴 함수.
+// Call.inlined(Inliner), Hoisted(LoopOptimizer), For.bounds 같은 인터프리터용 표시는 쓰지 않고 원래 식을 컴파일한다.
+//
+// 맨 위 코드의 뜨거운 반복문 하나도 같은 방법으로 컴파일한다. (OSR, compileLoop) 함수와 달리 프레임은 반복문이 쓰는 슬롯만
+// JVM 지역 변수로 옮기고, 반복문 안에 호출이 없으면 다른 코드가 전역을 볼 수 없으므로 전역도 JVM 지역 변수로 옮긴다.
+// 슬롯과 전역의 타입은 컴파일할 때 들어 있는 값으로 정하고, 반복문이 끝나면(예외로 나가면 전역만) 되돌려 쓴다.
+//
+// jloxc(Jloxc)는 같은 코드 생성으로 프로그램 전체를 미리(AOT) 컴파일한다. (compileClass) 함수마다, 그리고 맨 위 코드를 매개변수 없는
+// 함수로 감싼 것을 Jit.Code를 구현하는 보통 클래스 파일 하나로 만든다. 프로파일이 없으므로 매개변수는 숫자로 가정하지 않고(역최적화 없음),
+// 숫자만 담기는 지역 변수만 double로 둔다. JIT이 받지 않는 클로저(CELL/UPVALUE 변수, 안쪽 fun/class 선언)와 전역 선언도 컴파일한다.
+// 상수(토큰, 프로퍼티/호출 지점, 안쪽 함수 선언)는 클래스 데이터 대신 <clinit>에서 같은 내용으로 새로 만든다.
+final class JitCompiler {
+    private static final String PACKAGE = "com/craftinginterpreters/lox/";
+    private static final String INTERPRETER = PACKAGE + "Interpreter", JIT = PACKAGE + "Jit";
+    private static final String OBJECT = "Ljava/lang/Object;", TOKEN = "L" + PACKAGE + "Token;";
+    private static final String DOUBLE = "java/lang/Double", BOOLEAN = "java/lang/Boolean";
+    private static final String LIST = "java/util/List", ARRAY_LIST = "java/util/ArrayList", LOX_ARRAY = PACKAGE + "LoxArray";
+    private static final String LOX_INSTANCE = PACKAGE + "LoxInstance", CELL = PACKAGE + "Cell";
+    private static final String FUNCTION = PACKAGE + "Stmt$Function";
+    // Jit.Code.run(Interpreter, Object[], Cell[])의 디스크립터와 JVM 지역 변수
+    private static final String RUN = "(L" + INTERPRETER + ";[" + OBJECT + "[L" + CELL + ";)" + OBJECT;
+    private static final int INTERPRETER_LOCAL = 1, FRAME = 2, UPVALUES = 3;
+    // AOT: 맨 위 코드나 상수를 만드는 메서드가 이만큼 커지면 새 메서드로 넘어간다. (분기 거리 제한 32KB)
+    private static final int PART_SIZE = 16384;
+
+    private final Stmt.Function function;
+    private final int base;            //첫 매개변수의 프레임 슬롯
+    private final boolean[] numericParams;
+    private final boolean[] doubleSlot; //프레임 슬롯이 double 지역 변수인가
+    private final boolean[] cellSlot;   //프레임 슬롯에 Cell이 담기는가 (AOT)
+    private final Map<Stmt.Function,String> classes; //AOT: 함수 선언마다 컴파일한 클래스 이름 (JIT이면 null)
+    private final int[] local;          //프레임 슬롯의 JVM 지역 변수 번호
+    private final List<int[]> writes = new ArrayList<>(); //{슬롯(전역이면 ~번호), writeValues의 인덱스}
+    private final List<Expr> writeValues = new ArrayList<>();
+    // 반복문 컴파일(OSR)에만 쓴다
+    private final Stmt loop;
+    private final Object[] frame;     //컴파일할 때의 맨 위 코드 프레임
+    private final Globals globals;
+    private final boolean[] used;     //반복문이 읽거나 쓰는 슬롯
+    private final boolean[] declared; //반복문 안에서 선언하는 슬롯 (반복문에 들어올 때의 값은 쓰지 않는다)
+    private final boolean[] written;  //반복문이 값을 쓰는 슬롯
+    private final Map<Integer,Token> globalNames = new LinkedHashMap<>(); //반복문이 쓰는 전역과 에러 메시지용 토큰
+    private final Set<Integer> writtenGlobals = new HashSet<>();
+    private final Map<Integer,Integer> globalLocal = new LinkedHashMap<>(); //JVM 지역 변수로 옮긴 전역 -> 그 번호
+    private final Set<Integer> doubleGlobal = new HashSet<>();
+    private boolean hasCall = false;
+    private final List<Object> constants = new ArrayList<>();
+    private final String className;
+    private ClassEmitter.Code code;
+    private int nextLocal;
+
+    // break/continue가 갈 곳
+    private static final class Loop {
+        final ClassEmitter.Label breakLabel = new ClassEmitter.Label();
+        final ClassEmitter.Label continueLabel = new ClassEmitter.Label();
+    }
+    private final Deque<Loop> loops = new ArrayDeque<>();
+
+    JitCompiler(Stmt.Function function, int base, boolean[] numericParams) {
+        this(function, base, numericParams, PACKAGE + "Compiled$" + function.name.lexeme, null);
+    }
+    // AOT: 함수를 className 클래스로 컴파일한다. 매개변수는 숫자로 가정하지 않는다.
+    JitCompiler(Stmt.Function function, int base, String className, Map<Stmt.Function,String> classes) {
+        this(function, base, new boolean[function.params.size()], className, classes);
+    }
+    private JitCompiler(Stmt.Function function, int base, boolean[] numericParams, String className, Map<Stmt.Function,String> classes) {
+        this.function = function;
+        this.base = base;
+        this.numericParams = numericParams;
+        this.doubleSlot = new boolean[function.slots];
+        this.cellSlot = new boolean[function.slots];
+        this.local = new int[function.slots];
+        this.className = className;
+        this.classes = classes;
+        this.loop = null;
+        this.frame = null;
+        this.globals = null;
+        this.used = new boolean[function.slots];
+        this.declared = new boolean[function.slots];
+        this.written = new boolean[function.slots];
+    }
+    // 맨 위 코드의 반복문(Stmt.While, Stmt.For)을 컴파일한다. frame은 지금 맨 위 코드의 프레임이다.
+    JitCompiler(Stmt loop, Object[] frame, Globals globals) {
+        this.function = null;
+        this.base = 0;
+        this.numericParams = new boolean[0];
+        this.doubleSlot = new boolean[frame.length];
+        this.cellSlot = new boolean[frame.length];
+        this.local = new int[frame.length];
+        this.className = PACKAGE + "Compiled$loop";
+        this.classes = null;
+        this.loop = loop;
+        this.frame = frame;
+        this.globals = globals;
+        this.used = new boolean[frame.length];
+        this.declared = new boolean[frame.length];
+        this.written = new boolean[frame.length];
+    }
+
+    // 컴파일할 수 없는 함수면 null
+    Jit.Code compile() {
+        if (function.cellParams.length > 0 || function.upvalues.length > 0) return null;
+        for (Stmt stmt : function.body) {
+            if (!supported(stmt)) return null;
+        }
+        inferSlots();
+
+        ClassEmitter emitter = emitter();
+        ClassEmitter.Label deopt = new ClassEmitter.Label();
+        prologue(deopt);
+        for (Stmt stmt : function.body) statement(stmt);
+        code.op(ACONST_NULL, 1);
+        code.op(ARETURN, -1);
+        code.place(deopt);
+        code.field(GETSTATIC, JIT, "DEOPT", OBJECT);
+        code.op(ARETURN, -1);
+        code.end();
+        return load(emitter);
+    }
+
+    // 반복문을 컴파일한다. 만든 코드는 반복 조건부터 실행하고(for문의 초기화식은 이미 실행됨), 반복문이 끝나면 바뀐 슬롯과
+    // 전역을 되돌려 쓰고 null을 돌려준다. 들어올 때 숫자로 정한 슬롯/전역에 숫자가 없으면 아무것도 하지 않고 DEOPT를 돌려준다.
+    // 컴파일할 수 없는 반복문이면 null
+    Jit.Code compileLoop() {
+        if (loop instanceof Stmt.For) {
+            Stmt.For forLoop = (Stmt.For)loop;
+            if (!supported(forLoop.condition) || !supported(forLoop.increment) || !supported(forLoop.body)) return null;
+        } else if (!supported(loop)) {
+            return null;
+        }
+        inferLoopSlots();
+
+        ClassEmitter emitter = emitter();
+        ClassEmitter.Label deopt = new ClassEmitter.Label(), start = new ClassEmitter.Label(), end = new ClassEmitter.Label();
+        loopPrologue(deopt);
+        code.place(start);
+        if (loop instanceof Stmt.For) forLoop((Stmt.For)loop);
+        else statement(loop);
+        code.place(end);
+        writeBack(true);
+        code.op(ACONST_NULL, 1);
+        code.op(ARETURN, -1);
+        if (!globalLocal.isEmpty()) {
+            //런타임 에러로 나가도 전역은 반복문이 바꾼 값이어야 한다. (REPL은 에러 뒤에도 계속 실행한다)
+            code.catchAll(start, end);
+            int exception = newLocal(1);
+            code.astore(exception);
+            writeBack(false);
+            code.aload(exception);
+            code.op(ATHROW, -1);
+        }
+        code.place(deopt);
+        code.field(GETSTATIC, JIT, "DEOPT", OBJECT);
+        code.op(ARETURN, -1);
+        code.end();
+        return load(emitter);
+    }
+
+    // AOT: 함수를 보통 클래스 파일로 컴파일한다. globalNames가 있으면 맨 위 코드이고, 그 이름들로 전역 번호를 다시 만들어
+    // 실행하는 main을 붙인다. 맨 위 코드의 문장들은 서로 슬롯을 넘겨받지 않으므로 길면 문장 사이에서 메서드를 나눈다.
+    byte[] compileClass(String[] globalNames) {
+        for (Stmt stmt : function.body) {
+            if (!supported(stmt)) throw new IllegalStateException("컴파일할 수 없는 문장입니다.");
+        }
+        inferSlots();
+
+        ClassEmitter emitter = new ClassEmitter(className, "java/lang/Object", JIT + "$Code");
+        emitter.field(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "k", "[" + OBJECT);
+        constructor(emitter);
+        code = emitter.method(ACC_PUBLIC, "run", RUN);
+        prologue(null);
+        int part = 0;
+        for (Stmt stmt : function.body) {
+            if (globalNames != null && code.size() > PART_SIZE) {
+                String next = "part" + (++part);
+                for (int local=0;local<=UPVALUES;++local) code.aload(local);
+                code.invoke(INVOKEVIRTUAL, className, next, RUN);
+                code.op(ARETURN, -1);
+                code.end();
+                code = emitter.method(ACC_PUBLIC, next, RUN);
+                prologue(null);
+            }
+            statement(stmt);
+        }
+        code.op(ACONST_NULL, 1);
+        code.op(ARETURN, -1);
+        code.end();
+        staticInit(emitter);
+        if (globalNames != null) main(emitter, globalNames);
+        return emitter.toBytes();
+    }
+    // AOT: <clinit>에서 상수를 만들어 정적 필드 k에 넣는다. 상수가 많으면 constants1, constants2, ... 메서드로 나눠 채운다.
+    private void staticInit(ClassEmitter emitter) {
+        ClassEmitter.Code clinit = emitter.method(ACC_STATIC, "<clinit>", "()V");
+        clinit.iconst(constants.size());
+        clinit.type(ANEWARRAY, "java/lang/Object");
+        clinit.field(PUTSTATIC, className, "k", "[" + OBJECT);
+        ClassEmitter.Code init = clinit;
+        int part = 0;
+        for (int i=0;i<constants.size();++i) {
+            if (init.size() > PART_SIZE) {
+                String next = "constants" + (++part);
+                init.invoke(INVOKESTATIC, className, next, "()V");
+                init.op(RETURN, 0);
+                init.end();
+                init = emitter.method(ACC_PRIVATE | ACC_STATIC, next, "()V");
+            }
+            init.field(GETSTATIC, className, "k", "[" + OBJECT);
+            init.iconst(i);
+            newConstant(init, constants.get(i));
+            init.op(AASTORE, -3);
+        }
+        init.op(RETURN, 0);
+        init.end();
+    }
+    // 토큰은 그대로, 프로퍼티/호출 지점은 도우미가 읽는 필드(이름 토큰, 캐시)만 있는 노드로 만든다.
+    // 안쪽 함수 선언은 LoxFunction이 읽는 필드(이름, 매개변수, 슬롯 수)를 채우고 jit.code에 그 함수의 클래스 인스턴스를 넣는다.
+    private void newConstant(ClassEmitter.Code init, Object value) {
+        if (value instanceof Token) {
+            newToken(init, (Token)value);
+        } else if (value instanceof Expr.Get) {
+            init.type(NEW, PACKAGE + "Expr$Get");
+            init.op(DUP, 1);
+            init.op(ACONST_NULL, 1);
+            newToken(init, ((Expr.Get)value).name);
+            init.invoke(INVOKESPECIAL, PACKAGE + "Expr$Get", "<init>", "(L" + PACKAGE + "Expr;" + TOKEN + ")V");
+        } else if (value instanceof Expr.Set) {
+            init.type(NEW, PACKAGE + "Expr$Set");
+            init.op(DUP, 1);
+            init.op(ACONST_NULL, 1);
+            newToken(init, ((Expr.Set)value).name);
+            init.op(ACONST_NULL, 1);
+            init.invoke(INVOKESPECIAL, PACKAGE + "Expr$Set", "<init>", "(L" + PACKAGE + "Expr;" + TOKEN + "L" + PACKAGE + "Expr;)V");
+        } else if (value instanceof Expr.Call) {
+            init.type(NEW, PACKAGE + "Expr$Call");
+            init.op(DUP, 1);
+            init.op(ACONST_NULL, 1);
+            newToken(init, ((Expr.Call)value).paren);
+            init.invoke(INVOKESTATIC, "java/util/Collections", "emptyList", "()L" + LIST + ";");
+            init.invoke(INVOKESPECIAL, PACKAGE + "Expr$Call", "<init>", "(L" + PACKAGE + "Expr;" + TOKEN + "L" + LIST + ";)V");
+        } else {
+            Stmt.Function declaration = (Stmt.Function)value;
+            init.type(NEW, FUNCTION);
+            init.op(DUP, 1);
+            newToken(init, declaration.name);
+            init.type(NEW, ARRAY_LIST);
+            init.op(DUP, 1);
+            init.invoke(INVOKESPECIAL, ARRAY_LIST, "<init>", "()V");
+            for (Token param : declaration.params) {
+                init.op(DUP, 1);
+                newToken(init, param);
+                init.invoke(INVOKEINTERFACE, LIST, "add", "(" + OBJECT + ")Z");
+                init.op(POP, -1);
+            }
+            init.invoke(INVOKESTATIC, "java/util/Collections", "emptyList", "()L" + LIST + ";");
+            init.invoke(INVOKESPECIAL, FUNCTION, "<init>", "(" + TOKEN + "L" + LIST + ";L" + LIST + ";)V");
+            init.op(DUP, 1);
+            init.iconst(declaration.slots);
+            init.field(PUTFIELD, FUNCTION, "slots", "I");
+            init.op(DUP, 1);
+            init.field(GETFIELD, FUNCTION, "jit", "L" + JIT + ";");
+            String compiled = classes.get(declaration);
+            init.type(NEW, compiled);
+            init.op(DUP, 1);
+            init.invoke(INVOKESPECIAL, compiled, "<init>", "()V");
+            init.field(PUTFIELD, JIT, "code", "L" + JIT + "$Code;");
+        }
+    }
+    private static void newToken(ClassEmitter.Code init, Token token) {
+        init.type(NEW, PACKAGE + "Token");
+        init.op(DUP, 1);
+        init.field(GETSTATIC, PACKAGE + "TokenType", token.type.name(), "L" + PACKAGE + "TokenType;");
+        init.ldc(token.lexeme);
+        if (token.literal instanceof Double) {
+            init.ldc((double)token.literal);
+            init.invoke(INVOKESTATIC, DOUBLE, "valueOf", "(D)L" + DOUBLE + ";");
+        } else if (token.literal instanceof String) {
+            init.ldc((String)token.literal);
+        } else {
+            init.op(ACONST_NULL, 1);
+        }
+        init.iconst(token.line);
+        init.invoke(INVOKESPECIAL, PACKAGE + "Token", "<init>", "(L" + PACKAGE + "TokenType;Ljava/lang/String;" + OBJECT + "I)V");
+    }
+    // 맨 위 코드 클래스의 main. Lox.runCompiled가 전역 번호를 다시 만들고 맨 위 코드를 실행한다.
+    private void main(ClassEmitter emitter, String[] globalNames) {
+        ClassEmitter.Code main = emitter.method(ACC_PUBLIC | ACC_STATIC, "main", "([Ljava/lang/String;)V");
+        main.type(NEW, className);
+        main.op(DUP, 1);
+        main.invoke(INVOKESPECIAL, className, "<init>", "()V");
+        main.iconst(globalNames.length);
+        main.type(ANEWARRAY, "java/lang/String");
+        for (int i=0;i<globalNames.length;++i) {
+            main.op(DUP, 1);
+            main.iconst(i);
+            main.ldc(globalNames[i]);
+            main.op(AASTORE, -3);
+        }
+        main.iconst(function.slots);
+        main.invoke(INVOKESTATIC, PACKAGE + "Lox", "runCompiled", "(L" + JIT + "$Code;[Ljava/lang/String;I)V");
+        main.op(RETURN, 0);
+        main.end();
+    }
+
+    // 클래스의 틀(상수 필드, <clinit>, 생성자)을 만들고 run 메서드를 쓰기 시작한다.
+    private ClassEmitter emitter() {
+        ClassEmitter emitter = new ClassEmitter(className, "java/lang/Object", JIT + "$Code");
+        //상수 배열은 클래스 데이터로 넘겨서 <clinit>에서 정적 필드 k에 넣는다.
+        //(버전 49의 검증기는 hidden class 자기 자신의 인스턴스 필드 접근을 통과시키지 않는다)
+        emitter.field(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "k", "[" + OBJECT);
+        ClassEmitter.Code clinit = emitter.method(ACC_STATIC, "<clinit>", "()V");
+        clinit.invoke(INVOKESTATIC, "java/lang/invoke/MethodHandles", "lookup", "()Ljava/lang/invoke/MethodHandles$Lookup;");
+        clinit.ldc("_");
+        clinit.ldcClass("[" + OBJECT);
+        clinit.invoke(INVOKESTATIC, "java/lang/invoke/MethodHandles", "classData",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)" + OBJECT);
+        clinit.type(CHECKCAST, "[" + OBJECT);
+        clinit.field(PUTSTATIC, className, "k", "[" + OBJECT);
+        clinit.op(RETURN, 0);
+        clinit.end();
+        constructor(emitter);
+
+        code = emitter.method(ACC_PUBLIC, "run", RUN);
+        return emitter;
+    }
+    private static void constructor(ClassEmitter emitter) {
+        ClassEmitter.Code init = emitter.method(ACC_PUBLIC, "<init>", "()V");
+        init.aload(0);
+        init.invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        init.op(RETURN, 0);
+        init.end();
+    }
+    private Jit.Code load(ClassEmitter emitter) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup()
+                .defineHiddenClassWithClassData(emitter.toBytes(), constants.toArray(), true);
+            return (Jit.Code)lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 가정(숫자 매개변수)을 확인하고 프레임을 JVM 지역 변수로 옮긴다. (AOT는 가정이 없으므로 deopt가 null이다)
+    private void prologue(ClassEmitter.Label deopt) {
+        int params = function.params.size();
+        for (int i=0;i<params;++i) {
+            if (!doubleSlot[base + i]) continue;
+            code.aload(FRAME);
+            code.iconst(base + i);
+            code.op(AALOAD, -1);
+            code.type(INSTANCEOF, DOUBLE);
+            code.jump(IFEQ, deopt);
+        }
+        nextLocal = UPVALUES + 1;
+        for (int slot=0;slot<doubleSlot.length;++slot) {
+            local[slot] = nextLocal;
+            boolean fromFrame = slot < base + params;
+            if (doubleSlot[slot]) {
+                if (fromFrame) {
+                    code.aload(FRAME);
+                    code.iconst(slot);
+                    code.op(AALOAD, -1);
+                    code.type(CHECKCAST, DOUBLE);
+                    code.invoke(INVOKEVIRTUAL, DOUBLE, "doubleValue", "()D");
+                } else {
+                    code.ldc(0.0);
+                }
+                code.dstore(nextLocal);
+                nextLocal += 2;
+            } else {
+                if (fromFrame) {
+                    code.aload(FRAME);
+                    code.iconst(slot);
+                    code.op(AALOAD, -1);
+                } else {
+                    code.op(ACONST_NULL, 1);
+                }
+                code.astore(nextLocal);
+                nextLocal += 1;
+            }
+        }
+        //AOT: 안쪽 함수가 잡아 가는 매개변수는 Cell로 감싼다. (LoxFunction.invoke는 Jit.Code를 부른 뒤에 감싼다)
+        for (int slot : function.cellParams) {
+            code.type(NEW, CELL);
+            code.op(DUP, 1);
+            code.aload(local[slot]);
+            code.invoke(INVOKESPECIAL, CELL, "<init>", "(" + OBJECT + ")V");
+            code.astore(local[slot]);
+        }
+    }
+
+    // 반복문이 쓰는 슬롯과 옮긴 전역을 JVM 지역 변수로 옮긴다. 숫자로 정한 것은 숫자인지 확인한다.
+    private void loopPrologue(ClassEmitter.Label deopt) {
+        nextLocal = UPVALUES + 1;
+        for (int slot=0;slot<frame.length;++slot) {
+            if (!used[slot]) continue;
+            if (doubleSlot[slot]) {
+                local[slot] = newLocal(2);
+                if (declared[slot]) {
+                    code.ldc(0.0);
+                    code.dstore(local[slot]);
+                    continue;
+                }
+                code.aload(FRAME);
+                code.iconst(slot);
+                code.op(AALOAD, -1);
+                guardNumber(deopt, local[slot]);
+            } else {
+                local[slot] = newLocal(1);
+                code.aload(FRAME);
+                code.iconst(slot);
+                code.op(AALOAD, -1);
+                code.astore(local[slot]);
+            }
+        }
+        for (Map.Entry<Integer,Integer> entry : globalLocal.entrySet()) {
+            int slot = entry.getKey();
+            boolean isDouble = doubleGlobal.contains(slot);
+            entry.setValue(newLocal(isDouble ? 2 : 1));
+            globals();
+            code.iconst(slot);
+            token(globalNames.get(slot));
+            code.invoke(INVOKEVIRTUAL, PACKAGE + "Globals", "get", "(I" + TOKEN + ")" + OBJECT);
+            if (isDouble) guardNumber(deopt, entry.getValue());
+            else code.astore(entry.getValue());
+        }
+    }
+    // 스택의 값이 숫자가 아니면 deopt로 가고, 숫자면 double로 target에 넣는다.
+    private void guardNumber(ClassEmitter.Label deopt, int target) {
+        int value = newLocal(1);
+        code.astore(value);
+        code.aload(value);
+        code.type(INSTANCEOF, DOUBLE);
+        code.jump(IFEQ, deopt);
+        code.aload(value);
+        code.type(CHECKCAST, DOUBLE);
+        code.invoke(INVOKEVIRTUAL, DOUBLE, "doubleValue", "()D");
+        code.dstore(target);
+    }
+    // 반복문이 값을 쓴 슬롯과 전역을 프레임과 전역 테이블에 되돌려 쓴다. slots가 false면 전역만
+    private void writeBack(boolean slots) {
+        if (slots) {
+            for (int slot=0;slot<frame.length;++slot) {
+                if (!used[slot] || !written[slot]) continue;
+                code.aload(FRAME);
+                code.iconst(slot);
+                loadBoxed(local[slot], doubleSlot[slot]);
+                code.op(AASTORE, -3);
+            }
+        }
+        for (Map.Entry<Integer,Integer> entry : globalLocal.entrySet()) {
+            int slot = entry.getKey();
+            if (!writtenGlobals.contains(slot)) continue;
+            globals();
+            code.iconst(slot);
+            token(globalNames.get(slot));
+            loadBoxed(entry.getValue(), doubleGlobal.contains(slot));
+            code.invoke(INVOKEVIRTUAL, PACKAGE + "Globals", "assign", "(I" + TOKEN + OBJECT + ")V");
+        }
+    }
+    private void loadBoxed(int local, boolean isDouble) {
+        if (isDouble) {
+            code.dload(local);
+            code.invoke(INVOKESTATIC, INTERPRETER, "box", "(D)L" + DOUBLE + ";");
+        } else {
+            code.aload(local);
+        }
+    }
+
+    // 컴파일할 수 있는 문장/식인가. 지역 변수에 쓰는 곳(writes)도 모은다.
+    private boolean supported(Stmt stmt) {
+        if (stmt == null) return true;
+        if (stmt instanceof Stmt.Block) {
+            for (Stmt statement : ((Stmt.Block)stmt).statements) {
+                if (!supported(statement)) return false;
+            }
+            return true;
+        }
+        if (stmt instanceof Stmt.Expression) return supported(((Stmt.Expression)stmt).expression);
+        if (stmt instanceof Stmt.Print) return supported(((Stmt.Print)stmt).expression);
+        if (stmt instanceof Stmt.Return) return loop == null && supported(((Stmt.Return)stmt).value);
+        if (stmt instanceof Stmt.If) {
+            Stmt.If branch = (Stmt.If)stmt;
+            return supported(branch.condition) && supported(branch.thenBranch) && supported(branch.elseBranch);
+        }
+        if (stmt instanceof Stmt.While) {
+            Stmt.While loop = (Stmt.While)stmt;
+            return supported(loop.condition) && supported(loop.body);
+        }
+        if (stmt instanceof Stmt.For) {
+            Stmt.For loop = (Stmt.For)stmt;
+            return supported(loop.initializer) && supported(loop.condition) && supported(loop.increment) && supported(loop.body);
+        }
+        if (stmt instanceof Stmt.Var) {
+            Stmt.Var var = (Stmt.Var)stmt;
+            if (var.kind != Resolver.LOCAL && classes == null) return false;
+            declares(var.kind, var.slot, var.initializer);
+            return supported(var.initializer);
+        }
+        if (stmt instanceof Stmt.Function && classes != null) {
+            Stmt.Function declaration = (Stmt.Function)stmt;
+            declares(declaration.kind, declaration.slot, null);
+            captures(declaration);
+            return true;
+        }
+        if (stmt instanceof Stmt.Class && classes != null) {
+            Stmt.Class klass = (Stmt.Class)stmt;
+            declares(klass.kind, klass.slot, null);
+            for (Stmt.Function method : klass.methods) captures(method);
+            return true;
+        }
+        return stmt instanceof Stmt.Break || stmt instanceof Stmt.Continue;
+    }
+    private boolean supported(Expr expr) {
+        if (expr == null || expr instanceof Expr.Literal) return true;
+        if (expr instanceof Expr.Variable) {
+            Expr.Variable variable = (Expr.Variable)expr;
+            return read(variable.kind, variable.slot, variable.name);
+        }
+        if (expr instanceof Expr.This) {
+            Expr.This self = (Expr.This)expr;
+            return read(self.kind, self.slot, self.keyword);
+        }
+        if (expr instanceof Expr.Assign) {
+            Expr.Assign assign = (Expr.Assign)expr;
+            if (!read(assign.kind, assign.slot, assign.name)) return false;
+            if (assign.kind == Resolver.LOCAL) {
+                write(assign.slot, assign.value);
+            } else if (assign.kind == Resolver.GLOBAL) {
+                writtenGlobals.add(assign.slot);
+                write(~assign.slot, assign.value);
+            }
+            return supported(assign.value);
+        }
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr;
+            return supported(binary.left) && supported(binary.right);
+        }
+        if (expr instanceof Expr.Logical) {
+            Expr.Logical logical = (Expr.Logical)expr;
+            return supported(logical.left) && supported(logical.right);
+        }
+        if (expr instanceof Expr.Unary) return supported(((Expr.Unary)expr).right);
+        if (expr instanceof Expr.Grouping) return supported(((Expr.Grouping)expr).expression);
+        if (expr instanceof Expr.Hoisted) return supported(((Expr.Hoisted)expr).expression);
+        if (expr instanceof Expr.Call) {
+            Expr.Call call = (Expr.Call)expr;
+            hasCall = true;
+            return supported(call.callee) && all(call.arguments);
+        }
+        if (expr instanceof Expr.Get) return supported(((Expr.Get)expr).object);
+        if (expr instanceof Expr.Set) {
+            Expr.Set set = (Expr.Set)expr;
+            return supported(set.object) && supported(set.value);
+        }
+        if (expr instanceof Expr.IndexGet) {
+            Expr.IndexGet index = (Expr.IndexGet)expr;
+            return supported(index.object) && supported(index.index);
+        }
+        if (expr instanceof Expr.IndexSet) {
+            Expr.IndexSet index = (Expr.IndexSet)expr;
+            return supported(index.object) && supported(index.index) && supported(index.value);
+        }
+        if (expr instanceof Expr.Array) return all(((Expr.Array)expr).elements);
+        return false;
+    }
+    private boolean all(List<Expr> exprs) {
+        for (Expr expr : exprs) {
+            if (!supported(expr)) return false;
+        }
+        return true;
+    }
+    // JIT은 지역 변수와 전역만 컴파일한다. (AOT는 클로저 변수도) 반복문이 쓰는 슬롯과 전역도 기록한다.
+    private boolean read(int kind, int slot, Token name) {
+        if (kind == Resolver.LOCAL) {
+            used[slot] = true;
+            return true;
+        }
+        if (kind == Resolver.GLOBAL) {
+            globalNames.putIfAbsent(slot, name);
+            return true;
+        }
+        if (classes == null) return false;
+        if (kind == Resolver.CELL) cellSlot[slot] = true;
+        return true;
+    }
+    // 이름을 선언하는 문장(var, fun, class). Cell에 담기는 변수(CELL)는 double 슬롯 후보가 아니다.
+    private void declares(int kind, int slot, Expr value) {
+        if (kind == Resolver.GLOBAL) return;
+        declared[slot] = true;
+        if (kind == Resolver.CELL) {
+            used[slot] = true;
+            cellSlot[slot] = true;
+        } else {
+            write(slot, value);
+        }
+    }
+    // AOT: 함수 선언이 잡아 가는 바깥 변수(이 프레임의 Cell 슬롯, 이 함수의 업밸류)
+    private void captures(Stmt.Function declaration) {
+        for (int source : declaration.upvalues) {
+            if (source >= 0) cellSlot[source] = true;
+        }
+    }
+    private void write(int slot, Expr value) {
+        if (slot >= 0) {
+            used[slot] = true;
+            written[slot] = true;
+        }
+        writes.add(new int[] { slot, writeValues.size() });
+        writeValues.add(value);
+    }
+    // double 슬롯을 정한다. 숫자로 가정한 매개변수와 값을 쓰는 지역 변수를 후보로 두고, 숫자가 아닐 수 있는 값을 쓰는 슬롯을
+    // 더 바뀌지 않을 때까지 뺀다. (슬롯 하나가 빠지면 그 슬롯을 읽는 식도 double이 아니게 된다)
+    private void inferSlots() {
+        for (int[] write : writes) {
+            if (write[0] >= 0) doubleSlot[write[0]] = true;
+        }
+        for (int i=0;i<function.params.size();++i) doubleSlot[base + i] = numericParams[i];
+        if (base > 0) doubleSlot[0] = false; //this
+        for (int slot=0;slot<cellSlot.length;++slot) {
+            if (cellSlot[slot]) doubleSlot[slot] = false;
+        }
+        removeNonNumeric();
+    }
+    // 반복문: 지금 숫자가 들어 있는 슬롯(반복문 안에서 선언한 슬롯은 값과 상관없이)이 후보다.
+    // 반복문에 호출이 없으면 정의된 전역을 JVM 지역 변수로 옮기고, 지금 숫자가 들어 있는 전역을 후보로 둔다.
+    private void inferLoopSlots() {
+        for (int slot=0;slot<frame.length;++slot) {
+            doubleSlot[slot] = used[slot] && (declared[slot] || frame[slot] instanceof Double);
+        }
+        if (!hasCall) {
+            for (Map.Entry<Integer,Token> entry : globalNames.entrySet()) {
+                int slot = entry.getKey();
+                if (!globals.isDefined(slot)) continue;
+                globalLocal.put(slot, -1);
+                if (globals.get(slot, entry.getValue()) instanceof Double) doubleGlobal.add(slot);
+            }
+        }
+        removeNonNumeric();
+    }
+    private void removeNonNumeric() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int[] write : writes) {
+                Expr value = writeValues.get(write[1]);
+                if (value != null && isDouble(value)) continue;
+                int slot = write[0];
+                if (slot >= 0 && doubleSlot[slot]) {
+                    doubleSlot[slot] = false;
+                    changed = true;
+                } else if (slot < 0 && doubleGlobal.remove(~slot)) {
+                    changed = true;
+                }
+            }
+        }
+    }
+    // 에러가 나지 않는 한 결과가 반드시 숫자인 식인가
+    private boolean isDouble(Expr expr) {
+        if (expr instanceof Expr.Literal) return ((Expr.Literal)expr).value instanceof Double;
+        if (expr instanceof Expr.Variable) {
+            Expr.Variable variable = (Expr.Variable)expr;
+            return isDoubleVariable(variable.kind, variable.slot);
+        }
+        if (expr instanceof Expr.Assign) {
+            Expr.Assign assign = (Expr.Assign)expr;
+            return isDoubleVariable(assign.kind, assign.slot) && isDouble(assign.value);
+        }
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr;
+            switch (binary.operator.type) {
+                case MINUS: case STAR: case SLASH: case MOD: return true;
+                case PLUS: return isDouble(binary.left) && isDouble(binary.right);
+                default: return false;
+            }
+        }
+        if (expr instanceof Expr.Unary) return ((Expr.Unary)expr).operator.type == TokenType.MINUS;
+        if (expr instanceof Expr.Grouping) return isDouble(((Expr.Grouping)expr).expression);
+        if (expr instanceof Expr.Hoisted) return isDouble(((Expr.Hoisted)expr).expression);
+        return false;
+    }
+    private boolean isDoubleVariable(int kind, int slot) {
+        if (kind == Resolver.LOCAL) return doubleSlot[slot];
+        return kind == Resolver.GLOBAL && doubleGlobal.contains(slot);
+    }
+    // 지역 변수 슬롯이나 JVM 지역 변수로 옮긴 전역의 JVM 지역 변수 번호. 옮기지 않은 전역이면 -1
+    private int variableLocal(int kind, int slot) {
+        if (kind == Resolver.LOCAL) return local[slot];
+        if (kind != Resolver.GLOBAL) return -1;
+        Integer promoted = globalLocal.get(slot);
+        return promoted == null ? -1 : promoted;
+    }
+    private static boolean isBoolean(Expr expr) {
+        if (expr instanceof Expr.Unary) return ((Expr.Unary)expr).operator.type == TokenType.BANG;
+        if (!(expr instanceof Expr.Binary)) return false;
+        switch (((Expr.Binary)expr).operator.type) {
+            case GREATER: case GREATER_EQUAL: case LESS: case LESS_EQUAL: case EQUAL_EQUAL: case BANG_EQUAL: return true;
+            default: return false;
+        }
+    }
+
+    // 상수(토큰, AST 노드)는 정적 필드 k의 배열에서 읽는다.
+    private void constant(Object value, String type) {
+        int index = constants.indexOf(value);
+        if (index < 0) {
+            index = constants.size();
+            constants.add(value);
+        }
+        code.field(GETSTATIC, className, "k", "[" + OBJECT);
+        code.iconst(index);
+        code.op(AALOAD, -1);
+        code.type(CHECKCAST, type);
+    }
+    private void token(Token token) {
+        constant(token, PACKAGE + "Token");
+    }
+    private int newLocal(int size) {
+        int result = nextLocal;
+        nextLocal += size;
+        return result;
+    }
+
+    private void statement(Stmt stmt) {
+        //--profile로 실행 중이면 문장마다 프로파일러에 지금 문장을 알린다. (AOT 코드는 프로파일러 없이 실행한다)
+        if (Profiler.active != null && classes == null && !(stmt instanceof Stmt.Block)) {
+            code.iconst(Profiler.line(stmt));
+            code.invoke(INVOKESTATIC, PACKAGE + "Profiler", "at", "(I)V");
+        }
+        if (stmt instanceof Stmt.Block) {
+            for (Stmt statement : ((Stmt.Block)stmt).statements) statement(statement);
+        } else if (stmt instanceof Stmt.Expression) {
+            Expr expression = ((Stmt.Expression)stmt).expression;
+            if (isDouble(expression)) {
+                number(expression);
+                code.op(POP2, -2);
+            } else {
+                value(expression);
+                code.op(POP, -1);
+            }
+        } else if (stmt instanceof Stmt.Print) {
+            value(((Stmt.Print)stmt).expression);
+            code.invoke(INVOKESTATIC, INTERPRETER, "print", "(" + OBJECT + ")V");
+        } else if (stmt instanceof Stmt.Return) {
+            Expr value = ((Stmt.Return)stmt).value;
+            if (value == null) code.op(ACONST_NULL, 1);
+            else value(value);
+            code.op(ARETURN, -1);
+        } else if (stmt instanceof Stmt.Var) {
+            Stmt.Var var = (Stmt.Var)stmt;
+            if (var.kind == Resolver.LOCAL) {
+                store(var.slot, var.initializer);
+            } else {
+                if (var.initializer == null) code.op(ACONST_NULL, 1);
+                else value(var.initializer);
+                declare(var.kind, var.slot);
+                define(var.kind, var.slot, var.name);
+            }
+        } else if (stmt instanceof Stmt.Function) {
+            Stmt.Function declaration = (Stmt.Function)stmt;
+            declare(declaration.kind, declaration.slot);
+            newFunction(declaration, false);
+            define(declaration.kind, declaration.slot, declaration.name);
+        } else if (stmt instanceof Stmt.Class) {
+            Stmt.Class klass = (Stmt.Class)stmt;
+            declare(klass.kind, klass.slot);
+            code.type(NEW, PACKAGE + "LoxClass");
+            code.op(DUP, 1);
+            code.ldc(klass.name.lexeme);
+            code.type(NEW, "java/util/HashMap");
+            code.op(DUP, 1);
+            code.invoke(INVOKESPECIAL, "java/util/HashMap", "<init>", "()V");
+            for (Stmt.Function method : klass.methods) {
+                code.op(DUP, 1);
+                code.ldc(method.name.lexeme);
+                newFunction(method, method.name.lexeme.equals("init"));
+                code.invoke(INVOKEINTERFACE, "java/util/Map", "put", "(" + OBJECT + OBJECT + ")" + OBJECT);
+                code.op(POP, -1);
+            }
+            code.invoke(INVOKESPECIAL, PACKAGE + "LoxClass", "<init>", "(Ljava/lang/String;Ljava/util/Map;)V");
+            define(klass.kind, klass.slot, klass.name);
+        } else if (stmt instanceof Stmt.If) {
+            Stmt.If branch = (Stmt.If)stmt;
+            ClassEmitter.Label otherwise = new ClassEmitter.Label(), end = new ClassEmitter.Label();
+            branch(branch.condition, otherwise, false);
+            statement(branch.thenBranch);
+            code.jump(GOTO, end);
+            code.place(otherwise);
+            if (branch.elseBranch != null) statement(branch.elseBranch);
+            code.place(end);
+        } else if (stmt instanceof Stmt.While) {
+            Stmt.While loop = (Stmt.While)stmt;
+            Loop labels = new Loop();
+            code.place(labels.continueLabel);
+            branch(loop.condition, labels.breakLabel, false);
+            loops.push(labels);
+            statement(loop.body);
+            loops.pop();
+            code.jump(GOTO, labels.continueLabel);
+            code.place(labels.breakLabel);
+        } else if (stmt instanceof Stmt.For) {
+            Stmt.For loop = (Stmt.For)stmt;
+            if (loop.initializer != null) statement(loop.initializer);
+            forLoop(loop);
+        } else if (stmt instanceof Stmt.Break) {
+            code.jump(GOTO, loops.peek().breakLabel);
+        } else if (stmt instanceof Stmt.Continue) {
+            code.jump(GOTO, loops.peek().continueLabel);
+        }
+    }
+    // for문의 초기화식 뒤: 조건 확인 -> 본문 -> 증감식
+    private void forLoop(Stmt.For loop) {
+        Loop labels = new Loop();
+        ClassEmitter.Label top = new ClassEmitter.Label();
+        code.place(top);
+        if (loop.condition != null) branch(loop.condition, labels.breakLabel, false);
+        loops.push(labels);
+        statement(loop.body);
+        loops.pop();
+        code.place(labels.continueLabel);
+        if (loop.increment != null) statement(new Stmt.Expression(loop.increment));
+        code.jump(GOTO, top);
+        code.place(labels.breakLabel);
+    }
+    // AOT: Interpreter.declare/define과 같다. 클로저가 잡아 가는 변수는 선언을 실행할 때마다 새 Cell을 만들고,
+    // define은 스택의 값을 이름에 넣는다.
+    private void declare(int kind, int slot) {
+        if (kind != Resolver.CELL) return;
+        code.type(NEW, CELL);
+        code.op(DUP, 1);
+        code.op(ACONST_NULL, 1);
+        code.invoke(INVOKESPECIAL, CELL, "<init>", "(" + OBJECT + ")V");
+        code.astore(local[slot]);
+    }
+    private void define(int kind, int slot, Token name) {
+        if (kind == Resolver.GLOBAL) {
+            int value = newLocal(1);
+            code.astore(value);
+            globals();
+            code.iconst(slot);
+            code.aload(value);
+            code.invoke(INVOKEVIRTUAL, PACKAGE + "Globals", "define", "(I" + OBJECT + ")V");
+        } else if (kind == Resolver.CELL) {
+            cell(kind, slot);
+            code.op(SWAP, 0);
+            code.field(PUTFIELD, CELL, "value", OBJECT);
+        } else {
+            code.astore(local[slot]);
+        }
+    }
+    // AOT: 함수 선언을 실행한다. Resolver가 정한 바깥 변수(이 프레임의 Cell, 이 함수의 업밸류)를 잡아 LoxFunction을 만든다.
+    private void newFunction(Stmt.Function declaration, boolean isInitializer) {
+        code.type(NEW, PACKAGE + "LoxFunction");
+        code.op(DUP, 1);
+        constant(declaration, FUNCTION);
+        code.iconst(declaration.upvalues.length);
+        code.type(ANEWARRAY, CELL);
+        for (int i=0;i<declaration.upvalues.length;++i) {
+            int source = declaration.upvalues[i];
+            code.op(DUP, 1);
+            code.iconst(i);
+            if (source >= 0) cell(Resolver.CELL, source);
+            else cell(Resolver.UPVALUE, ~source);
+            code.op(AASTORE, -3);
+        }
+        code.iconst(isInitializer ? 1 : 0);
+        code.invoke(INVOKESPECIAL, PACKAGE + "LoxFunction", "<init>", "(L" + FUNCTION + ";[L" + CELL + ";Z)V");
+    }
+    // 클로저 변수의 Cell을 스택에 올린다. CELL은 이 프레임의 슬롯, UPVALUE는 이 함수가 잡아 온 것이다.
+    private void cell(int kind, int slot) {
+        if (kind == Resolver.CELL) {
+            code.aload(local[slot]);
+            code.type(CHECKCAST, CELL);
+        } else {
+            code.aload(UPVALUES);
+            code.iconst(slot);
+            code.op(AALOAD, -1);
+        }
+    }
+
+    // 지역 변수 선언: 값을 슬롯에 넣는다. (초기화식이 없으면 nil)
+    private void store(int slot, Expr value) {
+        if (doubleSlot[slot]) {
+            number(value);
+            code.dstore(local[slot]);
+        } else {
+            if (value == null) code.op(ACONST_NULL, 1);
+            else value(value);
+            code.astore(local[slot]);
+        }
+    }
+
+    // 식의 값을 Object로 스택에 올린다.
+    private void value(Expr expr) {
+        if (isDouble(expr)) {
+            number(expr);
+            code.invoke(INVOKESTATIC, INTERPRETER, "box", "(D)L" + DOUBLE + ";");
+            return;
+        }
+        if (isBoolean(expr)) {
+            ClassEmitter.Label otherwise = new ClassEmitter.Label(), end = new ClassEmitter.Label();
+            branch(expr, otherwise, false);
+            code.field(GETSTATIC, BOOLEAN, "TRUE", "L" + BOOLEAN + ";");
+            code.jump(GOTO, end);
+            code.place(otherwise);
+            code.field(GETSTATIC, BOOLEAN, "FALSE", "L" + BOOLEAN + ";");
+            code.place(end);
+            return;
+        }
+        if (expr instanceof Expr.Literal) {
+            Object value = ((Expr.Literal)expr).value;
+            if (value == null) code.op(ACONST_NULL, 1);
+            else if (value instanceof String) code.ldc((String)value);
+            else code.field(GETSTATIC, BOOLEAN, (Boolean)value ? "TRUE" : "FALSE", "L" + BOOLEAN + ";");
+        } else if (expr instanceof Expr.Variable) {
+            Expr.Variable variable = (Expr.Variable)expr;
+            variable(variable.kind, variable.slot, variable.name);
+        } else if (expr instanceof Expr.This) {
+            Expr.This self = (Expr.This)expr;
+            variable(self.kind, self.slot, self.keyword);
+        } else if (expr instanceof Expr.Assign) {
+            Expr.Assign assign = (Expr.Assign)expr;
+            value(assign.value);
+            int target = variableLocal(assign.kind, assign.slot);
+            if (assign.kind == Resolver.CELL || assign.kind == Resolver.UPVALUE) {
+                code.op(DUP, 1);
+                cell(assign.kind, assign.slot);
+                code.op(SWAP, 0);
+                code.field(PUTFIELD, CELL, "value", OBJECT);
+            } else if (target >= 0) {
+                code.op(DUP, 1);
+                code.astore(target);
+            } else {
+                int value = newLocal(1);
+                code.astore(value);
+                globals();
+                code.iconst(assign.slot);
+                token(assign.name);
+                code.aload(value);
+                code.invoke(INVOKEVIRTUAL, PACKAGE + "Globals", "assign", "(I" + TOKEN + OBJECT + ")V");
+                code.aload(value);
+            }
+        } else if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr; //숫자가 아닐 수 있는 +
+            value(binary.left);
+            value(binary.right);
+            token(binary.operator);
+            code.invoke(INVOKESTATIC, JIT, "add", "(" + OBJECT + OBJECT + TOKEN + ")" + OBJECT);
+        } else if (expr instanceof Expr.Logical) {
+            Expr.Logical logical = (Expr.Logical)expr;
+            ClassEmitter.Label end = new ClassEmitter.Label();
+            value(logical.left);
+            code.op(DUP, 1);
+            code.invoke(INVOKESTATIC, INTERPRETER, "isTruthy", "(" + OBJECT + ")Z");
+            code.jump(logical.operator.type == TokenType.OR ? IFNE : IFEQ, end);
+            code.op(POP, -1);
+            value(logical.right);
+            code.place(end);
+        } else if (expr instanceof Expr.Grouping) {
+            value(((Expr.Grouping)expr).expression);
+        } else if (expr instanceof Expr.Hoisted) {
+            value(((Expr.Hoisted)expr).expression);
+        } else if (expr instanceof Expr.Call) {
+            call((Expr.Call)expr);
+        } else if (expr instanceof Expr.Get) {
+            Expr.Get get = (Expr.Get)expr;
+            value(get.object);
+            getProperty(get);
+        } else if (expr instanceof Expr.Set) {
+            Expr.Set set = (Expr.Set)expr;
+            value(set.object);
+            token(set.name);
+            code.invoke(INVOKESTATIC, JIT, "instance", "(" + OBJECT + TOKEN + ")L" + LOX_INSTANCE + ";");
+            value(set.value);
+            constant(set, PACKAGE + "Expr$Set");
+            code.invoke(INVOKESTATIC, JIT, "set", "(L" + LOX_INSTANCE + ";" + OBJECT + "L" + PACKAGE + "Expr$Set;)" + OBJECT);
+        } else if (expr instanceof Expr.IndexGet) {
+            Expr.IndexGet index = (Expr.IndexGet)expr;
+            value(index.object);
+            value(index.index);
+            code.invoke(INVOKESTATIC, INTERPRETER, "indexGet", "(" + OBJECT + OBJECT + ")" + OBJECT);
+        } else if (expr instanceof Expr.IndexSet) {
+            Expr.IndexSet index = (Expr.IndexSet)expr;
+            value(index.object);
+            value(index.index);
+            value(index.value);
+            code.invoke(INVOKESTATIC, INTERPRETER, "indexSet", "(" + OBJECT + OBJECT + OBJECT + ")" + OBJECT);
+        } else if (expr instanceof Expr.Array) {
+            List<Expr> elements = ((Expr.Array)expr).elements;
+            //힙 보고가 할당 지점을 적고 있으면 만들기 전에 줄을 알린다. (AOT 코드는 적지 않는다)
+            if (Heap.SITES && classes == null) {
+                code.iconst(((Expr.Array)expr).bracket.line);
+                code.invoke(INVOKESTATIC, PACKAGE + "Heap", "at", "(I)V");
+            }
+            code.type(NEW, LOX_ARRAY);
+            code.op(DUP, 1);
+            code.iconst(elements.size());
+            code.invoke(INVOKESPECIAL, LOX_ARRAY, "<init>", "(I)V");
+            for (Expr element : elements) {
+                code.op(DUP, 1);
+                if (isDouble(element)) {
+                    number(element);
+                    code.invoke(INVOKEVIRTUAL, LOX_ARRAY, "addDouble", "(D)V");
+                } else {
+                    value(element);
+                    code.invoke(INVOKEVIRTUAL, LOX_ARRAY, "add", "(" + OBJECT + ")Z");
+                    code.op(POP, -1);
+                }
+            }
+        }
+    }
+    // 변수 값을 Object로 올린다.
+    private void variable(int kind, int slot, Token name) {
+        if (kind == Resolver.CELL || kind == Resolver.UPVALUE) {
+            cell(kind, slot);
+            code.field(GETFIELD, CELL, "value", OBJECT);
+            return;
+        }
+        int target = variableLocal(kind, slot);
+        if (target >= 0) {
+            code.aload(target);
+        } else {
+            globals();
+            code.iconst(slot);
+            token(name);
+            code.invoke(INVOKEVIRTUAL, PACKAGE + "Globals", "get", "(I" + TOKEN + ")" + OBJECT);
+        }
+    }
+    private void globals() {
+        code.aload(INTERPRETER_LOCAL);
+        code.field(GETFIELD, INTERPRETER, "globals", "L" + PACKAGE + "Globals;");
+    }
+    private void getProperty(Expr.Get get) {
+        code.aload(INTERPRETER_LOCAL);
+        constant(get, PACKAGE + "Expr$Get");
+        code.invoke(INVOKESTATIC, JIT, "get", "(" + OBJECT + "L" + INTERPRETER + ";L" + PACKAGE + "Expr$Get;)" + OBJECT);
+    }
+    // 호출: 대상, 인자 리스트를 만든 뒤 Interpreter.callValue로 부른다. obj.method(...)는 묶은 메서드를 부르는 것과 같다.
+    // 배열 내장 메서드(붙이기 등)는 대상이 배열이면 이름으로 찾거나 인자 리스트를 만들지 않고 Jit의 도우미를 바로 부른다.
+    private void call(Expr.Call call) {
+        ClassEmitter.Label end = null;
+        if (call.callee instanceof Expr.Get) {
+            Expr.Get get = (Expr.Get)call.callee;
+            value(get.object);
+            String method = Jit.arrayMethod(get.name.lexeme, call.arguments.size());
+            if (method != null) {
+                ClassEmitter.Label other = new ClassEmitter.Label();
+                end = new ClassEmitter.Label();
+                code.op(DUP, 1);
+                code.type(INSTANCEOF, LIST);
+                code.jump(IFEQ, other);
+                code.type(CHECKCAST, LIST);
+                if (call.arguments.isEmpty()) {
+                    code.invoke(INVOKESTATIC, JIT, method, "(L" + LIST + ";)" + OBJECT);
+                } else if (method.equals("append") && isDouble(call.arguments.get(0))) {
+                    number(call.arguments.get(0));
+                    code.invoke(INVOKESTATIC, JIT, "appendDouble", "(L" + LIST + ";D)" + OBJECT);
+                } else {
+                    value(call.arguments.get(0));
+                    code.invoke(INVOKESTATIC, JIT, method, "(L" + LIST + ";" + OBJECT + ")" + OBJECT);
+                }
+                code.jump(GOTO, end);
+                code.place(other);
+            }
+            getProperty(get);
+        } else {
+            value(call.callee);
+        }
+        code.type(NEW, ARRAY_LIST);
+        code.op(DUP, 1);
+        code.iconst(call.arguments.size());
+        code.invoke(INVOKESPECIAL, ARRAY_LIST, "<init>", "(I)V");
+        for (Expr argument : call.arguments) {
+            code.op(DUP, 1);
+            value(argument);
+            code.invoke(INVOKEINTERFACE, LIST, "add", "(" + OBJECT + ")Z");
+            code.op(POP, -1);
+        }
+        code.aload(INTERPRETER_LOCAL);
+        constant(call, PACKAGE + "Expr$Call");
+        code.invoke(INVOKESTATIC, JIT, "call",
+            "(" + OBJECT + "L" + LIST + ";L" + INTERPRETER + ";L" + PACKAGE + "Expr$Call;)" + OBJECT);
+        if (end != null) code.place(end);
+    }
+
+    // 결과가 숫자인 식(isDouble)을 double로 스택에 올린다.
+    private void number(Expr expr) {
+        if (expr instanceof Expr.Literal) {
+            code.ldc((double)((Expr.Literal)expr).value);
+        } else if (expr instanceof Expr.Variable) {
+            Expr.Variable variable = (Expr.Variable)expr;
+            code.dload(variableLocal(variable.kind, variable.slot));
+        } else if (expr instanceof Expr.Assign) {
+            Expr.Assign assign = (Expr.Assign)expr;
+            number(assign.value);
+            code.op(DUP2, 2);
+            code.dstore(variableLocal(assign.kind, assign.slot));
+        } else if (expr instanceof Expr.Grouping) {
+            number(((Expr.Grouping)expr).expression);
+        } else if (expr instanceof Expr.Hoisted) {
+            number(((Expr.Hoisted)expr).expression);
+        } else if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary)expr;
+            if (isDouble(unary.right)) {
+                number(unary.right);
+                code.op(DNEG, 0);
+            } else {
+                value(unary.right);
+                token(unary.operator);
+                code.invoke(INVOKESTATIC, JIT, "negate", "(" + OBJECT + TOKEN + ")D");
+            }
+        } else {
+            Expr.Binary binary = (Expr.Binary)expr;
+            operands(binary);
+            switch (binary.operator.type) {
+                case PLUS: code.op(DADD, -2); break;
+                case MINUS: code.op(DSUB, -2); break;
+                case STAR: code.op(DMUL, -2); break;
+                case SLASH:
+                    token(binary.operator);
+                    code.invoke(INVOKESTATIC, JIT, "divide", "(DD" + TOKEN + ")D");
+                    break;
+                default:
+                    token(binary.operator);
+                    code.invoke(INVOKESTATIC, JIT, "modulo", "(DD" + TOKEN + ")D");
+                    break;
+            }
+        }
+    }
+    // 숫자 연산의 두 피연산자를 double로 올린다. 둘 다 평가한 뒤 왼쪽, 오른쪽 순서로 숫자인지 확인한다.
+    private void operands(Expr.Binary binary) {
+        boolean leftDouble = isDouble(binary.left), rightDouble = isDouble(binary.right);
+        if (leftDouble && rightDouble) {
+            number(binary.left);
+            number(binary.right);
+            return;
+        }
+        int left = newLocal(2), right = newLocal(2);
+        int leftValue = operand(binary.left, leftDouble, left);
+        int rightValue = operand(binary.right, rightDouble, right);
+        if (!leftDouble) unbox(leftValue, binary.operator, left);
+        if (!rightDouble) unbox(rightValue, binary.operator, right);
+        code.dload(left);
+        code.dload(right);
+    }
+    // 숫자식이면 double로 target에 넣고, 아니면 값을 새 Object 지역 변수에 넣어 그 번호를 돌려준다.
+    private int operand(Expr expr, boolean isDouble, int target) {
+        if (isDouble) {
+            number(expr);
+            code.dstore(target);
+            return -1;
+        }
+        int value = newLocal(1);
+        value(expr);
+        code.astore(value);
+        return value;
+    }
+    private void unbox(int value, Token operator, int target) {
+        code.aload(value);
+        token(operator);
+        code.invoke(INVOKESTATIC, JIT, "number", "(" + OBJECT + TOKEN + ")D");
+        code.dstore(target);
+    }
+
+    // 조건식의 참/거짓이 when이면 target으로 점프한다. 값(Boolean)을 만들지 않는다.
+    private void branch(Expr expr, ClassEmitter.Label target, boolean when) {
+        if (expr instanceof Expr.Grouping) {
+            branch(((Expr.Grouping)expr).expression, target, when);
+            return;
+        }
+        if (expr instanceof Expr.Unary && ((Expr.Unary)expr).operator.type == TokenType.BANG) {
+            branch(((Expr.Unary)expr).right, target, !when);
+            return;
+        }
+        if (expr instanceof Expr.Logical) {
+            Expr.Logical logical = (Expr.Logical)expr;
+            boolean or = logical.operator.type == TokenType.OR;
+            if (or == when) {
+                //or가 참이거나 and가 거짓이면: 어느 한쪽만으로 결정된다
+                branch(logical.left, target, when);
+                branch(logical.right, target, when);
+            } else {
+                ClassEmitter.Label skip = new ClassEmitter.Label();
+                branch(logical.left, skip, !when);
+                branch(logical.right, target, when);
+                code.place(skip);
+            }
+            return;
+        }
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr;
+            TokenType type = binary.operator.type;
+            if (type == TokenType.EQUAL_EQUAL || type == TokenType.BANG_EQUAL) {
+                value(binary.left);
+                value(binary.right);
+                code.invoke(INVOKESTATIC, INTERPRETER, "isEqual", "(" + OBJECT + OBJECT + ")Z");
+                code.jump((type == TokenType.EQUAL_EQUAL) == when ? IFNE : IFEQ, target);
+                return;
+            }
+            if (type == TokenType.LESS || type == TokenType.LESS_EQUAL || type == TokenType.GREATER || type == TokenType.GREATER_EQUAL) {
+                operands(binary);
+                //NaN과 비교하면 항상 거짓이 되도록 < <=는 dcmpg, > >=는 dcmpl을 쓴다.
+                boolean less = type == TokenType.LESS || type == TokenType.LESS_EQUAL;
+                code.op(less ? DCMPG : DCMPL, -3);
+                int opcode;
+                switch (type) {
+                    case LESS: opcode = when ? IFLT : IFGE; break;
+                    case LESS_EQUAL: opcode = when ? IFLE : IFGT; break;
+                    case GREATER: opcode = when ? IFGT : IFLE; break;
+                    default: opcode = when ? IFGE : IFLT; break;
+                }
+                code.jump(opcode, target);
+                return;
+            }
+        }
+        value(expr);
+        code.invoke(INVOKESTATIC, INTERPRETER, "isTruthy", "(" + OBJECT + ")Z");
+        code.jump(when ? IFNE : IFEQ, target);
+    }
+}
@@ -0,0 +1,180 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+// jloxc: .jlox 스크립트를 미리(AOT) JVM 클래스 파일로 컴파일해서 java -jar로 실행할 수 있는 jar로 묶는다.
+// 스캔, 파싱, 리졸브, AST 최적화는 컴파일할 때 한 번만 한다. JitCompiler.compileClass가 함수(메서드, 안쪽 함수 포함)마다
+// 클래스 파일 하나를 만들고, 맨 위 코드는 main이 있는 Program 클래스가 된다.
+// jar에는 그 클래스들과 실행에 필요한 런타임(Interpreter의 도우미, LoxClass, LoxInstance, LoxFunction, LoxArray, Globals,
+// 네이티브 함수, Lox.runtimeError 등)만 넣고, 스캐너, 파서, 리졸버, 최적화기, 다른 엔진은 넣지 않는다.
+// 정적 에러는 jloxc가 인터프리터와 같은 메시지로 알리고 65로 끝난다. 컴파일된 프로그램의 출력, 런타임 에러, 종료 코드(70)는 인터프리터와 같다.
+public class Jloxc {
+    private static final String PACKAGE = "com/craftinginterpreters/lox/";
+    private static final String PROGRAM = PACKAGE + "Program";
+    // 런타임에 넣지 않는 클래스 (중첩 클래스는 바깥 클래스 이름으로 거른다)
+    private static final Set<String> FRONT_END = new HashSet<>(Arrays.asList(
+        "Scanner", "Parser", "Resolver", "Optimizer", "LoopOptimizer", "Inliner", "AstPrinter",
+        "Compiler", "Chunk", "OpCode", "VM", "ClosureCompiler", "JitCompiler", "ClassEmitter", "Jloxc", "Program"
+    ));
+
+    public static void main(String[] args) throws IOException {
+        boolean optimize = true;
+        String script = null, output = null;
+        for (int i=0;i<args.length;++i) {
+            if (args[i].equals("--no-optimize")) {
+                optimize = false;
+            } else if (args[i].equals("-o") && i + 1 < args.length) {
+                output = args[++i];
+            } else if (script == null && !args[i].startsWith("-")) {
+                script = args[i];
+            } else {
+                script = null;
+                break;
+            }
+        }
+        if (script == null) {
+            System.out.println("사용법: jloxc [--no-optimize] [-o 출력.jar] 스크립트파일");
+            System.exit(64);
+        }
+        if (output == null) output = script.replaceFirst("\\.[^./\\\\]*$", "") + ".jar";
+
+        String source;
+        try {
+            source = new String(Files.readAllBytes(Paths.get(script)), Charset.defaultCharset());
+        } catch (IOException e) {
+            System.err.println("파일 읽기 오류: " + e.getMessage());
+            System.exit(65);
+            return;
+        }
+        //전역 번호를 실행할 때와 같게 매기도록 네이티브 함수가 등록된 전역 테이블로 리졸브한다.
+        Interpreter interpreter = new Interpreter();
+        List<Stmt> statements = new Parser(new Scanner(source).scanTokens()).parse();
+        if (Lox.hadError) System.exit(65);
+        Resolver resolver = new Resolver(interpreter);
+        resolver.resolve(statements);
+        if (Lox.hadError) System.exit(65);
+        //LoopOptimizer와 Inliner가 붙이는 표시는 트리 인터프리터용이라 컴파일된 코드가 쓰지 않으므로 Optimizer만 돌린다.
+        if (optimize) new Optimizer().optimize(statements);
+
+        //맨 위 코드는 매개변수 없는 함수로 감싸서 컴파일한다.
+        Stmt.Function program = new Stmt.Function(new Token(TokenType.IDENTIFIER, "script", null, 0),
+            Collections.emptyList(), statements);
+        program.slots = resolver.scriptSlots();
+        program.upvalues = new int[0];
+        program.cellParams = new int[0];
+        Map<Stmt.Function,String> classes = new LinkedHashMap<>();
+        Set<Stmt.Function> methods = new HashSet<>();
+        collect(statements, classes, methods);
+
+        Map<String,byte[]> entries = new LinkedHashMap<>();
+        try {
+            entries.put(PROGRAM + ".class",
+                new JitCompiler(program, 0, PROGRAM, classes).compileClass(interpreter.globals.names()));
+            for (Map.Entry<Stmt.Function,String> entry : classes.entrySet()) {
+                Stmt.Function function = entry.getKey();
+                int base = methods.contains(function) ? 1 : 0; //메서드는 슬롯 0이 this다
+                entries.put(entry.getValue() + ".class",
+                    new JitCompiler(function, base, entry.getValue(), classes).compileClass(null));
+            }
+        } catch (IllegalStateException e) {
+            System.err.println("컴파일 오류: " + e.getMessage());
+            System.exit(65);
+        }
+        runtime(entries);
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, PROGRAM.replace('/', '.'));
+        try (OutputStream file = Files.newOutputStream(Paths.get(output));
+             JarOutputStream jar = new JarOutputStream(file, manifest)) {
+            for (Map.Entry<String,byte[]> entry : entries.entrySet()) {
+                jar.putNextEntry(new JarEntry(entry.getKey()));
+                jar.write(entry.getValue());
+                jar.closeEntry();
+            }
+        }
+    }
+
+    // 모든 함수 선언(안쪽 함수, 메서드 포함)에 클래스 이름을 붙인다.
+    private static void collect(List<Stmt> statements, Map<Stmt.Function,String> classes, Set<Stmt.Function> methods) {
+        for (Stmt stmt : statements) collect(stmt, classes, methods);
+    }
+    private static void collect(Stmt stmt, Map<Stmt.Function,String> classes, Set<Stmt.Function> methods) {
+        if (stmt instanceof Stmt.Block) {
+            collect(((Stmt.Block)stmt).statements, classes, methods);
+        } else if (stmt instanceof Stmt.If) {
+            Stmt.If branch = (Stmt.If)stmt;
+            collect(branch.thenBranch, classes, methods);
+            if (branch.elseBranch != null) collect(branch.elseBranch, classes, methods);
+        } else if (stmt instanceof Stmt.While) {
+            collect(((Stmt.While)stmt).body, classes, methods);
+        } else if (stmt instanceof Stmt.For) {
+            Stmt.For loop = (Stmt.For)stmt;
+            if (loop.initializer != null) collect(loop.initializer, classes, methods);
+            collect(loop.body, classes, methods);
+        } else if (stmt instanceof Stmt.Function) {
+            function((Stmt.Function)stmt, classes, methods);
+        } else if (stmt instanceof Stmt.Class) {
+            for (Stmt.Function method : ((Stmt.Class)stmt).methods) {
+                methods.add(method);
+                function(method, classes, methods);
+            }
+        }
+    }
+    private static void function(Stmt.Function function, Map<Stmt.Function,String> classes, Set<Stmt.Function> methods) {
+        classes.put(function, PROGRAM + "$" + function.name.lexeme + "$" + (classes.size() + 1));
+        collect(function.body, classes, methods);
+    }
+
+    // 런타임 클래스를 이 클래스가 올라온 곳(클래스 디렉터리나 jar)에서 모은다.
+    private static void runtime(Map<String,byte[]> entries) throws IOException {
+        Path location;
+        try {
+            location = Paths.get(Jloxc.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+        if (Files.isDirectory(location)) {
+            try (Stream<Path> files = Files.list(location.resolve(PACKAGE))) {
+                for (Path file : (Iterable<Path>)files.sorted()::iterator) {
+                    String name = PACKAGE + file.getFileName();
+                    if (isRuntime(name)) entries.put(name, Files.readAllBytes(file));
+                }
+            }
+        } else {
+            try (JarFile jar = new JarFile(location.toFile())) {
+                for (Enumeration<JarEntry> all = jar.entries(); all.hasMoreElements();) {
+                    JarEntry entry = all.nextElement();
+                    if (isRuntime(entry.getName())) entries.put(entry.getName(), jar.getInputStream(entry).readAllBytes());
+                }
+            }
+        }
+    }
+    private static boolean isRuntime(String name) {
+        if (!name.startsWith(PACKAGE) || !name.endsWith(".class")) return false;
+        String simple = name.substring(PACKAGE.length(), name.length() - ".class".length());
+        if (simple.contains("/")) return false;
+        int nested = simple.indexOf('$');
+        return !FRONT_END.contains(nested < 0 ? simple : simple.substring(0, nested));
+    }
+}
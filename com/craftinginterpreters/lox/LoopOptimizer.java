@@ -0,0 +1,522 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// 반복문 최적화 단계. (Lox.run에서 Optimizer 다음에 부른다. --no-optimize면 같이 꺼진다.)
+// - 불변식 끌어올리기: 반복 중에 값이 바뀔 수 없는 식(예: n - i - 1, 배열.길이)을 Expr.Hoisted로 감싼다.
+//   Hoisted는 반복문에 들어갈 때 비워지는 프레임 슬롯에 처음 평가한 값을 기억한다. 처음 평가하는 시점이 원래와 같으므로
+//   조건에 따라 평가되지 않는 식을 감싸도 에러가 새로 생기지 않는다.
+// - 유도 변수와 범위 검사 제거: Resolver가 알아본 카운트 for문(i = i + 양수)의 조건이 i < a.길이이고 본문이 i와 a를
+//   바꾸지 않으면, 본문의 a[i](Expr.IndexGet.bounds)는 i >= 0만 보고 LoxArray.getUnchecked로 읽는다.
+//   (Interpreter.visitIndexGetExpr. 표시는 이 단계에서 한 번만 적고 실행 중에는 바꾸지 않으므로 재귀 호출이 같은 반복문에
+//   들어가도 서로 영향이 없다. 같은 AST를 다시 최적화하지는 않는다)
+//
+// 배열 길이는 배열 메서드(붙이기, 뒤에서빼기, 앞에넣기, 앞에서빼기) 호출로만 바뀐다. 그래서 a.길이는 반복문 안에 호출이 없거나,
+// 호출이 모두 "새 배열 변수"(배열 리터럴로 선언되고 다시 대입되지 않는 변수)의 배열 메서드이고 a가 그 변수와 같은 배열일 수
+// 없을 때(a가 대입되지 않는 매개변수이거나 다른 새 배열 변수일 때)만 불변으로 본다. 그 밖의 호출이 있으면 사용자 코드가
+// 무엇이든 바꿀 수 있으므로 지역 변수(LOCAL)와 길이가 아닌 식만 끌어올린다.
+//
+// 변수는 이름으로 보수적으로 판단한다. 반복문 안에서 대입되거나 선언되는 이름은 불변이 아니다.
+// 새 슬롯은 반복문이 들어 있는 함수의 프레임(Stmt.Function.slots, 맨 위 코드는 스크립트 프레임) 뒤에 붙인다.
+class LoopOptimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+    private static final Set<String> ARRAY_METHODS = Set.of(
+        "붙이기", "append", "뒤에서빼기", "pop_back", "앞에서빼기", "pop_front", "앞에넣기", "push_front");
+
+    // 지금 보고 있는 함수(맨 위 코드 포함)
+    private int nextSlot;
+    private boolean inFunction = false;
+    private final Set<String> freshArrays = new HashSet<>();  //배열 리터럴로 한 번 선언되고 대입되지 않는 변수
+    private final Set<String> stableParams = new HashSet<>(); //한 번 선언되고 대입되지 않는 매개변수
+
+    // 지금 끌어올리는 반복문 (null이면 반복문 밖)
+    private Loop loop = null;
+
+    // 반복문 하나에 대해 모은 정보
+    private static class Loop {
+        final Set<String> written = new HashSet<>();  //대입되거나 선언되는 이름
+        final Set<String> mutated = new HashSet<>();  //배열 메서드를 부르는 새 배열 변수
+        final Set<String> setNames = new HashSet<>(); //인스턴스에 쓰는 필드 이름
+        boolean calls = false; //사용자 코드를 실행할 수 있는 호출이 있다
+        int[] slots = new int[0];
+    }
+
+    // 맨 위 코드를 최적화하고 늘어난 스크립트 프레임 크기를 돌려준다.
+    int optimize(List<Stmt> statements, int frameSize) {
+        nextSlot = frameSize;
+        scanFunction(List.of(), statements);
+        optimizeList(statements);
+        return nextSlot;
+    }
+
+    private void optimizeList(List<Stmt> statements) {
+        for (int i=0;i<statements.size();++i) {
+            statements.set(i, optimize(statements.get(i)));
+        }
+    }
+    private Stmt optimize(Stmt stmt) {
+        return stmt == null ? null : stmt.accept(this);
+    }
+    private Expr optimize(Expr expr) {
+        return expr == null ? null : expr.accept(this);
+    }
+
+    // 함수 본문(중첩 함수 포함)에서 새 배열 변수와 대입되지 않는 매개변수를 찾는다.
+    private void scanFunction(List<Token> params, List<Stmt> body) {
+        Map<String,Integer> declarations = new HashMap<>();
+        Set<String> assigned = new HashSet<>();
+        Set<String> arrays = new HashSet<>();
+        for (Token param : params) declarations.merge(param.lexeme, 1, Integer::sum);
+        new Walker(declarations, assigned, arrays).statements(body);
+        freshArrays.clear();
+        stableParams.clear();
+        for (String name : arrays) {
+            if (declarations.get(name) == 1 && !assigned.contains(name)) freshArrays.add(name);
+        }
+        for (Token param : params) {
+            String name = param.lexeme;
+            if (declarations.get(name) == 1 && !assigned.contains(name)) stableParams.add(name);
+        }
+    }
+
+    @Override
+    public Stmt visitFunctionStmt(Stmt.Function stmt) {
+        //함수마다 프레임이 따로 있으므로 슬롯과 변수 정보를 새로 잡고, 바깥 반복문에서는 벗어난다.
+        int enclosingSlot = nextSlot;
+        Set<String> enclosingArrays = new HashSet<>(freshArrays);
+        Set<String> enclosingParams = new HashSet<>(stableParams);
+        Loop enclosingLoop = loop;
+        boolean enclosingFunction = inFunction;
+        loop = null;
+        inFunction = true;
+        nextSlot = stmt.slots;
+        scanFunction(stmt.params, stmt.body);
+        optimizeList(stmt.body);
+        stmt.slots = nextSlot;
+        nextSlot = enclosingSlot;
+        freshArrays.clear();
+        freshArrays.addAll(enclosingArrays);
+        stableParams.clear();
+        stableParams.addAll(enclosingParams);
+        loop = enclosingLoop;
+        inFunction = enclosingFunction;
+        return stmt;
+    }
+    @Override
+    public Stmt visitClassStmt(Stmt.Class stmt) {
+        for (Stmt.Function method : stmt.methods) {
+            visitFunctionStmt(method);
+        }
+        return stmt;
+    }
+    @Override
+    public Stmt visitWhileStmt(Stmt.While stmt) {
+        Loop enclosing = loop;
+        loop = analyze(stmt.condition, stmt.body, null);
+        Expr condition = optimize(stmt.condition);
+        Stmt body = optimize(stmt.body);
+        Stmt.While result = condition == stmt.condition && body == stmt.body ? stmt : new Stmt.While(condition, body);
+        result.hoisted = loop.slots.length > 0 ? loop.slots : null;
+        loop = enclosing;
+        return result;
+    }
+    @Override
+    public Stmt visitForStmt(Stmt.For stmt) {
+        //초기화식은 반복문에 들어가기 전에 한 번 실행되므로 바깥 반복문 기준으로 다듬는다.
+        Stmt initializer = optimize(stmt.initializer);
+        Loop enclosing = loop;
+        loop = analyze(stmt.condition, stmt.body, stmt.increment);
+        //카운트 반복문의 조건식은 Binary 모양을 유지해야 하고, 증감식은 그대로 둔다.
+        Expr condition = optimize(stmt.condition);
+        Expr increment = stmt.counted ? stmt.increment : optimize(stmt.increment);
+        Stmt body = optimize(stmt.body);
+        Stmt.For result = new Stmt.For(initializer, condition, increment, body);
+        result.counted = stmt.counted;
+        result.step = stmt.step;
+        result.counterVisible = stmt.counterVisible;
+        result.hoisted = loop.slots.length > 0 ? loop.slots : null;
+        if (result.counted) eliminateBoundsChecks(result);
+        loop = enclosing;
+        return result;
+    }
+    // i < a.길이 (a.길이가 끌어올려짐) 모양의 카운트 반복문이면 본문의 a[i]에 이 반복문을 표시한다.
+    private void eliminateBoundsChecks(Stmt.For stmt) {
+        Expr.Binary condition = (Expr.Binary)stmt.condition;
+        if (condition.operator.type != TokenType.LESS || stmt.step <= 0) return;
+        if (!(condition.right instanceof Expr.Hoisted)) return;
+        Expr bound = ((Expr.Hoisted)condition.right).expression;
+        if (!(bound instanceof Expr.Get) || !isLength(((Expr.Get)bound).name)) return;
+        Expr object = ((Expr.Get)bound).object;
+        if (!(object instanceof Expr.Variable) || ((Expr.Variable)object).kind == Resolver.GLOBAL) return;
+        Expr.Variable array = (Expr.Variable)object;
+        String counter = ((Stmt.Var)stmt.initializer).name.lexeme;
+        //본문만 보고 i와 a가 바뀌는지 확인한다. (증감식의 i 대입은 제외)
+        Loop body = analyze(null, stmt.body, null);
+        if (body.written.contains(counter) || body.written.contains(array.name.lexeme)) return;
+        new Walker(stmt, array.name.lexeme, counter).statement(stmt.body);
+    }
+
+    // 반복문의 조건식, 본문, 증감식에서 대입/선언되는 이름과 호출을 모은다.
+    private Loop analyze(Expr condition, Stmt body, Expr increment) {
+        Loop info = new Loop();
+        Walker walker = new Walker(info, freshArrays, inFunction);
+        if (condition != null) walker.expression(condition);
+        if (increment != null) walker.expression(increment);
+        walker.statement(body);
+        return info;
+    }
+
+    // 식이 지금 반복문 안에서 항상 같은 값인가
+    private boolean invariant(Expr expr) {
+        if (expr instanceof Expr.Literal || expr instanceof Expr.This || expr instanceof Expr.Hoisted) return true;
+        if (expr instanceof Expr.Variable) {
+            Expr.Variable variable = (Expr.Variable)expr;
+            if (loop.written.contains(variable.name.lexeme)) return false;
+            //프레임 밖(Cell, 업밸류, 전역)에 있는 변수는 호출된 코드가 바꿀 수 있다.
+            return variable.kind == Resolver.LOCAL || !loop.calls;
+        }
+        if (expr instanceof Expr.Grouping) return invariant(((Expr.Grouping)expr).expression);
+        if (expr instanceof Expr.Unary) return invariant(((Expr.Unary)expr).right);
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary)expr;
+            return invariant(binary.left) && invariant(binary.right);
+        }
+        if (expr instanceof Expr.Logical) {
+            Expr.Logical logical = (Expr.Logical)expr;
+            return invariant(logical.left) && invariant(logical.right);
+        }
+        if (expr instanceof Expr.Get) {
+            Expr.Get get = (Expr.Get)expr;
+            return isLength(get.name) && invariant(get.object) && lengthStable(get.object, get.name);
+        }
+        return false;
+    }
+    // object.길이가 반복 중에 바뀔 수 없는가 (배열 길이, 또는 인스턴스의 길이 필드)
+    private boolean lengthStable(Expr object, Token name) {
+        if (loop.calls || loop.setNames.contains(name.lexeme)) return false;
+        if (loop.mutated.isEmpty()) return true;
+        if (!(object instanceof Expr.Variable) || !declaredHere((Expr.Variable)object, inFunction)) return false;
+        String array = ((Expr.Variable)object).name.lexeme;
+        if (loop.mutated.contains(array)) return false;
+        return stableParams.contains(array) || freshArrays.contains(array);
+    }
+    // 이름이 같은 바깥 변수가 아니라 지금 함수에서 선언한 변수를 가리키는가.
+    // (함수 안에서 선언보다 먼저 쓰인 이름은 바깥 변수로 리졸브된다)
+    private static boolean declaredHere(Expr.Variable variable, boolean inFunction) {
+        return !inFunction || variable.kind == Resolver.LOCAL || variable.kind == Resolver.CELL;
+    }
+    private static boolean isLength(Token name) {
+        return name.lexeme.equals("길이") || name.lexeme.equals("length");
+    }
+    // 반복문 안에서 끌어올릴 만한 식이면 Hoisted로 감싼다. 아니면 자식을 다듬는다.
+    private Expr hoist(Expr expr) {
+        if (expr == null) return null;
+        if (loop != null && !(expr instanceof Expr.Literal || expr instanceof Expr.Variable
+                || expr instanceof Expr.This || expr instanceof Expr.Hoisted) && invariant(expr)) {
+            Expr.Hoisted hoisted = new Expr.Hoisted(expr);
+            hoisted.slot = nextSlot++;
+            int[] slots = Arrays.copyOf(loop.slots, loop.slots.length + 1);
+            slots[slots.length - 1] = hoisted.slot;
+            loop.slots = slots;
+            return hoisted;
+        }
+        return expr.accept(this);
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Stmt.Block stmt) {
+        optimizeList(stmt.statements);
+        return stmt;
+    }
+    @Override
+    public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+        Expr expression = hoist(stmt.expression);
+        return expression == stmt.expression ? stmt : new Stmt.Expression(expression);
+    }
+    @Override
+    public Stmt visitIfStmt(Stmt.If stmt) {
+        Expr condition = hoist(stmt.condition);
+        Stmt thenBranch = optimize(stmt.thenBranch);
+        Stmt elseBranch = optimize(stmt.elseBranch);
+        if (condition == stmt.condition && thenBranch == stmt.thenBranch && elseBranch == stmt.elseBranch) return stmt;
+        return new Stmt.If(condition, thenBranch, elseBranch);
+    }
+    @Override
+    public Stmt visitPrintStmt(Stmt.Print stmt) {
+        Expr expression = hoist(stmt.expression);
+        return expression == stmt.expression ? stmt : new Stmt.Print(expression);
+    }
+    @Override
+    public Stmt visitReturnStmt(Stmt.Return stmt) {
+        Expr value = hoist(stmt.value);
+        return value == stmt.value ? stmt : new Stmt.Return(stmt.keyword, value);
+    }
+    @Override
+    public Stmt visitVarStmt(Stmt.Var stmt) {
+        Expr initializer = hoist(stmt.initializer);
+        if (initializer == stmt.initializer) return stmt;
+        Stmt.Var result = new Stmt.Var(stmt.name, initializer);
+        result.kind = stmt.kind;
+        result.slot = stmt.slot;
+        return result;
+    }
+    @Override
+    public Stmt visitBreakStmt(Stmt.Break stmt) {
+        return stmt;
+    }
+    @Override
+    public Stmt visitContinueStmt(Stmt.Continue stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        Expr left = hoist(expr.left);
+        Expr right = hoist(expr.right);
+        if (left == expr.left && right == expr.right) return expr;
+        Expr.Binary result = new Expr.Binary(left, expr.operator, right);
+        //Hoisted는 숫자식으로 보지 않으므로 숫자끼리의 + 표시를 다시 계산한다. (Resolver.visitBinaryExpr와 같은 규칙)
+        result.numeric = expr.operator.type == TokenType.PLUS
+            ? Resolver.isNumeric(left) && Resolver.isNumeric(right)
+            : expr.numeric;
+        return result;
+    }
+    @Override
+    public Expr visitCallExpr(Expr.Call expr) {
+        //호출 대상(obj.method)은 메서드 호출 모양을 유지하도록 감싸지 않는다.
+        Expr callee = expr.callee.accept(this);
+        List<Expr> arguments = expr.arguments;
+        for (int i=0;i<arguments.size();++i) {
+            arguments.set(i, hoist(arguments.get(i)));
+        }
+        return callee == expr.callee ? expr : new Expr.Call(callee, expr.paren, arguments);
+    }
+    @Override
+    public Expr visitGetExpr(Expr.Get expr) {
+        Expr object = hoist(expr.object);
+        return object == expr.object ? expr : new Expr.Get(object, expr.name);
+    }
+    @Override
+    public Expr visitSetExpr(Expr.Set expr) {
+        Expr object = hoist(expr.object);
+        Expr value = hoist(expr.value);
+        if (object == expr.object && value == expr.value) return expr;
+        return new Expr.Set(object, expr.name, value);
+    }
+    @Override
+    public Expr visitThisExpr(Expr.This expr) {
+        return expr;
+    }
+    @Override
+    public Expr visitIndexGetExpr(Expr.IndexGet expr) {
+        Expr object = hoist(expr.object);
+        Expr index = hoist(expr.index);
+        if (object == expr.object && index == expr.index) return expr;
+        return new Expr.IndexGet(object, index);
+    }
+    @Override
+    public Expr visitIndexSetExpr(Expr.IndexSet expr) {
+        Expr object = hoist(expr.object);
+        Expr index = hoist(expr.index);
+        Expr value = hoist(expr.value);
+        if (object == expr.object && index == expr.index && value == expr.value) return expr;
+        return new Expr.IndexSet(object, index, value);
+    }
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        Expr expression = hoist(expr.expression);
+        return expression == expr.expression ? expr : new Expr.Grouping(expression);
+    }
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+    @Override
+    public Expr visitLogicalExpr(Expr.Logical expr) {
+        Expr left = hoist(expr.left);
+        Expr right = hoist(expr.right);
+        if (left == expr.left && right == expr.right) return expr;
+        return new Expr.Logical(left, expr.operator, right);
+    }
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr right = hoist(expr.right);
+        return right == expr.right ? expr : new Expr.Unary(expr.operator, right);
+    }
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        return expr;
+    }
+    @Override
+    public Expr visitAssignExpr(Expr.Assign expr) {
+        Expr value = hoist(expr.value);
+        if (value == expr.value) return expr;
+        Expr.Assign result = new Expr.Assign(expr.name, value);
+        result.kind = expr.kind;
+        result.slot = expr.slot;
+        return result;
+    }
+    @Override
+    public Expr visitArrayExpr(Expr.Array expr) {
+        List<Expr> elements = expr.elements;
+        for (int i=0;i<elements.size();++i) {
+            elements.set(i, hoist(elements.get(i)));
+        }
+        return expr;
+    }
+    @Override
+    public Expr visitHoistedExpr(Expr.Hoisted expr) {
+        return expr;
+    }
+
+    // AST를 훑으며 정보를 모으는 도우미. 쓰임새마다 채우는 필드가 다르다.
+    //  - 함수 훑기: 선언 횟수, 대입되는 이름, 배열 리터럴로 선언되는 이름 (중첩 함수 포함)
+    //  - 반복문 훑기: Loop의 written/mutated/setNames/calls (중첩 함수의 대입도 이름으로 포함)
+    //  - 범위 검사 표시: 본문의 a[i]에 반복문을 적는다 (중첩 함수 본문은 다른 프레임이므로 제외)
+    private static class Walker {
+        private Map<String,Integer> declarations;
+        private Set<String> assigned;
+        private Set<String> arrays;
+        private Loop loop;
+        private Set<String> fresh;
+        private boolean inFunction;
+        private Stmt.For bounds;
+        private String array, counter;
+
+        Walker(Map<String,Integer> declarations, Set<String> assigned, Set<String> arrays) {
+            this.declarations = declarations;
+            this.assigned = assigned;
+            this.arrays = arrays;
+        }
+        Walker(Loop loop, Set<String> fresh, boolean inFunction) {
+            this.loop = loop;
+            this.fresh = fresh;
+            this.inFunction = inFunction;
+        }
+        Walker(Stmt.For bounds, String array, String counter) {
+            this.bounds = bounds;
+            this.array = array;
+            this.counter = counter;
+        }
+
+        private void declare(Token name) {
+            if (declarations != null) declarations.merge(name.lexeme, 1, Integer::sum);
+            if (loop != null) loop.written.add(name.lexeme);
+        }
+        void statements(List<Stmt> statements) {
+            for (Stmt statement : statements) statement(statement);
+        }
+        void statement(Stmt stmt) {
+            if (stmt == null) return;
+            if (stmt instanceof Stmt.Block) {
+                statements(((Stmt.Block)stmt).statements);
+            } else if (stmt instanceof Stmt.Class) {
+                Stmt.Class klass = (Stmt.Class)stmt;
+                declare(klass.name);
+                for (Stmt.Function method : klass.methods) function(method);
+            } else if (stmt instanceof Stmt.Expression) {
+                expression(((Stmt.Expression)stmt).expression);
+            } else if (stmt instanceof Stmt.For) {
+                Stmt.For loop = (Stmt.For)stmt;
+                statement(loop.initializer);
+                expression(loop.condition);
+                expression(loop.increment);
+                statement(loop.body);
+            } else if (stmt instanceof Stmt.Function) {
+                Stmt.Function function = (Stmt.Function)stmt;
+                declare(function.name);
+                function(function);
+            } else if (stmt instanceof Stmt.If) {
+                Stmt.If branch = (Stmt.If)stmt;
+                expression(branch.condition);
+                statement(branch.thenBranch);
+                statement(branch.elseBranch);
+            } else if (stmt instanceof Stmt.Print) {
+                expression(((Stmt.Print)stmt).expression);
+            } else if (stmt instanceof Stmt.Return) {
+                expression(((Stmt.Return)stmt).value);
+            } else if (stmt instanceof Stmt.Var) {
+                Stmt.Var var = (Stmt.Var)stmt;
+                declare(var.name);
+                if (arrays != null && var.initializer instanceof Expr.Array) arrays.add(var.name.lexeme);
+                expression(var.initializer);
+            } else if (stmt instanceof Stmt.While) {
+                Stmt.While loop = (Stmt.While)stmt;
+                expression(loop.condition);
+                statement(loop.body);
+            }
+        }
+        private void function(Stmt.Function function) {
+            if (bounds != null) return; //다른 프레임
+            for (Token param : function.params) declare(param);
+            statements(function.body);
+        }
+        void expression(Expr expr) {
+            if (expr == null) return;
+            if (expr instanceof Expr.Assign) {
+                Expr.Assign assign = (Expr.Assign)expr;
+                if (assigned != null) assigned.add(assign.name.lexeme);
+                if (loop != null) loop.written.add(assign.name.lexeme);
+                expression(assign.value);
+            } else if (expr instanceof Expr.Binary) {
+                expression(((Expr.Binary)expr).left);
+                expression(((Expr.Binary)expr).right);
+            } else if (expr instanceof Expr.Call) {
+                Expr.Call call = (Expr.Call)expr;
+                if (loop != null) {
+                    String receiver = arrayMethodReceiver(call);
+                    if (receiver != null) loop.mutated.add(receiver);
+                    else loop.calls = true;
+                }
+                expression(call.callee);
+                for (Expr argument : call.arguments) expression(argument);
+            } else if (expr instanceof Expr.Get) {
+                expression(((Expr.Get)expr).object);
+            } else if (expr instanceof Expr.Set) {
+                Expr.Set set = (Expr.Set)expr;
+                if (loop != null) loop.setNames.add(set.name.lexeme);
+                expression(set.object);
+                expression(set.value);
+            } else if (expr instanceof Expr.IndexGet) {
+                Expr.IndexGet index = (Expr.IndexGet)expr;
+                if (bounds != null && isVariable(index.object, array) && isVariable(index.index, counter)) {
+                    index.bounds = bounds;
+                }
+                expression(index.object);
+                expression(index.index);
+            } else if (expr instanceof Expr.IndexSet) {
+                Expr.IndexSet index = (Expr.IndexSet)expr;
+                expression(index.object);
+                expression(index.index);
+                expression(index.value);
+            } else if (expr instanceof Expr.Grouping) {
+                expression(((Expr.Grouping)expr).expression);
+            } else if (expr instanceof Expr.Logical) {
+                expression(((Expr.Logical)expr).left);
+                expression(((Expr.Logical)expr).right);
+            } else if (expr instanceof Expr.Unary) {
+                expression(((Expr.Unary)expr).right);
+            } else if (expr instanceof Expr.Array) {
+                for (Expr element : ((Expr.Array)expr).elements) expression(element);
+            } else if (expr instanceof Expr.Hoisted) {
+                expression(((Expr.Hoisted)expr).expression);
+            }
+        }
+        // 새 배열 변수의 배열 메서드 호출(결과.붙이기(x))이면 그 변수 이름. 사용자 코드를 실행하지 않는 호출이다.
+        private String arrayMethodReceiver(Expr.Call call) {
+            if (!(call.callee instanceof Expr.Get)) return null;
+            Expr.Get get = (Expr.Get)call.callee;
+            if (!ARRAY_METHODS.contains(get.name.lexeme) || !(get.object instanceof Expr.Variable)) return null;
+            Expr.Variable receiver = (Expr.Variable)get.object;
+            String name = receiver.name.lexeme;
+            return fresh.contains(name) && declaredHere(receiver, inFunction) ? name : null;
+        }
+        private static boolean isVariable(Expr expr, String name) {
+            return expr instanceof Expr.Variable && ((Expr.Variable)expr).name.lexeme.equals(name);
+        }
+    }
+}
@@ -6,22 +6,96 @@ import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import com.craftinginterpreters.lox.Scanner;
 //import com.craftinginterpreters.lox.AstPrinter;
 
 public class Lox {
     //소스코드를 직접 읽어 실행하는 스크립트 언어이다.
-    private static final Interpreter interpreter = new Interpreter();
+    private static Interpreter interpreter = new Interpreter();
+    //--engine=vm 일 때만 만든다. 트리 인터프리터 대신 바이트코드 VM으로 실행한다.
+    //--engine=node 는 트리 인터프리터의 자기 특수화 노드 모드다. (Interpreter.specializing)
+    private static VM vm = null;
+    //--engine=closure 일 때만 만든다. AST를 미리 람다 트리로 바꿔 실행한다.
+    private static ClosureCompiler closures = null;
+    //리졸브 다음에 AST 최적화(Optimizer, LoopOptimizer, Inliner)를 한다. --no-optimize로 끈다. (디버깅용)
+    private static boolean optimize = true;
+    //--profile[=파일]이면 collapsed stack을 쓸 파일. 기본은 lox-profile.collapsed (Profiler)
+    private static String profile = null;
+    //--stats면 실행 통계를 모아 끝날 때 보고하고 JMX로 내보낸다. (Stats)
+    private static boolean stats = false;
+    //--heap[=N]이면 살아 있는 Lox 객체를 추적해 heapReport(), SIGUSR2, JMX 연산으로 보고한다. N은 할당 지점 샘플 간격 (Heap)
+    private static String heap = null;
     static boolean hadError = false;
     static boolean hadRuntimeError = false;
     public static void main(String[] args) {
-        if (args.length>1) {
-            System.out.println("사용법: jlox [스크립트파일]");
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--engine=vm")) {
+                vm = new VM(interpreter.globals);
+                closures = null;
+            } else if (arg.equals("--engine=tree")) {
+                vm = null;
+                closures = null;
+                interpreter.specializing = false;
+            } else if (arg.equals("--engine=node")) {
+                vm = null;
+                closures = null;
+                interpreter.specializing = true;
+                Jit.enabled = false; //노드 특수화를 그대로 보기 위해 JIT은 끈다
+            } else if (arg.equals("--engine=closure")) {
+                vm = null;
+                closures = new ClosureCompiler(interpreter);
+                interpreter.specializing = false;
+                Jit.enabled = false; //JIT은 같은 AST를 따로 컴파일하므로 람다 트리를 그대로 보기 위해 끈다
+            } else if (arg.equals("--no-optimize")) {
+                optimize = false;
+            } else if (arg.equals("--no-jit")) {
+                Jit.enabled = false;
+            } else if (arg.equals("--profile")) {
+                profile = "lox-profile.collapsed";
+            } else if (arg.startsWith("--profile=")) {
+                profile = arg.substring("--profile=".length());
+            } else if (arg.equals("--stats")) {
+                stats = true;
+            } else if (arg.equals("--heap")) {
+                heap = "true";
+            } else if (arg.startsWith("--heap=")) {
+                heap = arg.substring("--heap=".length());
+            } else {
+                files.add(arg);
+            }
+        }
+        if (files.size()>1 || (!files.isEmpty() && files.get(0).startsWith("--"))) {
+            System.out.println("사용법: jlox [--engine=tree|node|closure|vm] [--no-optimize] [--no-jit] [--profile[=파일]] [--stats] [--heap[=N]] [스크립트파일]");
+            System.exit(64);
+        }
+        if (stats) {
+            //Stats.ENABLED는 클래스를 처음 쓸 때 정해지므로 아무것도 실행하기 전에 속성을 켠다.
+            System.setProperty(Stats.PROPERTY, "true");
+            if (!Stats.ENABLED) System.err.println("--stats: 이 JVM에서는 이미 통계가 꺼진 채로 정해졌습니다. -Dlox.stats=true로 실행하세요.");
+        }
+        if (heap != null) {
+            //Heap.TRACKING도 클래스를 처음 쓸 때 정해지므로 아무것도 실행하기 전에 속성을 켠다.
+            System.setProperty(Heap.PROPERTY, heap);
+            if (!Heap.TRACKING) System.err.println("--heap: 이 JVM에서는 이미 힙 추적이 꺼진 채로 정해졌습니다. -Dlox.heap으로 실행하세요.");
+        }
+        if (vm != null && Heap.TRACKING) { //VM은 인스턴스, 클로저를 자기 객체로 만든다 (-Dlox.heap으로 켠 경우도)
+            System.out.println("--heap(-Dlox.heap)은 --engine=vm과 함께 쓸 수 없습니다.");
             System.exit(64);
-        } else if (args.length==1) {
+        }
+        if (profile != null) {
+            if (vm != null) { //VM은 자기 호출 스택을 쓰므로 섀도 스택이 없다
+                System.out.println("--profile은 --engine=vm과 함께 쓸 수 없습니다.");
+                System.exit(64);
+            }
+            Profiler.active = new Profiler(profile);
+            Profiler.active.start();
+        }
+        if (files.size()==1) {
             try {
-                runFile(args[0]);
+                runFile(files.get(0));
                 Interpreter.bw.flush();
             } catch (IOException e) {
                 System.err.println("파일 읽기 오류: " + e.getMessage());
@@ -37,6 +111,25 @@ public class Lox {
             }
         }
     }
+    // 전역, 엔진 선택, 에러 표시를 처음 상태로 되돌린다. 같은 JVM에서 main을 다시 부르기 전에 쓴다.
+    // (벤치마크 러너가 데워진 JVM에서 같은 프로그램을 처음부터 여러 번 실행할 때, benchmarks/CorpusProbe)
+    static void reset() {
+        interpreter = new Interpreter();
+        vm = null;
+        closures = null;
+        optimize = true;
+        profile = null;
+        stats = false;
+        heap = null;
+        Profiler.active = null;
+        hadError = false;
+        hadRuntimeError = false;
+        Jit.enabled = true;
+    }
+    // 정의된 전역의 값 (Heap의 보고가 시그널, JMX 스레드에서도 부른다)
+    static List<Object> globals() {
+        return interpreter.globals.values();
+    }
     // ex) jlox myscript.lox -> jlox는 args에 안 들어간다. (C와 다름.)
     private static void runFile(String path) throws IOException {
         byte[] bytes = Files.readAllBytes(Paths.get(path)); //파일의 모든 바이트 스트림 읽어오기
@@ -46,6 +139,26 @@ public class Lox {
         if (hadRuntimeError) System.exit(70);
     }
 
+    // jloxc로 컴파일한 프로그램의 main이 부른다. 스캔, 파싱, 리졸브 없이 컴파일된 맨 위 코드를 실행한다.
+    // globalNames는 컴파일할 때 Resolver가 매긴 번호 순서의 전역 이름이다. 에러 출력과 종료 코드는 runFile과 같다.
+    static void runCompiled(Jit.Code script, String[] globalNames, int frameSize) {
+        for (String name : globalNames) interpreter.globals.slot(name);
+        long start = Stats.ENABLED ? System.nanoTime() : 0;
+        try {
+            script.run(interpreter, new Object[frameSize], null);
+        } catch (RuntimeError error) {
+            runtimeError(error);
+        }
+        if (Stats.ENABLED) Stats.phase(Stats.RUN, start);
+        if (hadRuntimeError) System.exit(70);
+        try {
+            Interpreter.bw.flush();
+        } catch (IOException e) {
+            System.err.println("출력 오류: " + e.getMessage());
+            System.exit(74);
+        }
+    }
+
     // ex) jlox -> 실시간 한줄씩 대화형 방식 REPL (Read-Eval-Print Loop)이라고 한다. ctrl D로 종료
     private static void runPrompt() throws IOException {
         InputStreamReader input = new InputStreamReader(System.in);
@@ -61,8 +174,11 @@ public class Lox {
     }
     //한줄씩 실행
     private static void run(String source) {
+        //--stats면 단계마다 걸린 시간을 잰다. (start는 지금 단계가 시작한 시각)
+        long start = Stats.ENABLED ? System.nanoTime() : 0;
         Scanner scanner = new Scanner(source);
         List<Token> tokens = scanner.scanTokens(); //토큰으로 쪼갬. Scanner.java에 있다.
+        if (Stats.ENABLED) start = Stats.phase(Stats.SCAN, start);
 
         /* 어휘 분석용
         for (Token token : tokens) {
@@ -71,17 +187,41 @@ public class Lox {
         */
         Parser parser = new Parser(tokens);
         List<Stmt> statements = parser.parse();
+        if (Stats.ENABLED) {
+            start = Stats.phase(Stats.PARSE, start);
+            Stats.parsed(tokens, statements);
+        }
 
         if (hadError) return; //구문 에러 발생 시 멈춘다.
         //System.out.println(new AstPrinter().print(expression)); //구문 분석용
         //리졸빙 평가
         Resolver resolver = new Resolver(interpreter);
         resolver.resolve(statements);
+        if (Stats.ENABLED) start = Stats.phase(Stats.RESOLVE, start);
         
         if (hadError) return; //레졸루션 에러 시 멈춘다.
+        int frameSize = resolver.scriptSlots();
+        if (optimize) {
+            new Optimizer().optimize(statements);
+            frameSize = new LoopOptimizer().optimize(statements, frameSize);
+            frameSize = new Inliner().inline(statements, frameSize);
+            if (Stats.ENABLED) start = Stats.phase(Stats.OPTIMIZE, start);
+        }
 
         //의미 분석
-        interpreter.interpret(statements);
+        if (vm != null) {
+            VM.Function script = new Compiler(interpreter.globals).compile(statements);
+            if (Stats.ENABLED) start = Stats.phase(Stats.COMPILE, start);
+            if (hadError) return; //컴파일 에러 시 멈춘다.
+            vm.interpret(script);
+        } else if (closures != null) {
+            ClosureCompiler.Exec[] script = closures.compile(statements);
+            if (Stats.ENABLED) start = Stats.phase(Stats.COMPILE, start);
+            closures.interpret(script, frameSize);
+        } else {
+            interpreter.interpret(statements, frameSize);
+        }
+        if (Stats.ENABLED) Stats.phase(Stats.RUN, start);
     }
     
     static void error(int line,String message) {
@@ -106,6 +246,15 @@ public class Lox {
     static void runtimeError(RuntimeError error) {
         System.err.println(error.getMessage() + "\n[라인 " + error.token.line + "]");
         hadRuntimeError = true;
+        if (Profiler.active != null) Profiler.active.unwind(); //에러로 빠져나온 호출들을 섀도 스택에서 뺀다
+        if (Events.ENABLED) {
+            Events.Error event = new Events.Error();
+            if (event.isEnabled()) {
+                event.message = error.getMessage();
+                event.line = error.token.line;
+                event.commit();
+            }
+        }
     }
     
 }
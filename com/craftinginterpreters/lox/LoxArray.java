@@ -0,0 +1,170 @@
+package com.craftinginterpreters.lox;
+
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+// Lox 배열.
+// 원소가 모두 숫자인 동안에는 double[]에 박싱 없이 저장하고, 숫자가 아닌 값(문자열, nil, 인스턴스 등)이 처음 들어오면
+// Object[]로 한 번 옮긴 뒤 그때부터는 일반 배열로 동작한다. (다시 숫자 배열로 돌아가지는 않는다.)
+// 저장소는 크기가 2의 거듭제곱인 원형 버퍼라서 앞/뒤에 넣고 빼기(앞에넣기, 앞에서빼기, 붙이기, 뒤에서빼기)가 모두 O(1)이고,
+// a[i]는 (head + i) & mask 위치를 읽는다.
+// List를 구현하므로 배열을 List로 다루는 코드(배열 메서드, 출력, ==)는 그대로 동작한다.
+final class LoxArray extends AbstractList<Object> implements RandomAccess {
+    private double[] numbers; //숫자 배열일 때의 저장소. 일반 배열로 바뀌면 null
+    private Object[] values;  //일반 배열일 때의 저장소
+    private int head;         //0번 원소의 저장소 위치
+    private int mask;         //저장소 길이 - 1
+    private int size;
+
+    LoxArray(int capacity) {
+        int length = 4;
+        while (length < capacity) length <<= 1;
+        numbers = new double[length];
+        mask = length - 1;
+        if (Heap.TRACKING) Heap.allocated(this);
+    }
+
+    boolean isNumeric() {
+        return numbers != null;
+    }
+    // 숫자 배열의 원소를 박싱 없이 읽는다. isNumeric()이고 인덱스가 범위 안일 때만 부른다.
+    double getDouble(int index) {
+        return numbers[(head + index) & mask];
+    }
+    void setDouble(int index, double value) {
+        if (numbers != null) numbers[(head + index) & mask] = value;
+        else values[(head + index) & mask] = Interpreter.box(value);
+    }
+    void addDouble(double value) {
+        if (size == mask + 1) grow();
+        int at = (head + size) & mask;
+        if (numbers != null) numbers[at] = value;
+        else values[at] = Interpreter.box(value);
+        ++size;
+        ++modCount;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+    @Override
+    public Object get(int index) {
+        Objects.checkIndex(index, size);
+        return getUnchecked(index);
+    }
+    // 범위 검사 없이 읽는다. 0 <= index < size()가 보장된 곳(LoopOptimizer가 표시한 a[i])에서만 부른다.
+    // (범위 밖 인덱스는 예외 없이 원형 버퍼의 다른 칸을 읽는다)
+    Object getUnchecked(int index) {
+        int at = (head + index) & mask;
+        if (numbers != null) return Interpreter.box(numbers[at]);
+        return values[at];
+    }
+    @Override
+    public Object set(int index, Object value) {
+        Object old = get(index);
+        store((head + index) & mask, value);
+        return old;
+    }
+    @Override
+    public boolean add(Object value) {
+        if (size == mask + 1) grow();
+        ++size; //store가 generalize로 옮길 원소 수에 새 자리도 넣는다.
+        store((head + size - 1) & mask, value);
+        ++modCount;
+        return true;
+    }
+    // 맨 앞(앞에넣기)은 head를 한 칸 당기기만 한다. 중간 삽입은 뒤쪽 원소를 한 칸씩 민다.
+    @Override
+    public void add(int index, Object value) {
+        Objects.checkIndex(index, size + 1);
+        if (size == mask + 1) grow();
+        if (index == 0) {
+            head = (head - 1) & mask;
+        } else {
+            for (int i=size;i>index;--i) move((head + i - 1) & mask, (head + i) & mask);
+        }
+        ++size;
+        store((head + index) & mask, value);
+        ++modCount;
+    }
+    // 맨 앞(앞에서빼기)과 맨 뒤(뒤에서빼기)는 O(1)이다. 중간 삭제는 뒤쪽 원소를 한 칸씩 당긴다.
+    @Override
+    public Object remove(int index) {
+        Object old = get(index);
+        if (index == 0) {
+            clearSlot(head);
+            head = (head + 1) & mask;
+        } else {
+            for (int i=index;i<size-1;++i) move((head + i + 1) & mask, (head + i) & mask);
+            clearSlot((head + size - 1) & mask);
+        }
+        --size;
+        ++modCount;
+        return old;
+    }
+
+    private void store(int at, Object value) {
+        if (numbers != null) {
+            if (value instanceof Double) {
+                numbers[at] = (double)value;
+                return;
+            }
+            int index = (at - head) & mask;
+            generalize();
+            at = index; //generalize 뒤에는 head가 0이다.
+        }
+        values[at] = value;
+    }
+    private void move(int from, int to) {
+        if (numbers != null) numbers[to] = numbers[from];
+        else values[to] = values[from];
+    }
+    // 빠진 자리가 객체를 붙잡고 있지 않게 비운다.
+    private void clearSlot(int at) {
+        if (values != null) values[at] = null;
+    }
+    // 숫자가 아닌 값이 처음 들어올 때 지금까지의 원소를 박싱해서 Object[]로 옮긴다. (head는 0이 된다)
+    private void generalize() {
+        Object[] next = new Object[mask + 1];
+        for (int i=0;i<size;++i) {
+            next[i] = Interpreter.box(numbers[(head + i) & mask]);
+        }
+        values = next;
+        numbers = null;
+        head = 0;
+    }
+    // 저장소를 두 배로 늘리면서 원소를 0번 자리부터 다시 펼친다.
+    private void grow() {
+        if (Stats.ENABLED) ++Stats.arrayGrowths;
+        int length = mask + 1;
+        //큰 배열의 확장은 JFR 이벤트로 남긴다. (Events.ArrayResize)
+        Events.ArrayResize event = null;
+        if (Events.ENABLED && length * 2 >= Events.ArrayResize.MIN_CAPACITY) {
+            event = new Events.ArrayResize();
+            event.begin();
+        }
+        if (numbers != null) {
+            double[] next = new double[length * 2];
+            for (int i=0;i<size;++i) next[i] = numbers[(head + i) & mask];
+            numbers = next;
+        } else {
+            Object[] next = new Object[length * 2];
+            for (int i=0;i<size;++i) next[i] = values[(head + i) & mask];
+            values = next;
+        }
+        head = 0;
+        mask = length * 2 - 1;
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.size = size;
+                event.oldCapacity = length;
+                event.newCapacity = length * 2;
+                event.numeric = numbers != null;
+                event.commit();
+            }
+        }
+    }
+}
@@ -6,6 +6,10 @@ import java.util.Map;
 class LoxClass implements LoxCallable {
     final String name;
     private final Map<String,LoxFunction> methods;
+    // 이 클래스 인스턴스들의 뿌리 Shape (필드 없음)
+    final Shape rootShape = new Shape();
+    // 지금까지 본 인스턴스의 최대 필드 수. 새 인스턴스의 값 배열 크기로 쓴다.
+    int fieldCountHint = 0;
 
     LoxClass(String name,Map<String,LoxFunction> methods) {
         this.name = name;
@@ -20,7 +24,7 @@ class LoxClass implements LoxCallable {
         LoxInstance instance = new LoxInstance(this);
         LoxFunction initializer = findMethod("init");
         if (initializer!=null) {
-            initializer.bind(instance).call(interpreter,arguments);
+            initializer.invoke(interpreter,instance,arguments);
         }
         return instance;
     }
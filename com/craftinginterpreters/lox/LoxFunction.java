@@ -1,39 +1,122 @@
 package com.craftinginterpreters.lox;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 class LoxFunction implements LoxCallable {
     private final Stmt.Function declaration;
-    private final Environment closure;
+    private final Cell[] upvalues; //함수를 만들 때 잡아 온 바깥 변수들 (Resolver가 정한 순서)
     private final boolean isInitializer;
+    private final LoxInstance receiver; //bind로 묶인 메서드면 this(자기자신), 아니면 null
 
-    LoxFunction(Stmt.Function declaration,Environment closure,boolean isInitializer) {
+    LoxFunction(Stmt.Function declaration,Cell[] upvalues,boolean isInitializer) {
+        this(declaration, upvalues, isInitializer, null);
+    }
+    private LoxFunction(Stmt.Function declaration,Cell[] upvalues,boolean isInitializer,LoxInstance receiver) {
         this.declaration = declaration;
-        this.closure = closure;
+        this.upvalues = upvalues;
         this.isInitializer = isInitializer;
+        this.receiver = receiver;
+        if (Heap.TRACKING) Heap.function(this);
     }
     @Override
     public Object call(Interpreter interpreter,List<Object> arguments) {
-        Environment environment = new Environment(closure);
-        
-        // 메서드인 경우 this와 자기자신을 환경에 추가
-        if (closure.containsKey("this")) {
-            environment.define("this", closure.getValue("this"));
-            environment.define("자기자신", closure.getValue("this"));
-        }
-        
-        for (int i=0;i<declaration.params.size();++i) {
-            environment.define(declaration.params.get(i).lexeme, arguments.get(i));
+        return invoke(interpreter, receiver, arguments);
+    }
+    //receiver를 프레임 슬롯 0에 바로 넣고 실행한다. obj.method(...) 호출은 bind 없이 이 메서드로 들어온다.
+    Object invoke(Interpreter interpreter,LoxInstance receiver,List<Object> arguments) {
+        if (Events.ENABLED && Events.Call.recording()) return record(interpreter, receiver, arguments);
+        return run(interpreter, receiver, arguments);
+    }
+    //JFR이 lox.Call을 기록 중이면 호출 시간을 잰다. (문턱보다 짧은 호출은 JFR이 버린다)
+    private Object record(Interpreter interpreter,LoxInstance receiver,List<Object> arguments) {
+        Events.Call event = new Events.Call();
+        event.begin();
+        try {
+            return run(interpreter, receiver, arguments);
+        } finally {
+            commit(event, declaration);
+        }
+    }
+    private static void commit(Events.Call event,Stmt.Function function) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.function = function.name.lexeme;
+            event.line = function.name.line;
+            event.commit();
+        }
+    }
+    //Inliner가 본문 식을 붙여 둔 호출도 --profile이나 JFR의 lox.Call 기록 중에는 보통 호출처럼 보여야 한다.
+    //(인라인된 호출 지점은 이것이 참일 때만 observeInlined로 평가한다. 기록을 멈추면 다시 식을 바로 평가한다)
+    static boolean observingCalls() {
+        return Profiler.active != null || (Events.ENABLED && Events.Call.recording());
+    }
+    //인라인된 호출의 본문 식을 평가하면서 function을 프로파일러 섀도 스택에 넣고 lox.Call 이벤트를 남긴다. 프레임은 만들지 않는다.
+    static Object observeInlined(Stmt.Function function,Supplier<Object> body) {
+        Events.Call event = null;
+        if (Events.ENABLED && Events.Call.recording()) {
+            event = new Events.Call();
+            event.begin();
         }
-        //executeBlock으로 visitWhileStmt,visitBlockStmt,... visitReturnStmt가 되면 throw new Return(value)로 value를 던질 때 리턴한다.
+        Profiler profiler = Profiler.active;
+        if (profiler != null) profiler.enter(function);
         try {
-            interpreter.executeBlock(declaration.body, environment);
-        } catch (Return returnValue) {
-            if (isInitializer) return closure.getAt(0,"this");
-            return returnValue.value;
+            return body.get();
+        } finally {
+            if (event != null) commit(event, function);
+            if (profiler != null) profiler.exit();
+        }
+    }
+    private Object run(Interpreter interpreter,LoxInstance receiver,List<Object> arguments) {
+        //호출마다 평평한 프레임 하나만 만든다. 메서드면 슬롯 0이 this이고, 매개변수가 그 다음부터 차례로 들어가며, 그 뒤는 함수 본문의 지역 변수 자리다.
+        Object[] frame = new Object[declaration.slots];
+        if (Stats.ENABLED) {
+            ++Stats.calls;
+            ++Stats.frames;
+        }
+        int base = 0;
+        if (receiver != null) frame[base++] = receiver;
+        for (int i=0;i<declaration.params.size();++i) {
+            frame[base + i] = arguments.get(i);
         }
-        if (isInitializer) return closure.getAt(0, "this");
-        return null;
+        //--profile이면 프로파일러의 섀도 스택에 이 호출을 넣고 끝나면 뺀다. 런타임 에러로 빠져나간 호출은
+        //Lox.runtimeError가 스택을 비운다. (호출마다 try/finally를 두지 않으려고)
+        Profiler profiler = Profiler.active;
+        if (profiler != null) profiler.enter(declaration);
+        //뜨거운 함수는 컴파일된 코드로 실행한다. 코드의 가정이 깨지면(DEOPT) 역최적화하고 인터프리터로 실행한다.
+        Object value = Jit.DEOPT;
+        Jit jit = declaration.jit;
+        if (Jit.enabled) {
+            if (jit.code == null) jit.profile(declaration, frame, base);
+            if (jit.code != null) {
+                value = jit.code.run(interpreter, frame, upvalues);
+                if (value == Jit.DEOPT) jit.deoptimize(frame);
+            }
+        }
+        if (value == Jit.DEOPT) {
+            //안쪽 함수가 잡아 가는 매개변수는 Cell로 감싼다.
+            for (int slot : declaration.cellParams) {
+                frame[slot] = new Cell(frame[slot]);
+            }
+            if (declaration.closure != null) {
+                //클로저 컴파일 엔진(--engine=closure)이 컴파일해 둔 본문이면 그것으로 실행한다.
+                value = declaration.closure.call(frame, upvalues);
+            } else {
+                //executeBody가 본문을 실행하다 return문의 RETURN 신호를 받으면 그 반환값을 돌려준다.
+                value = interpreter.executeBody(declaration.body, frame, upvalues, jit);
+            }
+        }
+        if (profiler != null) profiler.exit();
+        if (isInitializer) return receiver;
+        return value;
+    }
+    //잡아 온 바깥 변수 (힙 보고가 클로저와 Cell을 센다)
+    Cell[] upvalues() {
+        return upvalues;
+    }
+    //Inliner가 본문을 붙여 둔 호출 지점이 지금도 그 선언의 함수를 부르는지 확인한다.
+    boolean isDeclaredBy(Stmt.Function function) {
+        return declaration == function;
     }
     @Override
     public int arity() {
@@ -44,10 +127,8 @@ class LoxFunction implements LoxCallable {
         return "<fn " + declaration.name.lexeme + ">";
     }
     
+    //메서드를 인스턴스에 묶는다. 호출할 때 인스턴스가 프레임 슬롯 0(this)에 들어간다.
     LoxFunction bind(LoxInstance instance) {
-        Environment environment = new Environment(closure);
-        environment.define("this", instance);
-        environment.define("자기자신", instance);
-        return new LoxFunction(declaration, environment,isInitializer);
+        return new LoxFunction(declaration, upvalues, isInitializer, instance);
     }
 }
@@ -1,30 +1,99 @@
 package com.craftinginterpreters.lox;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
+// 인스턴스의 필드는 Shape(필드 이름 -> 위치)과 값 배열로 저장한다. 이름 표는 같은 Shape의 인스턴스들이 공유한다.
 class LoxInstance {
     private LoxClass klass;
-    private final Map<String,Object> fields = new HashMap<>();
+    Shape shape;
+    Object[] values;
 
     LoxInstance(LoxClass klass) {
         this.klass = klass;
+        this.shape = klass.rootShape;
+        this.values = new Object[klass.fieldCountHint];
+        if (Stats.ENABLED) ++Stats.instances;
+        if (Heap.TRACKING) Heap.allocated(this);
     }
     @Override
     public String toString() {
         return klass.name + " instance";
     }
+    String className() {
+        return klass.name;
+    }
     Object get(Token name) {
-        if (fields.containsKey(name.lexeme)) {
-            return fields.get(name.lexeme);
+        return get(name, null);
+    }
+    // 필드를 먼저 찾고 없으면 메서드를 묶어 돌려준다. cache가 있으면 찾은 결과를 그 접근 지점에 기억한다.
+    Object get(Token name, PropertyCache cache) {
+        if (cache != null) {
+            for (int i=0;i<cache.count;++i) {
+                if (cache.shapes[i] != shape) continue;
+                int offset = cache.offsets[i];
+                if (offset >= 0) return values[offset];
+                return ((LoxFunction)cache.targets[i]).bind(this);
+            }
+        }
+        int offset = shape.offset(name.lexeme);
+        if (offset >= 0) {
+            if (cache != null) cache.add(shape, offset, null);
+            return values[offset];
         }
         LoxFunction method = klass.findMethod(name.lexeme);
-        if (method!=null) return method.bind(this);
+        if (method!=null) {
+            if (cache != null) cache.add(shape, -1, method);
+            return method.bind(this);
+        }
+
+        throw new RuntimeError(name, "정의되지 않은 프로퍼티 '" + name.lexeme + "'.");
+    }
+    // 호출 지점(obj.name(...))용 조회: 이름이 메서드면 묶지 않은 메서드를, 필드면 null을 돌려준다.
+    // 필드가 메서드를 가리는 규칙, 캐시, 에러 메시지는 get과 같다.
+    LoxFunction findMethod(Token name, PropertyCache cache) {
+        for (int i=0;i<cache.count;++i) {
+            if (cache.shapes[i] != shape) continue;
+            return cache.offsets[i] >= 0 ? null : (LoxFunction)cache.targets[i];
+        }
+        int offset = shape.offset(name.lexeme);
+        if (offset >= 0) {
+            cache.add(shape, offset, null);
+            return null;
+        }
+        LoxFunction method = klass.findMethod(name.lexeme);
+        if (method!=null) {
+            cache.add(shape, -1, method);
+            return method;
+        }
 
         throw new RuntimeError(name, "정의되지 않은 프로퍼티 '" + name.lexeme + "'.");
     }
     
     void set(Token name,Object value) {
-        fields.put(name.lexeme, value);
+        set(name, value, null);
+    }
+    void set(Token name,Object value,PropertyCache cache) {
+        if (cache != null) {
+            for (int i=0;i<cache.count;++i) {
+                if (cache.shapes[i] != shape) continue;
+                store((Shape)cache.targets[i], cache.offsets[i], value);
+                return;
+            }
+        }
+        Shape before = shape;
+        int offset = shape.offset(name.lexeme);
+        Shape after = offset >= 0 ? shape : shape.addField(name.lexeme);
+        if (offset < 0) offset = before.size;
+        if (cache != null) cache.add(before, offset, after);
+        store(after, offset, value);
+    }
+    private void store(Shape next, int offset, Object value) {
+        if (next != shape) {
+            shape = next;
+            if (offset >= values.length) values = Arrays.copyOf(values, Math.max(4, values.length * 2));
+            //다음 인스턴스는 처음부터 필드 수만큼 배열을 잡는다.
+            if (next.size > klass.fieldCountHint) klass.fieldCountHint = next.size;
+        }
+        values[offset] = value;
     }
 }
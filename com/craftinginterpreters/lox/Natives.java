@@ -0,0 +1,127 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+// 전역에 등록되는 네이티브 함수(clock, scanNum, 숫자입력 등) 모음.
+// 트리 인터프리터와 바이트코드 VM이 같은 객체를 전역에 등록하므로 어느 엔진에서 실행해도 동작이 같다.
+final class Natives {
+    // 빠른 입력용 버퍼 및 토크나이저
+    private static final BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
+    private static StringTokenizer st = null;
+
+    private Natives() {}
+
+    // 네이티브 함수 하나. 호출은 run이 하고, call은 --stats일 때 호출 수를 센다.
+    private abstract static class Native implements LoxCallable {
+        private final int arity;
+
+        Native(int arity) {
+            this.arity = arity;
+        }
+        abstract Object run(List<Object> arguments);
+
+        @Override
+        public int arity() { return arity; }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (Stats.ENABLED) ++Stats.nativeCalls;
+            return run(arguments);
+        }
+
+        @Override
+        public String toString() { return "<native fn>"; }
+    }
+
+    // 이름 -> 네이티브 함수. 등록 순서를 유지한다.
+    static Map<String, LoxCallable> all() {
+        Map<String, LoxCallable> natives = new LinkedHashMap<>();
+        natives.put("clock", new Native(0) {
+            @Override
+            Object run(List<Object> arguments) {
+                return (double)System.currentTimeMillis() / 1000.0;
+            }
+        });
+        natives.put("scanText", new Native(0) {
+            @Override
+            Object run(List<Object> arguments) {
+                return fastReadString("scanText");
+            }
+        });
+        natives.put("scanNum", new Native(0) {
+            @Override
+            Object run(List<Object> arguments) {
+                return fastReadDouble("scanNum");
+            }
+        });
+        natives.put("문자열입력", new Native(0) {
+            @Override
+            Object run(List<Object> arguments) {
+                return fastReadString("문자열입력");
+            }
+        });
+        natives.put("숫자입력", new Native(0) {
+            @Override
+            Object run(List<Object> arguments) {
+                return fastReadDouble("숫자입력");
+            }
+        });
+        //살아 있는 Lox 객체 보고 (--heap일 때, Heap. 꺼져 있으면 켜는 방법만 알린다)
+        Native heapReport = new Native(0) {
+            @Override
+            Object run(List<Object> arguments) {
+                try {
+                    Interpreter.bw.flush(); //앞서 출력한 것이 보고보다 먼저 보이도록
+                } catch (IOException e) {
+                    throw new RuntimeException("출력 오류: " + e.getMessage());
+                }
+                Heap.report(System.err);
+                return null;
+            }
+        };
+        natives.put("heapReport", heapReport);
+        natives.put("힙보고", heapReport);
+        return natives;
+    }
+
+    // 빠른 문자열 입력. function은 부른 네이티브 함수 이름 (JFR 입력 대기 이벤트에 남긴다)
+    private static String fastReadString(String function) {
+        while (st == null || !st.hasMoreTokens()) {
+            try {
+                String line = readLine(function);
+                if (line == null) return null;
+                st = new StringTokenizer(line);
+            } catch (IOException e) {
+                throw new RuntimeException("입력 오류: " + e.getMessage());
+            }
+        }
+        return st.nextToken();
+    }
+    // 표준 입력에서 한 줄을 읽는다. JFR이 기록 중이면 기다린 시간을 이벤트로 남긴다. (Events.InputWait)
+    private static String readLine(String function) throws IOException {
+        if (!Events.ENABLED) return br.readLine();
+        Events.InputWait event = new Events.InputWait();
+        if (!event.isEnabled()) return br.readLine();
+        event.begin();
+        String line = br.readLine();
+        event.end();
+        if (event.shouldCommit()) {
+            event.function = function;
+            event.chars = line == null ? 0 : line.length();
+            event.eof = line == null;
+            event.commit();
+        }
+        return line;
+    }
+
+    // 빠른 숫자 입력
+    private static double fastReadDouble(String function) {
+        return Double.parseDouble(fastReadString(function));
+    }
+}
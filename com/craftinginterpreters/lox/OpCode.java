@@ -0,0 +1,55 @@
+package com.craftinginterpreters.lox;
+
+// VM 바이트코드 명령어 목록.
+// VM의 switch 디스패치가 tableswitch 한 번으로 끝나도록 0부터 빈틈없이 번호를 붙인다.
+// 괄호 안은 명령어 뒤에 붙는 피연산자(바이트 수)이다.
+final class OpCode {
+    static final byte CONSTANT = 0;        // [상수 인덱스(2)]
+    static final byte NIL = 1;
+    static final byte TRUE = 2;
+    static final byte FALSE = 3;
+    static final byte POP = 4;
+    static final byte GET_LOCAL = 5;       // [슬롯(1)]
+    static final byte SET_LOCAL = 6;       // [슬롯(1)]
+    static final byte GET_GLOBAL = 7;      // [전역 슬롯(2), 이름 토큰 상수(2)]
+    static final byte DEFINE_GLOBAL = 8;   // [전역 슬롯(2)]
+    static final byte SET_GLOBAL = 9;      // [전역 슬롯(2), 이름 토큰 상수(2)]
+    static final byte GET_UPVALUE = 10;    // [업밸류 인덱스(1)]
+    static final byte SET_UPVALUE = 11;    // [업밸류 인덱스(1)]
+    static final byte GET_PROPERTY = 12;   // [이름 토큰 상수(2)]
+    static final byte SET_PROPERTY = 13;   // [이름 토큰 상수(2)]
+    static final byte CHECK_INSTANCE = 14; // [이름 토큰 상수(2)] 값 계산 전에 대상이 인스턴스인지 확인
+    static final byte GET_INDEX = 15;
+    static final byte SET_INDEX = 16;
+    static final byte EQUAL = 17;
+    static final byte NOT_EQUAL = 18;
+    static final byte GREATER = 19;
+    static final byte GREATER_EQUAL = 20;
+    static final byte LESS = 21;
+    static final byte LESS_EQUAL = 22;
+    static final byte ADD = 23;
+    static final byte SUBTRACT = 24;
+    static final byte MULTIPLY = 25;
+    static final byte DIVIDE = 26;
+    static final byte MODULO = 27;
+    static final byte NOT = 28;
+    static final byte NEGATE = 29;
+    static final byte PRINT = 30;
+    static final byte JUMP = 31;           // [앞으로 점프할 거리(2)]
+    static final byte JUMP_IF_FALSE = 32;  // [거리(2)] 조건 값을 스택에 남겨 둔다 (and/or 용)
+    static final byte POP_JUMP_IF_FALSE = 33; // [거리(2)] 조건 값을 꺼낸다 (if/while 용)
+    static final byte LOOP = 34;           // [뒤로 점프할 거리(2)]
+    static final byte CALL = 35;           // [인자 개수(1)]
+    static final byte CLOSURE = 36;        // [함수 상수(2)] 뒤에 업밸류마다 [isLocal(1), 인덱스(1)]
+    static final byte CLOSE_UPVALUE = 37;
+    static final byte RETURN = 38;
+    static final byte ARRAY = 39;          // [원소 개수(2)]
+    static final byte CLASS = 40;          // [이름 상수(2)]
+    static final byte METHOD = 41;         // [이름 상수(2)]
+    static final byte LOAD_METHOD = 42;    // [이름 토큰 상수(2)] obj.name(...)의 호출 대상을 두 칸으로 꺼낸다
+    static final byte INVOKE = 43;         // [인자 개수(1)] LOAD_METHOD로 꺼낸 대상을 호출
+    static final byte LOAD_ARRAY_METHOD = 44; // [이름 토큰 상수(2)] 배열 내장 메서드 이름일 때의 LOAD_METHOD. 배열이면 [배열, null]
+    static final byte INVOKE_ARRAY = 45;   // [배열 메서드(1), 인자 개수(1)] 대상이 배열이면 바로 실행하고, 아니면 INVOKE와 같다
+
+    private OpCode() {}
+}
@@ -0,0 +1,300 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 리졸브가 끝난 AST를 실행 전에 한 번 다듬는 최적화 단계. (Lox.run에서 Resolver 다음, 실행 전에 부른다. --no-optimize로 끌 수 있다.)
+// - 상수 접기: 리터럴끼리의 산술/비교/같음, 문자열 잇기, 단항 -와 !, 리터럴이 왼쪽인 and/or
+// - 죽은 코드 제거: 조건이 리터럴인 if/while, 블록에서 반환/break/continue 뒤의 문장, 값만 있는 표현식 문장
+// - 항등식 정리: x * 1, 1 * x, x / 1, x - 0 → x (x가 숫자식일 때만)
+// 원래 프로그램이 내는 런타임 에러는 그대로 남긴다. 접으면 에러가 날 식(0으로 나누기, 숫자가 아닌 피연산자)은 접지 않고,
+// 없애는 식은 평가해도 에러가 날 수 없는 것(리터럴)뿐이다.
+// x + 0은 x가 -0일 때 결과가 0이 되어 출력이 달라지므로 정리하지 않는다.
+//
+// 자식이 바뀐 노드만 새로 만들고, 새로 만들 때 Resolver가 채운 필드(kind, slot, numeric 등)를 옮겨 적는다.
+// 문장 리스트(블록, 함수 본문)는 그 자리에서 고친다. 문장을 없앨 때 visit 메서드는 null을 돌려준다.
+class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+
+    void optimize(List<Stmt> statements) {
+        optimizeList(statements);
+    }
+
+    private void optimizeList(List<Stmt> statements) {
+        int count = 0;
+        for (Stmt statement : statements) {
+            Stmt optimized = optimize(statement);
+            if (optimized == null) continue;
+            statements.set(count++, optimized);
+            //여기서 흐름이 끝나므로 뒤의 문장은 실행되지 않는다.
+            if (optimized instanceof Stmt.Return || optimized instanceof Stmt.Break || optimized instanceof Stmt.Continue) break;
+        }
+        statements.subList(count, statements.size()).clear();
+    }
+    private Stmt optimize(Stmt stmt) {
+        return stmt.accept(this);
+    }
+    // 문장 하나가 들어가야 하는 자리(if 가지, 반복문 본문)는 없어진 문장 대신 빈 블록을 둔다.
+    private Stmt optimizeBranch(Stmt stmt) {
+        if (stmt == null) return null;
+        Stmt optimized = optimize(stmt);
+        return optimized != null ? optimized : new Stmt.Block(new ArrayList<>());
+    }
+    private Expr optimize(Expr expr) {
+        return expr == null ? null : expr.accept(this);
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Stmt.Block stmt) {
+        optimizeList(stmt.statements);
+        return stmt;
+    }
+    @Override
+    public Stmt visitClassStmt(Stmt.Class stmt) {
+        for (Stmt.Function method : stmt.methods) {
+            optimizeList(method.body);
+        }
+        return stmt;
+    }
+    @Override
+    public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+        Expr expression = optimize(stmt.expression);
+        if (expression instanceof Expr.Literal) return null; //값을 버리는 리터럴
+        return expression == stmt.expression ? stmt : new Stmt.Expression(expression);
+    }
+    @Override
+    public Stmt visitForStmt(Stmt.For stmt) {
+        // 카운트 반복문(counted)은 조건식이 Binary, 증감식이 Assign 모양이어야 하므로 증감식은 건드리지 않는다.
+        // 조건식은 왼쪽이 변수라 접히지 않고 오른쪽(끝 값)만 다듬어진다.
+        Stmt initializer = stmt.initializer == null ? null : optimize(stmt.initializer);
+        Expr condition = optimize(stmt.condition);
+        Expr increment = stmt.counted ? stmt.increment : optimize(stmt.increment);
+        Stmt body = optimizeBranch(stmt.body);
+        if (initializer == stmt.initializer && condition == stmt.condition && increment == stmt.increment && body == stmt.body) {
+            return stmt;
+        }
+        Stmt.For result = new Stmt.For(initializer, condition, increment, body);
+        result.counted = stmt.counted;
+        result.step = stmt.step;
+        result.counterVisible = stmt.counterVisible;
+        return result;
+    }
+    @Override
+    public Stmt visitFunctionStmt(Stmt.Function stmt) {
+        optimizeList(stmt.body);
+        return stmt;
+    }
+    @Override
+    public Stmt visitIfStmt(Stmt.If stmt) {
+        Expr condition = optimize(stmt.condition);
+        if (condition instanceof Expr.Literal) {
+            if (Interpreter.isTruthy(((Expr.Literal)condition).value)) return optimize(stmt.thenBranch);
+            return stmt.elseBranch == null ? null : optimize(stmt.elseBranch);
+        }
+        Stmt thenBranch = optimizeBranch(stmt.thenBranch);
+        Stmt elseBranch = optimizeBranch(stmt.elseBranch);
+        if (condition == stmt.condition && thenBranch == stmt.thenBranch && elseBranch == stmt.elseBranch) return stmt;
+        return new Stmt.If(condition, thenBranch, elseBranch);
+    }
+    @Override
+    public Stmt visitPrintStmt(Stmt.Print stmt) {
+        Expr expression = optimize(stmt.expression);
+        return expression == stmt.expression ? stmt : new Stmt.Print(expression);
+    }
+    @Override
+    public Stmt visitReturnStmt(Stmt.Return stmt) {
+        Expr value = optimize(stmt.value);
+        return value == stmt.value ? stmt : new Stmt.Return(stmt.keyword, value);
+    }
+    @Override
+    public Stmt visitVarStmt(Stmt.Var stmt) {
+        Expr initializer = optimize(stmt.initializer);
+        if (initializer == stmt.initializer) return stmt;
+        Stmt.Var result = new Stmt.Var(stmt.name, initializer);
+        result.kind = stmt.kind;
+        result.slot = stmt.slot;
+        return result;
+    }
+    @Override
+    public Stmt visitWhileStmt(Stmt.While stmt) {
+        Expr condition = optimize(stmt.condition);
+        if (condition instanceof Expr.Literal && !Interpreter.isTruthy(((Expr.Literal)condition).value)) return null;
+        Stmt body = optimizeBranch(stmt.body);
+        if (condition == stmt.condition && body == stmt.body) return stmt;
+        return new Stmt.While(condition, body);
+    }
+    @Override
+    public Stmt visitBreakStmt(Stmt.Break stmt) {
+        return stmt;
+    }
+    @Override
+    public Stmt visitContinueStmt(Stmt.Continue stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        Expr left = optimize(expr.left);
+        Expr right = optimize(expr.right);
+        if (left instanceof Expr.Literal && right instanceof Expr.Literal) {
+            Expr folded = fold(expr.operator, ((Expr.Literal)left).value, ((Expr.Literal)right).value);
+            if (folded != null) return folded;
+        }
+        Expr simplified = simplify(expr.operator.type, left, right);
+        if (simplified != null) return simplified;
+        if (left == expr.left && right == expr.right) return expr;
+        Expr.Binary result = new Expr.Binary(left, expr.operator, right);
+        //Resolver.visitBinaryExpr와 같은 규칙. 자식이 리터럴로 접혀 숫자식이 되었을 수 있으므로 다시 계산한다.
+        result.numeric = expr.operator.type == TokenType.PLUS
+            ? Resolver.isNumeric(left) && Resolver.isNumeric(right)
+            : expr.numeric;
+        return result;
+    }
+    // 리터럴 두 개의 이항 연산을 실행기와 같은 방법으로 계산한다. 실행하면 에러가 나는 경우는 null(접지 않음)
+    private Expr fold(Token operator, Object left, Object right) {
+        switch (operator.type) {
+            case EQUAL_EQUAL: return new Expr.Literal(Interpreter.isEqual(left, right));
+            case BANG_EQUAL: return new Expr.Literal(!Interpreter.isEqual(left, right));
+            case PLUS:
+                try {
+                    return new Expr.Literal(Interpreter.add(operator, left, right));
+                } catch (RuntimeError error) {
+                    return null;
+                }
+            default:
+                break;
+        }
+        if (!(left instanceof Double) || !(right instanceof Double)) return null;
+        double a = (double)left, b = (double)right;
+        switch (operator.type) {
+            case GREATER: return new Expr.Literal(a > b);
+            case GREATER_EQUAL: return new Expr.Literal(a >= b);
+            case LESS: return new Expr.Literal(a < b);
+            case LESS_EQUAL: return new Expr.Literal(a <= b);
+            case MINUS: return new Expr.Literal(a - b);
+            case STAR: return new Expr.Literal(a * b);
+            case SLASH: return b == 0 ? null : new Expr.Literal(a / b);
+            case MOD: return b == 0 ? null : new Expr.Literal(a % b);
+            default: return null;
+        }
+    }
+    // 결과가 항상 x와 같은 항등식이면 x를 돌려준다. x가 숫자식이어야 원래 식에서도 타입 에러가 나지 않는다.
+    private Expr simplify(TokenType operator, Expr left, Expr right) {
+        switch (operator) {
+            case STAR:
+                if (isNumber(right, 1) && Resolver.isNumeric(left)) return left;
+                if (isNumber(left, 1) && Resolver.isNumeric(right)) return right;
+                return null;
+            case SLASH:
+                if (isNumber(right, 1) && Resolver.isNumeric(left)) return left;
+                return null;
+            case MINUS:
+                //x - 0은 x가 -0이어도 -0이다. (x + 0은 아니다)
+                if (isNumber(right, 0) && Resolver.isNumeric(left)) return left;
+                return null;
+            default:
+                return null;
+        }
+    }
+    private static boolean isNumber(Expr expr, double value) {
+        if (!(expr instanceof Expr.Literal)) return false;
+        Object literal = ((Expr.Literal)expr).value;
+        return literal instanceof Double && (double)literal == value;
+    }
+    @Override
+    public Expr visitCallExpr(Expr.Call expr) {
+        Expr callee = optimize(expr.callee);
+        List<Expr> arguments = expr.arguments;
+        for (int i=0;i<arguments.size();++i) {
+            arguments.set(i, optimize(arguments.get(i)));
+        }
+        return callee == expr.callee ? expr : new Expr.Call(callee, expr.paren, arguments);
+    }
+    @Override
+    public Expr visitGetExpr(Expr.Get expr) {
+        Expr object = optimize(expr.object);
+        return object == expr.object ? expr : new Expr.Get(object, expr.name);
+    }
+    @Override
+    public Expr visitSetExpr(Expr.Set expr) {
+        Expr object = optimize(expr.object);
+        Expr value = optimize(expr.value);
+        if (object == expr.object && value == expr.value) return expr;
+        return new Expr.Set(object, expr.name, value);
+    }
+    @Override
+    public Expr visitThisExpr(Expr.This expr) {
+        return expr;
+    }
+    @Override
+    public Expr visitIndexGetExpr(Expr.IndexGet expr) {
+        Expr object = optimize(expr.object);
+        Expr index = optimize(expr.index);
+        if (object == expr.object && index == expr.index) return expr;
+        return new Expr.IndexGet(object, index);
+    }
+    @Override
+    public Expr visitIndexSetExpr(Expr.IndexSet expr) {
+        Expr object = optimize(expr.object);
+        Expr index = optimize(expr.index);
+        Expr value = optimize(expr.value);
+        if (object == expr.object && index == expr.index && value == expr.value) return expr;
+        return new Expr.IndexSet(object, index, value);
+    }
+    // 괄호는 평가 순서를 이미 트리 모양으로 정했으므로 실행할 때는 필요 없다.
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        return optimize(expr.expression);
+    }
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+    // 왼쪽이 리터럴이면 어느 쪽 값이 결과인지 미리 안다.
+    @Override
+    public Expr visitLogicalExpr(Expr.Logical expr) {
+        Expr left = optimize(expr.left);
+        Expr right = optimize(expr.right);
+        if (left instanceof Expr.Literal) {
+            boolean truthy = Interpreter.isTruthy(((Expr.Literal)left).value);
+            if (expr.operator.type == TokenType.OR) return truthy ? left : right;
+            return truthy ? right : left;
+        }
+        if (left == expr.left && right == expr.right) return expr;
+        return new Expr.Logical(left, expr.operator, right);
+    }
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr right = optimize(expr.right);
+        if (right instanceof Expr.Literal) {
+            Object value = ((Expr.Literal)right).value;
+            if (expr.operator.type == TokenType.BANG) return new Expr.Literal(!Interpreter.isTruthy(value));
+            if (value instanceof Double) return new Expr.Literal(-(double)value);
+        }
+        return right == expr.right ? expr : new Expr.Unary(expr.operator, right);
+    }
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        return expr;
+    }
+    @Override
+    public Expr visitAssignExpr(Expr.Assign expr) {
+        Expr value = optimize(expr.value);
+        if (value == expr.value) return expr;
+        Expr.Assign result = new Expr.Assign(expr.name, value);
+        result.kind = expr.kind;
+        result.slot = expr.slot;
+        return result;
+    }
+    @Override
+    public Expr visitArrayExpr(Expr.Array expr) {
+        List<Expr> elements = expr.elements;
+        for (int i=0;i<elements.size();++i) {
+            elements.set(i, optimize(elements.get(i)));
+        }
+        return expr;
+    }
+    @Override
+    public Expr visitHoistedExpr(Expr.Hoisted expr) {
+        return expr;
+    }
+}
@@ -1,6 +1,5 @@
 package com.craftinginterpreters.lox;
 
-import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.List;
 import static com.craftinginterpreters.lox.TokenType.*;
@@ -129,12 +128,14 @@ class Parser {
         if (match(RETURN)) return returnStatement();
         if (match(WHILE)) return whileStatement();
         if (match(BREAK)) {
+            Token keyword = previous();
             consume(SEMICOLON, ";가 필요합니다.");
-            return new Stmt.Break();
+            return new Stmt.Break(keyword);
         }
         if (match(CONTINUE)) {
+            Token keyword = previous();
             consume(SEMICOLON, ";가 필요합니다.");
-            return new Stmt.Continue();
+            return new Stmt.Continue(keyword);
         }
         if (match(LEFT_BRACE)) return new Stmt.Block(block());
         return expressionStatement();
@@ -164,18 +165,9 @@ class Parser {
         }
         consume(RIGHT_PAREN, "반복문 헤더의 마지막에는 반드시 ')'가 와야 합니다.");
         
-        //for문을 이제 while문으로 파싱한다.
+        //for문은 while문으로 풀지 않고 그대로 Stmt.For로 만든다. (조건식이 없으면 null = 무한루프)
         Stmt body = statement(); //body = Stmt.Print(i);
-        if (increment!=null) { //증감식이 있다면 body 뒤에 실행시킴.
-            body = new Stmt.Block(Arrays.asList(body,new Stmt.Expression(increment)));
-        } // body = Block( [ Print(i), Expression(i = i + 1) ] )
-        if (condition==null) condition = new Expr.Literal(true); //조건식 없으면 무한루프
-        body = new Stmt.While(condition,body); //body = While( condition, Block( [ Print(i), Expression(i = i + 1) ] ) )
-        if (initializer!=null) {
-            body = new Stmt.Block(Arrays.asList(initializer,body)); //body = Block( [ Var(i, 0), While( ... ) ] )
-
-        }
-        return body;
+        return new Stmt.For(initializer,condition,increment,body); //For( Var(i, 0), i < 3, i = i + 1, Print(i) )
     }
     //if,else if,else 문, 꼼수로 else 안에 if문,else를 넣는 식으로 else if를 구현함.
     private Stmt ifStatement() {
@@ -371,6 +363,7 @@ class Parser {
             return new Expr.Grouping(expr);
         }
         if (match(LEFT_BRACKET)) {
+            Token bracket = previous();
             List<Expr> elements = new ArrayList<>();
             if (!check(RIGHT_BRACKET)) {
                 do {
@@ -378,7 +371,7 @@ class Parser {
                 } while (match(COMMA));
             }
             consume(RIGHT_BRACKET, "]가 필요합니다.");
-            return new Expr.Array(elements);
+            return new Expr.Array(bracket, elements);
         }
         throw error(peek(),"식이 필요합니다.");
     }
@@ -0,0 +1,251 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 샘플링 프로파일러 (--profile). Java 프로파일러로는 visitBinaryExpr, accept 같은 인터프리터 프레임만 보이므로
+// Lox 함수 단위의 섀도 스택을 따로 둔다.
+//   - LoxFunction.run이 호출마다 함수 선언(Stmt.Function)을 넣고 빼고(enter/exit),
+//     인터프리터가 문장을 실행할 때마다 그 프레임의 지금 줄을 적는다(statement). 문장의 줄은 처음 한 번 토큰에서 찾아
+//     Stmt.line에 적어 둔다. 줄을 int로 적는 것은 문장마다 참조를 배열에 쓰면 GC 쓰기 장벽 비용이 들기 때문이다.
+//   - 샘플러 스레드가 INTERVAL_MS마다 스택을 읽어 호출 트리에 센다.
+//   - 프로그램이 끝나면(System.exit 포함) 샘플을 flame graph 도구(flamegraph.pl, speedscope 등)가 읽는
+//     collapsed stack 파일("함수@선언줄:줄;함수@선언줄:줄 샘플수")로 쓰고
+//     함수별 self/total 표를 표준 에러에 출력한다.
+// 섀도 스택은 인터프리터 스레드만 쓰고 샘플러는 잠금 없이 읽는다. 그래서 샘플 하나가 호출 한두 개만큼 어긋날 수 있다.
+// 컴파일된 코드(JIT, --engine=closure)는 프로파일러가 켜져 있을 때만 문장마다 Profiler.at(줄)을 부르도록 컴파일하므로
+// 꺼져 있을 때 드는 비용은 호출과 문장마다 active가 null인지 보는 것뿐이다. 작은 함수 인라인(Inliner)으로 붙여 둔 호출도
+// 식을 평가하는 동안 그 함수를 스택에 넣으므로(LoxFunction.observeInlined) 모든 호출이 스택에 잡힌다.
+final class Profiler {
+    // --profile일 때만 만든다.
+    static Profiler active = null;
+    static final int INTERVAL_MS = 10;
+    private static final String SCRIPT = "<script>";
+
+    // 섀도 스택. 0번은 맨 위 코드(함수 없음)다. lines는 아래 프레임마다 위 프레임을 부른 문장의 줄이고
+    // 맨 위 프레임이 지금 실행 중인 문장의 줄은 current에 따로 둔다. (0이면 아직 없음)
+    // 문장마다 드는 비용이 static 필드 쓰기 하나뿐이도록 배열과 depth는 호출할 때만 건드린다.
+    private Stmt.Function[] functions = new Stmt.Function[256];
+    private int[] lines = new int[256];
+    private int depth = 0;
+    private static int current = 0;
+
+    private final String output;
+    private final Node root = new Node(null, 0); //샘플을 모은 호출 트리 (샘플러 스레드만 쓴다). 자식이 맨 위 코드의 줄이다
+    private final Map<Stmt.Function,String> names = new HashMap<>();
+    private int samples = 0;
+    private volatile boolean running = true;
+    private final Thread sampler;
+
+    // output은 collapsed stack 파일 경로
+    Profiler(String output) {
+        this.output = output;
+        sampler = new Thread(this::sample, "lox-profiler");
+        sampler.setDaemon(true);
+    }
+    void start() {
+        sampler.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::finish, "lox-profiler-report"));
+    }
+
+    // 인터프리터 스레드가 부른다.
+    void enter(Stmt.Function function) {
+        lines[depth] = current;
+        if (++depth == functions.length) {
+            functions = Arrays.copyOf(functions, depth * 2);
+            lines = Arrays.copyOf(lines, depth * 2);
+        }
+        functions[depth] = function;
+        current = 0;
+    }
+    void exit() {
+        current = lines[--depth];
+    }
+    // 런타임 에러로 맨 위 코드까지 빠져나왔을 때 (LoxFunction.run은 에러가 나면 exit를 부르지 않는다)
+    void unwind() {
+        current = lines[0];
+        depth = 0;
+    }
+    void statement(Stmt stmt) {
+        current = line(stmt);
+    }
+    // 프로파일러를 켜고 컴파일한 코드(JitCompiler, ClosureCompiler)가 문장마다 부른다. 줄은 컴파일할 때 구해 둔다.
+    static void at(int line) {
+        current = line;
+    }
+
+    // 샘플러 스레드. 샘플마다 스택을 호출 트리에 더하기만 하고 문자열은 끝날 때 만든다.
+    // (샘플러 코드가 가벼워야 인터프리터의 뜨거운 메서드보다 먼저 JVM 컴파일 큐를 차지하지 않는다)
+    private void sample() {
+        while (running) {
+            try {
+                Thread.sleep(INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            Stmt.Function[] functions = this.functions;
+            int[] lines = this.lines;
+            int top = Math.min(depth, Math.min(functions.length, lines.length) - 1);
+            Node node = root;
+            for (int i=0;i<=top;++i) {
+                Stmt.Function function = i == 0 ? null : functions[i];
+                if (i > 0 && function == null) continue; //막 넣는 중인 프레임
+                node = node.child(function, i == top ? current : lines[i]);
+            }
+            ++node.self;
+            ++samples;
+        }
+    }
+
+    // 호출 트리의 노드 하나가 프레임 하나(함수, 줄)다. self는 이 노드가 스택 맨 위였던 샘플 수
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+        final Stmt.Function function;
+        final int line;
+        int self = 0;
+        Node[] children = NO_CHILDREN;
+        int count = 0;
+
+        Node(Stmt.Function function, int line) {
+            this.function = function;
+            this.line = line;
+        }
+        Node child(Stmt.Function function, int line) {
+            for (int i=0;i<count;++i) {
+                Node child = children[i];
+                if (child.function == function && child.line == line) return child;
+            }
+            if (count == children.length) children = Arrays.copyOf(children, Math.max(4, count * 2));
+            return children[count++] = new Node(function, line);
+        }
+    }
+
+    // 같은 이름의 함수(메서드, 안쪽 함수)를 가르도록 선언한 줄을 붙인다.
+    private String name(Stmt.Function function) {
+        if (function == null) return SCRIPT;
+        String name = names.get(function);
+        if (name == null) {
+            name = new StringBuilder(function.name.lexeme).append('@').append(function.name.line).toString();
+            names.put(function, name);
+        }
+        return name;
+    }
+    // 문장의 줄. 처음 물을 때 찾아 Stmt.line에 적어 둔다.
+    static int line(Stmt stmt) {
+        int line = stmt.line;
+        if (line < 0) line = stmt.line = find(stmt);
+        return line;
+    }
+    // 문장이나 식의 첫 토큰의 줄. 토큰이 없으면(리터럴만 있는 식 등) 0
+    private static int find(Stmt stmt) {
+        if (stmt instanceof Stmt.Expression) return line(((Stmt.Expression)stmt).expression);
+        if (stmt instanceof Stmt.Print) return line(((Stmt.Print)stmt).expression);
+        if (stmt instanceof Stmt.Var) return ((Stmt.Var)stmt).name.line;
+        if (stmt instanceof Stmt.Return) return ((Stmt.Return)stmt).keyword.line;
+        if (stmt instanceof Stmt.If) return line(((Stmt.If)stmt).condition);
+        if (stmt instanceof Stmt.While) return line(((Stmt.While)stmt).condition);
+        if (stmt instanceof Stmt.For) {
+            Stmt.For loop = (Stmt.For)stmt;
+            if (loop.initializer != null) return find(loop.initializer);
+            return loop.condition != null ? line(loop.condition) : find(loop.body);
+        }
+        if (stmt instanceof Stmt.Block) {
+            List<Stmt> body = ((Stmt.Block)stmt).statements;
+            return body.isEmpty() ? 0 : find(body.get(0));
+        }
+        if (stmt instanceof Stmt.Function) return ((Stmt.Function)stmt).name.line;
+        if (stmt instanceof Stmt.Class) return ((Stmt.Class)stmt).name.line;
+        if (stmt instanceof Stmt.Break) return ((Stmt.Break)stmt).keyword.line;
+        if (stmt instanceof Stmt.Continue) return ((Stmt.Continue)stmt).keyword.line;
+        return 0;
+    }
+    private static int line(Expr expr) {
+        if (expr instanceof Expr.Binary) return ((Expr.Binary)expr).operator.line;
+        if (expr instanceof Expr.Call) return ((Expr.Call)expr).paren.line;
+        if (expr instanceof Expr.Get) return ((Expr.Get)expr).name.line;
+        if (expr instanceof Expr.Set) return ((Expr.Set)expr).name.line;
+        if (expr instanceof Expr.This) return ((Expr.This)expr).keyword.line;
+        if (expr instanceof Expr.IndexGet) return line(((Expr.IndexGet)expr).object);
+        if (expr instanceof Expr.IndexSet) return line(((Expr.IndexSet)expr).object);
+        if (expr instanceof Expr.Grouping) return line(((Expr.Grouping)expr).expression);
+        if (expr instanceof Expr.Hoisted) return line(((Expr.Hoisted)expr).expression);
+        if (expr instanceof Expr.Logical) return ((Expr.Logical)expr).operator.line;
+        if (expr instanceof Expr.Unary) return ((Expr.Unary)expr).operator.line;
+        if (expr instanceof Expr.Variable) return ((Expr.Variable)expr).name.line;
+        if (expr instanceof Expr.Assign) return ((Expr.Assign)expr).name.line;
+        if (expr instanceof Expr.Array) return ((Expr.Array)expr).bracket.line;
+        return 0;
+    }
+
+    // 종료 훅: 샘플러를 멈추고 collapsed 파일과 표를 쓴다.
+    private void finish() {
+        running = false;
+        sampler.interrupt();
+        try {
+            sampler.join(1000);
+        } catch (InterruptedException e) {
+            //그대로 보고한다
+        }
+        StringBuilder collapsed = new StringBuilder();
+        Map<String,int[]> table = new HashMap<>(); //함수 -> {self, total}
+        for (int i=0;i<root.count;++i) walk(root.children[i], new StringBuilder(), new HashMap<>(), collapsed, table);
+        try {
+            Files.write(Paths.get(output), collapsed.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("프로파일 저장 오류: " + e.getMessage());
+        }
+        report(System.err, table);
+    }
+    // 호출 트리를 내려가며 collapsed stack 줄("함수@선언줄:줄;... 샘플 수")과 함수별 self/total을 모은다.
+    // path는 지금 프레임까지의 경로이고 onStack은 그 경로에 있는 함수와 그 횟수다. 재귀 함수도 total에는 샘플마다 한 번만 센다.
+    // 종료 훅 시간은 --profile 실행 시간에 그대로 더해지므로 여기서는 처음 쓸 때 부트스트랩 비용이 큰 람다와 문자열 +를 쓰지 않는다.
+    private void walk(Node node, StringBuilder path, Map<String,Integer> onStack, StringBuilder collapsed, Map<String,int[]> table) {
+        String function = name(node.function);
+        int line = node.line;
+        if (line == 0 && node.function != null) line = node.function.name.line;
+        int length = path.length();
+        if (length > 0) path.append(';');
+        path.append(function).append(':').append(line);
+        Integer count = onStack.get(function);
+        onStack.put(function, count == null ? 1 : count + 1);
+        if (node.self > 0) {
+            collapsed.append(path).append(' ').append(node.self).append('\n');
+            row(table, function)[0] += node.self;
+            for (String caller : onStack.keySet()) row(table, caller)[1] += node.self;
+        }
+        for (int i=0;i<node.count;++i) walk(node.children[i], path, onStack, collapsed, table);
+        if (count == null) onStack.remove(function);
+        else onStack.put(function, count);
+        path.setLength(length);
+    }
+    private static int[] row(Map<String,int[]> table, String function) {
+        int[] row = table.get(function);
+        if (row == null) table.put(function, row = new int[2]);
+        return row;
+    }
+
+    // 함수별 self(맨 위 프레임인 샘플)/total(스택 어딘가에 있는 샘플) 표. 시간은 샘플 수 x 간격의 추정치다.
+    private void report(PrintStream out, Map<String,int[]> table) {
+        List<Map.Entry<String,int[]>> rows = new ArrayList<>(table.entrySet());
+        rows.sort((a, b) -> a.getValue()[0] != b.getValue()[0] ? b.getValue()[0] - a.getValue()[0] : b.getValue()[1] - a.getValue()[1]);
+        out.println("[프로파일] 샘플 " + samples + "개 (" + INTERVAL_MS + "ms 간격), collapsed stack: " + output);
+        out.println(String.format("%8s %8s %10s %10s  %s", "self%", "total%", "self(ms)", "total(ms)", "함수@선언 줄"));
+        for (Map.Entry<String,int[]> row : rows) {
+            int self = row.getValue()[0], total = row.getValue()[1];
+            out.println(String.format("%7.1f%% %7.1f%% %10d %10d  %s", percent(self, samples), percent(total, samples),
+                self * INTERVAL_MS, total * INTERVAL_MS, row.getKey()));
+        }
+        out.flush();
+    }
+    private static double percent(int count, int samples) {
+        return samples == 0 ? 0 : 100.0 * count / samples;
+    }
+}
@@ -0,0 +1,22 @@
+package com.craftinginterpreters.lox;
+
+// 프로퍼티 접근 지점(Expr.Get/Expr.Set) 하나의 인라인 캐시.
+// 그 지점에서 본 인스턴스 Shape을 최대 LIMIT개까지 기억한다. 보통은 한 가지(단형)이고, 몇 가지(다형)까지 받는다.
+// 캐시에 맞으면 Shape 비교 한 번과 배열 읽기/쓰기 한 번으로 끝난다. LIMIT을 넘으면(초다형) 더 이상 기억하지 않는다.
+final class PropertyCache {
+    static final int LIMIT = 4;
+    final Shape[] shapes = new Shape[LIMIT];
+    final int[] offsets = new int[LIMIT];
+    // Get: offset이 -1이면 그 Shape에서 찾은 메서드(LoxFunction)
+    // Set: 값을 쓴 뒤의 Shape (필드를 새로 추가했으면 다음 Shape, 아니면 같은 Shape)
+    final Object[] targets = new Object[LIMIT];
+    int count = 0;
+
+    void add(Shape shape, int offset, Object target) {
+        if (count == LIMIT) return;
+        shapes[count] = shape;
+        offsets[count] = offset;
+        targets[count] = target;
+        ++count;
+    }
+}
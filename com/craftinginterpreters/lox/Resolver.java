@@ -1,5 +1,6 @@
 package com.craftinginterpreters.lox;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -10,14 +11,63 @@ import java.util.Stack;
 // 이 과정을 'resolve(해결)'라고 하며, 인터프리터가 실제 실행 전에 이름 바인딩을 명확히 할 수 있게 도와준다.
 //
 // 예시: 중첩된 블록에서 같은 이름의 변수가 선언될 때, 올바른 변수를 참조하도록 스코프를 관리한다.
+//
+// 변수는 함수 호출마다 하나씩 만드는 평평한 프레임(Object[])에 둔다. 함수 안의 모든 블록의 지역 변수가 한 프레임의
+// 슬롯을 나눠 쓰고(블록이 끝나면 그 슬롯은 다시 쓴다), 블록 자체는 아무것도 할당하지 않는다.
+// 안쪽 함수(클로저)가 잡아 가는 변수만 Cell에 넣어 힙에 두고, 안쪽 함수는 그 Cell을 업밸류로 들고 간다.
+// 변수를 쓰는 곳(Expr.Variable/Assign/This)과 선언문에는 어떻게 접근하는지(kind)와 슬롯 번호를 적어 둔다.
 class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-    private final Interpreter interpreter;
-    private final Stack<Map<String,Boolean>> scopes = new Stack<>();
-    private FunctionType currentFunction = FunctionType.NONE;
+    // 변수 접근 방법 (Expr.Variable/Assign/This, Stmt.Var/Function/Class 의 kind)
+    static final int GLOBAL = 0;  //전역 슬롯 (Globals)
+    static final int LOCAL = 1;   //현재 프레임의 슬롯에 값이 바로 있음
+    static final int CELL = 2;    //현재 프레임의 슬롯에 Cell이 있음 (클로저가 잡아 간 변수)
+    static final int UPVALUE = 3; //현재 함수가 잡아 온 Cell (LoxFunction.upvalues[slot])
 
-    Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
+    // 함수 하나(맨 위 코드 포함): 프레임 슬롯 배정과 잡아 온 변수 목록
+    private static class FunctionScope {
+        final FunctionScope enclosing;
+        int nextSlot = 0;
+        int maxSlots = 0; //프레임 크기
+        // 업밸류 출처: 0 이상이면 바깥 함수 프레임의 슬롯, 음수면 바깥 함수의 업밸류 ~번호
+        final List<Integer> upvalues = new ArrayList<>();
+
+        FunctionScope(FunctionScope enclosing) {
+            this.enclosing = enclosing;
+        }
+    }
+    // 스코프(블록) 하나: 이름 -> 지역 변수
+    private static class Scope {
+        final Map<String,Local> locals = new HashMap<>();
+        final FunctionScope function;
+        final int firstSlot; //블록이 끝나면 여기부터 슬롯을 다시 쓴다
+
+        Scope(FunctionScope function) {
+            this.function = function;
+            this.firstSlot = function.nextSlot;
+        }
+    }
+    private static class Local {
+        final int slot;
+        final boolean param; //매개변수(메서드의 this 포함): 호출할 때 값이 들어온다
+        boolean defined = false; //false면 선언만 되고 아직 초기화 전
+        boolean captured = false; //안쪽 함수가 잡아 갔으면 Cell에 둔다
+        // 이 변수를 선언하거나 쓰는 노드들. 잡힌 것이 밝혀지면 스코프가 끝날 때 kind를 CELL로 바꾼다.
+        final List<Object> uses = new ArrayList<>();
+
+        Local(int slot, boolean param) {
+            this.slot = slot;
+            this.param = param;
+        }
     }
+    private final Globals globals; //전역 이름에 슬롯 번호를 받아 오는 곳
+    private final Stack<Scope> scopes = new Stack<>();
+    private FunctionScope function = new FunctionScope(null); //지금 resolve 중인 함수 (처음엔 맨 위 코드)
+    private FunctionType currentFunction = FunctionType.NONE;
+    private int loopDepth = 0; //지금 함수 안에서 감싸고 있는 반복문 수 (break/continue 검사용)
+    // 마지막 resolveName 결과
+    private int resolvedKind = GLOBAL;
+    private int resolvedSlot = -1;
+
     private enum FunctionType {
         NONE, FUNCTION, INITIALIZER, METHOD
     }
@@ -25,17 +75,23 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         NONE, CLASS
     }
     private ClassType currentClass = ClassType.NONE;
+
+    Resolver(Interpreter interpreter) {
+        this.globals = interpreter.globals;
+    }
+    // 맨 위 코드를 실행할 프레임의 크기 (맨 위의 블록/반복문 안 지역 변수용)
+    int scriptSlots() {
+        return function.maxSlots;
+    }
     @Override
     public Void visitClassStmt(Stmt.Class stmt) {
         ClassType enclosingClass = currentClass;
         currentClass = ClassType.CLASS;
 
-        declare(stmt.name);
+        stmt.kind = scopes.isEmpty() ? GLOBAL : LOCAL;
+        stmt.slot = declare(stmt.name, stmt);
         define(stmt.name);
 
-        beginScope();
-        scopes.peek().put("this", true);
-        scopes.peek().put("자기자신", true);
         for (Stmt.Function method : stmt.methods) {
             FunctionType declaration = FunctionType.METHOD;
             if (method.name.lexeme.equals("init")) {
@@ -43,7 +99,6 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             }
             resolveFunction(method, declaration);
         }
-        endScope();
         
         currentClass = enclosingClass;
         return null;
@@ -70,15 +125,29 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         expr.accept(this);
     }
     private void beginScope() { //push
-        scopes.push(new HashMap<String,Boolean>());
+        scopes.push(new Scope(function));
     }
     private void endScope() { //pop
-        scopes.pop();
+        Scope scope = scopes.pop();
+        // 안쪽 함수가 잡아 간 변수는 선언하고 쓰는 곳 모두 Cell을 거치게 바꾼다.
+        for (Local local : scope.locals.values()) {
+            if (!local.captured) continue;
+            for (Object use : local.uses) {
+                if (use instanceof Expr.Variable) ((Expr.Variable)use).kind = CELL;
+                else if (use instanceof Expr.Assign) ((Expr.Assign)use).kind = CELL;
+                else if (use instanceof Expr.This) ((Expr.This)use).kind = CELL;
+                else if (use instanceof Stmt.Var) ((Stmt.Var)use).kind = CELL;
+                else if (use instanceof Stmt.Function) ((Stmt.Function)use).kind = CELL;
+                else if (use instanceof Stmt.Class) ((Stmt.Class)use).kind = CELL;
+            }
+        }
+        scope.function.nextSlot = scope.firstSlot;
     }
     @Override
     public Void visitVarStmt(Stmt.Var stmt) {
         // 변수 선언(이름만 등록)
-        declare(stmt.name);
+        stmt.kind = scopes.isEmpty() ? GLOBAL : LOCAL;
+        stmt.slot = declare(stmt.name, stmt);
         // 초기화 식이 있으면 resolve(해결) (예: 변수 a = b + 1)
         if (stmt.initializer!=null) {
             resolve(stmt.initializer);
@@ -87,83 +156,164 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         define(stmt.name);
         return null;
     }
-    private void declare(Token name) {
-        // 스코프가 비어 있으면(전역) 아무것도 하지 않음
-        if (scopes.isEmpty()) return;
+    // 이름을 선언하고 슬롯 번호를 돌려준다. 전역(스코프 밖)이면 전역 슬롯 번호
+    // node는 선언문 (매개변수면 null)
+    private int declare(Token name, Object node) {
+        // 스코프가 비어 있으면(전역) 전역 테이블에서 번호만 받아 옴
+        if (scopes.isEmpty()) return globals.slot(name.lexeme);
         // 가장 안쪽(최근)의 스코프를 가져옴
-        Map<String,Boolean> scope = scopes.peek();
+        Scope scope = scopes.peek();
         // 이미 이 스코프에 같은 이름의 변수가 있으면 에러
-        if (scope.containsKey(name.lexeme)) {
+        Local existing = scope.locals.get(name.lexeme);
+        if (existing != null) {
             Lox.error(name, "이미 이 범위 안에 이 이름의 변수가 있습니다.");
+            return existing.slot;
         }
-        // 변수 이름을 '아직 초기화되지 않음(false)' 상태로 등록
-        scope.put(name.lexeme,false); //포인터처럼 실제 객체 가리킴.
+        // 변수 이름을 '아직 초기화되지 않음' 상태로 등록하고 현재 함수 프레임의 다음 슬롯을 준다
+        Local local = newLocal(node == null);
+        if (node != null) local.uses.add(node);
+        scope.locals.put(name.lexeme,local);
+        return local.slot;
+    }
+    private Local newLocal(boolean param) {
+        Local local = new Local(function.nextSlot++, param);
+        if (function.nextSlot > function.maxSlots) function.maxSlots = function.nextSlot;
+        return local;
     }
     private void define(Token name) {
         // 변수 선언이 끝나고, 이제 초기화가 완료되었음을 표시
         // (이제 이 이름을 참조해도 됨)
         if (scopes.isEmpty()) return;
-        scopes.peek().put(name.lexeme, true);
+        scopes.peek().locals.get(name.lexeme).defined = true;
     }
     @Override
     public Void visitVariableExpr(Expr.Variable expr) {
-        if (!scopes.isEmpty() && scopes.peek().get(expr.name.lexeme)==Boolean.FALSE) {
-            Lox.error(expr.name, "초기화 중인 지역 변수는 읽을 수 없습니다.");
-        } 
-        resolveLocal(expr,expr.name);
+        if (!scopes.isEmpty()) {
+            Local local = scopes.peek().locals.get(expr.name.lexeme);
+            if (local != null && !local.defined) {
+                Lox.error(expr.name, "초기화 중인 지역 변수는 읽을 수 없습니다.");
+            }
+        }
+        resolveName(expr.name, expr);
+        expr.kind = resolvedKind;
+        expr.slot = resolvedSlot;
         return null;
     }
-    private void resolveLocal(Expr expr, Token name) {
+    // 이름이 어디에 있는지 찾아 resolvedKind/resolvedSlot에 남긴다.
+    // 현재 함수의 지역 변수 -> 바깥 함수의 변수(업밸류로 잡아 옴) -> 전역 순서로 찾는다.
+    private void resolveName(Token name, Object use) {
+        Local local = findLocal(function, name.lexeme);
+        if (local != null) {
+            local.uses.add(use);
+            resolvedKind = LOCAL;
+            resolvedSlot = local.slot;
+            return;
+        }
+        int upvalue = resolveUpvalue(function, name.lexeme);
+        if (upvalue >= 0) {
+            resolvedKind = UPVALUE;
+            resolvedSlot = upvalue;
+            return;
+        }
+        resolvedKind = GLOBAL;
+        resolvedSlot = globals.slot(name.lexeme);
+    }
+    // fn 함수에 속한 스코프들에서 안쪽부터 이름을 찾는다.
+    private Local findLocal(FunctionScope fn, String name) {
         for (int i=scopes.size()-1;i>=0;--i) {
-            if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr,scopes.size()-1-i);
-                return;
-            }
+            Scope scope = scopes.get(i);
+            if (scope.function != fn) continue;
+            Local local = scope.locals.get(name);
+            if (local != null) return local;
+        }
+        return null;
+    }
+    // 바깥 함수들에서 이름을 찾아 fn의 업밸류로 만든다. 못 찾으면 -1 (전역)
+    private int resolveUpvalue(FunctionScope fn, String name) {
+        if (fn.enclosing == null) return -1;
+        Local local = findLocal(fn.enclosing, name);
+        if (local != null) {
+            local.captured = true;
+            return addUpvalue(fn, local.slot);
         }
+        int upvalue = resolveUpvalue(fn.enclosing, name);
+        if (upvalue >= 0) return addUpvalue(fn, ~upvalue);
+        return -1;
+    }
+    private int addUpvalue(FunctionScope fn, int source) {
+        int index = fn.upvalues.indexOf(source);
+        if (index >= 0) return index;
+        fn.upvalues.add(source);
+        return fn.upvalues.size() - 1;
     }
     @Override
     public Void visitAssignExpr(Expr.Assign expr) {
         // 대입문의 오른쪽(값) 부분을 먼저 resolve(해결)
         resolve(expr.value);
         // 대입문의 왼쪽(변수 이름)이 현재 스코프에서 어디에 바인딩되는지 확인
-        resolveLocal(expr, expr.name);
+        resolveName(expr.name, expr);
+        expr.kind = resolvedKind;
+        expr.slot = resolvedSlot;
+        //대입되는 전역은 직접 바인딩하지 않는다.
+        if (expr.kind == GLOBAL) globals.markReassigned(expr.slot);
         return null;
     }
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) {
         // 함수 이름을 현재 스코프에 선언(이름만 등록)
-        declare(stmt.name);
+        stmt.kind = scopes.isEmpty() ? GLOBAL : LOCAL;
+        stmt.slot = declare(stmt.name, stmt);
         // 함수 이름을 정의(초기화 완료 표시)
         define(stmt.name);
         // 함수 본문과 매개변수의 스코프를 resolve(해결)
         resolveFunction(stmt, FunctionType.FUNCTION);
         return null;
     }
-    private void resolveFunction(Stmt.Function function, FunctionType type) {
+    private void resolveFunction(Stmt.Function declaration, FunctionType type) {
         // 현재 함수 타입(중첩 함수 대비)을 저장
         FunctionType enclosingFunction = currentFunction;
         currentFunction = type;
+        int enclosingLoopDepth = loopDepth;
+        loopDepth = 0; //바깥 함수의 반복문은 break/continue 대상이 아니다
+        function = new FunctionScope(function);
 
         // 함수의 새로운 스코프 시작(매개변수, 지역변수용)
         beginScope();
-        
-        // 메서드인 경우 this를 스코프에 추가
+        Scope scope = scopes.peek();
+        // 메서드는 프레임 슬롯 0에 this(자기자신)를 받는다. (LoxFunction.bind로 묶인 인스턴스)
         if (type == FunctionType.METHOD || type == FunctionType.INITIALIZER) {
-            scopes.peek().put("this", true);
-            scopes.peek().put("자기자신", true);
+            Local receiver = newLocal(true);
+            receiver.defined = true;
+            scope.locals.put("this", receiver);
+            scope.locals.put("자기자신", receiver);
         }
-        
-        // 매개변수 각각을 스코프에 등록(이름만 등록 후 바로 정의)
-        for (Token param : function.params) {
-            declare(param);
+        // 매개변수 각각을 스코프에 등록(이름만 등록 후 바로 정의). 매개변수가 this 다음 슬롯부터 차례로 들어간다.
+        for (Token param : declaration.params) {
+            declare(param, null);
             define(param);
         }
         // 함수 본문(여러 문장) resolve(해결)
-        resolve(function.body);
+        resolve(declaration.body);
+        // 호출할 때 만들 프레임 크기와, 함수를 만들 때 잡아 올 변수들
+        declaration.slots = function.maxSlots;
+        declaration.upvalues = toArray(function.upvalues);
+        // 잡힌 매개변수는 호출할 때 Cell로 감싼다. (this와 자기자신은 같은 Local이라 한 번만 넣는다)
+        List<Integer> cellParams = new ArrayList<>();
+        for (Local local : scope.locals.values()) {
+            if (local.param && local.captured && !cellParams.contains(local.slot)) cellParams.add(local.slot);
+        }
+        declaration.cellParams = toArray(cellParams);
         // 함수 스코프 끝(매개변수, 지역변수 소멸)
         endScope();
         // 함수 타입 복구(중첩 함수 대비)
+        function = function.enclosing;
         currentFunction = enclosingFunction;
+        loopDepth = enclosingLoopDepth;
+    }
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i=0;i<array.length;++i) array[i] = list.get(i);
+        return array;
     }
     @Override
     public Void visitExpressionStmt(Stmt.Expression stmt) {
@@ -196,15 +346,85 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitWhileStmt(Stmt.While stmt) {
         resolve(stmt.condition);
+        ++loopDepth;
         resolve(stmt.body);
+        --loopDepth;
         return null;
     }
     @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        // 초기화식의 변수는 for문 안에서만 보이므로 for문 전체가 한 스코프다.
+        beginScope();
+        if (stmt.initializer != null) resolve(stmt.initializer);
+        if (stmt.condition != null) resolve(stmt.condition);
+        ++loopDepth;
+        resolve(stmt.body);
+        --loopDepth;
+        if (stmt.increment != null) resolve(stmt.increment);
+        recognizeCountedLoop(stmt);
+        endScope();
+        return null;
+    }
+    // "변수 i = 시작; i < 끝; i = i + 숫자" 모양의 for문을 알아본다. (<, <=, >, >= 와 + 숫자, - 숫자)
+    // 이런 for문은 인터프리터가 i를 double로 들고 도는 카운트 반복문으로 실행한다.
+    private void recognizeCountedLoop(Stmt.For stmt) {
+        if (!(stmt.initializer instanceof Stmt.Var) || stmt.condition == null) return;
+        String name = ((Stmt.Var)stmt.initializer).name.lexeme;
+        if (!(stmt.condition instanceof Expr.Binary) || !(stmt.increment instanceof Expr.Assign)) return;
+        Expr.Binary condition = (Expr.Binary)stmt.condition;
+        switch (condition.operator.type) {
+            case LESS: case LESS_EQUAL: case GREATER: case GREATER_EQUAL: break;
+            default: return;
+        }
+        if (!isVariable(condition.left, name)) return;
+        Expr.Assign increment = (Expr.Assign)stmt.increment;
+        if (!increment.name.lexeme.equals(name) || !(increment.value instanceof Expr.Binary)) return;
+        Expr.Binary next = (Expr.Binary)increment.value;
+        if (next.operator.type != TokenType.PLUS && next.operator.type != TokenType.MINUS) return;
+        if (!isVariable(next.left, name) || !(next.right instanceof Expr.Literal)) return;
+        Object step = ((Expr.Literal)next.right).value;
+        if (!(step instanceof Double)) return;
+
+        stmt.counted = true;
+        stmt.step = next.operator.type == TokenType.PLUS ? (double)step : -(double)step;
+        // 선언, 조건식의 i, 증감식의 i(대입과 읽기) 말고도 i를 쓰거나(조건식의 끝 값, 본문) 클로저가 잡아 가면
+        // 반복마다 i 값을 변수에도 넣어 줘야 한다.
+        Local counter = scopes.peek().locals.get(name);
+        stmt.counterVisible = counter.captured;
+        for (Object use : counter.uses) {
+            if (use != stmt.initializer && use != condition.left && use != increment && use != next.left) {
+                stmt.counterVisible = true;
+            }
+        }
+    }
+    private static boolean isVariable(Expr expr, String name) {
+        return expr instanceof Expr.Variable && ((Expr.Variable)expr).name.lexeme.equals(name);
+    }
+    @Override
     public Void visitBinaryExpr(Expr.Binary expr) {
         resolve(expr.left);
         resolve(expr.right);
+        // 결과가 항상 숫자인 산술식인지 표시 (인터프리터가 박싱 없이 double로 계산한다)
+        switch (expr.operator.type) {
+            case MINUS: case STAR: case SLASH: case MOD:
+                expr.numeric = true;
+                break;
+            case PLUS:
+                expr.numeric = isNumeric(expr.left) && isNumeric(expr.right);
+                break;
+            default:
+                break;
+        }
         return null;
     }
+    // 에러가 나지 않는 한 결과가 반드시 숫자인 식인가. (숫자 리터럴, 단항 -, - * / %, 숫자끼리의 +)
+    static boolean isNumeric(Expr expr) {
+        if (expr instanceof Expr.Binary) return ((Expr.Binary)expr).numeric;
+        if (expr instanceof Expr.Unary) return ((Expr.Unary)expr).operator.type == TokenType.MINUS;
+        if (expr instanceof Expr.Literal) return ((Expr.Literal)expr).value instanceof Double;
+        if (expr instanceof Expr.Grouping) return isNumeric(((Expr.Grouping)expr).expression);
+        return false;
+    }
     @Override
     public Void visitCallExpr(Expr.Call expr) {
         resolve(expr.callee);
@@ -235,10 +455,12 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
     @Override
     public Void visitBreakStmt(Stmt.Break stmt) {
+        if (loopDepth == 0) Lox.error(stmt.keyword, "반복문 밖에서는 break(중단)를 쓸 수 없습니다.");
         return null;
     }
     @Override
     public Void visitContinueStmt(Stmt.Continue stmt) {
+        if (loopDepth == 0) Lox.error(stmt.keyword, "반복문 밖에서는 continue(계속)를 쓸 수 없습니다.");
         return null;
     }
     @Override
@@ -249,6 +471,11 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
     @Override
+    public Void visitHoistedExpr(Expr.Hoisted expr) {
+        resolve(expr.expression);
+        return null;
+    }
+    @Override
     public Void visitIndexGetExpr(Expr.IndexGet expr) {
         resolve(expr.object);
         resolve(expr.index);
@@ -277,7 +504,9 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         if (currentClass==ClassType.NONE) {
             Lox.error(expr.keyword, "클래스 밖에서 'this(자기자신)'을 사용할 수 없습니다.");
         }
-        resolveLocal(expr, expr.keyword);
+        resolveName(expr.keyword, expr);
+        expr.kind = resolvedKind;
+        expr.slot = resolvedSlot;
         return null;
     }
 }
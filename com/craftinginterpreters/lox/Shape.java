@@ -0,0 +1,40 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// 히든 클래스(Shape): 인스턴스가 가진 필드 이름 -> 값 배열 위치.
+// 같은 클래스에서 같은 순서로 필드를 추가한 인스턴스들은 같은 Shape 객체를 공유하므로, 인스턴스는 이름 표 없이
+// 값 배열(Object[])만 가진다. 필드를 새로 추가하면 다음 Shape으로 옮겨 가며(transition), 옮겨 갈 Shape도 캐시해 둔다.
+// 뿌리 Shape은 클래스마다 하나라서 Shape만 보면 클래스(메서드 목록)도 정해진다. (PropertyCache가 메서드도 캐시할 수 있는 이유)
+final class Shape {
+    private final Map<String,Integer> offsets;
+    final int size; //필드 수
+    private Map<String,Shape> transitions = null; //필드 이름 -> 그 필드를 추가한 다음 Shape
+
+    Shape() {
+        this.offsets = Collections.emptyMap();
+        this.size = 0;
+    }
+    private Shape(Shape parent, String name) {
+        this.offsets = new HashMap<>(parent.offsets);
+        this.offsets.put(name, parent.size);
+        this.size = parent.size + 1;
+    }
+    // 필드 위치, 없으면 -1
+    int offset(String name) {
+        Integer offset = offsets.get(name);
+        return offset == null ? -1 : offset;
+    }
+    // 필드 하나를 추가한 Shape
+    Shape addField(String name) {
+        if (transitions == null) transitions = new HashMap<>();
+        Shape next = transitions.get(name);
+        if (next == null) {
+            next = new Shape(this, name);
+            transitions.put(name, next);
+        }
+        return next;
+    }
+}
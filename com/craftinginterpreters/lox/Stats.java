@@ -0,0 +1,172 @@
+package com.craftinginterpreters.lox;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// 실행 통계 (--stats, 또는 JVM 옵션 -Dlox.stats=true).
+// 단계(스캔, 파싱, 리졸브, 최적화, 컴파일, 실행)별 벽시계 시간, 토큰/AST 노드/문장 수, 실행 중에 일어난 함수 호출,
+// 네이티브 함수 호출, 프레임/셀/인스턴스 할당, 배열 확장, 출력 바이트를 센다.
+// 켜져 있으면 JMX MBean(com.craftinginterpreters.lox:type=Stats)으로 내보내고, 끝날 때(System.exit 포함) 표준 에러에 보고한다.
+//
+// ENABLED는 클래스를 처음 쓸 때 시스템 속성에서 한 번 읽는 상수다. 그래서 꺼져 있으면 HotSpot이 `if (Stats.ENABLED)` 블록을
+// 통째로 지워 뜨거운 경로의 비용이 없다. --stats는 Lox.main이 무엇을 실행하기 전에 속성을 켠다.
+// 카운터는 인터프리터 스레드만 쓰고 JMX는 잠금 없이 읽는다.
+public final class Stats implements StatsMBean {
+    static final String PROPERTY = "lox.stats";
+    static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+    // 단계. phaseNanos의 번호다.
+    static final int SCAN = 0, PARSE = 1, RESOLVE = 2, OPTIMIZE = 3, COMPILE = 4, RUN = 5;
+    private static final String[] PHASES = {"스캔", "파싱", "리졸브", "최적화", "컴파일", "실행"};
+    static final long[] phaseNanos = new long[PHASES.length];
+
+    static long tokens = 0;       //스캔한 토큰 (EOF 포함)
+    static long nodes = 0;        //파싱한 AST 노드 (Expr + Stmt, 함수 본문 포함)
+    static long statements = 0;   //그중 문장
+    static long calls = 0;        //Lox 함수/메서드 호출 (인라인된 호출 포함)
+    static long inlinedCalls = 0; //그중 Inliner가 붙여 둔 식으로 바로 평가한 호출
+    static long nativeCalls = 0;  //네이티브 함수(clock, scanNum 등) 호출
+    static long frames = 0;       //호출마다 만든 프레임 (VM은 값 스택을 쓰므로 0)
+    static long cells = 0;        //클로저가 잡아 간 변수의 칸 (Cell, VM은 Upvalue)
+    static long instances = 0;    //클래스 인스턴스
+    static long arrayGrowths = 0; //배열 저장소를 두 배로 늘린 횟수
+    static long outputBytes = 0;  //print가 쓴 바이트 (UTF-8 기준)
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Stats(),
+                    new ObjectName("com.craftinginterpreters.lox:type=Stats"));
+            } catch (JMException e) {
+                System.err.println("통계 MBean 등록 오류: " + e.getMessage());
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> report(System.err), "lox-stats-report"));
+        }
+    }
+
+    private Stats() {}
+
+    // start부터 지금까지를 phase에 더하고 지금 시각을 돌려준다. (다음 단계의 시작)
+    static long phase(int phase, long start) {
+        long now = System.nanoTime();
+        phaseNanos[phase] += now - start;
+        return now;
+    }
+    // 인라인된 호출도 소스에서는 호출이므로 호출 수에 넣는다.
+    static void inlinedCall() {
+        ++calls;
+        ++inlinedCalls;
+    }
+    // 파싱한 프로그램의 토큰, 노드, 문장 수를 더한다.
+    static void parsed(List<Token> tokens, List<Stmt> program) {
+        Stats.tokens += tokens.size();
+        for (Stmt stmt : program) count(stmt);
+    }
+    static void output(String text) {
+        long bytes = text.length();
+        for (int i=0;i<text.length();++i) {
+            char c = text.charAt(i);
+            if (c >= 0x800) bytes += Character.isSurrogate(c) ? 1 : 2; //서로게이트 쌍은 둘이 합쳐 4바이트
+            else if (c >= 0x80) bytes += 1;
+        }
+        outputBytes += bytes;
+    }
+
+    private static void count(Stmt stmt) {
+        if (stmt == null) return;
+        ++nodes;
+        ++statements;
+        if (stmt instanceof Stmt.Expression) count(((Stmt.Expression)stmt).expression);
+        else if (stmt instanceof Stmt.Print) count(((Stmt.Print)stmt).expression);
+        else if (stmt instanceof Stmt.Var) count(((Stmt.Var)stmt).initializer);
+        else if (stmt instanceof Stmt.Return) count(((Stmt.Return)stmt).value);
+        else if (stmt instanceof Stmt.Block) {
+            for (Stmt inner : ((Stmt.Block)stmt).statements) count(inner);
+        } else if (stmt instanceof Stmt.If) {
+            Stmt.If branch = (Stmt.If)stmt;
+            count(branch.condition);
+            count(branch.thenBranch);
+            count(branch.elseBranch);
+        } else if (stmt instanceof Stmt.While) {
+            count(((Stmt.While)stmt).condition);
+            count(((Stmt.While)stmt).body);
+        } else if (stmt instanceof Stmt.For) {
+            Stmt.For loop = (Stmt.For)stmt;
+            count(loop.initializer);
+            count(loop.condition);
+            count(loop.increment);
+            count(loop.body);
+        } else if (stmt instanceof Stmt.Function) {
+            for (Stmt inner : ((Stmt.Function)stmt).body) count(inner);
+        } else if (stmt instanceof Stmt.Class) {
+            for (Stmt.Function method : ((Stmt.Class)stmt).methods) count(method);
+        }
+    }
+    private static void count(Expr expr) {
+        if (expr == null) return;
+        ++nodes;
+        if (expr instanceof Expr.Binary) {
+            count(((Expr.Binary)expr).left);
+            count(((Expr.Binary)expr).right);
+        } else if (expr instanceof Expr.Logical) {
+            count(((Expr.Logical)expr).left);
+            count(((Expr.Logical)expr).right);
+        } else if (expr instanceof Expr.Unary) count(((Expr.Unary)expr).right);
+        else if (expr instanceof Expr.Grouping) count(((Expr.Grouping)expr).expression);
+        else if (expr instanceof Expr.Hoisted) count(((Expr.Hoisted)expr).expression);
+        else if (expr instanceof Expr.Assign) count(((Expr.Assign)expr).value);
+        else if (expr instanceof Expr.Get) count(((Expr.Get)expr).object);
+        else if (expr instanceof Expr.Set) {
+            count(((Expr.Set)expr).object);
+            count(((Expr.Set)expr).value);
+        } else if (expr instanceof Expr.IndexGet) {
+            count(((Expr.IndexGet)expr).object);
+            count(((Expr.IndexGet)expr).index);
+        } else if (expr instanceof Expr.IndexSet) {
+            Expr.IndexSet set = (Expr.IndexSet)expr;
+            count(set.object);
+            count(set.index);
+            count(set.value);
+        } else if (expr instanceof Expr.Call) {
+            count(((Expr.Call)expr).callee);
+            for (Expr argument : ((Expr.Call)expr).arguments) count(argument);
+        } else if (expr instanceof Expr.Array) {
+            for (Expr element : ((Expr.Array)expr).elements) count(element);
+        }
+    }
+
+    // 종료 훅이 부른다.
+    static void report(PrintStream out) {
+        out.println("[통계] 단계별 시간");
+        for (int i=0;i<PHASES.length;++i) {
+            out.println(String.format("  %-6s %10.2f ms", PHASES[i], phaseNanos[i] / 1e6));
+        }
+        out.println(String.format("[통계] 토큰 %d, AST 노드 %d, 문장 %d", tokens, nodes, statements));
+        out.println(String.format("[통계] 함수 호출 %d (그중 인라인 %d), 네이티브 호출 %d", calls, inlinedCalls, nativeCalls));
+        out.println(String.format("[통계] 할당: 프레임 %d, 셀 %d, 인스턴스 %d, 배열 확장 %d", frames, cells, instances, arrayGrowths));
+        out.println(String.format("[통계] 출력 %d 바이트", outputBytes));
+        out.flush();
+    }
+
+    // JMX 속성 (StatsMBean)
+    @Override public long getScanNanos() { return phaseNanos[SCAN]; }
+    @Override public long getParseNanos() { return phaseNanos[PARSE]; }
+    @Override public long getResolveNanos() { return phaseNanos[RESOLVE]; }
+    @Override public long getOptimizeNanos() { return phaseNanos[OPTIMIZE]; }
+    @Override public long getCompileNanos() { return phaseNanos[COMPILE]; }
+    @Override public long getRunNanos() { return phaseNanos[RUN]; }
+    @Override public long getTokens() { return tokens; }
+    @Override public long getAstNodes() { return nodes; }
+    @Override public long getStatements() { return statements; }
+    @Override public long getFunctionCalls() { return calls; }
+    @Override public long getInlinedCalls() { return inlinedCalls; }
+    @Override public long getNativeCalls() { return nativeCalls; }
+    @Override public long getFrameAllocations() { return frames; }
+    @Override public long getCellAllocations() { return cells; }
+    @Override public long getInstanceAllocations() { return instances; }
+    @Override public long getArrayGrowths() { return arrayGrowths; }
+    @Override public long getOutputBytes() { return outputBytes; }
+}
@@ -0,0 +1,23 @@
+package com.craftinginterpreters.lox;
+
+// Stats를 JMX로 내보내는 표준 MBean 인터페이스. 시간은 나노초, 나머지는 JVM이 시작한 뒤 누적한 횟수다.
+// (JMX가 인터페이스의 getter로 속성을 찾으므로 public이어야 한다)
+public interface StatsMBean {
+    long getScanNanos();
+    long getParseNanos();
+    long getResolveNanos();
+    long getOptimizeNanos();
+    long getCompileNanos();
+    long getRunNanos();
+    long getTokens();
+    long getAstNodes();
+    long getStatements();
+    long getFunctionCalls();
+    long getInlinedCalls();
+    long getNativeCalls();
+    long getFrameAllocations();
+    long getCellAllocations();
+    long getInstanceAllocations();
+    long getArrayGrowths();
+    long getOutputBytes();
+}
@@ -7,6 +7,7 @@ abstract class Stmt{
     R visitBlockStmt(Block stmt);
     R visitClassStmt(Class stmt);
     R visitExpressionStmt(Expression stmt);
+    R visitForStmt(For stmt);
     R visitFunctionStmt(Function stmt);
     R visitIfStmt(If stmt);
     R visitPrintStmt(Print stmt);
@@ -16,6 +17,7 @@ abstract class Stmt{
     R visitBreakStmt(Break stmt);
     R visitContinueStmt(Continue stmt);
   }
+  int line = -1;
   static class Block extends Stmt {
     Block(List<Stmt> statements) {
       this.statements = statements;
@@ -39,6 +41,8 @@ abstract class Stmt{
     }
     final Token name;
     final List<Stmt.Function> methods;
+    int kind;
+    int slot = -1;
   }
   static class Expression extends Stmt {
     Expression(Expr expression) {
@@ -51,6 +55,28 @@ abstract class Stmt{
     }
     final Expr expression;
   }
+  static class For extends Stmt {
+    For(Stmt initializer, Expr condition, Expr increment, Stmt body) {
+      this.initializer = initializer;
+      this.condition = condition;
+      this.increment = increment;
+      this.body = body;
+    }
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+      return visitor.visitForStmt(this);
+    }
+    final Stmt initializer;
+    final Expr condition;
+    final Expr increment;
+    final Stmt body;
+    boolean counted;
+    double step;
+    boolean counterVisible;
+    int[] hoisted;
+    Jit osr = new Jit();
+  }
   static class Function extends Stmt {
     Function(Token name, List<Token> params, List<Stmt> body) {
       this.name = name;
@@ -65,6 +91,13 @@ abstract class Stmt{
     final Token name;
     final List<Token> params;
     final List<Stmt> body;
+    int kind;
+    int slot = -1;
+    int slots;
+    int[] upvalues;
+    int[] cellParams;
+    Jit jit = new Jit();
+    ClosureCompiler.Body closure;
   }
   static class If extends Stmt {
     If(Expr condition, Stmt thenBranch, Stmt elseBranch) {
@@ -117,6 +150,8 @@ abstract class Stmt{
     }
     final Token name;
     final Expr initializer;
+    int kind;
+    int slot = -1;
   }
   static class While extends Stmt {
     While(Expr condition, Stmt body) {
@@ -130,24 +165,30 @@ abstract class Stmt{
     }
     final Expr condition;
     final Stmt body;
+    int[] hoisted;
+    Jit osr = new Jit();
   }
   static class Break extends Stmt {
-    Break() {
+    Break(Token keyword) {
+      this.keyword = keyword;
     }
 
     @Override
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitBreakStmt(this);
     }
+    final Token keyword;
   }
   static class Continue extends Stmt {
-    Continue() {
+    Continue(Token keyword) {
+      this.keyword = keyword;
     }
 
     @Override
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitContinueStmt(this);
     }
+    final Token keyword;
   }
 
   abstract <R> R accept(Visitor<R> visitor);
@@ -0,0 +1,612 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 스택 기반 바이트코드 가상 머신 (--engine=vm).
+// Compiler가 만든 Chunk를 switch 디스패치 루프 하나로 실행한다.
+// 출력, 런타임 에러 메시지와 라인, 네이티브 함수는 트리 인터프리터(Interpreter)와 똑같이 동작해야 하므로
+// 배열/출력 관련 로직은 Interpreter의 static 메서드를 그대로 가져다 쓴다.
+class VM {
+    // 컴파일된 함수 원형 (바이트코드 + 상수 + 업밸류 개수)
+    static final class Function {
+        final String name;
+        int arity = 0;
+        int upvalueCount = 0;
+        final Chunk chunk = new Chunk();
+
+        Function(String name) {
+            this.name = name;
+        }
+        @Override
+        public String toString() {
+            return "<fn " + name + ">";
+        }
+    }
+    // 클로저가 잡은 변수. 변수가 아직 스택에 살아 있으면 slot으로 가리키고, 스코프를 벗어나면 closed에 값을 옮긴다.
+    static final class Upvalue {
+        int slot;
+        Object closed = null;
+        Upvalue next = null; //열린 업밸류 연결 리스트 (slot 내림차순)
+
+        Upvalue(int slot) {
+            this.slot = slot;
+        }
+    }
+    static final class Closure {
+        final Function function;
+        final Upvalue[] upvalues;
+
+        Closure(Function function, Upvalue[] upvalues) {
+            this.function = function;
+            this.upvalues = upvalues;
+        }
+        @Override
+        public String toString() {
+            return function.toString();
+        }
+    }
+    static final class Klass {
+        final String name;
+        final Map<String,Closure> methods = new HashMap<>();
+
+        Klass(String name) {
+            this.name = name;
+        }
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+    static final class Instance {
+        final Klass klass;
+        final Map<String,Object> fields = new HashMap<>();
+
+        Instance(Klass klass) {
+            this.klass = klass;
+        }
+        @Override
+        public String toString() {
+            return klass.name + " instance";
+        }
+    }
+    static final class BoundMethod {
+        final Object receiver;
+        final Closure method;
+
+        BoundMethod(Object receiver, Closure method) {
+            this.receiver = receiver;
+            this.method = method;
+        }
+        @Override
+        public String toString() {
+            return method.toString();
+        }
+    }
+    private static final class CallFrame {
+        Closure closure;
+        int ip;
+        int base; //이 프레임의 슬롯 0 (호출된 함수 또는 this)의 스택 위치
+        int returnTo; //반환값을 놓을 스택 위치. INVOKE로 부른 메서드면 base 한 칸 아래(메서드 자리)
+    }
+
+    // 트리 인터프리터는 자바 스택을 쓰므로 깊은 재귀에서 StackOverflowError로 죽는다. VM은 여기서 런타임 에러로 멈춘다.
+    private static final int FRAMES_MAX = 1 << 16;
+
+    private Object[] stack = new Object[256];
+    private int sp = 0;
+    private CallFrame[] frames = new CallFrame[64];
+    private int frameCount = 0;
+    private Upvalue openUpvalues = null;
+    // 트리 인터프리터의 전역 테이블을 같이 쓴다. Resolver가 매긴 슬롯 번호가 그대로 명령어의 피연산자가 되고,
+    // 네이티브 함수도 이미 정의되어 있다.
+    private final Globals globals;
+
+    VM(Globals globals) {
+        this.globals = globals;
+        for (int i = 0; i < frames.length; ++i) frames[i] = new CallFrame();
+    }
+
+    // 최상위 스크립트 함수를 실행한다. 전역 변수는 다음 호출(REPL 다음 줄)까지 유지된다.
+    void interpret(Function script) {
+        Closure closure = new Closure(script, new Upvalue[0]);
+        push(closure);
+        try {
+            call(closure, 0);
+            run();
+        } catch (RuntimeError error) {
+            Lox.runtimeError(error);
+        } finally {
+            Arrays.fill(stack, 0, stack.length, null);
+            sp = 0;
+            frameCount = 0;
+            openUpvalues = null;
+        }
+    }
+
+    private void push(Object value) {
+        if (sp == stack.length) stack = Arrays.copyOf(stack, sp * 2);
+        stack[sp++] = value;
+    }
+
+    private void run() {
+        CallFrame frame = frames[frameCount - 1];
+        byte[] code = frame.closure.function.chunk.code;
+        Object[] constants = frame.closure.function.chunk.constants;
+        int base = frame.base;
+        int ip = frame.ip;
+
+        for (;;) {
+            switch (code[ip++]) {
+                case OpCode.CONSTANT:
+                    push(constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)]);
+                    ip += 2;
+                    break;
+                case OpCode.NIL: push(null); break;
+                case OpCode.TRUE: push(Boolean.TRUE); break;
+                case OpCode.FALSE: push(Boolean.FALSE); break;
+                case OpCode.POP: stack[--sp] = null; break;
+                case OpCode.GET_LOCAL:
+                    push(stack[base + (code[ip++] & 0xff)]);
+                    break;
+                case OpCode.SET_LOCAL:
+                    stack[base + (code[ip++] & 0xff)] = stack[sp - 1];
+                    break;
+                case OpCode.GET_GLOBAL: {
+                    int slot = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    Token name = (Token)constants[((code[ip + 2] & 0xff) << 8) | (code[ip + 3] & 0xff)];
+                    ip += 4;
+                    push(globals.get(slot, name));
+                    break;
+                }
+                case OpCode.DEFINE_GLOBAL:
+                    globals.define(((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff), stack[--sp]);
+                    stack[sp] = null;
+                    ip += 2;
+                    break;
+                case OpCode.SET_GLOBAL: {
+                    int slot = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    Token name = (Token)constants[((code[ip + 2] & 0xff) << 8) | (code[ip + 3] & 0xff)];
+                    ip += 4;
+                    globals.assign(slot, name, stack[sp - 1]);
+                    break;
+                }
+                case OpCode.GET_UPVALUE: {
+                    Upvalue upvalue = frame.closure.upvalues[code[ip++] & 0xff];
+                    push(upvalue.slot >= 0 ? stack[upvalue.slot] : upvalue.closed);
+                    break;
+                }
+                case OpCode.SET_UPVALUE: {
+                    Upvalue upvalue = frame.closure.upvalues[code[ip++] & 0xff];
+                    if (upvalue.slot >= 0) stack[upvalue.slot] = stack[sp - 1];
+                    else upvalue.closed = stack[sp - 1];
+                    break;
+                }
+                case OpCode.GET_PROPERTY: {
+                    Token name = (Token)constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    Object object = stack[sp - 1];
+                    if (object instanceof List) {
+                        stack[sp - 1] = Interpreter.arrayProperty((List<?>)object, name);
+                        break;
+                    }
+                    if (object instanceof Instance) {
+                        Instance instance = (Instance)object;
+                        Object value = instance.fields.get(name.lexeme);
+                        if (value != null || instance.fields.containsKey(name.lexeme)) {
+                            stack[sp - 1] = value;
+                            break;
+                        }
+                        Closure method = instance.klass.methods.get(name.lexeme);
+                        if (method != null) {
+                            stack[sp - 1] = new BoundMethod(instance, method);
+                            break;
+                        }
+                        throw new RuntimeError(name, "정의되지 않은 프로퍼티 '" + name.lexeme + "'.");
+                    }
+                    throw new RuntimeError(name, "오직 인스턴스와 배열만 프로퍼티를 가질 수 있습니다.");
+                }
+                case OpCode.LOAD_METHOD:
+                    loadMethod((Token)constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)]);
+                    ip += 2;
+                    break;
+                case OpCode.LOAD_ARRAY_METHOD:
+                    //배열이면 메서드를 꺼내지 않고 [배열, null]로 두어 INVOKE_ARRAY가 바로 실행한다.
+                    if (stack[sp - 1] instanceof List) push(null);
+                    else loadMethod((Token)constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)]);
+                    ip += 2;
+                    break;
+                case OpCode.INVOKE:
+                    frame.ip = ip + 1;
+                    invoke(code[ip] & 0xff);
+                    frame = frames[frameCount - 1];
+                    code = frame.closure.function.chunk.code;
+                    constants = frame.closure.function.chunk.constants;
+                    base = frame.base;
+                    ip = frame.ip;
+                    break;
+                case OpCode.INVOKE_ARRAY: {
+                    int method = code[ip];
+                    int argCount = code[ip + 1] & 0xff;
+                    ip += 2;
+                    Object target = stack[sp - argCount - 2];
+                    if (!(target instanceof List)) {
+                        frame.ip = ip;
+                        invoke(argCount);
+                        frame = frames[frameCount - 1];
+                        code = frame.closure.function.chunk.code;
+                        constants = frame.closure.function.chunk.constants;
+                        base = frame.base;
+                        ip = frame.ip;
+                        break;
+                    }
+                    List<?> array = (List<?>)target;
+                    Object result;
+                    switch (method) {
+                        case Compiler.APPEND: result = Jit.append(array, stack[sp - 1]); break;
+                        case Compiler.PUSH_FRONT: result = Jit.pushFront(array, stack[sp - 1]); break;
+                        case Compiler.POP_BACK: result = Jit.popBack(array); break;
+                        default: result = Jit.popFront(array); break;
+                    }
+                    Arrays.fill(stack, sp - argCount - 1, sp, null);
+                    sp -= argCount + 1;
+                    stack[sp - 1] = result;
+                    break;
+                }
+                case OpCode.CHECK_INSTANCE: {
+                    Token name = (Token)constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    if (!(stack[sp - 1] instanceof Instance)) {
+                        throw new RuntimeError(name, "인스턴스만 필드를 가집니다.");
+                    }
+                    break;
+                }
+                case OpCode.SET_PROPERTY: {
+                    Token name = (Token)constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    Object value = stack[--sp];
+                    Object object = stack[sp - 1];
+                    if (!(object instanceof Instance)) {
+                        throw new RuntimeError(name, "인스턴스만 필드를 가집니다.");
+                    }
+                    ((Instance)object).fields.put(name.lexeme, value);
+                    stack[sp - 1] = value;
+                    break;
+                }
+                case OpCode.GET_INDEX: {
+                    Object index = stack[--sp];
+                    stack[sp - 1] = Interpreter.indexGet(stack[sp - 1], index);
+                    break;
+                }
+                case OpCode.SET_INDEX: {
+                    Object value = stack[--sp];
+                    Object index = stack[--sp];
+                    stack[sp - 1] = Interpreter.indexSet(stack[sp - 1], index, value);
+                    break;
+                }
+                case OpCode.EQUAL: {
+                    Object b = stack[--sp];
+                    stack[sp - 1] = Interpreter.isEqual(stack[sp - 1], b) ? Boolean.TRUE : Boolean.FALSE;
+                    break;
+                }
+                case OpCode.NOT_EQUAL: {
+                    Object b = stack[--sp];
+                    stack[sp - 1] = Interpreter.isEqual(stack[sp - 1], b) ? Boolean.FALSE : Boolean.TRUE;
+                    break;
+                }
+                case OpCode.GREATER: {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double && b instanceof Double)) throw error(frame, ip, "모든 피연산자는 숫자여야 합니다.");
+                    stack[sp - 1] = (double)a > (double)b ? Boolean.TRUE : Boolean.FALSE;
+                    break;
+                }
+                case OpCode.GREATER_EQUAL: {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double && b instanceof Double)) throw error(frame, ip, "모든 피연산자는 숫자여야 합니다.");
+                    stack[sp - 1] = (double)a >= (double)b ? Boolean.TRUE : Boolean.FALSE;
+                    break;
+                }
+                case OpCode.LESS: {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double && b instanceof Double)) throw error(frame, ip, "모든 피연산자는 숫자여야 합니다.");
+                    stack[sp - 1] = (double)a < (double)b ? Boolean.TRUE : Boolean.FALSE;
+                    break;
+                }
+                case OpCode.LESS_EQUAL: {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double && b instanceof Double)) throw error(frame, ip, "모든 피연산자는 숫자여야 합니다.");
+                    stack[sp - 1] = (double)a <= (double)b ? Boolean.TRUE : Boolean.FALSE;
+                    break;
+                }
+                case OpCode.ADD: {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (a instanceof Double && b instanceof Double) {
+                        stack[sp - 1] = Interpreter.box((double)a + (double)b);
+                    } else if (a instanceof String && b instanceof String) {
+                        stack[sp - 1] = (String)a + (String)b;
+                    } else if (a instanceof Double && b instanceof String) {
+                        //문자열과 숫자 연산 시 문자열로 바꿔서 계산한다. (트리 인터프리터와 같은 규칙)
+                        stack[sp - 1] = String.valueOf(a) + (String)b;
+                    } else if (a instanceof String && b instanceof Double) {
+                        stack[sp - 1] = (String)a + String.valueOf(b);
+                    } else {
+                        throw error(frame, ip, "피연산자는 두 숫자 또는 두 문자열이어야 합니다.");
+                    }
+                    break;
+                }
+                case OpCode.SUBTRACT: {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double && b instanceof Double)) throw error(frame, ip, "모든 피연산자는 숫자여야 합니다.");
+                    stack[sp - 1] = Interpreter.box((double)a - (double)b);
+                    break;
+                }
+                case OpCode.MULTIPLY: {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double && b instanceof Double)) throw error(frame, ip, "모든 피연산자는 숫자여야 합니다.");
+                    stack[sp - 1] = Interpreter.box((double)a * (double)b);
+                    break;
+                }
+                case OpCode.DIVIDE: {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double && b instanceof Double)) throw error(frame, ip, "모든 피연산자는 숫자여야 합니다.");
+                    if ((double)b == 0) throw error(frame, ip, "0으로 나눌 수 없습니다.");
+                    stack[sp - 1] = Interpreter.box((double)a / (double)b);
+                    break;
+                }
+                case OpCode.MODULO: {
+                    Object b = stack[--sp];
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double && b instanceof Double)) throw error(frame, ip, "모든 피연산자는 숫자여야 합니다.");
+                    if ((double)b == 0) throw error(frame, ip, "0으로 나눌 수 없습니다.");
+                    stack[sp - 1] = Interpreter.box((double)a % (double)b);
+                    break;
+                }
+                case OpCode.NOT:
+                    stack[sp - 1] = Interpreter.isTruthy(stack[sp - 1]) ? Boolean.FALSE : Boolean.TRUE;
+                    break;
+                case OpCode.NEGATE: {
+                    Object a = stack[sp - 1];
+                    if (!(a instanceof Double)) throw error(frame, ip, "피연산자는 숫자여야 합니다.");
+                    stack[sp - 1] = Interpreter.box(-(double)a);
+                    break;
+                }
+                case OpCode.PRINT:
+                    Interpreter.print(stack[--sp]);
+                    stack[sp] = null;
+                    break;
+                case OpCode.JUMP:
+                    ip += 2 + (((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff));
+                    break;
+                case OpCode.JUMP_IF_FALSE:
+                    if (Interpreter.isTruthy(stack[sp - 1])) ip += 2;
+                    else ip += 2 + (((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff));
+                    break;
+                case OpCode.POP_JUMP_IF_FALSE: {
+                    Object condition = stack[--sp];
+                    stack[sp] = null;
+                    if (condition == Boolean.TRUE || Interpreter.isTruthy(condition)) ip += 2;
+                    else ip += 2 + (((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff));
+                    break;
+                }
+                case OpCode.LOOP:
+                    ip -= (((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)) - 2;
+                    break;
+                case OpCode.CALL: {
+                    int argCount = code[ip++] & 0xff;
+                    frame.ip = ip;
+                    callValue(stack[sp - argCount - 1], argCount);
+                    frame = frames[frameCount - 1];
+                    code = frame.closure.function.chunk.code;
+                    constants = frame.closure.function.chunk.constants;
+                    base = frame.base;
+                    ip = frame.ip;
+                    break;
+                }
+                case OpCode.CLOSURE: {
+                    Function function = (Function)constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    Upvalue[] upvalues = new Upvalue[function.upvalueCount];
+                    for (int i = 0; i < upvalues.length; ++i) {
+                        boolean isLocal = code[ip++] == 1;
+                        int index = code[ip++] & 0xff;
+                        upvalues[i] = isLocal ? captureUpvalue(base + index) : frame.closure.upvalues[index];
+                    }
+                    push(new Closure(function, upvalues));
+                    break;
+                }
+                case OpCode.CLOSE_UPVALUE:
+                    closeUpvalues(sp - 1);
+                    stack[--sp] = null;
+                    break;
+                case OpCode.RETURN: {
+                    Object result = stack[--sp];
+                    closeUpvalues(base);
+                    --frameCount;
+                    if (frameCount == 0) {
+                        sp = 0;
+                        return;
+                    }
+                    sp = frame.returnTo;
+                    push(result);
+                    frame = frames[frameCount - 1];
+                    code = frame.closure.function.chunk.code;
+                    constants = frame.closure.function.chunk.constants;
+                    base = frame.base;
+                    ip = frame.ip;
+                    break;
+                }
+                case OpCode.ARRAY: {
+                    int count = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    LoxArray array = new LoxArray(count);
+                    for (int i = sp - count; i < sp; ++i) {
+                        array.add(stack[i]);
+                        stack[i] = null;
+                    }
+                    sp -= count;
+                    push(array);
+                    break;
+                }
+                case OpCode.CLASS:
+                    push(new Klass((String)constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)]));
+                    ip += 2;
+                    break;
+                case OpCode.METHOD: {
+                    String name = (String)constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    ((Klass)stack[sp - 2]).methods.put(name, (Closure)stack[sp - 1]);
+                    stack[--sp] = null;
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("알 수 없는 명령어 " + code[ip - 1]);
+            }
+        }
+    }
+
+    // 스택의 obj를 [메서드, obj](메서드 호출) 또는 [null, 호출 대상](필드, 배열 메서드) 두 칸으로 바꾼다.
+    // 조회 순서와 에러는 GET_PROPERTY와 같고, 인자보다 먼저 실행되는 것도 트리 인터프리터와 같다.
+    private void loadMethod(Token name) {
+        Object object = stack[sp - 1];
+        if (object instanceof List) {
+            stack[sp - 1] = null;
+            push(Interpreter.arrayProperty((List<?>)object, name));
+            return;
+        }
+        if (object instanceof Instance) {
+            Instance instance = (Instance)object;
+            Object value = instance.fields.get(name.lexeme);
+            if (value != null || instance.fields.containsKey(name.lexeme)) {
+                stack[sp - 1] = null;
+                push(value);
+                return;
+            }
+            Closure method = instance.klass.methods.get(name.lexeme);
+            if (method != null) {
+                stack[sp - 1] = method;
+                push(instance);
+                return;
+            }
+            throw new RuntimeError(name, "정의되지 않은 프로퍼티 '" + name.lexeme + "'.");
+        }
+        throw new RuntimeError(name, "오직 인스턴스와 배열만 프로퍼티를 가질 수 있습니다.");
+    }
+    // LOAD_METHOD로 꺼낸 [메서드, obj] 또는 [null, 호출 대상]과 인자로 호출한다. 부르는 쪽은 frame.ip를 먼저 적어 둔다.
+    private void invoke(int argCount) {
+        Object method = stack[sp - argCount - 2];
+        if (method != null) {
+            //receiver가 이미 메서드 프레임의 슬롯 0 자리에 있다. 반환값은 메서드 자리에 놓는다.
+            call((Closure)method, argCount);
+            frames[frameCount - 1].returnTo = sp - argCount - 2;
+        } else {
+            //빈 칸을 지우고 일반 호출로 넘긴다.
+            System.arraycopy(stack, sp - argCount - 1, stack, sp - argCount - 2, argCount + 1);
+            stack[--sp] = null;
+            callValue(stack[sp - argCount - 1], argCount);
+        }
+    }
+
+    // 호출 대상 종류별로 프레임을 만들거나(클로저, 메서드, 클래스) 바로 실행한다(네이티브, 배열 메서드).
+    // 검사 순서와 에러 메시지는 Interpreter.visitCallExpr와 같다.
+    private void callValue(Object callee, int argCount) {
+        if (callee instanceof Closure) {
+            call((Closure)callee, argCount);
+            return;
+        }
+        if (callee instanceof BoundMethod) {
+            BoundMethod bound = (BoundMethod)callee;
+            stack[sp - argCount - 1] = bound.receiver;
+            call(bound.method, argCount);
+            return;
+        }
+        if (callee instanceof Klass) {
+            Klass klass = (Klass)callee;
+            Closure initializer = klass.methods.get("init");
+            int arity = initializer == null ? 0 : initializer.function.arity;
+            if (argCount != arity) throw arityError(arity, argCount);
+            stack[sp - argCount - 1] = new Instance(klass);
+            if (Stats.ENABLED) ++Stats.instances;
+            if (initializer != null) call(initializer, argCount);
+            return;
+        }
+        if (callee instanceof LoxCallable) {
+            // 네이티브 함수와 배열 내장 메서드
+            LoxCallable function = (LoxCallable)callee;
+            if (argCount != function.arity()) throw arityError(function.arity(), argCount);
+            List<Object> arguments = new ArrayList<>(argCount);
+            for (int i = sp - argCount; i < sp; ++i) arguments.add(stack[i]);
+            Object result = function.call(null, arguments);
+            Arrays.fill(stack, sp - argCount - 1, sp, null);
+            sp -= argCount + 1;
+            push(result);
+            return;
+        }
+        throw error(frames[frameCount - 1], frames[frameCount - 1].ip, "함수나 클래스로만 호출할 수 있습니다.");
+    }
+
+    private void call(Closure closure, int argCount) {
+        if (argCount != closure.function.arity) throw arityError(closure.function.arity, argCount);
+        if (frameCount == frames.length) {
+            if (frameCount == FRAMES_MAX) {
+                throw error(frames[frameCount - 1], frames[frameCount - 1].ip, "호출 스택이 너무 깊습니다.");
+            }
+            frames = Arrays.copyOf(frames, frameCount * 2);
+            for (int i = frameCount; i < frames.length; ++i) frames[i] = new CallFrame();
+        }
+        if (Stats.ENABLED && frameCount > 0) ++Stats.calls; //맨 위 코드(스크립트)는 호출로 세지 않는다
+        CallFrame frame = frames[frameCount++];
+        frame.closure = closure;
+        frame.ip = 0;
+        frame.base = sp - argCount - 1;
+        frame.returnTo = frame.base;
+    }
+
+    private RuntimeError arityError(int arity, int argCount) {
+        CallFrame frame = frames[frameCount - 1];
+        return error(frame, frame.ip, "" + arity + "개의 인자를 기대했지만, 실제로는 " + argCount + "개를 받았습니다.");
+    }
+
+    private Upvalue captureUpvalue(int slot) {
+        Upvalue previous = null;
+        Upvalue upvalue = openUpvalues;
+        while (upvalue != null && upvalue.slot > slot) {
+            previous = upvalue;
+            upvalue = upvalue.next;
+        }
+        if (upvalue != null && upvalue.slot == slot) return upvalue;
+
+        Upvalue created = new Upvalue(slot);
+        if (Stats.ENABLED) ++Stats.cells;
+        created.next = upvalue;
+        if (previous == null) openUpvalues = created;
+        else previous.next = created;
+        return created;
+    }
+
+    // last 이상의 슬롯을 가리키는 업밸류를 닫는다 (값을 스택에서 업밸류 안으로 옮김).
+    private void closeUpvalues(int last) {
+        while (openUpvalues != null && openUpvalues.slot >= last) {
+            Upvalue upvalue = openUpvalues;
+            upvalue.closed = stack[upvalue.slot];
+            upvalue.slot = -1;
+            openUpvalues = upvalue.next;
+        }
+    }
+
+    // 현재 명령어의 라인으로 런타임 에러를 만든다. ip는 이미 피연산자를 읽은 뒤의 위치다.
+    private RuntimeError error(CallFrame frame, int ip, String message) {
+        int line = frame.closure.function.chunk.getLine(ip - 1);
+        return new RuntimeError(new Token(TokenType.IDENTIFIER, "", null, line), message);
+    }
+}
@@ -6,6 +6,7 @@ import java.util.Arrays;
 import java.util.List;
 // java com.craftinginterpreters.tool.GenerateAst com/craftinginterpreters/lox 로 실행.
 //보일러 플레이트 코드다. defineAst 안에 정의할 내용을 쓰면 알아서 추상 클래스, 전역 클래스 및 생성자,필드를 정의한다.
+//"이름 : 생성자 필드 : 리졸버 필드" 형식으로 세 번째 칸을 쓰면, 생성자에 들어가지 않고 Resolver(또는 실행 중 인터프리터의 캐시)가 나중에 채우는 (final 아닌) 필드가 된다.
 public class GenerateAst {
     public static void main(String[] args) throws IOException{
         if (args.length!=1) {
@@ -14,37 +15,46 @@ public class GenerateAst {
         }
         String outputDir = args[0];
         defineAst(outputDir,"Expr",Arrays.asList(
-          "Binary   : Expr left, Token operator, Expr right",
-             "Call : Expr callee, Token paren, List<Expr> arguments",
-             "Get : Expr object, Token name",
-             "Set : Expr object, Token name, Expr value",
-             "This : Token keyword",
-             "IndexGet   : Expr object, Expr index",
+          "Binary   : Expr left, Token operator, Expr right : boolean numeric, BinaryNode node = BinaryNode.UNINITIALIZED",
+             "Call : Expr callee, Token paren, List<Expr> arguments : LoxCallable direct, int directEpoch = -1, CallNode node = CallNode.UNINITIALIZED, Stmt.Function inlined, Expr inlineBody, int[] inlineSlots",
+             "Get : Expr object, Token name : PropertyCache cache = new PropertyCache()",
+             "Set : Expr object, Token name, Expr value : PropertyCache cache = new PropertyCache()",
+             "This : Token keyword : int kind, int slot = -1",
+             "IndexGet   : Expr object, Expr index : Stmt.For bounds",
              "IndexSet   : Expr object, Expr index, Expr value",
              "Grouping : Expr expression",
              "Literal  : Object value", 
              "Logical  : Expr left, Token operator, Expr right",
              "Unary    : Token operator, Expr right",
-             "Variable : Token name",
-             "Assign   : Token name, Expr value",
-             "Array    : List<Expr> elements"
+             "Variable : Token name : int kind, int slot = -1",
+             "Assign   : Token name, Expr value : int kind, int slot = -1",
+             "Array    : Token bracket, List<Expr> elements",
+             "Hoisted  : Expr expression : int slot"
         ));
-        defineAst(outputDir, "Stmt", Arrays.asList(
+        //모든 문장 공통: line은 문장의 줄 번호 캐시다. (-1이면 아직 모름, Profiler.line이 처음 물을 때 토큰에서 찾아 채운다)
+        defineAst(outputDir, "Stmt", "int line = -1", Arrays.asList(
           "Block : List<Stmt> statements",
-            "Class : Token name, List<Stmt.Function> methods",
+            "Class : Token name, List<Stmt.Function> methods : int kind, int slot = -1",
             "Expression : Expr expression",
-            "Function : Token name, List<Token> params, List<Stmt> body",
+            "For : Stmt initializer, Expr condition, Expr increment, Stmt body : boolean counted, double step, boolean counterVisible, int[] hoisted, Jit osr = new Jit()",
+            "Function : Token name, List<Token> params, List<Stmt> body : int kind, int slot = -1, int slots, int[] upvalues, int[] cellParams, Jit jit = new Jit(), ClosureCompiler.Body closure",
             "If : Expr condition, Stmt thenBranch," + " Stmt elseBranch",
                 "Print : Expr expression",
                 "Return : Token keyword, Expr value",
-                "Var : Token name, Expr initializer",
-                "While : Expr condition, Stmt body",
-                "Break      : ",
-                "Continue   : "
+                "Var : Token name, Expr initializer : int kind, int slot = -1",
+                "While : Expr condition, Stmt body : int[] hoisted, Jit osr = new Jit()",
+                "Break      : Token keyword",
+                "Continue   : Token keyword"
         ));
     }
     private static void defineAst(
         String outputDir, String baseName, List<String> types
+    ) throws IOException {
+        defineAst(outputDir, baseName, "", types);
+    }
+    // baseFields는 베이스 클래스에 둘 필드 (", "로 구분)
+    private static void defineAst(
+        String outputDir, String baseName, String baseFields, List<String> types
     ) throws IOException {
         String path = outputDir + "/" + baseName + ".java";
         PrintWriter writer = new PrintWriter(path,"UTF-8");
@@ -56,13 +66,19 @@ public class GenerateAst {
         writer.println("abstract class " + baseName + "{");
         
         defineVisitor(writer,baseName,types);
+        if (!baseFields.isEmpty()) {
+            for (String field : baseFields.split(", ")) {
+                writer.println("  " + field + ";");
+            }
+        }
 
         //AST 클래스
         for (String type : types) {
             String[] parts = type.split(":");
             String className = parts[0].trim();
             String fields = parts.length > 1 ? parts[1].trim() : "";
-            defineType(writer,baseName,className,fields);
+            String resolvedFields = parts.length > 2 ? parts[2].trim() : "";
+            defineType(writer,baseName,className,fields,resolvedFields);
         }
         //베이스 accept() 메서드
         writer.println();
@@ -80,7 +96,7 @@ public class GenerateAst {
         writer.println("  }");
     }
     private static void defineType(
-        PrintWriter writer, String baseName, String className, String fieldList) {
+        PrintWriter writer, String baseName, String className, String fieldList, String resolvedFieldList) {
         writer.println("  static class " + className + " extends " + baseName + " {");
 
         // 생성자
@@ -116,6 +132,12 @@ public class GenerateAst {
                 writer.println("    final " + field + ";");
             }
         }
+        // Resolver가 채우는 필드 (슬롯 번호 등)
+        if (!resolvedFieldList.isEmpty()) {
+            for (String field : resolvedFieldList.split(", ")) {
+                writer.println("    " + field + ";");
+            }
+        }
         writer.println("  }");
     }
 }